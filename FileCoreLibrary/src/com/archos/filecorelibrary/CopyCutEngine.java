@@ -24,20 +24,46 @@ import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.SftpException;
 
 
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CopyCutEngine {
     private final Context mContext;
     private Handler mUiHandler;
     private CopyThread mCopyThread;
     private OperationEngineListener mListener;
-    private boolean mHasToStop;
+    private volatile boolean mHasToStop;
     private static final int MAX_COUNT = 32768;
+    // progress is published to the listener at this rate instead of once per buffer
+    private static final long PROGRESS_PERIOD_MS = 250;
+    // throughput is averaged over that many periods
+    private static final int SPEED_SAMPLES = 8;
+    // in parallel mode, files bigger than that are copied one range per thread when both ends allow it
+    private static final long CHUNKED_COPY_MIN_SIZE = 64 * 1024 * 1024;
+    private static final long CHUNK_SIZE = 16 * 1024 * 1024;
+    // local to local copies are done by the kernel, one slice between two progress updates
+    private static final long TRANSFER_SLICE = 8 * 1024 * 1024;
+    // on failure, time given to the other copy threads to stop before their partial targets are deleted
+    private static final long STOP_TIMEOUT_MS = 5000;
+    private int mParallelism = 1;
     private String mFileCopyString;
     private String mFirstCopyPattern; // Full pattern for the first copy
     private String mCopyPatternLeft; // Part of the pattern before the index
@@ -104,6 +130,14 @@ public class CopyCutEngine {
         mTargetFilePrefix = s;
     }
 
+    /**
+     * Number of files (or ranges of a big file) copied at the same time, used by the next copy/cut.
+     * Default is 1: files are copied one after the other.
+     */
+    public void setParallelism(int parallelism) {
+        mParallelism = Math.max(1, parallelism);
+    }
+
 
     final class CopyThread extends Thread {
         private List<MetaFile2> mSources;
@@ -120,7 +154,13 @@ public class CopyCutEngine {
         */
         private HashMap<MetaFile2, List<MetaFile2>> parents; // key : parent, value : children
         private HashMap<MetaFile2, MetaFile2>children; // key : a child file, value : its parent
-        private long mLastUpdate = 0;
+        private final ProgressPublisher mProgressPublisher = new ProgressPublisher();
+        // null when copying sequentially
+        private ExecutorService mExecutor;
+        // set when a copy failed, the other ones stop like on cancel
+        private volatile boolean mFailed;
+        // targets being written, guarded by itself
+        private final HashSet<Uri> mPartialTargets = new HashSet<Uri>();
 
 
         private Uri getNextCopyUri(MetaFile2 toCopy, List<MetaFile2> inTargetDirectory, Uri directory) {
@@ -285,79 +325,224 @@ public class CopyCutEngine {
             return size;
         }
 
-        /**
-         * Returns average copy speed in bytes/second.
-         */
-        private double getCopySpeed(long position, long startTime) {
-            long elapsedTime = System.currentTimeMillis() - startTime;
-            return 1000.0 * position / elapsedTime;
-        }
-
-        public long copy(final MetaFile2 source, final Uri target, final int currentFile, final int currentRootFile, long rootProgress, long totalProgress) throws Exception {
+        public long copy(final MetaFile2 source, final Uri target, final int currentFile, final int currentRootFile) throws Exception {
             FileEditor targetEditor = FileEditorFactory.getFileEditorForUrl(target,mContext);
             if (source.isDirectory()) {
                 targetEditor.mkdir();
             }
             else {
                 FileEditor sourceEditor = FileEditorFactory.getFileEditorForUrl(source.getUri(),mContext);
-                OutputStream out = targetEditor.getOutputStream();
-                InputStream in = sourceEditor.getInputStream();
-                if (in != null && out != null) {
-                    long position = 0;
-                    long startTime = System.currentTimeMillis();
-                    boolean isNetworkFileCopy = !FileUtils.isLocal(target) || !FileUtils.isLocal(source.getUri());
-                    byte buf[] = new byte[MAX_COUNT];
-                    int len;
-                    while ((len = in.read(buf)) != -1) {
-                        if(mHasToStop)
-                            break;
-                        out.write(buf, 0, len);
-                        position += (long)len;
-                        totalProgress +=(long)len;
-                        rootProgress += (long)len;
-                        final long finalPosition = position;
-                        final long finalTotalProgress = totalProgress;
-                        final long finalRootProgress = rootProgress;
-                        final double currentSpeed = isNetworkFileCopy ? getCopySpeed(position, startTime) : -1.0;
-                        mUiHandler.post(new Runnable() {
-                            @Override
-                            public void run() {
-                                if(mListener != null){
-                                    mListener.onProgress(currentFile, finalPosition, currentRootFile, finalRootProgress, finalTotalProgress, currentSpeed);
-                                }
-                            }
-                        });
-
+                mProgressPublisher.setMeasureSpeed(!FileUtils.isLocal(target) || !FileUtils.isLocal(source.getUri()));
+                long position = 0;
+                boolean complete = false;
+                synchronized (mPartialTargets) {
+                    mPartialTargets.add(target);
+                }
+                try {
+                    RandomAccessOutput rangedOut = null;
+                    boolean localCopy = isFileUri(source.getUri()) && isFileUri(target);
+                    if (!localCopy && mExecutor != null && source.length() >= CHUNKED_COPY_MIN_SIZE && sourceEditor.hasRandomAccessInput())
+                        rangedOut = targetEditor.getRandomAccessOutput(source.length());
+                    if (rangedOut != null) {
+                        position = copyRanges(source, sourceEditor, rangedOut, currentFile, currentRootFile);
                     }
-                    out.close();
-                    in.close();
-                    if(mHasToStop){
-                        targetEditor.delete();
-                    }else{
-                        if(FileUtils.isLocal(target)) {
-                            Uri toIndex = target;
-                            if (toIndex.getScheme() == null)
-                                toIndex = Uri.parse("file://" + toIndex.toString());
-                            Intent scanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
-                            scanIntent.setData(toIndex);
-                            mContext.sendBroadcast(scanIntent);
+                    else {
+                        OutputStream out = targetEditor.getOutputStream();
+                        InputStream in = sourceEditor.getInputStream();
+                        if (in == null || out == null) {
+                            IOUtils.closeSilently(in);
+                            IOUtils.closeSilently(out);
+                            return 0;
                         }
-                        mUiHandler.post(new Runnable() {
-                            @Override
-                            public void run() {
-                                if (mListener != null) {
-                                    mListener.onSuccess(target);
+                        try {
+                            if (localCopy && in instanceof FileInputStream && out instanceof FileOutputStream) {
+                                position = transfer((FileInputStream) in, (FileOutputStream) out, currentFile, currentRootFile);
+                            }
+                            else {
+                                byte buf[] = new byte[MAX_COUNT];
+                                int len;
+                                while ((len = in.read(buf)) != -1) {
+                                    if(isStopped())
+                                        break;
+                                    out.write(buf, 0, len);
+                                    position += (long)len;
+                                    mProgressPublisher.add(currentFile, position, currentRootFile, len);
                                 }
                             }
-                        });
+                            out.close();
+                            out = null;
+                        } finally {
+                            // out is only left to close when the copy failed
+                            IOUtils.closeSilently(out);
+                            IOUtils.closeSilently(in);
+                        }
                     }
-
+                    complete = !isStopped();
+                } finally {
+                    // interrupted or failed copies must not leave a partial file behind
+                    if (!complete)
+                        deleteSilently(target);
+                    synchronized (mPartialTargets) {
+                        mPartialTargets.remove(target);
+                    }
+                }
+                if(!complete){
                     return position;
+                }else{
+                    if(FileUtils.isLocal(target)) {
+                        Uri toIndex = target;
+                        if (toIndex.getScheme() == null)
+                            toIndex = Uri.parse("file://" + toIndex.toString());
+                        Intent scanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
+                        scanIntent.setData(toIndex);
+                        mContext.sendBroadcast(scanIntent);
+                    }
+                    mUiHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (mListener != null) {
+                                mListener.onSuccess(target);
+                            }
+                        }
+                    });
                 }
+
+                return position;
             }
             return 0;
         }
 
+        /**
+         * Local file copy without going through the java heap (sendfile), TRANSFER_SLICE at a time
+         * to keep progress and cancellation working
+         */
+        private long transfer(FileInputStream in, FileOutputStream out, int currentFile, int currentRootFile) throws IOException {
+            FileChannel inChannel = in.getChannel();
+            FileChannel outChannel = out.getChannel();
+            long size = inChannel.size();
+            long position = 0;
+            while (position < size && !isStopped()) {
+                long len = inChannel.transferTo(position, Math.min(TRANSFER_SLICE, size - position), outChannel);
+                if (len <= 0) // file got truncated meanwhile
+                    break;
+                position += len;
+                mProgressPublisher.add(currentFile, position, currentRootFile, len);
+            }
+            return position;
+        }
+
+        /**
+         * Copies a big file as CHUNK_SIZE ranges read and written by the executor threads, returns when all are done
+         */
+        private long copyRanges(final MetaFile2 source, final FileEditor sourceEditor, final RandomAccessOutput out,
+                                final int currentFile, final int currentRootFile) throws Exception {
+            final long length = source.length();
+            final AtomicLong fileProgress = new AtomicLong();
+            List<Future<Void>> ranges = new ArrayList<>();
+            try {
+                for (long start = 0; start < length; start += CHUNK_SIZE) {
+                    final long from = start;
+                    final long to = Math.min(length, start + CHUNK_SIZE);
+                    ranges.add(mExecutor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            InputStream in = sourceEditor.getInputStream(from);
+                            try {
+                                byte buf[] = new byte[MAX_COUNT];
+                                long position = from;
+                                while (position < to && !isStopped()) {
+                                    int len = in.read(buf, 0, (int) Math.min(buf.length, to - position));
+                                    if (len == -1)
+                                        throw new EOFException("unexpected end of " + source.getUri() + " at " + position);
+                                    out.write(position, buf, 0, len);
+                                    position += (long) len;
+                                    mProgressPublisher.add(currentFile, fileProgress.addAndGet(len), currentRootFile, len);
+                                }
+                            } finally {
+                                in.close();
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<Void> range : ranges)
+                    getResult(range);
+            } catch (Exception e) {
+                for (Future<Void> range : ranges)
+                    range.cancel(true);
+                throw e;
+            } finally {
+                out.close();
+            }
+            return fileProgress.get();
+        }
+
+        /**
+         * Copies a file on the executor, finishCopy() has to be called on the copy thread when it is done
+         */
+        private final class FileCopy implements Callable<FileCopy> {
+            final MetaFile2 source;
+            final int currentFile;
+            final int currentRootFile;
+
+            FileCopy(MetaFile2 source, int currentFile, int currentRootFile) {
+                this.source = source;
+                this.currentFile = currentFile;
+                this.currentRootFile = currentRootFile;
+            }
+
+            @Override
+            public FileCopy call() throws Exception {
+                if (isStopped())
+                    return this;
+                copy(source, mSourceTarget.get(source), currentFile, currentRootFile);
+                return this;
+            }
+        }
+
+        private void finishCopy(FileCopy fileCopy) throws Exception {
+            deleteCutSource(fileCopy.source);
+            publishFileEnd(fileCopy.currentFile, fileCopy.currentRootFile);
+        }
+
+        private void deleteCutSource(MetaFile2 source) throws Exception {
+            if (!mHasToStop && mCut) {
+                if (source.isFile() || parents.get(source).size() == 0) { // we don't delete folders when there are still files to copy inside
+                    source.getFileEditorInstance(mContext).delete();
+                    invertedDelete(source);
+                }
+            }
+        }
+
+        private void publishFileStart(final int currentFile, final int currentRootFile) {
+            mProgressPublisher.set(currentFile, 0, currentRootFile);
+            final long rootProgress = mProgressPublisher.getRootProgress(currentRootFile);
+            final long totalProgress = mProgressPublisher.getTotalProgress();
+            mUiHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(mListener != null){
+                        mListener.onProgress(currentFile, 0, currentRootFile, rootProgress, totalProgress, -1.0);
+                    }
+                }
+            });
+        }
+
+        private void publishFileEnd(final int currentFile, final int currentRootFile) {
+            // a later periodic publish must not bring back the in-progress state of this file
+            mProgressPublisher.set(currentFile, -1, currentRootFile);
+            final long rootProgress = mProgressPublisher.getRootProgress(currentRootFile);
+            final long totalProgress = mProgressPublisher.getTotalProgress();
+            mUiHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(mListener != null){
+                        mListener.onProgress(currentFile, -1, currentRootFile, rootProgress, totalProgress, -1.0); //-1 means finished
+                    }
+                }
+            });
+        }
+
         /**
          * will delete parent folders when empty
          *
@@ -437,8 +622,6 @@ public class CopyCutEngine {
                 ArrayList<MetaFile2> toRetrieve = new ArrayList<MetaFile2>();
                 toRetrieve.addAll(mSources);
 
-                long totalSize = 0;
-                long totalProgress = 0;
                 final List<MetaFile2> rootFiles = new ArrayList<>();
                 final List<MetaFile2> filesToCopy = new ArrayList<>();
                 for(MetaFile2 source : toRetrieve){
@@ -461,25 +644,20 @@ public class CopyCutEngine {
                 });
 
                 i = 0;
-                long rootProgress = 0;
                 int currentRootFile = -1;
+                mProgressPublisher.start(rootFiles.size());
+                CompletionService<FileCopy> fileCopies = null;
+                int pendingFileCopies = 0;
+                if (mParallelism > 1) {
+                    mExecutor = Executors.newFixedThreadPool(mParallelism);
+                    fileCopies = new ExecutorCompletionService<>(mExecutor);
+                }
                 for(final MetaFile2 source : filesToCopy){
                     if(rootFiles.contains(source)) {//changing root file
                         currentRootFile++;
-                        rootProgress = 0;
                     }
                     final int currentFile = i;
-                    final long finalTotalProgress = totalProgress;
-                    final int finalCurrentRootFile = currentRootFile;
-                    final long finalRootProgress = rootProgress;
-                    mUiHandler.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            if(mListener != null){
-                                mListener.onProgress(currentFile, 0, finalCurrentRootFile, finalRootProgress, finalTotalProgress, -1.0);
-                            }
-                        }
-                    });
+                    publishFileStart(currentFile, currentRootFile);
 
                     if(mHasToStop)
                         break;
@@ -489,7 +667,7 @@ public class CopyCutEngine {
                             long tmpProgress = source.length();
                             moveSuccess = source.getFileEditorInstance(mContext).move(mSourceTarget.get(source));
                             if(moveSuccess) {
-                                totalProgress += tmpProgress;
+                                mProgressPublisher.addTotal(tmpProgress);
                                 // we don't delete folders when there are still files to copy inside
                                 invertedDelete(source);
                             }
@@ -499,29 +677,29 @@ public class CopyCutEngine {
                         }
                     }
                     if(!cut||!moveSuccess) { // if move didn't succeeded, we try to copy then to delete
-                        long progress = copy(source, mSourceTarget.get(source), i, currentRootFile, rootProgress, totalProgress);
-                        totalProgress += progress;
-                        rootProgress += progress;
-                        if (!mHasToStop && cut) {
-                            if (source.isFile() || parents.get(source).size() == 0) { // we don't delete folders when there are still files to copy inside
-                                source.getFileEditorInstance(mContext).delete();
-                                invertedDelete(source);
+                        if (fileCopies != null && source.isFile() && source.length() < CHUNKED_COPY_MIN_SIZE) {
+                            // small files are copied by the executor, big ones are split in ranges by copy() below
+                            fileCopies.submit(new FileCopy(source, currentFile, currentRootFile));
+                            pendingFileCopies++;
+                            Future<FileCopy> done;
+                            while ((done = pendingFileCopies >= mParallelism ? fileCopies.take() : fileCopies.poll()) != null) {
+                                pendingFileCopies--;
+                                finishCopy(getResult(done));
                             }
+                            i++;
+                            continue;
                         }
+                        copy(source, mSourceTarget.get(source), currentFile, currentRootFile);
+                        deleteCutSource(source);
                     }
-                    final long finalTotalProgress2 = totalProgress;
-                    final int finalCurrentRootFile2 = currentRootFile;
-                    final long finalRootProgress2 = rootProgress;
-                    mUiHandler.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            if(mListener != null){
-                                mListener.onProgress(currentFile, -1, finalCurrentRootFile2, finalRootProgress2, finalTotalProgress2, -1.0); //-1 means finished
-                            }
-                        }
-                    });
+                    publishFileEnd(currentFile, currentRootFile);
                     i++;
                 }
+                while (pendingFileCopies > 0) {
+                    pendingFileCopies--;
+                    finishCopy(getResult(fileCopies.take()));
+                }
+                mProgressPublisher.stop();
                 if(mHasToStop){
                     mUiHandler.post(new Runnable() {
                         @Override
@@ -542,6 +720,9 @@ public class CopyCutEngine {
 
                 } 
             } catch (final Exception e) {
+                mFailed = true;
+                mProgressPublisher.stop();
+                deletePartialTargets();
                 mUiHandler.post(new Runnable() {
                     @Override
                     public void run() {
@@ -549,7 +730,59 @@ public class CopyCutEngine {
                             mListener.onFatalError(e);
                     }
                 });
-            }  
+            } finally {
+                if (mExecutor != null)
+                    mExecutor.shutdownNow();
+            }
+        }
+
+        private boolean isStopped() {
+            return mHasToStop || mFailed;
+        }
+
+        /**
+         * Stops the copy threads and deletes what they did not finish, the ones that did not stop in time
+         * included
+         */
+        private void deletePartialTargets() {
+            if (mExecutor != null) {
+                mExecutor.shutdownNow();
+                try {
+                    mExecutor.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            List<Uri> targets;
+            synchronized (mPartialTargets) {
+                targets = new ArrayList<Uri>(mPartialTargets);
+                mPartialTargets.clear();
+            }
+            for (Uri target : targets) {
+                deleteSilently(target);
+            }
+        }
+
+        private void deleteSilently(Uri target) {
+            try {
+                FileEditorFactory.getFileEditorForUrl(target, mContext).delete();
+            } catch (Exception e) {
+            }
+        }
+
+        // content:// uris (SAF) have to be written through streams
+        private boolean isFileUri(Uri uri) {
+            return uri.getScheme() == null || "file".equals(uri.getScheme());
+        }
+
+        private <T> T getResult(Future<T> future) throws Exception {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception)
+                    throw (Exception) e.getCause();
+                throw e;
+            }
         }
 
         /**
@@ -582,4 +815,120 @@ public class CopyCutEngine {
         }
     }
 
+    /**
+     * The copy threads only store their progress, the ui thread takes a snapshot of it every PROGRESS_PERIOD_MS
+     * and calls OperationEngineListener.onProgress when it changed. The lock is only held to update or copy a few
+     * counters so copy threads hardly ever wait for it.
+     * The counters are not atomics on purpose: onProgress needs the current file, its progress and the root and total
+     * progresses from the same moment, which separate atomics cannot give when several ranges of a file or several
+     * files are copied at once. The lock is taken once per buffer copied, which costs nothing next to the I/O.
+     */
+    final class ProgressPublisher implements Runnable {
+        private volatile boolean mMeasureSpeed;
+        private volatile boolean mRunning;
+
+        // guarded by this
+        private int mCurrentFile;
+        private long mCurrentFileProgress;
+        private int mCurrentRootFile;
+        private long[] mRootProgresses = new long[0];
+        private long mTotal;
+        // incremented on every change
+        private int mVersion;
+
+        // ui thread only
+        private int mPublishedVersion;
+        private final long[] mSampleTimes = new long[SPEED_SAMPLES];
+        private final long[] mSampleBytes = new long[SPEED_SAMPLES];
+        private int mSampleCount;
+
+        void start(int rootFiles) {
+            synchronized (this) {
+                mRootProgresses = new long[rootFiles];
+                mTotal = 0;
+            }
+            mRunning = true;
+            mUiHandler.postDelayed(this, PROGRESS_PERIOD_MS);
+        }
+
+        void stop() {
+            mRunning = false;
+            mUiHandler.removeCallbacks(this);
+        }
+
+        void setMeasureSpeed(boolean measureSpeed) {
+            mMeasureSpeed = measureSpeed;
+        }
+
+        /** len more bytes of currentFile were copied, currentFileProgress in total */
+        synchronized void add(int currentFile, long currentFileProgress, int currentRootFile, long len) {
+            mRootProgresses[currentRootFile] += len;
+            mTotal += len;
+            set(currentFile, currentFileProgress, currentRootFile);
+        }
+
+        /** counts bytes that were not copied by a copy thread (fast move) */
+        synchronized void addTotal(long len) {
+            mTotal += len;
+            mVersion++;
+        }
+
+        synchronized void set(int currentFile, long currentFileProgress, int currentRootFile) {
+            mCurrentFile = currentFile;
+            mCurrentFileProgress = currentFileProgress;
+            mCurrentRootFile = currentRootFile;
+            mVersion++;
+        }
+
+        synchronized long getRootProgress(int rootFile) {
+            return mRootProgresses[rootFile];
+        }
+
+        synchronized long getTotalProgress() {
+            return mTotal;
+        }
+
+        @Override
+        public void run() {
+            if (!mRunning)
+                return;
+            int version;
+            int currentFile;
+            long currentFileProgress;
+            int currentRootFile;
+            long rootProgress;
+            long totalProgress;
+            synchronized (this) {
+                version = mVersion;
+                currentFile = mCurrentFile;
+                currentFileProgress = mCurrentFileProgress;
+                currentRootFile = mCurrentRootFile;
+                rootProgress = currentRootFile < mRootProgresses.length ? mRootProgresses[currentRootFile] : 0;
+                totalProgress = mTotal;
+            }
+            double speed = addSpeedSample(totalProgress);
+            if (version != mPublishedVersion) {
+                mPublishedVersion = version;
+                if (mListener != null) {
+                    mListener.onProgress(currentFile, currentFileProgress, currentRootFile, rootProgress, totalProgress,
+                            mMeasureSpeed ? speed : -1.0);
+                }
+            }
+            mUiHandler.postDelayed(this, PROGRESS_PERIOD_MS);
+        }
+
+        /** returns the average speed in bytes/second over the last SPEED_SAMPLES periods */
+        private double addSpeedSample(long totalProgress) {
+            long now = System.currentTimeMillis();
+            int oldest = mSampleCount < SPEED_SAMPLES ? 0 : mSampleCount % SPEED_SAMPLES;
+            long elapsedTime = now - mSampleTimes[oldest];
+            long copied = totalProgress - mSampleBytes[oldest];
+            mSampleTimes[mSampleCount % SPEED_SAMPLES] = now;
+            mSampleBytes[mSampleCount % SPEED_SAMPLES] = totalProgress;
+            mSampleCount++;
+            if (mSampleCount == 1 || elapsedTime <= 0)
+                return -1.0;
+            return 1000.0 * copied / elapsedTime;
+        }
+    }
 }
@@ -46,6 +46,22 @@ public abstract class FileEditor {
     public abstract boolean move(Uri uri);
     public abstract boolean exists();
 
+    /**
+     * Opens the file for writes at any position, with its size set to length.
+     * @return null when the file can only be written sequentially
+     */
+    public RandomAccessOutput getRandomAccessOutput(long length) throws Exception {
+        return null;
+    }
+
+    /**
+     * @return true when getInputStream(long) starts at the requested offset without reading what is before it,
+     * so that several ranges of the file can be read at the same time
+     */
+    public boolean hasRandomAccessInput() {
+        return false;
+    }
+
     /**
      * Use it for file (and just file) copy
      * @param target
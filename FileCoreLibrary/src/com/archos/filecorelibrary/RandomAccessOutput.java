@@ -0,0 +1,26 @@
+// Copyright 2017 Archos SA
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Output of a file that can be written at any position, used to copy several ranges of a big file at the same time.
+ * write() can be called from several threads.
+ */
+public interface RandomAccessOutput extends Closeable {
+    void write(long position, byte[] buf, int off, int len) throws IOException;
+}
@@ -0,0 +1,502 @@
+// Copyright 2017 Archos SA
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary;
+
+import android.content.Context;
+import android.net.Uri;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Block cache in front of a remote file, shared by all the streams opened on it.
+ * Blocks are read by background threads BLOCK_SIZE at a time, READ_AHEAD_BLOCKS ahead of the readers,
+ * so that the overlapping range requests of a player are served from memory. The fetch of a block following
+ * one being fetched waits for it and continues on the same remote stream.
+ * Least recently used blocks are dropped from memory, or spilled to a file of the cache directory when one is given.
+ * The spill file is only accessed outside of the cache lock.
+ */
+public class ReadAheadCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadAheadCache.class);
+
+    private static final int BLOCK_SIZE = 512 * 1024;
+    private static final int READ_AHEAD_BLOCKS = 8;
+    private static final int MAX_MEMORY_BLOCKS = 48; // 24MB
+    private static final int MAX_SPILLED_BLOCKS = 512; // 256MB
+    private static final int FETCH_THREADS = 2;
+    // remote streams kept open at the end of the block they read, to continue with the next one
+    private static final int MAX_IDLE_STREAMS = 2;
+
+    private final Uri mUri;
+    private final long mLength;
+    private final Context mContext;
+    private final ThreadPoolExecutor mExecutor;
+
+    // all guarded by this
+    private final LinkedHashMap<Long, byte[]> mBlocks;
+    private final HashMap<Long, BlockFetch> mFetches = new HashMap<>();
+    private final LinkedHashMap<Long, InputStream> mIdleStreams = new LinkedHashMap<>();
+    private final LinkedHashMap<Long, Integer> mSpilledBlocks = new LinkedHashMap<>(16, 0.75f, true);
+    // blocks dropped from memory that are not written to the spill file yet
+    private final HashMap<Long, byte[]> mSpilling = new HashMap<>();
+    private final ArrayDeque<Long> mToSpill = new ArrayDeque<>();
+    private final ArrayDeque<Integer> mFreeSlots = new ArrayDeque<>();
+    private int mSlotCount;
+    private long mSequence;
+    private boolean mClosed;
+
+    private final File mSpillFile;
+    private RandomAccessFile mSpill;
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+
+    /**
+     * @param spillDirectory where to write blocks dropped from memory, null to keep memory only
+     */
+    public ReadAheadCache(Uri uri, long length, Context context, File spillDirectory) {
+        mUri = uri;
+        mLength = length;
+        mContext = context;
+        mBlocks = new LinkedHashMap<Long, byte[]>(MAX_MEMORY_BLOCKS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                if (size() <= MAX_MEMORY_BLOCKS)
+                    return false;
+                // written by spillPending() once the lock is released
+                if (mSpill != null) {
+                    mSpilling.put(eldest.getKey(), eldest.getValue());
+                    mToSpill.add(eldest.getKey());
+                }
+                return true;
+            }
+        };
+        File spillFile = null;
+        if (spillDirectory != null) {
+            try {
+                spillFile = File.createTempFile("readahead", ".cache", spillDirectory);
+                mSpill = new RandomAccessFile(spillFile, "rw");
+            } catch (IOException e) {
+                log.warn("ReadAheadCache: cannot create spill file in " + spillDirectory, e);
+                spillFile = null;
+            }
+        }
+        mSpillFile = spillFile;
+        mExecutor = new ThreadPoolExecutor(FETCH_THREADS, FETCH_THREADS, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ReadAhead");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public long length() {
+        return mLength;
+    }
+
+    /**
+     * @return a stream reading the file from position through the cache, it does not need to be closed
+     */
+    public InputStream getInputStream(long position) {
+        return new CachedInputStream(position);
+    }
+
+    public void close() {
+        synchronized (this) {
+            mClosed = true;
+            mBlocks.clear();
+            mSpilledBlocks.clear();
+            mSpilling.clear();
+            mToSpill.clear();
+            for (BlockFetch fetch : mFetches.values())
+                fetch.cancel(false);
+            mFetches.clear();
+            for (InputStream is : mIdleStreams.values())
+                closeQuietly(is);
+            mIdleStreams.clear();
+        }
+        mExecutor.shutdownNow();
+        if (mSpill != null) {
+            synchronized (mSpill) {
+                closeQuietly(mSpill);
+            }
+            mSpillFile.delete();
+        }
+        log.debug("close: " + mUri + " hits=" + mHits.get() + " misses=" + mMisses.get());
+    }
+
+    private byte[] getBlock(long index) throws IOException {
+        BlockFetch fetch;
+        boolean unspill = false;
+        byte[] block;
+        synchronized (this) {
+            if (mClosed)
+                throw new IOException("cache closed");
+            block = mBlocks.get(index);
+            if (block != null) {
+                mHits.incrementAndGet();
+                return block;
+            }
+            fetch = mFetches.get(index);
+            block = mSpilling.remove(index);
+            if (block != null) {
+                // dropped from memory but not written yet, take it back
+                mHits.incrementAndGet();
+                mBlocks.put(index, block);
+            } else if (fetch == null && mSpilledBlocks.containsKey(index)) {
+                mHits.incrementAndGet();
+                fetch = new BlockFetch(index, true, mSequence++, mSpilledBlocks.remove(index));
+                mFetches.put(index, fetch);
+                unspill = true;
+            } else {
+                mMisses.incrementAndGet();
+                if (fetch == null) {
+                    fetch = startFetch(index, true);
+                } else if (!fetch.mDemanded && mExecutor.getQueue().remove(fetch)) {
+                    // a reader waits for it, go before the read ahead
+                    fetch.mDemanded = true;
+                    mExecutor.execute(fetch);
+                }
+            }
+        }
+        if (block != null) {
+            spillPending();
+            return block;
+        }
+        if (unspill)
+            fetch.run();
+        try {
+            return fetch.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (CancellationException e) {
+            throw new IOException("cache closed");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private synchronized void readAhead(long index) {
+        if (mClosed)
+            return;
+        long last = Math.min(index + READ_AHEAD_BLOCKS, (mLength - 1) / BLOCK_SIZE);
+        for (long i = index + 1; i <= last; i++) {
+            if (!mBlocks.containsKey(i) && !mSpilling.containsKey(i) && !mSpilledBlocks.containsKey(i) && !mFetches.containsKey(i))
+                startFetch(i, false);
+        }
+    }
+
+    // called with the lock held
+    private BlockFetch startFetch(long index, boolean demanded) {
+        BlockFetch fetch = new BlockFetch(index, demanded, mSequence++, -1);
+        mFetches.put(index, fetch);
+        mExecutor.execute(fetch);
+        return fetch;
+    }
+
+    private byte[] fetch(long index) throws Exception {
+        long start = index * BLOCK_SIZE;
+        byte[] block = new byte[(int) Math.min(BLOCK_SIZE, mLength - start)];
+        InputStream is;
+        synchronized (this) {
+            is = mIdleStreams.remove(start);
+        }
+        if (is == null)
+            is = FileEditorFactory.getFileEditorForUrl(mUri, mContext).getInputStream(start);
+        boolean complete = false;
+        try {
+            int read = 0;
+            while (read < block.length) {
+                int len = is.read(block, read, block.length - read);
+                if (len < 0)
+                    throw new IOException("unexpected end of " + mUri + " at " + (start + read));
+                read += len;
+            }
+            complete = true;
+        } finally {
+            synchronized (this) {
+                mFetches.remove(index);
+                if (complete && !mClosed) {
+                    mBlocks.put(index, block);
+                    if (start + block.length < mLength)
+                        keepIdleStream(start + block.length, is);
+                    else
+                        closeQuietly(is);
+                } else {
+                    closeQuietly(is);
+                }
+            }
+            spillPending();
+        }
+        return block;
+    }
+
+    // called with the lock held
+    private void keepIdleStream(long position, InputStream is) {
+        InputStream previous = mIdleStreams.put(position, is);
+        if (previous != null)
+            closeQuietly(previous);
+        Iterator<InputStream> it = mIdleStreams.values().iterator();
+        while (mIdleStreams.size() > MAX_IDLE_STREAMS) {
+            closeQuietly(it.next());
+            it.remove();
+        }
+    }
+
+    /** reads a block back from the spill file, slot was removed from mSpilledBlocks and is freed here */
+    private byte[] readSpilled(long index, int slot) throws IOException {
+        long start = index * BLOCK_SIZE;
+        byte[] block = new byte[(int) Math.min(BLOCK_SIZE, mLength - start)];
+        boolean complete = false;
+        try {
+            synchronized (mSpill) {
+                mSpill.seek((long) slot * BLOCK_SIZE);
+                mSpill.readFully(block);
+            }
+            complete = true;
+        } finally {
+            synchronized (this) {
+                mFetches.remove(index);
+                mFreeSlots.add(slot);
+                if (complete && !mClosed)
+                    mBlocks.put(index, block);
+            }
+            spillPending();
+        }
+        return block;
+    }
+
+    /** writes the blocks dropped from memory to the spill file, called without the lock held */
+    private void spillPending() {
+        if (mSpill == null)
+            return;
+        while (true) {
+            long index;
+            byte[] block;
+            int slot;
+            synchronized (this) {
+                Long next = mToSpill.poll();
+                if (next == null || mClosed)
+                    return;
+                index = next;
+                block = mSpilling.get(index);
+                if (block == null)
+                    continue; // taken back by a reader meanwhile
+                slot = reserveSlot();
+                if (slot < 0) {
+                    // all the slots are being read or written, drop it
+                    mSpilling.remove(index);
+                    continue;
+                }
+            }
+            boolean written = false;
+            try {
+                synchronized (mSpill) {
+                    mSpill.seek((long) slot * BLOCK_SIZE);
+                    mSpill.write(block);
+                }
+                written = true;
+            } catch (IOException e) {
+                log.warn("spillPending: cannot write block " + index + " of " + mUri, e);
+            }
+            synchronized (this) {
+                boolean pending = mSpilling.get(index) == block;
+                if (pending)
+                    mSpilling.remove(index);
+                if (written && pending && !mClosed)
+                    mSpilledBlocks.put(index, slot);
+                else
+                    mFreeSlots.add(slot);
+            }
+        }
+    }
+
+    // called with the lock held, returns -1 if no slot is available
+    private int reserveSlot() {
+        Integer slot = mFreeSlots.poll();
+        if (slot != null)
+            return slot;
+        if (mSlotCount < MAX_SPILLED_BLOCKS)
+            return mSlotCount++;
+        // reuse the slot of the least recently used spilled block
+        Iterator<Map.Entry<Long, Integer>> it = mSpilledBlocks.entrySet().iterator();
+        if (!it.hasNext())
+            return -1;
+        slot = it.next().getValue();
+        it.remove();
+        return slot;
+    }
+
+    private static void closeQuietly(java.io.Closeable c) {
+        try {
+            c.close();
+        } catch (IOException e) {
+            log.debug("closeQuietly: caught IOException", e);
+        }
+    }
+
+    /**
+     * Fetch of one block, readers waiting for it are run before the read ahead.
+     * A fetch of a block following one being fetched is deferred, the thread fetching the previous block
+     * runs it next on the stream it leaves idle at the start of this block.
+     */
+    private final class BlockFetch extends FutureTask<byte[]> implements Comparable<BlockFetch> {
+        private final long mIndex;
+        private final long mOrder;
+        // slot of the spill file to read the block from, -1 to fetch it from the remote file
+        private final int mSlot;
+        volatile boolean mDemanded;
+        // guarded by the cache lock
+        private boolean mRunning;
+        private boolean mDeferred;
+
+        BlockFetch(final long index, boolean demanded, long order, final int slot) {
+            super(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    return slot >= 0 ? readSpilled(index, slot) : fetch(index);
+                }
+            });
+            mIndex = index;
+            mDemanded = demanded;
+            mOrder = order;
+            mSlot = slot;
+        }
+
+        @Override
+        public void run() {
+            if (!start())
+                return;
+            BlockFetch fetch = this;
+            do {
+                fetch.runTask();
+                fetch = fetch.takeDeferredNext();
+            } while (fetch != null);
+        }
+
+        private void runTask() {
+            super.run();
+        }
+
+        /** @return false if deferred until the fetch of the previous block is done */
+        private boolean start() {
+            synchronized (ReadAheadCache.this) {
+                if (mSlot < 0 && !mIdleStreams.containsKey(mIndex * BLOCK_SIZE)) {
+                    BlockFetch previous = mFetches.get(mIndex - 1);
+                    if (previous != null && previous.mSlot < 0 && (previous.mRunning || previous.mDeferred)) {
+                        mDeferred = true;
+                        return false;
+                    }
+                }
+                mRunning = true;
+                return true;
+            }
+        }
+
+        private BlockFetch takeDeferredNext() {
+            if (mSlot >= 0)
+                return null;
+            synchronized (ReadAheadCache.this) {
+                BlockFetch next = mFetches.get(mIndex + 1);
+                if (next == null || !next.mDeferred)
+                    return null;
+                next.mDeferred = false;
+                next.mRunning = true;
+                return next;
+            }
+        }
+
+        @Override
+        public int compareTo(BlockFetch other) {
+            if (mDemanded != other.mDemanded)
+                return mDemanded ? -1 : 1;
+            return mOrder < other.mOrder ? -1 : (mOrder == other.mOrder ? 0 : 1);
+        }
+    }
+
+    private final class CachedInputStream extends InputStream {
+        private long mPosition;
+        private long mBlockIndex = -1;
+        private byte[] mBlock;
+
+        CachedInputStream(long position) {
+            mPosition = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == 1 ? b[0] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (mPosition >= mLength)
+                return -1;
+            long index = mPosition / BLOCK_SIZE;
+            if (index != mBlockIndex) {
+                mBlock = getBlock(index);
+                mBlockIndex = index;
+                readAhead(index);
+            }
+            int offset = (int) (mPosition - index * BLOCK_SIZE);
+            int count = Math.min(len, mBlock.length - offset);
+            System.arraycopy(mBlock, offset, b, off, count);
+            mPosition += count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, mLength - mPosition));
+            mPosition += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, mLength - mPosition);
+        }
+    }
+}
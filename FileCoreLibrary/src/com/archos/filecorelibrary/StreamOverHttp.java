@@ -24,27 +24,38 @@ import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.SftpException;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 import java.util.StringTokenizer;
-
-import jcifs.util.transport.TransportException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This is simple HTTP local server for streaming InputStream to apps which are capable to read data from url.
  * Random access input stream is optionally supported, depending if file can be opened in this mode. 
+ * Connections are served by a bounded pool of threads and kept alive between requests (HTTP/1.1), so that
+ * players seeking in the file do not pay a new connection and a new remote open for each range.
  */
 public class StreamOverHttp{
 	private static final boolean DBG = false;
@@ -54,9 +65,31 @@ public class StreamOverHttp{
 
 	private String fileMimeType;
 	private static final int BUFFER_SIZE = 8192;
+	// buffer used to send file data, one per connection. It is a heap array and not a direct ByteBuffer on purpose:
+	// the data comes from InputStreams (smb, sftp, read ahead cache blocks) and goes to a socket stream, so a direct
+	// buffer would only add a copy between the heap and native memory
+	private static final int TRANSFER_BUFFER_SIZE = 65536;
+	// max number of connections served at the same time, the next ones wait for a free thread
+	private static final int MAX_CONNECTIONS = 16;
+	// max number of connections waiting for a free thread, the next ones get a 503
+	private static final int MAX_PENDING_CONNECTIONS = 16;
+	// idle time after which a kept alive connection is closed
+	private static final int KEEP_ALIVE_TIMEOUT_MS = 10000;
+	private static final Charset HEADER_CHARSET = Charset.forName("ISO-8859-1");
 	private ServerSocket serverSocket;
 	private Thread mainThread;
+	private ThreadPoolExecutor mExecutor;
 	private MetaFile2 mMetaFile;
+	// remote files are read through a cache shared by all the connections
+	private final HashMap<Uri, ReadAheadCache> mReadAheadCaches = new HashMap<>();
+	// where the caches write the blocks they drop from memory, null to keep them in memory only
+	private volatile File mReadAheadSpillDirectory;
+
+	private final AtomicInteger mActiveConnections = new AtomicInteger();
+	// kept alive connections waiting for their next request, closed first when all the threads are used
+	private final Set<HttpSession> mIdleSessions = new HashSet<>();
+	private final AtomicLong mRequestCount = new AtomicLong();
+	private final AtomicLong mBytesServed = new AtomicLong();
 
 	/**
 	 * Some HTTP response status codes
@@ -64,7 +97,8 @@ public class StreamOverHttp{
 	private static final String 
 	HTTP_BADREQUEST = "400 Bad Request",
 	HTTP_416 = "416 Range not satisfiable",
-	HTTP_INTERNALERROR = "500 Internal Server Error";
+	HTTP_INTERNALERROR = "500 Internal Server Error",
+	HTTP_UNAVAILABLE = "503 Service Unavailable";
 	private ArrayList<MetaFile2> mSubList;
 	private Uri mPosterLocalUri;
 	private String mSubfolder;
@@ -75,13 +109,44 @@ public class StreamOverHttp{
 		mUri= f.getUri();
 		mName = f.getName();
 		fileMimeType = forceMimeType!=null ? forceMimeType : "*/*";
-        serverSocket = new ServerSocket(0);
+		startServer();
+	}
+    public StreamOverHttp(final Uri uri, final String forceMimeType) throws IOException{
+		mUri = uri;
+		mName = FileUtils.getName(mUri);
+        fileMimeType = forceMimeType!=null ? forceMimeType : "*/*";
+		startServer();
+    }
+
+	private void startServer() throws IOException {
+		serverSocket = new ServerSocket(0);
+		mExecutor = new ThreadPoolExecutor(MAX_CONNECTIONS, MAX_CONNECTIONS, 30, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(MAX_PENDING_CONNECTIONS), new ThreadFactory() {
+			private final AtomicInteger mCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Http response " + mCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		mExecutor.allowCoreThreadTimeOut(true);
 		mainThread = new Thread(new Runnable(){
 			public void run(){
 				try {
 					while(true) {
 						Socket accept = serverSocket.accept();
-						new HttpSession(accept,fileMimeType);
+						// an idle kept alive connection must not make a new one wait, its client will reconnect if needed
+						if (mActiveConnections.get() >= MAX_CONNECTIONS)
+							closeIdleSession();
+						try {
+							mExecutor.execute(new HttpSession(accept, fileMimeType));
+						} catch (RejectedExecutionException e) {
+							if (DBG) Log.w(TAG, "StreamOverHttp: too many connections, rejecting " + accept.getInetAddress());
+							sendError(accept.getOutputStream(), HTTP_UNAVAILABLE, null);
+							closeSocket(accept);
+						}
 					}
 				} catch(IOException e) {
 					if (DBG) Log.w(TAG, "StreamOverHttp: caught IOException ", e);
@@ -93,28 +158,7 @@ public class StreamOverHttp{
 		mainThread.setDaemon(true);
 		mainThread.start();
 	}
-    public StreamOverHttp(final Uri uri, final String forceMimeType) throws IOException{
-		mUri = uri;
-		mName = FileUtils.getName(mUri);
-        fileMimeType = forceMimeType!=null ? forceMimeType : "*/*";
-        serverSocket = new ServerSocket(0);
-        mainThread = new Thread(new Runnable(){
-            public void run(){
-                try {
-                    while(true) {
-                        Socket accept = serverSocket.accept();
-                        new HttpSession(accept,fileMimeType);
-                    }
-                } catch(IOException e) {
-                    if (DBG) Log.w(TAG, "StreamOverHttp: caught IOException ", e);
-                }
-            }
-
-        });
-        mainThread.setName("Stream over HTTP");
-        mainThread.setDaemon(true);
-        mainThread.start();
-    }
+
 	private static final String[] SUBTITLES_ARRAY = { "idx", "smi", "ssa", "ass", "srr", "srt", "sub", "mpl", "txt","xml"};
 	public List<MetaFile2> getSubtitleList(Uri video) throws SftpException, AuthenticationException, JSchException, IOException {
 		if(mSubList!=null)
@@ -160,6 +204,14 @@ public class StreamOverHttp{
 	public void setLocalSubFolder(String subFolder) {
 		mSubfolder = subFolder;
 	}
+
+	/**
+	 * Lets the read ahead caches write the blocks they drop from memory to a file of directory, off by default.
+	 * Only applies to the caches created afterwards.
+	 */
+	public void setReadAheadSpillDirectory(File directory) {
+		mReadAheadSpillDirectory = directory;
+	}
 	public int doesCurrentFileExists() {
 		return mMetaFile!=null?1:0;
 	}
@@ -175,77 +227,150 @@ public class StreamOverHttp{
 	}
 
 	private class HttpSession implements Runnable {
-		private boolean canSeek;
-		private InputStream is;
 		private final Socket socket;
-		private Properties mPre=null;
-		private int mRlen=-1;
-		private InputStream mInS=null;
 		private String fileMimeType =""; // this might be changed we a subtitle is sent
+		private final byte[] buf = new byte[TRANSFER_BUFFER_SIZE];
+
+		// state of the current request
+		private boolean canSeek;
 		private long length;
 
+		// stream opened by the previous request, reused if the next one starts where it stopped
+		private InputStream is;
+		private Uri isUri;
+		private long isPosition;
+		private long isLength;
+
 		HttpSession(Socket s, String fileMimeType){
 			this.fileMimeType = fileMimeType;
 			socket = s;
 			if (DBG) Log.i(TAG,"Stream over localhost: serving request on " + s.getInetAddress());
-			Thread t = new Thread(this, "Http response");
-			t.setDaemon(true);
-			t.start();
 		}
 
 		public void run(){
+			mActiveConnections.incrementAndGet();
 			try {
-				openInputStream();
-				handleResponse(socket);
+				socket.setSoTimeout(KEEP_ALIVE_TIMEOUT_MS);
+				socket.setTcpNoDelay(true);
+				InputStream in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+				OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+				while (handleRequest(in, out)) {
+					if (DBG) Log.d(TAG, "HttpSession: keeping connection alive");
+					synchronized (mIdleSessions) {
+						mIdleSessions.add(this);
+					}
+				}
+			} catch(SocketTimeoutException e) {
+				if (DBG) Log.d(TAG, "HttpSession: idle connection timed out");
 			} catch(IOException e) {
 				if (DBG) Log.w(TAG, "HttpSession: caught IOException while running ", e);
 			} finally {
-				try {
-					socket.close();
-				} catch(Exception e) {
-					if (DBG) Log.w(TAG, "HttpSession: caught Exception closing socket ", e);
+				synchronized (mIdleSessions) {
+					mIdleSessions.remove(this);
 				}
-				if(is!=null) {
+				closeSocket(socket);
+				closeInputStream();
+				mActiveConnections.decrementAndGet();
+			}
+		}
+
+		/**
+		 * Reads one request from the connection and answers it
+		 * @return true when the connection can be used for the next request
+		 */
+		private boolean handleRequest(InputStream in, OutputStream out) throws IOException {
+			Properties pre = new Properties();
+			String[] request = decodeHeader(in, pre);
+			if (request == null)
+				return false; // connection closed by the client
+			synchronized (mIdleSessions) {
+				mIdleSessions.remove(this);
+			}
+			mRequestCount.incrementAndGet();
+			String method = request[0];
+			boolean isHead = method.equals("HEAD");
+			if (!method.equals("GET") && !isHead) {
+				sendError(out, HTTP_BADREQUEST, "Unsupported method");
+				return false;
+			}
+			String connection = pre.getProperty("connection");
+			boolean keepAlive = "HTTP/1.1".equals(request[2]) ? !"close".equalsIgnoreCase(connection)
+					: "keep-alive".equalsIgnoreCase(connection);
+
+			String range = pre.getProperty("range");
+			long startFrom = 0, endAt = -1;
+			if (range != null) {
+				if (!range.startsWith("bytes=")) {
+					sendError(out, HTTP_416, null);
+					return false;
+				}
+				if (DBG) Log.d(TAG,"handleRequest : "+range);
+				range = range.substring(6); // removes "bytes="
+				int minus = range.indexOf('-');
+				if(minus > 0) {
 					try {
-						is.close();
-					} catch(IOException e) {
-						if (DBG) Log.w(TAG, "HttpSession: caught IOException closing input stream ",e);
+						String startR = range.substring(0, minus);
+						startFrom = Long.parseLong(startR);
+						String endR = range.substring(minus + 1);
+						if (endR.length() > 0) endAt = Long.parseLong(endR);
+					} catch(NumberFormatException nfe) {
+						if (DBG) Log.w(TAG, "handleRequest: caught NumberFormatException ", nfe);
 					}
 				}
 			}
-		}
 
-		private void openInputStream() throws IOException{
-			boolean isAskingPoster = false;
-			boolean needsToStream = false;
-			long startFrom = 0;
-			mPre = new Properties();
-			mInS = socket.getInputStream();
-			String path=null;
-			if(mInS != null){
-				byte[] buf = new byte[BUFFER_SIZE];
-				mRlen = mInS.read(buf, 0, buf.length);
-				ByteArrayInputStream hbis = new ByteArrayInputStream(buf, 0, mRlen);
-				BufferedReader hin = new BufferedReader(new InputStreamReader(hbis));
-				try {
-					String encodedPath;
-					if((encodedPath=decodeHeader(socket, hin, mPre))!=null){
-						String range = mPre.getProperty("range");
-						if(range!=null) {
-							range = range.substring(6);
-
-							int minus = range.indexOf('-');
-							String startR = range.substring(0, minus);
-							startFrom = Long.parseLong(startR);
-							needsToStream = true;
-						}
-						path = Uri.decode(encodedPath);
-					}
-				} catch (InterruptedException e) {
-					if (DBG) Log.w(TAG, "openInputStream: caught InterruptedException ", e);
+			openInputStream(Uri.decode(request[1]), startFrom);
+			if (is == null) {
+				sendError(out, HTTP_INTERNALERROR, "SERVER INTERNAL ERROR: cannot open " + request[1]);
+				return false;
+			}
+
+			Properties headers = new Properties();
+			headers.put("Content-Length", String.valueOf(length));
+			headers.put("Accept-Ranges", canSeek ? "bytes" : "none");
+			long sendCount;
+			String status;
+			if(range==null || !canSeek || isPosition != startFrom) {
+				status = "200 OK";
+				sendCount = length - isPosition;
+			} else {
+				if(startFrom >= length){
+					sendError(out, HTTP_416, null);
+					return false;
+				}
+				if(endAt < 0 || endAt >= length)
+					endAt = length - 1;
+				sendCount = (endAt - startFrom + 1);
+				if (DBG) Log.d(TAG, "handleRequest: startFrom = " + startFrom + " + endAt=" + endAt +" sendCount=" + sendCount + " (length = " + length + ")");
+				if(sendCount < 0)
+					sendCount = 0;
+				status = "206 Partial Content";
+				headers.put("Content-Length", "" + sendCount);
+				headers.put("Content-Range", "bytes " + startFrom + "-" + endAt + "/" + length);
+			}
+			headers.put("Access-Control-Allow-Origin", "*");
+			headers.put("Connection", keepAlive ? "keep-alive" : "close");
+			sendHeader(out, status, fileMimeType, headers);
+			if (!isHead) {
+				long sent = copyStream(is, out, buf, sendCount);
+				isPosition += sent;
+				mBytesServed.addAndGet(sent);
+				if (sent < sendCount) {
+					// the announced length has not been sent, the client can only notice it if we close
+					out.flush();
+					return false;
 				}
 			}
+			out.flush();
+			if (DBG) Log.d(TAG,"Http stream finished");
+			return keepAlive;
+		}
 
+		/**
+		 * Sets is, canSeek and length for the requested path, is is positioned at startFrom when canSeek
+		 */
+		private void openInputStream(String path, long startFrom) {
+			boolean isAskingPoster = false;
 			try {
 				canSeek = true;
 				/*
@@ -309,184 +434,161 @@ public class StreamOverHttp{
 
 				if(metaFile2==null&&!isAskingPoster)
 					metaFile2 = mMetaFile;
-				if(metaFile2!=null) { //mMetafile can be null
-					if(metaFile2.length()!=0)
-						length = metaFile2.length();
-					try {
-						is = FileEditorFactory.getFileEditorForUrl(mUri, ArchosUtils.getGlobalContext()).getInputStream(startFrom);
-					 } catch (IOException ioexception) {
-						if (DBG) Log.w(TAG, "openInputStream: caught IOException ", ioexception);
-						if (ioexception.getMessage().equals("Illegal seek")){
-							is = FileEditorFactory.getFileEditorForUrl(mUri, ArchosUtils.getGlobalContext()).getInputStream();
-							canSeek = false;
-						}
-					}
-				}else {
-					if (isAskingPoster && isResourcePoster(mPosterLocalUri)) {
-						//special case, inputstream on resource
-						is = ArchosUtils.getGlobalContext().getResources().openRawResource(mPosterGenericResource);
-					} else {
-						try {
-							is = FileEditorFactory.getFileEditorForUrl(mUri, ArchosUtils.getGlobalContext()).getInputStream(startFrom);
-						} catch (IOException ioexception) {
-							if (DBG) Log.w(TAG, "openInputStream: caught IOException ", ioexception);
-							if (ioexception.getMessage().equals("Illegal seek")){
-								is = FileEditorFactory.getFileEditorForUrl(mUri, ArchosUtils.getGlobalContext()).getInputStream();
-								canSeek = false;
-							}
-						}
+				if (isAskingPoster && metaFile2 == null && isResourcePoster(mPosterLocalUri)) {
+					//special case, inputstream on resource
+					closeInputStream();
+					is = ArchosUtils.getGlobalContext().getResources().openRawResource(mPosterGenericResource);
+					isPosition = 0;
+					canSeek = false;
+					length = is.available();
+					return;
+				}
+				Uri uri = metaFile2 != null ? metaFile2.getUri() : mUri;
+				if (!canSeek)
+					startFrom = 0;
+				if (is != null && uri.equals(isUri) && isPosition == startFrom) {
+					// continuing where the previous request of this connection stopped
+					length = isLength;
+					return;
+				}
+				closeInputStream();
+				isUri = uri;
+				isPosition = startFrom;
+				length = 0;
+				if(metaFile2!=null && metaFile2.length()!=0)
+					length = metaFile2.length();
+				try {
+					if (canSeek && length > 0 && isReadAheadCached(uri))
+						is = getReadAheadCache(uri, length).getInputStream(startFrom);
+					else
+						is = FileEditorFactory.getFileEditorForUrl(uri, ArchosUtils.getGlobalContext()).getInputStream(startFrom);
+				} catch (IOException ioexception) {
+					if (DBG) Log.w(TAG, "openInputStream: caught IOException ", ioexception);
+					if ("Illegal seek".equals(ioexception.getMessage())){
+						is = FileEditorFactory.getFileEditorForUrl(uri, ArchosUtils.getGlobalContext()).getInputStream();
+						isPosition = 0;
+						canSeek = false;
 					}
-				}if(is==null)
+				}
+				if(is==null)
 					return;
 				if(length==0)
 					length = is.available();
-				if(length == 0 && "content".equalsIgnoreCase(mUri.getScheme()))
-					length = ((ContentStorageFileEditor)FileEditorFactory.getFileEditorForUrl(mUri, ArchosUtils.getGlobalContext())).getSize();
+				if(length == 0 && "content".equalsIgnoreCase(uri.getScheme()))
+					length = ((ContentStorageFileEditor)FileEditorFactory.getFileEditorForUrl(uri, ArchosUtils.getGlobalContext())).getSize();
+				isLength = length;
 
 			} catch (Exception e) {
 				Log.e(TAG, "openInputStream: caught Exception ", e);
 			}
 		}
 
-		private void handleResponse(Socket socket) throws TransportException {
-			try {
-				InputStream inS = socket.getInputStream();
-				if(inS == null&&mInS==null)
-					return;
-				else if(inS == null)
-					inS = mInS; //we have already touched the stream
-
-				byte[] buf = new byte[BUFFER_SIZE];
-				int rlen =mRlen;
-				if(mRlen<0)
-					rlen= inS.read(buf, 0, buf.length);
-				if(rlen < 0&&mRlen<0)
-					return;
-				else if (rlen < 0)
-					rlen = mRlen; // we already have the length (ssh)
-
-				// Create a BufferedReader for parsing the header.
-				ByteArrayInputStream hbis = new ByteArrayInputStream(buf, 0, rlen);
-				BufferedReader hin = new BufferedReader(new InputStreamReader(hbis));
-				Properties pre = new Properties();
-
-				// Decode the header into params and header java properties
-				boolean decode = decodeHeader(socket, hin, pre)!=null;
-				if(!decode&&mPre==null)
-					return;
-				else if(!decode)
-					pre = mPre; // properties have already been decoded (ssh)
-
-				String range = pre.getProperty("range");
-
-				Properties headers = new Properties();
-				if(length!=-1)
-					headers.put("Content-Length", String.valueOf(length));
-				headers.put("Accept-Ranges", canSeek ? "bytes" : "none");
-				long sendCount;
-				String status;
-				if(range==null || !canSeek) {
-					status = "200 OK";
-					sendCount = length;
-				} else {
-					if(!range.startsWith("bytes=")){
-						sendError(socket, HTTP_416, null);
-						return;
-					}
-					if (DBG) Log.d(TAG,"handleResponse : "+range);
-					range = range.substring(6); // removes "bytes="
-					long startFrom = 0, endAt = -1;
-					int minus = range.indexOf('-');
-					if(minus > 0) {
-						try {
-							String startR = range.substring(0, minus);
-							startFrom = Long.parseLong(startR);
-							String endR = range.substring(minus + 1);
-							if (endR.length() > 0) endAt = Long.parseLong(endR);
-						} catch(NumberFormatException nfe) {
-							if (DBG) Log.w(TAG, "handleResponse: caught NumberFormatException ", nfe);
-						}
-					}
-					if(startFrom >= length){
-						sendError(socket, HTTP_416, null);
-						inS.close();
-						return;
-					}
-					if(endAt < 0)
-						endAt = length - 1;
-					sendCount = (endAt - startFrom + 1);
-					if (DBG) Log.w(TAG, "handleResponse: startFrom = " + startFrom + " + endAt=" + endAt +" sendCount=" + sendCount + " (length = " + length + ")");
-					if(sendCount < 0)
-						sendCount = 0;
-					status = "206 Partial Content";
-
-					/* else
-            	   is.skip(startFrom);*/
-            	   headers.put("Content-Length", "" + sendCount);
-
-            	   String rangeSpec = "bytes " + startFrom + "-" + endAt + "/" + length;
-            	   headers.put("Content-Range", rangeSpec);
-				}
-				headers.put("Access-Control-Allow-Origin", "*");
-				sendResponse(socket, status, fileMimeType, headers, is, sendCount, buf, null);
-				if (DBG) Log.d(TAG,"Http stream finished");
-			} catch(IOException ioe) {
-				if( DBG) Log.w(TAG, "handleResponse: caught IOException ", ioe);
-				try{
-					sendError(socket, HTTP_INTERNALERROR, "SERVER INTERNAL ERROR: IOException: " + ioe.getMessage());
-				} catch(Throwable t) {
-					if( DBG) Log.w(TAG, "handleResponse: caught Throwable ", t);
+		private void closeInputStream() {
+			if(is!=null) {
+				try {
+					is.close();
+				} catch(IOException e) {
+					if (DBG) Log.w(TAG, "HttpSession: caught IOException closing input stream ",e);
 				}
-			} catch(InterruptedException ie) {
-				// thrown by sendError, ignore and exit the thread
-				if (DBG) Log.w(TAG, "handleResponse: caught InterruptedException ", ie);
 			}
+			is = null;
+			isUri = null;
 		}
 
 		/**
-		 * decode header and returns requested path
-		 * @param socket
+		 * decode header
 		 * @param in
-		 * @param pre
-		 * @return
-		 * @throws InterruptedException
+		 * @param pre receives the header fields, lower case names
+		 * @return method, path and version of the request, null when the connection was closed before a request
 		 */
-		private String decodeHeader(Socket socket, BufferedReader in, Properties pre) throws InterruptedException{
-			String path=null;
-			try{
-				// Read the request line
-				String inLine = in.readLine();
+		private String[] decodeHeader(InputStream in, Properties pre) throws IOException {
+			// Read the request line, empty lines are allowed before it
+			String inLine;
+			do {
+				inLine = readLine(in);
 				if(inLine == null)
 					return null;
-				StringTokenizer st = new StringTokenizer(inLine);
-				if(!st.hasMoreTokens())
-					sendError(socket, HTTP_BADREQUEST, "Syntax error");
+			} while (inLine.isEmpty());
+			StringTokenizer st = new StringTokenizer(inLine);
+			if(st.countTokens() < 2)
+				return new String[] { "", "", "" }; // answered with a bad request
+			String method = st.nextToken();
+			String path = st.nextToken();
+			String version = st.hasMoreTokens() ? st.nextToken() : "HTTP/1.0";
+			while(true) {
+				String line = readLine(in);
+				if(line==null || line.isEmpty())
+					break;
+				if(DBG)
+					Log.d(TAG, "decodeHeader "+line);
+				int p = line.indexOf(':');
+				if(p<0)
+					continue;
+				final String atr = line.substring(0, p).trim().toLowerCase();
+				final String val = line.substring(p + 1).trim();
+				pre.put(atr, val);
+			}
+			return new String[] { method, path, version };
+		}
+	}
 
-				String method = st.nextToken();
-				if(!method.equals("GET"))
-					return null;
+	/**
+	 * @return a header line without its CRLF, null at the end of the stream
+	 */
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int c;
+		while ((c = in.read()) != -1) {
+			if (c == '\n')
+				break;
+			if (c != '\r')
+				sb.append((char) c);
+			if (sb.length() > BUFFER_SIZE)
+				throw new IOException("header line too long");
+		}
+		if (c == -1 && sb.length() == 0)
+			return null;
+		return sb.toString();
+	}
 
-				if(!st.hasMoreTokens())
-					sendError(socket, HTTP_BADREQUEST, "Missing URI");
-				path = st.nextToken();
-				while(true) {
-					String line = in.readLine();
-					if(line==null)
-						break;
-					if(DBG && line.length()>0)
-						Log.d(TAG, "decodeHeader "+line);
-					int p = line.indexOf(':');
-					if(p<0)
-						continue;
-					final String atr = line.substring(0, p).trim().toLowerCase();
-					final String val = line.substring(p + 1).trim();
-					pre.put(atr, val);
-				}
-			}catch(IOException ioe){
-				if (DBG) Log.w(TAG, "decodeHeader: caught IOException ", ioe);
-				sendError(socket, HTTP_INTERNALERROR, "SERVER INTERNAL ERROR: IOException: " + ioe.getMessage());
+	/** closes the connection of one idle session, its thread is then available for a new one */
+	private void closeIdleSession() {
+		HttpSession idle = null;
+		synchronized (mIdleSessions) {
+			Iterator<HttpSession> it = mIdleSessions.iterator();
+			if (it.hasNext()) {
+				idle = it.next();
+				it.remove();
 			}
-			return path;
+		}
+		if (idle != null) {
+			if (DBG) Log.d(TAG, "closeIdleSession: closing an idle connection to serve a new one");
+			closeSocket(idle.socket);
+		}
+	}
+
+	private static void closeSocket(Socket socket) {
+		try {
+			socket.close();
+		} catch(Exception e) {
+			if (DBG) Log.w(TAG, "HttpSession: caught Exception closing socket ", e);
+		}
+	}
+
+	private static boolean isReadAheadCached(Uri uri) {
+		return "smb".equalsIgnoreCase(uri.getScheme()) || "sftp".equalsIgnoreCase(uri.getScheme());
+	}
+
+	private ReadAheadCache getReadAheadCache(Uri uri, long length) {
+		synchronized (mReadAheadCaches) {
+			ReadAheadCache cache = mReadAheadCaches.get(uri);
+			if (cache == null || cache.length() != length) {
+				if (cache != null)
+					cache.close();
+				cache = new ReadAheadCache(uri, length, ArchosUtils.getGlobalContext(), mReadAheadSpillDirectory);
+				mReadAheadCaches.put(uri, cache);
+			}
+			return cache;
 		}
 	}
 
@@ -508,99 +610,94 @@ public class StreamOverHttp{
 	}
 
 	public void close(){
-		if (DBG) Log.d(TAG,"Closing stream over http");
+		if (DBG) Log.d(TAG,"Closing stream over http, served " + mBytesServed.get() + " bytes in " + mRequestCount.get() + " requests");
 		try{
 			serverSocket.close();
 		} catch(Exception e) {
 			if (DBG) Log.w(TAG, "close: caught Exception ", e);
 		}
+		mExecutor.shutdownNow();
+		synchronized (mReadAheadCaches) {
+			for (ReadAheadCache cache : mReadAheadCaches.values())
+				cache.close();
+			mReadAheadCaches.clear();
+		}
 	}
 
 	/**
-	 * Returns an error message as a HTTP response and
-	 * throws InterruptedException to stop further request processing.
+	 * @return number of connections currently open by clients
 	 */
-	private void sendError(Socket socket, String status, String msg){
+	public int getActiveConnections() {
+		return mActiveConnections.get();
+	}
+
+	/**
+	 * @return number of requests received since the server started
+	 */
+	public long getRequestCount() {
+		return mRequestCount.get();
+	}
+
+	/**
+	 * @return number of file bytes sent since the server started
+	 */
+	public long getBytesServed() {
+		return mBytesServed.get();
+	}
+
+	/**
+	 * Returns an error message as a HTTP response, the connection has to be closed after it.
+	 */
+	private static void sendError(OutputStream out, String status, String msg){
 		try {
-			sendResponse(socket, status, "text/plain", null, null, 0, null, msg);
+			byte[] body = msg != null ? msg.getBytes(HEADER_CHARSET) : new byte[0];
+			Properties headers = new Properties();
+			headers.put("Content-Length", String.valueOf(body.length));
+			headers.put("Connection", "close");
+			sendHeader(out, status, "text/plain", headers);
+			out.write(body);
+			out.flush();
 		} catch (IOException e) {
 			if (DBG) Log.w(TAG, "sendError: caught IOException ", e);
 		}
 	}
 
-	private void copyStream(InputStream in, OutputStream out, byte[] tmpBuf, long maxSize) throws IOException{
+	/**
+	 * @return number of bytes actually copied
+	 */
+	private static long copyStream(InputStream in, OutputStream out, byte[] tmpBuf, long maxSize) throws IOException{
 		if (DBG) Log.d(TAG, "copyStream");
 		int count;
+		long copied = 0;
 
 		while(maxSize>0) {
-			if (DBG) Log.d(TAG, "copyStream: looping maxSize= " + maxSize);
 			count = (int) Math.min(maxSize, (long)tmpBuf.length);
-			if (DBG) Log.d(TAG, "copyStream: looping count= " + count);
 			count = in.read(tmpBuf, 0, count);
-			if (DBG) Log.d(TAG, "copyStream: looping count after in.read " + count);
 			if(count<0)
 				break;
-			if (DBG) Log.d(TAG, "copyStream: looping tmpBuf is of length " + tmpBuf.length + " writing count " + count);
-			out.write(tmpBuf, 0, count); // TODO MARC CRASH HERE
-			out.flush();
+			out.write(tmpBuf, 0, count);
 			maxSize -= count;
+			copied += count;
 		}
+		return copied;
 	}
-	/**
-	 * Sends given response to the socket, and closes the socket.
-	 */
-	private void sendResponse(Socket socket, String status, String mimeType, Properties header, InputStream isInput, long sendCount, byte[] buf, String errMsg) throws IOException {
-		if (DBG) Log.d(TAG, "sendResponse");
-		BufferedInputStream bin = null;
-		try {
-			OutputStream out = socket.getOutputStream();
-			PrintWriter pw = new PrintWriter(out);
-			bin = new BufferedInputStream(isInput, BUFFER_SIZE*10);
-			{
-				String retLine = "HTTP/1.0 " + status + " \r\n";
-				pw.print(retLine);
-			}
-			if(mimeType!=null) {
-				String mT = "Content-Type: " + mimeType + "\r\n";
-				pw.print(mT);
-			}
-			if(header != null){
-				Enumeration<?> e = header.keys();
-				while(e.hasMoreElements()){
-					String key = (String)e.nextElement();
-					String value = header.getProperty(key);
-					String l = key + ": " + value + "\r\n";
-					if(DBG) Log.d(TAG, "sendResponse : " + l);
-					pw.print(l);
-				}
-			}
-			pw.print("\r\n");
-			pw.flush();
-			if(isInput != null)
-				copyStream(bin, out, buf, sendCount);
-			else if(errMsg!=null) {
-				pw.print(errMsg);
-				pw.flush();
-			}
-			out.flush();
-			out.close();
-		} catch(IOException e) {
-			if (DBG) Log.w(TAG, "sendResponse: caught IOException ", e);
-		} finally {
-			try {
-				socket.close();
-			} catch(Throwable t) {
-				if (DBG) Log.w(TAG, "sendResponse: caught Throwable closing socket ", t);
+
+	private static void sendHeader(OutputStream out, String status, String mimeType, Properties header) throws IOException {
+		if (DBG) Log.d(TAG, "sendHeader");
+		StringBuilder sb = new StringBuilder();
+		sb.append("HTTP/1.1 ").append(status).append(" \r\n");
+		if(mimeType!=null)
+			sb.append("Content-Type: ").append(mimeType).append("\r\n");
+		if(header != null){
+			Enumeration<?> e = header.keys();
+			while(e.hasMoreElements()){
+				String key = (String)e.nextElement();
+				String value = header.getProperty(key);
+				if(DBG) Log.d(TAG, "sendHeader : " + key + ": " + value);
+				sb.append(key).append(": ").append(value).append("\r\n");
 			}
-			if (bin != null)
-				try{
-					bin.close();
-				} catch(Throwable t) {
-					if (DBG) Log.w(TAG, "sendResponse: caught Throwable closing bin ", t);
-				}
 		}
+		sb.append("\r\n");
+		out.write(sb.toString().getBytes(HEADER_CHARSET));
 	}
 }
-
-
-
@@ -0,0 +1,178 @@
+// Copyright 2021 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary.jcifs;
+
+import android.net.Uri;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import jcifs.CIFSException;
+import jcifs.FileNotifyInformation;
+import jcifs.SmbWatchHandle;
+import jcifs.smb.SmbUnsupportedOperationException;
+
+import static com.archos.filecorelibrary.jcifs.JcifsUtils.getSmbFile;
+
+/**
+ * Keeps a recursive change notification (SMB2 CHANGE_NOTIFY or SMB1 NT_TRANSACT_NOTIFY_CHANGE) open on a
+ * directory and reports the changed paths to a listener, from its own thread.
+ * When the server drops the notification the watch is opened again after RETRY_DELAY_MS.
+ */
+public class JcifsChangeWatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(JcifsChangeWatcher.class);
+
+    private static final int FILTER = FileNotifyInformation.FILE_NOTIFY_CHANGE_NAME
+            | FileNotifyInformation.FILE_NOTIFY_CHANGE_SIZE
+            | FileNotifyInformation.FILE_NOTIFY_CHANGE_LAST_WRITE;
+    private static final long RETRY_DELAY_MS = 60000;
+
+    public interface Listener {
+        /**
+         * @param changed entries added, modified or renamed to
+         * @param removed entries removed or renamed from
+         */
+        void onChanges(Uri root, List<Uri> changed, List<Uri> removed);
+
+        /**
+         * The server could not report all the changes, the whole root needs to be checked
+         */
+        void onOverflow(Uri root);
+    }
+
+    private final Uri mRoot;
+    private final String mRootPath;
+    private final Listener mListener;
+    private volatile boolean mStopped;
+    private Thread mThread;
+    private SmbWatchHandle mHandle;
+
+    public JcifsChangeWatcher(Uri root, Listener listener) {
+        mRoot = root;
+        String path = root.toString();
+        mRootPath = path.endsWith("/") ? path : path + "/";
+        mListener = listener;
+    }
+
+    public Uri getRoot() {
+        return mRoot;
+    }
+
+    public synchronized void start() {
+        if (mThread != null)
+            return;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watchLoop();
+            }
+        }, "JcifsChangeWatcher");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Closes the watch, does network I/O: not to be called from the main thread
+     */
+    public void stop() {
+        SmbWatchHandle handle;
+        synchronized (this) {
+            mStopped = true;
+            handle = mHandle;
+            mHandle = null;
+            notifyAll();
+        }
+        if (handle != null) {
+            try {
+                handle.close();
+            } catch (CIFSException e) {
+                log.debug("stop: failed to close watch on " + mRoot, e);
+            }
+        }
+    }
+
+    private void watchLoop() {
+        while (!mStopped) {
+            try (SmbWatchHandle handle = getSmbFile(mRoot).smbFile.watch(FILTER, true)) {
+                synchronized (this) {
+                    if (mStopped)
+                        return;
+                    mHandle = handle;
+                }
+                log.debug("watchLoop: watching " + mRoot);
+                while (!mStopped) {
+                    List<FileNotifyInformation> infos = handle.watch();
+                    if (mStopped || infos == null) // null when cancelled
+                        break;
+                    if (infos.isEmpty()) {
+                        log.debug("watchLoop: too many changes on " + mRoot);
+                        mListener.onOverflow(mRoot);
+                    } else {
+                        dispatch(infos);
+                    }
+                }
+            } catch (SmbUnsupportedOperationException e) {
+                log.warn("watchLoop: change notification not supported on " + mRoot, e);
+                return;
+            } catch (CIFSException | MalformedURLException e) {
+                if (mStopped)
+                    return;
+                log.debug("watchLoop: watch on " + mRoot + " broken, retrying in " + RETRY_DELAY_MS + "ms", e);
+                synchronized (this) {
+                    try {
+                        if (!mStopped)
+                            wait(RETRY_DELAY_MS);
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    mHandle = null;
+                }
+            }
+        }
+    }
+
+    private void dispatch(List<FileNotifyInformation> infos) {
+        List<Uri> changed = new ArrayList<>();
+        List<Uri> removed = new ArrayList<>();
+        for (FileNotifyInformation info : infos) {
+            Uri uri = Uri.parse(mRootPath + info.getFileName().replace('\\', '/'));
+            log.trace("dispatch: action " + info.getAction() + " on " + uri);
+            switch (info.getAction()) {
+                case FileNotifyInformation.FILE_ACTION_ADDED:
+                case FileNotifyInformation.FILE_ACTION_MODIFIED:
+                case FileNotifyInformation.FILE_ACTION_RENAMED_NEW_NAME:
+                    changed.add(uri);
+                    break;
+                case FileNotifyInformation.FILE_ACTION_REMOVED:
+                case FileNotifyInformation.FILE_ACTION_REMOVED_BY_DELETE:
+                case FileNotifyInformation.FILE_ACTION_RENAMED_OLD_NAME:
+                    removed.add(uri);
+                    break;
+                default: // stream changes
+                    break;
+            }
+        }
+        if (!changed.isEmpty() || !removed.isEmpty())
+            mListener.onChanges(mRoot, changed, removed);
+    }
+}
@@ -20,13 +20,16 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.UnknownHostException;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import jcifs.smb.SmbException;
 import jcifs.smb.SmbFile;
 import jcifs.smb.SmbFileInputStream;
 import jcifs.smb.SmbFileOutputStream;
+import jcifs.smb.SmbRandomAccessFile;
 
 import com.archos.filecorelibrary.FileEditor;
+import com.archos.filecorelibrary.RandomAccessOutput;
 
 import android.net.Uri;
 import android.util.Log;
@@ -79,6 +82,58 @@ public class JcifsFileEditor extends FileEditor{
         return new SmbFileOutputStream(getSmbFile(mUri).smbFile);
     }
 
+    @Override
+    public boolean hasRandomAccessInput() {
+        // SmbFileInputStream.skip() only moves the file pointer
+        return true;
+    }
+
+    @Override
+    public RandomAccessOutput getRandomAccessOutput(long length) throws SmbException, MalformedURLException {
+        final SmbFile smbFile = getSmbFile(mUri).smbFile;
+        SmbRandomAccessFile first = smbFile.openRandomAccess("rw");
+        try {
+            first.setLength(length);
+        } catch (SmbException e) {
+            first.close();
+            throw e;
+        }
+        // seek and write share the file pointer of a handle: each concurrent write gets its own handle,
+        // handles are reused once the write is done so there are never more than the number of writers
+        final ConcurrentLinkedQueue<SmbRandomAccessFile> idle = new ConcurrentLinkedQueue<>();
+        final ConcurrentLinkedQueue<SmbRandomAccessFile> all = new ConcurrentLinkedQueue<>();
+        idle.add(first);
+        all.add(first);
+        return new RandomAccessOutput() {
+            @Override
+            public void write(long position, byte[] buf, int off, int len) throws IOException {
+                SmbRandomAccessFile raf = idle.poll();
+                if (raf == null) {
+                    raf = smbFile.openRandomAccess("rw");
+                    all.add(raf);
+                }
+                raf.seek(position);
+                raf.write(buf, off, len);
+                idle.add(raf);
+            }
+
+            @Override
+            public void close() throws IOException {
+                IOException error = null;
+                SmbRandomAccessFile raf;
+                while ((raf = all.poll()) != null) {
+                    try {
+                        raf.close();
+                    } catch (IOException e) {
+                        if (error == null) error = e;
+                    }
+                }
+                idle.clear();
+                if (error != null) throw error;
+            }
+        };
+    }
+
     @Override
     public Boolean delete() throws Exception {
         SmbFile smbFile = getSmbFile(mUri).smbFile;
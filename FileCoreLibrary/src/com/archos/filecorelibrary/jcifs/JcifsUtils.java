@@ -51,6 +51,10 @@ public class JcifsUtils {
     public final static boolean LIMIT_PROTOCOL_NEGO = false;
     public final static boolean RESOLUTION_CACHE_INJECTION = false;
     public final static boolean PREVENT_MULTIPLE_TIME_SERVER_PROBING = true;
+    // number of SMB2 read requests kept in flight by a file input stream
+    private final static int SMB2_READ_AHEAD = 8;
+    // number of SMB2 write requests kept in flight by a file output stream
+    private final static int SMB2_WRITE_BEHIND = 8;
 
     private static Properties prop = null;
     private static CIFSContext baseContextSmb1, baseContextSmb2, baseContextSmb1Only, baseContextSmb2Only;
@@ -115,6 +119,11 @@ public class JcifsUtils {
         prop.put("jcifs.smb.client.ipcSigningEnforced", "false");
         // allow plaintext password fallback
         prop.put("jcifs.smb.client.disablePlainTextPasswords", "false");
+        // keep several SMB2 reads and writes in flight, one request per round trip is too slow over wifi
+        prop.put("jcifs.smb.client.readAhead", String.valueOf(SMB2_READ_AHEAD));
+        prop.put("jcifs.smb.client.writeBehind", String.valueOf(SMB2_WRITE_BEHIND));
+        // advertise SMB3 encryption, required by shares enforcing it
+        prop.put("jcifs.smb.client.encryptionEnabled", "true");
         // disable dfs makes win10 shares with ms account work
         prop.put("jcifs.smb.client.dfs.disabled", "true");
 
@@ -163,6 +172,11 @@ public class JcifsUtils {
         }
         // allow plaintext password fallback
         prop.put("jcifs.smb.client.disablePlainTextPasswords", "false");
+        // keep several SMB2 reads and writes in flight, one request per round trip is too slow over wifi
+        prop.put("jcifs.smb.client.readAhead", String.valueOf(SMB2_READ_AHEAD));
+        prop.put("jcifs.smb.client.writeBehind", String.valueOf(SMB2_WRITE_BEHIND));
+        // advertise SMB3 encryption, required by shares enforcing it
+        prop.put("jcifs.smb.client.encryptionEnabled", "true");
 
         PropertyConfiguration propertyConfiguration = null;
         try {
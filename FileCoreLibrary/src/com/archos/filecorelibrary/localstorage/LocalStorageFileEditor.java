@@ -29,6 +29,7 @@ import com.archos.filecorelibrary.FileEditor;
 import com.archos.filecorelibrary.FileUtils;
 import com.archos.filecorelibrary.FileUtilsQ;
 import com.archos.filecorelibrary.MetaFile2;
+import com.archos.filecorelibrary.RandomAccessOutput;
 import com.archos.environment.ArchosUtils;
 
 import org.slf4j.Logger;
@@ -42,7 +43,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -101,6 +104,44 @@ public class LocalStorageFileEditor extends FileEditor {
         return null;
     }
 
+    @Override
+    public boolean hasRandomAccessInput() {
+        return true;
+    }
+
+    @Override
+    public RandomAccessOutput getRandomAccessOutput(long length) throws IOException {
+        final RandomAccessFile raf;
+        try {
+            raf = new RandomAccessFile(new File(mUri.getPath()), "rw");
+        } catch (FileNotFoundException e) {
+            // no direct access (external sd), caller falls back to getOutputStream()
+            return null;
+        }
+        try {
+            raf.setLength(length);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        final FileChannel channel = raf.getChannel();
+        return new RandomAccessOutput() {
+            @Override
+            public void write(long position, byte[] buf, int off, int len) throws IOException {
+                // positional writes do not touch the channel position, no need to lock
+                ByteBuffer buffer = ByteBuffer.wrap(buf, off, len);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                raf.close();
+            }
+        };
+    }
+
     public OutputStream getOutputStream() throws IOException {
         OutputStream fos = null;
         try {
@@ -17,18 +17,21 @@ package com.archos.filecorelibrary.samba;
 import java.math.BigInteger;
 import java.net.Inet4Address;
 import java.net.InetAddress;
+import java.net.InterfaceAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import jcifs.netbios.UdpDiscovery;
 
@@ -65,6 +68,9 @@ public class SambaDiscovery implements InternalDiscoveryListener {
 
     public static final int SOCKET_TIMEOUT = 150;
 
+    // used when the prefix length of the local address can't be found
+    private static final int DEFAULT_PREFIX_LENGTH = 24;
+
     private static final Boolean ENABLE_MDNS_DISCOVERY = true;
 
     final private Context mContext;
@@ -115,6 +121,16 @@ public class SambaDiscovery implements InternalDiscoveryListener {
      */
     final private Map<String, Workgroup> mWorkgroups = new HashMap<String, Workgroup>();
 
+    /**
+     * Shares found by previous discoveries on this network
+     */
+    private SambaDiscoveryCache mCache;
+
+    /**
+     * Addresses of the shares displayed from the cache that the current discovery did not find yet
+     */
+    final private Set<String> mUnconfirmedAddresses = new HashSet<String>();
+
     // shareName/IP resolver
     final private static Hashtable<String, String> shareNameResolver = new Hashtable<String, String>();
     // name/IP resolution
@@ -172,6 +188,11 @@ public class SambaDiscovery implements InternalDiscoveryListener {
             log.trace("onShareFound: shareNameResolver hastable " + dumpShareNameResolver());
         }
 
+        if (mUnconfirmedAddresses.remove(shareAddress) && (shareName == null || shareName.isEmpty())) {
+            // already displayed from the cache, TCP discovery only tells the server is still there
+            return;
+        }
+
         boolean alreadyFound = false;
 
         // Check if this address is already in the list
@@ -234,6 +255,11 @@ public class SambaDiscovery implements InternalDiscoveryListener {
         // Tell the discovery is over when all the internal discoveries are over
         // We do not tell that the discovery is over when it is aborted because some new discovery threads may already be started
         if (mInternalDiscoveries.isEmpty() && !aborted) {
+            synchronized (this) {
+                dropUnconfirmedShares();
+                if (mCache != null)
+                    mCache.save(mWorkgroups.values());
+            }
             informListener(true);
             log.debug("onInternalDiscoveryEnd calls discoveryFinished");
             discoveryFinished();
@@ -338,11 +364,16 @@ public class SambaDiscovery implements InternalDiscoveryListener {
         mLastListenerUpdate = SystemClock.elapsedRealtime();
         mThereIsAnUpdate = false;
 
+        final int prefixLength = getPrefixLength(ipAddress);
+        final int mask = -1 << (32 - prefixLength);
+        mCache = new SambaDiscoveryCache(mContext, TcpDiscovery.intToIp(TcpDiscovery.ipToInt(ipAddress) & mask) + "/" + prefixLength);
+        showCachedShares();
+
         // Init the TCP and UDP discoveries
         mInternalDiscoveries.add(new UdpDiscovery(this, ipAddress, mSocketReadDurationMs));
         if (ENABLE_MDNS_DISCOVERY) mInternalDiscoveries.add(new MdnsDiscovery(this, mContext, mSocketReadDurationMs));
         //tcp is quicker than udp sometimes, but we only use it as fallback, so we delay it 1 sec
-        mInternalDiscoveries.add(new TcpDiscovery(this, ipAddress, mSocketReadDurationMs, 1000));
+        mInternalDiscoveries.add(new TcpDiscovery(this, ipAddress, prefixLength, mSocketReadDurationMs, 1000));
 
         // Start all the discoveries
         log.debug("Start discovery");
@@ -351,6 +382,54 @@ public class SambaDiscovery implements InternalDiscoveryListener {
         }
     }
 
+    /**
+     * Displays the shares found by the previous discoveries right away, they are removed at the end
+     * of the discovery if it does not find them again
+     */
+    private synchronized void showCachedShares() {
+        mUnconfirmedAddresses.clear();
+        for (Share share : mCache.getShares()) {
+            if (mUnconfirmedAddresses.contains(share.getAddress()))
+                continue;
+            Workgroup workgroup = mWorkgroups.get(share.getWorkgroup());
+            if (workgroup == null) {
+                workgroup = new Workgroup(share.getWorkgroup());
+                mWorkgroups.put(share.getWorkgroup(), workgroup);
+            }
+            workgroup.addShare(share.getName(), share.getAddress());
+            mUnconfirmedAddresses.add(share.getAddress());
+            String shareIP = Uri.parse(share.getAddress()).getHost();
+            registerShareNameIP(share.getName().isEmpty() ? shareIP : share.getName(), shareIP);
+        }
+        log.debug("showCachedShares: " + mUnconfirmedAddresses.size() + " cached shares");
+        if (!mUnconfirmedAddresses.isEmpty()) {
+            mThereIsAnUpdate = true;
+            informListener(true);
+        }
+    }
+
+    // called with the lock held
+    private void dropUnconfirmedShares() {
+        if (mUnconfirmedAddresses.isEmpty())
+            return;
+        Iterator<Workgroup> wkIter = mWorkgroups.values().iterator();
+        while (wkIter.hasNext()) {
+            Workgroup wk = wkIter.next();
+            Iterator<Share> shIter = wk.getShares().iterator();
+            while (shIter.hasNext()) {
+                if (mUnconfirmedAddresses.contains(shIter.next().getAddress())) {
+                    shIter.remove();
+                    mThereIsAnUpdate = true;
+                }
+            }
+            if (wk.isEmpty()) {
+                wkIter.remove();
+            }
+        }
+        log.debug("dropUnconfirmedShares: " + mUnconfirmedAddresses + " not found anymore");
+        mUnconfirmedAddresses.clear();
+    }
+
     /**
      * UDP-only discovery. Blocking method
      * @param socketReadDurationMs maximum duration
@@ -513,6 +592,25 @@ public class SambaDiscovery implements InternalDiscoveryListener {
         return null;
     }
 
+    private static int getPrefixLength(String ipAddress) {
+        try {
+            for (Enumeration<NetworkInterface> en = NetworkInterface.getNetworkInterfaces(); en.hasMoreElements();) {
+                for (InterfaceAddress interfaceAddress : en.nextElement().getInterfaceAddresses()) {
+                    InetAddress inetAddress = interfaceAddress.getAddress();
+                    if (inetAddress instanceof Inet4Address && ipAddress.equals(inetAddress.getHostAddress())) {
+                        int prefixLength = interfaceAddress.getNetworkPrefixLength();
+                        log.debug("getPrefixLength: " + ipAddress + "/" + prefixLength);
+                        if (prefixLength > 0 && prefixLength <= 32)
+                            return prefixLength;
+                    }
+                }
+            }
+        } catch (SocketException e) {
+            log.error("getPrefixLength", e);
+        }
+        return DEFAULT_PREFIX_LENGTH;
+    }
+
     private boolean isUsableIpforSMB(InetAddress inetAddress) {
         return !inetAddress.isLoopbackAddress()
                 && !inetAddress.isAnyLocalAddress()
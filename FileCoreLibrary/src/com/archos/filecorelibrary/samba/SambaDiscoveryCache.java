@@ -0,0 +1,120 @@
+// Copyright 2017 Archos SA
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary.samba;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares found by the previous discoveries, per local network, so that they can be displayed
+ * before the discovery confirms them. Shares not seen for TTL_MS are forgotten.
+ */
+public class SambaDiscoveryCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SambaDiscoveryCache.class);
+
+    private static final String PREFS_NAME = "samba_discovery_cache";
+    private static final long TTL_MS = 7L * 24 * 60 * 60 * 1000;
+
+    private static final String KEY_WORKGROUP = "workgroup";
+    private static final String KEY_NAME = "name";
+    private static final String KEY_ADDRESS = "address";
+    private static final String KEY_LAST_SEEN = "last_seen";
+
+    private final SharedPreferences mPrefs;
+    private final String mNetwork;
+    // key: name|address
+    private final Map<String, JSONObject> mEntries = new LinkedHashMap<>();
+
+    /**
+     * @param network identifies the local network, e.g. "192.168.1.0/24"
+     */
+    public SambaDiscoveryCache(Context context, String network) {
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mNetwork = network;
+        load();
+    }
+
+    private void load() {
+        String json = mPrefs.getString(mNetwork, null);
+        if (json == null)
+            return;
+        long now = System.currentTimeMillis();
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject entry = array.getJSONObject(i);
+                if (now - entry.getLong(KEY_LAST_SEEN) < TTL_MS)
+                    mEntries.put(getKey(entry.getString(KEY_NAME), entry.getString(KEY_ADDRESS)), entry);
+            }
+        } catch (JSONException e) {
+            log.warn("load: dropping invalid cache for " + mNetwork, e);
+            mEntries.clear();
+        }
+    }
+
+    /**
+     * @return the shares seen on this network during the last TTL_MS
+     */
+    public List<Share> getShares() {
+        List<Share> shares = new ArrayList<>(mEntries.size());
+        for (JSONObject entry : mEntries.values()) {
+            shares.add(new Share(entry.optString(KEY_NAME), entry.optString(KEY_ADDRESS), entry.optString(KEY_WORKGROUP)));
+        }
+        return shares;
+    }
+
+    /**
+     * Marks the shares of the workgroups as seen now and writes the cache
+     */
+    public void save(Collection<Workgroup> workgroups) {
+        long now = System.currentTimeMillis();
+        try {
+            for (Workgroup workgroup : workgroups) {
+                for (Share share : workgroup.getShares()) {
+                    JSONObject entry = new JSONObject();
+                    entry.put(KEY_WORKGROUP, workgroup.getName());
+                    entry.put(KEY_NAME, share.getName() != null ? share.getName() : "");
+                    entry.put(KEY_ADDRESS, share.getAddress());
+                    entry.put(KEY_LAST_SEEN, now);
+                    mEntries.put(getKey(share.getName(), share.getAddress()), entry);
+                }
+            }
+        } catch (JSONException e) {
+            log.warn("save: caught JSONException", e);
+            return;
+        }
+        JSONArray array = new JSONArray();
+        for (JSONObject entry : mEntries.values())
+            array.put(entry);
+        mPrefs.edit().putString(mNetwork, array.toString()).apply();
+    }
+
+    private static String getKey(String name, String address) {
+        return (name != null ? name.toUpperCase() : "") + '|' + address;
+    }
+}
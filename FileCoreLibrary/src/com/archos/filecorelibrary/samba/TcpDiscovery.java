@@ -27,16 +27,30 @@ import java.net.InetSocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 public class TcpDiscovery implements InternalDiscovery {
     private static final boolean DBG = true;
     private static final Logger log = LoggerFactory.getLogger(TcpDiscovery.class);
 
+    // SMB over TCP, then NetBIOS session service for older servers
+    private static final int[] PORTS = { 445, 139 };
+    // never probe more than the /20 around our address (4094 hosts), even with a long read duration
+    private static final int MIN_PREFIX_LENGTH = 20;
+    private static final int MAX_PREFIX_LENGTH = 30;
+    // connections in progress at the same time, keeps us far from the file descriptors limit
+    private static final int MAX_PENDING_CONNECTIONS = 256;
+    // a LAN host answers (or refuses) much faster than this
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+
     private final Thread mThread;
     private final InternalDiscoveryListener mListener;
     private final String mIpAddress;
+    private final int mPrefixLength;
     private final int mSocketReadDurationMs;
     private final int mStartDelayMs;
 
@@ -45,13 +59,16 @@ public class TcpDiscovery implements InternalDiscovery {
     /**
      *
      * @param ipAddress
+     * @param prefixLength network prefix length of ipAddress, the whole subnet is probed unless it cannot be
+     *                     within socketReadDurationMs, only the part around ipAddress that can is probed then
      * @param socketReadDurationMs
      * @param startDelayMs the delay before the discovery actually starts after start() is called
      */
-    public TcpDiscovery(InternalDiscoveryListener listener, String ipAddress, int socketReadDurationMs, int startDelayMs) {
+    public TcpDiscovery(InternalDiscoveryListener listener, String ipAddress, int prefixLength, int socketReadDurationMs, int startDelayMs) {
         mThread = new TcpDiscoveryThread();
         mListener = listener;
         mIpAddress = ipAddress;
+        mPrefixLength = prefixLength;
         mSocketReadDurationMs = socketReadDurationMs;
         mStartDelayMs = startDelayMs;
     }
@@ -88,15 +105,53 @@ public class TcpDiscovery implements InternalDiscovery {
                 return;
             }
 
-            final String netRange = mIpAddress.substring(0, mIpAddress.lastIndexOf(".") + 1);
-            doTcpDiscovery(netRange);
+            doTcpDiscovery();
 
             mListener.onInternalDiscoveryEnd(TcpDiscovery.this, mAbort);
         }
     }
 
-    private void doTcpDiscovery(String netRange) {
-        LinkedList<SocketChannel> sockets = new LinkedList<>();
+    /**
+     * A connection attempt to one port of one host
+     */
+    private static class Probe {
+        final String ip;
+        final long deadline;
+
+        Probe(String ip, long deadline) {
+            this.ip = ip;
+            this.deadline = deadline;
+        }
+    }
+
+    static int ipToInt(String ip) {
+        String[] bytes = ip.split("\\.");
+        if (bytes.length != 4)
+            throw new IllegalArgumentException("not an IPv4 address: " + ip);
+        int result = 0;
+        for (String b : bytes)
+            result = (result << 8) | (Integer.parseInt(b) & 0xff);
+        return result;
+    }
+
+    static String intToIp(int ip) {
+        return ((ip >>> 24) & 0xff) + "." + ((ip >>> 16) & 0xff) + "." + ((ip >>> 8) & 0xff) + "." + (ip & 0xff);
+    }
+
+    private void doTcpDiscovery() {
+        final int ownIp;
+        try {
+            ownIp = ipToInt(mIpAddress);
+        } catch (IllegalArgumentException e) {
+            log.error("abort TcpDiscovery: " + e.getMessage());
+            return;
+        }
+        int prefixLength = Math.min(MAX_PREFIX_LENGTH, Math.max(getMinPrefixLength(mSocketReadDurationMs), mPrefixLength));
+        final int mask = -1 << (32 - prefixLength);
+        final int firstHost = (ownIp & mask) + 1;
+        final int hostCount = ~mask - 1; // network and broadcast addresses excluded
+        log.debug("doTcpDiscovery: probing " + hostCount + " hosts of " + intToIp(ownIp & mask) + "/" + prefixLength);
+
         Selector selector = null;
         try {
             selector = Selector.open();
@@ -105,72 +160,111 @@ public class TcpDiscovery implements InternalDiscovery {
             return;
         }
 
-        for (int i = 1; i < 255; i++) {
-            final String ip = netRange.concat(String.valueOf(i));
-            //try to connect to tcp port 445
-            SocketChannel socketChannel = null;
-            try {
-                socketChannel = SocketChannel.open();
-            } catch (IOException ignored) {}
-            if (socketChannel == null) continue;
-            sockets.add(socketChannel);
-
-            try {
-                socketChannel.configureBlocking(false);
-                socketChannel.register(selector, SelectionKey.OP_CONNECT);
-                socketChannel.connect(new InetSocketAddress(ip, 445));
-            } catch (IOException e) {
-                if (DBG) log.error("doTcpDiscovery: caught IOException", e);
-                else log.warn("doTcpDiscovery: caught IOException");
-            }
-        }
+        // oldest first, to time them out in order
+        final LinkedHashMap<SocketChannel, Probe> pending = new LinkedHashMap<>();
+        final Set<String> found = new HashSet<>();
+        int nextProbe = 0;
+        final int probeCount = hostCount * PORTS.length;
 
         final long readStartTime = SystemClock.elapsedRealtime();
-        while (!mAbort && (SystemClock.elapsedRealtime() - readStartTime) < mSocketReadDurationMs) {
-            int readyChannels = 0;
-            if (selector != null) {
+        while (!mAbort && (SystemClock.elapsedRealtime() - readStartTime) < mSocketReadDurationMs
+                && (nextProbe < probeCount || !pending.isEmpty())) {
+            // start new connections as the previous ones complete or time out
+            while (pending.size() < MAX_PENDING_CONNECTIONS && nextProbe < probeCount) {
+                final int host = firstHost + nextProbe / PORTS.length;
+                final int port = PORTS[nextProbe % PORTS.length];
+                nextProbe++;
+                final String ip = intToIp(host);
+                if (host == ownIp || found.contains(ip))
+                    continue;
+                //try to connect to tcp port 445 or 139
+                SocketChannel socketChannel = null;
                 try {
-                    readyChannels = selector.select(SambaDiscovery.SOCKET_TIMEOUT);
+                    socketChannel = SocketChannel.open();
                 } catch (IOException ignored) {}
+                if (socketChannel == null) continue;
+                pending.put(socketChannel, new Probe(ip, SystemClock.elapsedRealtime() + CONNECT_TIMEOUT_MS));
+
+                try {
+                    socketChannel.configureBlocking(false);
+                    socketChannel.register(selector, SelectionKey.OP_CONNECT);
+                    socketChannel.connect(new InetSocketAddress(ip, port));
+                } catch (IOException e) {
+                    if (DBG) log.error("doTcpDiscovery: caught IOException", e);
+                    else log.warn("doTcpDiscovery: caught IOException");
+                    closeProbe(pending, socketChannel);
+                }
             }
-            if (readyChannels == 0) continue;
-            Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
-            while(keyIterator.hasNext()) {
-                SelectionKey key = keyIterator.next();
-                keyIterator.remove();
-                if (key.isValid() && key.isConnectable()) {
-                    SocketChannel currentChannel = (SocketChannel) key.channel();
-
-                    boolean v = false;
-                    try {
-                        v = currentChannel.finishConnect();
-                    }
-                    catch (IOException ignored) {}
-                    finally {
+
+            int readyChannels = 0;
+            try {
+                readyChannels = selector.select(SambaDiscovery.SOCKET_TIMEOUT);
+            } catch (IOException ignored) {}
+            if (readyChannels > 0) {
+                Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                while(keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();
+                    if (key.isValid() && key.isConnectable()) {
+                        SocketChannel currentChannel = (SocketChannel) key.channel();
+
+                        boolean v = false;
                         try {
-                            currentChannel.close();
-                        } catch (IOException ignored) {}
-                    }
+                            v = currentChannel.finishConnect();
+                        }
+                        catch (IOException ignored) {}
+                        Probe probe = closeProbe(pending, currentChannel);
 
-                    if (v) {
-                        int ipNumber = sockets.indexOf(currentChannel) + 1;
-                        final String ip = netRange.concat(String.valueOf(ipNumber));
-                        final String shareAddress = "smb://" + ip + '/';
-                        log.debug("found share at " + ip);
-                        mListener.onShareFound(Workgroup.NOGROUP, "", shareAddress); // TCP discovery does not give the share name
+                        if (v && probe != null && found.add(probe.ip)) {
+                            final String shareAddress = "smb://" + probe.ip + '/';
+                            log.debug("found share at " + probe.ip);
+                            mListener.onShareFound(Workgroup.NOGROUP, "", shareAddress); // TCP discovery does not give the share name
+                        }
                     }
                 }
             }
+
+            // hosts not answering
+            final long now = SystemClock.elapsedRealtime();
+            Iterator<Map.Entry<SocketChannel, Probe>> it = pending.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<SocketChannel, Probe> entry = it.next();
+                if (entry.getValue().deadline > now)
+                    break;
+                try {
+                    entry.getKey().close();
+                } catch (IOException ignored) {}
+                it.remove();
+            }
         }
 
-        for(SocketChannel socketChannel: sockets) {
+        for(SocketChannel socketChannel: pending.keySet()) {
             try {
                 socketChannel.close();
             } catch (IOException ignored) {}
         }
         try {
-            if (selector != null)
-                selector.close();
+            selector.close();
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * @return the prefix length of the biggest subnet whose probes all complete within durationMs,
+     * even when no host answers and every probe waits for CONNECT_TIMEOUT_MS
+     */
+    static int getMinPrefixLength(int durationMs) {
+        final long maxProbes = (long) MAX_PENDING_CONNECTIONS * Math.max(1, durationMs / CONNECT_TIMEOUT_MS);
+        int prefixLength = MIN_PREFIX_LENGTH;
+        while (prefixLength < MAX_PREFIX_LENGTH
+                && ((1L << (32 - prefixLength)) - 2) * PORTS.length > maxProbes)
+            prefixLength++;
+        return prefixLength;
+    }
+
+    private static Probe closeProbe(Map<SocketChannel, Probe> pending, SocketChannel channel) {
+        try {
+            channel.close();
         } catch (IOException ignored) {}
+        return pending.remove(channel);
     }
 }
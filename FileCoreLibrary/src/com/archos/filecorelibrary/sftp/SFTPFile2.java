@@ -146,19 +146,16 @@ public class SFTPFile2 extends MetaFile2 {
         try {
             channel = SFTPSession.getInstance().getSFTPChannel(uri);
             SftpATTRS attrs = ((ChannelSftp)channel).stat(uri.getPath());
-            channel.disconnect();
             return new SFTPFile2(attrs,uri.getLastPathSegment(), uri);
         } catch (JSchException e) {
-            if(channel!=null&&channel.isConnected())
-                channel.disconnect();
             if(e.getCause() instanceof java.net.UnknownHostException)
                 throw new UnknownHostException();
             else
                 throw new AuthenticationException();
         } catch (SftpException e) {
-            if(channel!=null&&channel.isConnected())
-                channel.disconnect();
             throw new Exception("permission");
+        } finally {
+            SFTPSession.getInstance().releaseChannel(channel);
         }
     }
 }
@@ -80,12 +80,9 @@ public class SFTPRawLister extends RawLister {
                     files.add(sf);
                 }
             }
-            channel.disconnect();
             return files;
-        }catch (Exception e){
-            if(channel!=null&&channel.isConnected())
-                channel.disconnect();
-            throw e;
+        } finally {
+            SFTPSession.getInstance().releaseChannel(channel);
         }
 
 
@@ -19,94 +19,133 @@ import android.net.Uri;
 import com.archos.filecorelibrary.samba.NetworkCredentialsDatabase;
 import com.archos.filecorelibrary.samba.NetworkCredentialsDatabase.Credential;
 import com.jcraft.jsch.Channel;
+import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 
-import java.util.HashSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Keeps a session (= connection) per server and a pool of sftp channels per session.
+ * Channels are borrowed with getSFTPChannel and must be given back with releaseChannel, they are then kept
+ * open for the next caller during IDLE_TIMEOUT_MS. Each server has its own lock so that servers do not
+ * wait for each other, and at most getMaxChannelsPerSession() channels are open at once per session
+ * (sshd limits them, 10 by default for OpenSSH).
+ */
 public class SFTPSession {
+
+    private static final Logger log = LoggerFactory.getLogger(SFTPSession.class);
+
+    // preference read by the application to set the maximum number of channels per session
+    public static final String MAX_CHANNELS_PER_SESSION_PREF = "sftp_max_channels_per_session";
+    public static final int DEFAULT_MAX_CHANNELS_PER_SESSION = 8;
+    // idle channels are closed after that
+    private static final long IDLE_TIMEOUT_MS = 60000;
+    // channels idle for longer are checked with a round trip before being reused
+    private static final long CHECK_AFTER_IDLE_MS = 10000;
+    // how long to wait for a channel when all are in use
+    private static final long CHANNEL_WAIT_TIMEOUT_MS = 30000;
+
     private static SFTPSession sshSession = null;
-    //Keep a cached Session ( = connection) per server
-    private ConcurrentHashMap<Credential, Session> currentSessions;
-    private ConcurrentHashMap<Session, HashSet<Channel>> usedSessions; // keep used session to avoid deconnection while, for example, a sftp channel is being used
-    public SFTPSession(){
-        currentSessions = new ConcurrentHashMap<>();
-        usedSessions = new ConcurrentHashMap<>();
-    }
-	
-	
-	
-	public static SFTPSession getInstance(){
-		if(sshSession==null)
-			sshSession= new SFTPSession();
-		return sshSession;
-	}
-
-	public synchronized Channel getSFTPChannel(Uri cred) throws JSchException{
-        Session session = getSession(cred);
-        if(session !=null){
-            try {
-                Channel channel = session.openChannel("sftp");
-                channel.connect();
-                acquireSession(channel);
-                return channel;
-            } catch (JSchException e) {
-                //channel isn't openable, we have to reset the session !
-                removeSession(cred);
-                Session session2 = getSession(cred);
-                if (session2 != null) {
-                    try {
 
-                        Channel channel;
-                        channel = session2.openChannel("sftp");
-                        channel.connect();
-                        acquireSession(channel);
-                        return channel;
-                    } catch (JSchException e1) {
-                        // TODO Auto-generated catch block
-                        throw e1;
-                    }
-                }
+    // one pool per server and credential
+    private final ConcurrentHashMap<Credential, HostPool> mPools = new ConcurrentHashMap<>();
+    // borrowed channel -> its pool
+    private final ConcurrentHashMap<Channel, HostPool> mBorrowed = new ConcurrentHashMap<>();
+    private volatile int mMaxChannelsPerSession = DEFAULT_MAX_CHANNELS_PER_SESSION;
+    private final ScheduledExecutorService mEvictor;
+
+    public SFTPSession() {
+        mEvictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "SFTPSession-evictor");
+                t.setDaemon(true);
+                return t;
             }
-        }
+        });
+        mEvictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (HostPool pool : mPools.values())
+                    pool.evictIdle();
+            }
+        }, IDLE_TIMEOUT_MS, IDLE_TIMEOUT_MS / 2, TimeUnit.MILLISECONDS);
+    }
 
-        return null;
+    public static synchronized SFTPSession getInstance() {
+        if (sshSession == null)
+            sshSession = new SFTPSession();
+        return sshSession;
+    }
 
+    public int getMaxChannelsPerSession() {
+        return mMaxChannelsPerSession;
     }
 
-    private synchronized void acquireSession(Channel channel){
-        try {
-            Session session = channel.getSession();
-            HashSet<Channel> channels = usedSessions.get(session);
-            if(channels == null) {
-                channels = new HashSet<>();
-                usedSessions.put(session, channels);
-            }
-            channels.add(channel);
-        } catch (JSchException e) {
-        }
+    /**
+     * Applies to the sessions opened afterwards
+     */
+    public void setMaxChannelsPerSession(int max) {
+        mMaxChannelsPerSession = Math.max(1, max);
+    }
+
+    /**
+     * @return a connected sftp channel, to be given back with releaseChannel
+     */
+    public Channel getSFTPChannel(Uri uri) throws JSchException {
+        HostPool pool = getPool(uri);
+        Channel channel = pool.borrow(uri);
+        mBorrowed.put(channel, pool);
+        return channel;
+    }
 
+    /**
+     * Gives back a channel obtained with getSFTPChannel, it is kept for reuse if it is still usable.
+     * Releasing a channel twice or a channel already disconnected is fine.
+     */
+    public void releaseChannel(Channel channel) {
+        if (channel == null)
+            return;
+        HostPool pool = mBorrowed.remove(channel);
+        if (pool != null)
+            pool.giveBack(channel, true);
+        else if (channel.isConnected())
+            channel.disconnect();
     }
 
-    public synchronized void releaseSession(Channel channel) {
-        try {
-            Session session = channel.getSession();
-            HashSet<Channel> channels = usedSessions.get(session);
-            boolean deleted = channels.remove(channel);
-            //We already deleted this channel before
-            if(!deleted) return;
-            if(channels.isEmpty()) {
-                //If this is our current session for this credential, keep it
-                if(currentSessions.values().contains(session)) return;
-                session.disconnect();
-                usedSessions.remove(session);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    /**
+     * Gives back a channel that must not be reused, e.g. after a failed transfer
+     */
+    public void invalidateChannel(Channel channel) {
+        if (channel == null)
+            return;
+        HostPool pool = mBorrowed.remove(channel);
+        if (pool != null)
+            pool.giveBack(channel, false);
+        else if (channel.isConnected())
+            channel.disconnect();
+    }
 
+    /**
+     * Called by ChannelSftp.disconnect(): a borrowed channel disconnected instead of released frees its slot
+     */
+    public void onChannelDisconnected(Channel channel) {
+        HostPool pool = mBorrowed.remove(channel);
+        if (pool != null)
+            pool.giveBack(channel, false);
     }
 
     /*
@@ -115,74 +154,221 @@ public class SFTPSession {
     For instance, scraping will ls / then ls /data, which would normally close the sftp connection
     on every request
      */
-    public synchronized void removeSession(Uri cred) {
-        for(Credential c : currentSessions.keySet()){
-            Uri uri = Uri.parse(c.getUriString());
-            if(!uri.getHost().equals(cred.getHost()) || uri.getPort()!=cred.getPort())
+    public void removeSession(Uri cred) {
+        Iterator<Map.Entry<Credential, HostPool>> it = mPools.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Credential, HostPool> entry = it.next();
+            Uri uri = Uri.parse(entry.getKey().getUriString());
+            if (!uri.getHost().equals(cred.getHost()) || uri.getPort() != cred.getPort())
                 continue;
-
-            Session s = currentSessions.get(c);
-            boolean doNotDisconnect = usedSessions.get(s) != null;
-            //If doNotDisconnect is true, it means there are still channels opened
-            //Since we are removing this session from currentSessions
-            //The session will be disconnected in releaseChannel
-            if(!doNotDisconnect) {
-                s.disconnect();
-            }
-
-            currentSessions.remove(c);
+            it.remove();
+            // channels in use are disconnected when released, the session with the last one
+            entry.getValue().retire();
         }
     }
 
-
     private Uri buildKeyFromUri(Uri uri) {
         // We use the Uri without the path segment as key: for example, "ftp://blabla.com:21/toto/titi" gives a "ftp://blabla.com:21" key
         return uri.buildUpon().path("").build();
     }
 
-
-    public synchronized Session getSession(Uri path) throws JSchException{
-        String username="anonymous";
-
-        String password = "";
+    private HostPool getPool(Uri path) {
         NetworkCredentialsDatabase database = NetworkCredentialsDatabase.getInstance();
         Credential cred = database.getCredential(path.toString());
-        if(cred==null){
-            cred = new Credential("anonymous","",buildKeyFromUri(path).toString(),"",true);
+        if (cred == null) {
+            cred = new Credential("anonymous", "", buildKeyFromUri(path).toString(), "", true);
+        }
+        HostPool pool = mPools.get(cred);
+        if (pool == null) {
+            HostPool newPool = new HostPool(cred, mMaxChannelsPerSession);
+            pool = mPools.putIfAbsent(cred, newPool);
+            if (pool == null)
+                pool = newPool;
+        }
+        return pool;
+    }
 
+    public Session getSession(Uri path) throws JSchException {
+        return getPool(path).getSession(path);
+    }
+
+    private static class IdleChannel {
+        final Channel channel;
+        final long since;
+
+        IdleChannel(Channel channel, long since) {
+            this.channel = channel;
+            this.since = since;
         }
+    }
 
-        password= cred.getPassword();
-        username = cred.getUsername();
+    private static class HostPool {
+        private final Credential mCredential;
+        private final Semaphore mPermits;
+        private final int mMaxIdle;
+        // most recently used first, guarded by this
+        private final ArrayDeque<IdleChannel> mIdle = new ArrayDeque<>();
+        private Session mSession;
+        private int mInUse;
+        private boolean mRetired;
 
-        Session session = currentSessions.get(cred);
-        if(session!=null){
-            if(!session.isConnected())
-                try {
-                    session.connect();
-                } catch (JSchException e1) {
-                    removeSession(path);
-                    return getSession(path);
+        HostPool(Credential credential, int maxChannels) {
+            mCredential = credential;
+            mPermits = new Semaphore(maxChannels, true);
+            mMaxIdle = maxChannels;
+        }
+
+        Channel borrow(Uri uri) throws JSchException {
+            try {
+                if (!mPermits.tryAcquire(CHANNEL_WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                    throw new JSchException("no sftp channel available for " + uri.getHost());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JSchException("interrupted while waiting for a sftp channel", e);
+            }
+            try {
+                Channel channel = pollIdle();
+                if (channel == null)
+                    channel = open(uri);
+                synchronized (this) {
+                    mInUse++;
                 }
-            return session;
+                return channel;
+            } catch (JSchException | RuntimeException e) {
+                mPermits.release();
+                throw e;
+            }
+        }
+
+        private Channel pollIdle() {
+            while (true) {
+                IdleChannel idle;
+                synchronized (this) {
+                    idle = mIdle.pollFirst();
+                }
+                if (idle == null)
+                    return null;
+                if (isHealthy(idle))
+                    return idle.channel;
+                log.debug("pollIdle: dropping broken channel to " + mCredential.getUriString());
+                idle.channel.disconnect();
+            }
         }
 
-        JSch jsch=new JSch();
-        try {
-            session = jsch.getSession(username, path.getHost(), path.getPort());
-            session.setPassword(password);
+        private boolean isHealthy(IdleChannel idle) {
+            Channel channel = idle.channel;
+            if (!channel.isConnected() || channel.isClosed())
+                return false;
+            if (System.currentTimeMillis() - idle.since < CHECK_AFTER_IDLE_MS)
+                return true;
+            try {
+                // cheap round trip, the server may have dropped the channel while idle
+                ((ChannelSftp) channel).realpath(".");
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        private Channel open(Uri uri) throws JSchException {
+            Session session = getSession(uri);
+            try {
+                return connectChannel(session);
+            } catch (JSchException e) {
+                //channel isn't openable, we have to reset the session !
+                log.debug("open: resetting session to " + uri.getHost(), e);
+                resetSession(session);
+                return connectChannel(getSession(uri));
+            }
+        }
+
+        private static Channel connectChannel(Session session) throws JSchException {
+            Channel channel = session.openChannel("sftp");
+            channel.connect();
+            return channel;
+        }
+
+        synchronized Session getSession(Uri path) throws JSchException {
+            if (mSession != null) {
+                if (!mSession.isConnected()) {
+                    try {
+                        mSession.connect();
+                    } catch (JSchException e1) {
+                        dropSession();
+                        return getSession(path);
+                    }
+                }
+                return mSession;
+            }
+            JSch jsch = new JSch();
+            Session session = jsch.getSession(mCredential.getUsername(), path.getHost(), path.getPort());
+            session.setPassword(mCredential.getPassword());
             java.util.Properties config = new java.util.Properties();
             config.put("StrictHostKeyChecking", "no");
             session.setConfig(config);
             session.connect();
-            currentSessions.put(cred, session);
+            mSession = session;
             return session;
-        } catch (JSchException e) {
-            // TODO Auto-generated catch block
-            throw e;
+        }
+
+        private synchronized void resetSession(Session session) {
+            if (mSession == session)
+                dropSession();
+        }
+
+        // the channels of the old session are disconnected when they are given back
+        private synchronized void dropSession() {
+            Session session = mSession;
+            mSession = null;
+            for (IdleChannel idle : mIdle)
+                idle.channel.disconnect();
+            mIdle.clear();
+            if (session != null && mInUse == 0)
+                session.disconnect();
+        }
 
+        void giveBack(Channel channel, boolean reusable) {
+            Session oldSession = null;
+            synchronized (this) {
+                mInUse--;
+                Session session = null;
+                try {
+                    session = channel.getSession();
+                } catch (JSchException ignored) {
+                    // not connected anymore
+                }
+                if (reusable && !mRetired && session != null && session == mSession
+                        && channel.isConnected() && !channel.isClosed() && mIdle.size() < mMaxIdle) {
+                    mIdle.addFirst(new IdleChannel(channel, System.currentTimeMillis()));
+                } else {
+                    channel.disconnect();
+                    // last channel of a session replaced or retired
+                    if (session != null && session != mSession && mInUse == 0)
+                        oldSession = session;
+                }
+            }
+            mPermits.release();
+            if (oldSession != null)
+                oldSession.disconnect();
         }
-        
 
+        void evictIdle() {
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                Iterator<IdleChannel> it = mIdle.iterator();
+                while (it.hasNext()) {
+                    IdleChannel idle = it.next();
+                    if (now - idle.since > IDLE_TIMEOUT_MS) {
+                        idle.channel.disconnect();
+                        it.remove();
+                    }
+                }
+            }
+        }
+
+        synchronized void retire() {
+            mRetired = true;
+            dropSession();
+        }
     }
 }
@@ -104,8 +104,9 @@ public class SFtpListingEngine extends ListingEngine {
 
     private final class SFtpListingThread extends Thread {
         public void run(){     
+            Channel channel = null;
             try {
-                Channel channel = SFTPSession.getInstance().getSFTPChannel(mUri);
+                channel = SFTPSession.getInstance().getSFTPChannel(mUri);
                 if(channel==null&&!mAbort ){
                     mUiHandler.post(new Runnable() {
                         public void run() {
@@ -248,7 +249,9 @@ public class SFtpListingEngine extends ListingEngine {
                             }
                         }
                     });
-            } 
+            } finally {
+                SFTPSession.getInstance().releaseChannel(channel);
+            }
         }
     }
 }
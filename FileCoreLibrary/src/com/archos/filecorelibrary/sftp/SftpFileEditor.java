@@ -24,6 +24,7 @@ import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
+import com.jcraft.jsch.SftpReadStats;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -53,7 +54,6 @@ public class SftpFileEditor  extends FileEditor{
             channel = SFTPSession.getInstance().getSFTPChannel(mUri);
             ChannelSftp channelSftp = (ChannelSftp)channel;
             channelSftp.mkdir(mUri.getPath());
-            channel.disconnect();
             return true;
         }
         catch (SftpException e) {
@@ -61,18 +61,27 @@ public class SftpFileEditor  extends FileEditor{
         } catch (JSchException e) {
             e.printStackTrace();
         } finally {
-            if(channel!=null&&channel.isConnected())
-                channel.disconnect();
+            SFTPSession.getInstance().releaseChannel(channel);
         }
         return false;
     }
 
-    private InputStream wrapInputStream(final InputStream is, final Channel channel) {
+    private InputStream wrapInputStream(final InputStream is, final Channel channel, final SftpReadStats stats) {
         return new InputStream() {
             @Override
             public void close() throws IOException {
-                is.close();
-                channel.disconnect();
+                boolean closed = false;
+                try {
+                    is.close();
+                    closed = true;
+                } finally {
+                    // a channel whose stream did not close cleanly may still have requests in flight
+                    if (closed)
+                        SFTPSession.getInstance().releaseChannel(channel);
+                    else
+                        SFTPSession.getInstance().invalidateChannel(channel);
+                }
+                if (DBG) Log.d(TAG, "close: " + mUri + " " + stats);
             }
 
             @Override
@@ -120,26 +129,55 @@ public class SftpFileEditor  extends FileEditor{
     @Override
     public InputStream getInputStream() throws FileNotFoundException, JSchException, SftpException {
         Channel channel = SFTPSession.getInstance().getSFTPChannel(mUri);
-        InputStream is = ((ChannelSftp)channel).get(mUri.getPath());
-        return wrapInputStream(is, channel);
+        SftpReadStats stats = new SftpReadStats();
+        InputStream is;
+        try {
+            is = ((ChannelSftp)channel).get(mUri.getPath(), null, 0L, stats);
+        } catch (SftpException e) {
+            SFTPSession.getInstance().releaseChannel(channel);
+            throw e;
+        }
+        return wrapInputStream(is, channel, stats);
     }
 
     @Override
     public InputStream getInputStream(long from) throws Exception {
         final Channel channel = SFTPSession.getInstance().getSFTPChannel(mUri);
-        InputStream is = ((ChannelSftp)channel).get(mUri.getPath(), null, from);
-        return wrapInputStream(is, channel);
+        // the read pipelining adapts to the link, see SftpReadStats
+        SftpReadStats stats = new SftpReadStats();
+        InputStream is;
+        try {
+            is = ((ChannelSftp)channel).get(mUri.getPath(), null, from, stats);
+        } catch (SftpException e) {
+            SFTPSession.getInstance().releaseChannel(channel);
+            throw e;
+        }
+        return wrapInputStream(is, channel, stats);
     }
 
     @Override
     public OutputStream getOutputStream() throws FileNotFoundException, JSchException, SftpException {
         final Channel channel = SFTPSession.getInstance().getSFTPChannel(mUri);
-        final OutputStream sftpOS = ((ChannelSftp)channel).put(mUri.getPath());
+        final OutputStream sftpOS;
+        try {
+            sftpOS = ((ChannelSftp)channel).put(mUri.getPath());
+        } catch (SftpException e) {
+            SFTPSession.getInstance().releaseChannel(channel);
+            throw e;
+        }
         return new OutputStream() {
             @Override
             public void close() throws IOException {
-                sftpOS.close();
-                channel.disconnect();
+                boolean closed = false;
+                try {
+                    sftpOS.close();
+                    closed = true;
+                } finally {
+                    if (closed)
+                        SFTPSession.getInstance().releaseChannel(channel);
+                    else
+                        SFTPSession.getInstance().invalidateChannel(channel);
+                }
             }
 
             @Override
@@ -171,8 +209,6 @@ public class SftpFileEditor  extends FileEditor{
             channel = SFTPSession.getInstance().getSFTPChannel(mUri);
             ((ChannelSftp)channel).rm(mUri.getPath());
         } catch (JSchException e) {
-            if(channel!=null&&channel.isConnected())
-                channel.disconnect();
             if(e.getCause() instanceof java.net.UnknownHostException)
                 throw new UnknownHostException();
             else
@@ -180,8 +216,7 @@ public class SftpFileEditor  extends FileEditor{
         } catch (SftpException e) {
             throw new Exception("permission");
         } finally {
-            if(channel!=null&&channel.isConnected())
-                channel.disconnect();
+            SFTPSession.getInstance().releaseChannel(channel);
         }
         return null;
     }
@@ -192,13 +227,11 @@ public class SftpFileEditor  extends FileEditor{
         try {
              channel = SFTPSession.getInstance().getSFTPChannel(mUri);
             ((ChannelSftp)channel).rename(mUri.getPath(), new File(new File(mUri.getPath()).getParentFile(), newName).getAbsolutePath());
-            channel.disconnect();
             return true;
         } catch (Exception e) {
             e.printStackTrace();
         }finally {
-            if(channel!=null&&channel.isConnected())
-                channel.disconnect();
+            SFTPSession.getInstance().releaseChannel(channel);
         }
         return false;
     }
@@ -211,13 +244,11 @@ public class SftpFileEditor  extends FileEditor{
         try {
             channel = SFTPSession.getInstance().getSFTPChannel(mUri);
             ((ChannelSftp)channel).rename(mUri.getPath(),uri.getPath());
-            channel.disconnect();
             return true;
         } catch (Exception e) {
             e.printStackTrace();
         }finally {
-            if(channel!=null&&channel.isConnected())
-                channel.disconnect();
+            SFTPSession.getInstance().releaseChannel(channel);
         }
         return false;
     }
@@ -229,17 +260,13 @@ public class SftpFileEditor  extends FileEditor{
         try {
             channel = SFTPSession.getInstance().getSFTPChannel(mUri);
             SftpATTRS attrs =  ((ChannelSftp)channel).stat(mUri.getPath());
-            channel.disconnect();
             return attrs !=null;
         } catch (Exception e) {
-            if(channel!=null&&channel.isConnected())
-                channel.disconnect();
             if (DBG) Log.d(TAG, mUri + " not found");
             //generating an exception is the way to check if the file/dir exists thus silence the stacktrace
             //e.printStackTrace();
         }finally {
-            if(channel!=null&&channel.isConnected())
-                channel.disconnect();
+            SFTPSession.getInstance().releaseChannel(channel);
         }
         return false;
     }
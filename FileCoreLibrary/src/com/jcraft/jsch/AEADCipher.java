@@ -0,0 +1,58 @@
+/* -*-mode:java; c-basic-offset:2; indent-tabs-mode:nil -*- */
+/*
+Copyright (c) 2002-2018 ymnk, JCraft,Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+  1. Redistributions of source code must retain the above copyright notice,
+     this list of conditions and the following disclaimer.
+
+  2. Redistributions in binary form must reproduce the above copyright 
+     notice, this list of conditions and the following disclaimer in 
+     the documentation and/or other materials provided with the distribution.
+
+  3. The names of the authors may not be used to endorse or promote products
+     derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JCRAFT,
+INC. OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.jcraft.jsch;
+
+/**
+ * Cipher with integrated authentication (RFC 5647 aes-gcm, chacha20-poly1305).
+ * The negotiated MAC is not used, the packet length is authenticated but
+ * not encrypted with the payload and a tag follows the packet.
+ * Session checks for this interface before using a cipher and then only
+ * calls seal(), open() and getPacketLength(): the tag covers the whole
+ * packet, so Cipher.update() cannot be used and throws.
+ */
+public interface AEADCipher extends Cipher{
+  int getTagSize();
+
+  /**
+   * Returns the packet length from the first 4 bytes of a received packet.
+   */
+  int getPacketLength(int seq, byte[] foo, int s) throws Exception;
+
+  /**
+   * Encrypts len bytes of packet in place, starting with the length field,
+   * and writes the tag after them.
+   */
+  void seal(int seq, byte[] foo, int s, int len) throws Exception;
+
+  /**
+   * Checks the tag following len bytes of packet and decrypts them in place.
+   */
+  void open(int seq, byte[] foo, int s, int len) throws Exception;
+}
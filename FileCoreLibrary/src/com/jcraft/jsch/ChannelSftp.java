@@ -184,6 +184,8 @@ public class ChannelSftp extends ChannelSession{
   private boolean fEncoding_is_utf8=true;
 
   private RequestQueue rq = new RequestQueue(16);
+  // maximum outstanding requests of a get() stream, see SftpReadStats
+  static private final int READ_REQUESTS_MAX=64;
 
   /**
    * Specify how many requests may be sent at any one time.
@@ -1199,6 +1201,7 @@ public class ChannelSftp extends ChannelSession{
       int id;
       long offset;
       long length;
+      long sent;
     }
 
     Request[] rrq=null;
@@ -1222,6 +1225,7 @@ public class ChannelSftp extends ChannelSession{
       rrq[tail].id=id;
       rrq[tail].offset=offset;
       rrq[tail].length=length;
+      rrq[tail].sent=System.nanoTime();
       count++;
     }
 
@@ -1307,6 +1311,17 @@ public class ChannelSftp extends ChannelSession{
     return get(src, monitor, 0L);
   }
   public InputStream get(String src, final SftpProgressMonitor monitor, final long skip) throws SftpException{
+    return get(src, monitor, skip, new SftpReadStats());
+  }
+
+  /**
+   * The number and size of the outstanding read requests follow the
+   * round trip time and throughput measured in <code>stats</code>.
+   *
+   * @param stats statistics of the returned stream, updated while it is read
+   */
+  public InputStream get(String src, final SftpProgressMonitor monitor, final long skip,
+                         final SftpReadStats stats) throws SftpException{
 
     try{
       ((MyPipedInputStream)io_in).updateReadSide();
@@ -1340,7 +1355,17 @@ public class ChannelSftp extends ChannelSession{
 
       final byte[] handle=buf.getString();         // handle
 
-      rq.init();
+      final long size=attr.getSize();
+      // reads may go deeper than the bulk requests of the writes
+      final RequestQueue rq=new RequestQueue(Math.max(this.rq.size(), READ_REQUESTS_MAX));
+      int request_size=buf.buffer.length-13;
+      if(server_version==0){
+        stats.init(1024, 1024, rq.size(), LOCAL_WINDOW_SIZE_MAX);
+      }
+      else{
+        stats.init(request_size, Math.max(request_size, SftpReadStats.MAX_REQUEST_SIZE),
+                   rq.size(), LOCAL_WINDOW_SIZE_MAX);
+      }
 
       java.io.InputStream in=new java.io.InputStream(){
            long offset=skip;
@@ -1349,7 +1374,6 @@ public class ChannelSftp extends ChannelSession{
            byte[] _data=new byte[1];
            byte[] rest_byte=new byte[1024];
            Header header=new Header();
-           int request_max=1;
            long request_offset=offset;
 
            public int read() throws java.io.IOException{
@@ -1403,10 +1427,8 @@ public class ChannelSftp extends ChannelSession{
                 || true // working around slow transfer speed for
                         // some sftp servers including Titan FTP.
                ) {
-               int request_len = buf.buffer.length-13;
-               if(server_version==0){ request_len=1024; }
-
-               while(rq.count() < request_max){
+               while(rq.count() < stats.requests()){
+                 int request_len=stats.requestSize();
                  try{
                    sendREAD(handle, request_offset, request_len, rq);
                  }
@@ -1498,6 +1520,9 @@ public class ChannelSftp extends ChannelSession{
                  io_in.skip(optional_data);
                }
 
+               stats.update(rr.sent, (int)rr.length, length_of_data,
+                            rr.offset+length_of_data>=size);
+
                if(length_of_data<rr.length){  //
                  rq.cancel(header, buf);
                  try {
@@ -1509,10 +1534,6 @@ public class ChannelSftp extends ChannelSession{
                  request_offset=rr.offset+rr.length;
                }
 
-               if(request_max < rq.size()){
-                 request_max++;
-               }
-
                if(monitor!=null){
                  if(!monitor.count(i)){
                    close();
@@ -2489,8 +2510,6 @@ public class ChannelSftp extends ChannelSession{
     return true;
   }
   private boolean _sendCLOSE(byte[] handle, Header header) throws Exception{
-    //release session so that it can be disconnected if needed
-    SFTPSession.getInstance().releaseSession(this);
     sendCLOSE(handle);
     return checkStatus(null, header);
   }
@@ -2886,7 +2905,8 @@ public class ChannelSftp extends ChannelSession{
 
   public void disconnect(){
     super.disconnect();
-    SFTPSession.getInstance().releaseSession(this);
+    //a pooled channel disconnected by its user is given back to the pool
+    SFTPSession.getInstance().onChannelDisconnected(this);
   }
 
   private boolean isPattern(String path, byte[][] utf8){
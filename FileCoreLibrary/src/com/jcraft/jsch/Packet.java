@@ -43,8 +43,12 @@ public class Packet{
     buffer.index=5;
   }
   void padding(int bsize){
+    padding(bsize, true);
+  }
+  // AEAD ciphers do not encrypt the packet length, it is left out of the blocks
+  void padding(int bsize, boolean includePktLen){
     int len=buffer.index;
-    int pad=(-len)&(bsize-1);
+    int pad=(-(includePktLen ? len : len-4))&(bsize-1);
     if(pad<bsize){
       pad+=bsize;
     }
@@ -890,7 +890,7 @@ key_type+" key fingerprint is "+key_fprint+".\n"+
     }
     if(c2scipher!=null){
       //packet.padding(c2scipher.getIVSize());
-      packet.padding(c2scipher_size);
+      packet.padding(c2scipher_size, !(c2scipher instanceof AEADCipher));
       int pad=packet.buffer.buffer[4];
       synchronized(random){
 	random.fill(packet.buffer.buffer, packet.buffer.index-pad, pad);
@@ -900,6 +900,13 @@ key_type+" key fingerprint is "+key_fprint+".\n"+
       packet.padding(8);
     }
 
+    if(c2scipher instanceof AEADCipher){
+      AEADCipher aead=(AEADCipher)c2scipher;
+      aead.seal(seqo, packet.buffer.buffer, 0, packet.buffer.index);
+      packet.buffer.skip(aead.getTagSize());
+      return;
+    }
+
     if(c2smac!=null){
       c2smac.update(seqo);
       c2smac.update(packet.buffer.buffer, 0, packet.buffer.index);
@@ -923,57 +930,62 @@ key_type+" key fingerprint is "+key_fprint+".\n"+
     int j=0;
     while(true){
       buf.reset();
-      io.getByte(buf.buffer, buf.index, s2ccipher_size); 
-      buf.index+=s2ccipher_size;
-      if(s2ccipher!=null){
-        s2ccipher.update(buf.buffer, 0, s2ccipher_size, buf.buffer, 0);
-      }
-      j=((buf.buffer[0]<<24)&0xff000000)|
-        ((buf.buffer[1]<<16)&0x00ff0000)|
-        ((buf.buffer[2]<< 8)&0x0000ff00)|
-        ((buf.buffer[3]    )&0x000000ff);
-      // RFC 4253 6.1. Maximum Packet Length
-      if(j<5 || j>PACKET_MAX_SIZE){
-        start_discard(buf, s2ccipher, s2cmac, j, PACKET_MAX_SIZE);
-      }
-      int need = j+4-s2ccipher_size;
-      //if(need<0){
-      //  throw new IOException("invalid data");
-      //}
-      if((buf.index+need)>buf.buffer.length){
-        byte[] foo=new byte[buf.index+need];
-        System.arraycopy(buf.buffer, 0, foo, 0, buf.index);
-        buf.buffer=foo;
-      }
-
-      if((need%s2ccipher_size)!=0){
-        String message="Bad packet length "+need;
-        if(JSch.getLogger().isEnabled(Logger.FATAL)){
-          JSch.getLogger().log(Logger.FATAL, message); 
-        }
-        start_discard(buf, s2ccipher, s2cmac, j, PACKET_MAX_SIZE-s2ccipher_size);
+      if(s2ccipher instanceof AEADCipher){
+        readAEAD(buf, (AEADCipher)s2ccipher);
       }
+      else{
+        io.getByte(buf.buffer, buf.index, s2ccipher_size); 
+        buf.index+=s2ccipher_size;
+        if(s2ccipher!=null){
+          s2ccipher.update(buf.buffer, 0, s2ccipher_size, buf.buffer, 0);
+        }
+        j=((buf.buffer[0]<<24)&0xff000000)|
+          ((buf.buffer[1]<<16)&0x00ff0000)|
+          ((buf.buffer[2]<< 8)&0x0000ff00)|
+          ((buf.buffer[3]    )&0x000000ff);
+        // RFC 4253 6.1. Maximum Packet Length
+        if(j<5 || j>PACKET_MAX_SIZE){
+          start_discard(buf, s2ccipher, s2cmac, j, PACKET_MAX_SIZE);
+        }
+        int need = j+4-s2ccipher_size;
+        //if(need<0){
+        //  throw new IOException("invalid data");
+        //}
+        if((buf.index+need)>buf.buffer.length){
+          byte[] foo=new byte[buf.index+need];
+          System.arraycopy(buf.buffer, 0, foo, 0, buf.index);
+          buf.buffer=foo;
+        }
 
-      if(need>0){
-	io.getByte(buf.buffer, buf.index, need); buf.index+=(need);
-	if(s2ccipher!=null){
-	  s2ccipher.update(buf.buffer, s2ccipher_size, need, buf.buffer, s2ccipher_size);
-	}
-      }
+        if((need%s2ccipher_size)!=0){
+          String message="Bad packet length "+need;
+          if(JSch.getLogger().isEnabled(Logger.FATAL)){
+            JSch.getLogger().log(Logger.FATAL, message); 
+          }
+          start_discard(buf, s2ccipher, s2cmac, j, PACKET_MAX_SIZE-s2ccipher_size);
+        }
 
-      if(s2cmac!=null){
-	s2cmac.update(seqi);
-	s2cmac.update(buf.buffer, 0, buf.index);
+        if(need>0){
+          io.getByte(buf.buffer, buf.index, need); buf.index+=(need);
+          if(s2ccipher!=null){
+            s2ccipher.update(buf.buffer, s2ccipher_size, need, buf.buffer, s2ccipher_size);
+          }
+        }
 
-        s2cmac.doFinal(s2cmac_result1, 0);
-	io.getByte(s2cmac_result2, 0, s2cmac_result2.length);
-        if(!java.util.Arrays.equals(s2cmac_result1, s2cmac_result2)){
-          if(need > PACKET_MAX_SIZE){
-            throw new IOException("MAC Error");
+        if(s2cmac!=null){
+          s2cmac.update(seqi);
+          s2cmac.update(buf.buffer, 0, buf.index);
+
+          s2cmac.doFinal(s2cmac_result1, 0);
+          io.getByte(s2cmac_result2, 0, s2cmac_result2.length);
+          if(!java.util.Arrays.equals(s2cmac_result1, s2cmac_result2)){
+            if(need > PACKET_MAX_SIZE){
+              throw new IOException("MAC Error");
+            }
+            start_discard(buf, s2ccipher, s2cmac, j, PACKET_MAX_SIZE-need);
+            continue;
           }
-          start_discard(buf, s2ccipher, s2cmac, j, PACKET_MAX_SIZE-need);
-          continue;
-	}
+        }
       }
 
       seqi++;
@@ -1059,6 +1071,31 @@ key_type+" key fingerprint is "+key_fprint+".\n"+
     return buf;
   }
 
+  // the packet length is not encrypted with the payload, there is no MAC
+  private void readAEAD(Buffer buf, AEADCipher cipher) throws Exception{
+    io.getByte(buf.buffer, buf.index, 4);
+    buf.index+=4;
+    int j=cipher.getPacketLength(seqi, buf.buffer, 0);
+    // RFC 4253 6.1. Maximum Packet Length
+    if(j<5 || j>PACKET_MAX_SIZE || (j%s2ccipher_size)!=0){
+      throw new JSchException("Packet corrupt");
+    }
+    int need=j+cipher.getTagSize();
+    if((buf.index+need)>buf.buffer.length){
+      byte[] foo=new byte[buf.index+need];
+      System.arraycopy(buf.buffer, 0, foo, 0, buf.index);
+      buf.buffer=foo;
+    }
+    io.getByte(buf.buffer, buf.index, need);
+    buf.index+=j;
+    try{
+      cipher.open(seqi, buf.buffer, 0, buf.index);
+    }
+    catch(Exception e){
+      throw new IOException("MAC Error");
+    }
+  }
+
   private void start_discard(Buffer buf, Cipher cipher, MAC mac, 
                              int packet_length, int discard) throws JSchException, IOException{
     MAC discard_mac = null;
@@ -1169,14 +1206,20 @@ key_type+" key fingerprint is "+key_fprint+".\n"+
       s2ccipher.init(Cipher.DECRYPT_MODE, Es2c, IVs2c);
       s2ccipher_size=s2ccipher.getIVSize();
 
-      method=guess[KeyExchange.PROPOSAL_MAC_ALGS_STOC];
-      c=Class.forName(getConfig(method));
-      s2cmac=(MAC)(c.newInstance());
-      MACs2c = expandKey(buf, K, H, MACs2c, hash, s2cmac.getBlockSize());
-      s2cmac.init(MACs2c);
-      //mac_buf=new byte[s2cmac.getBlockSize()];
-      s2cmac_result1=new byte[s2cmac.getBlockSize()];
-      s2cmac_result2=new byte[s2cmac.getBlockSize()];
+      if(s2ccipher instanceof AEADCipher){
+        // the negotiated MAC is not used
+        s2cmac=null;
+      }
+      else{
+        method=guess[KeyExchange.PROPOSAL_MAC_ALGS_STOC];
+        c=Class.forName(getConfig(method));
+        s2cmac=(MAC)(c.newInstance());
+        MACs2c = expandKey(buf, K, H, MACs2c, hash, s2cmac.getBlockSize());
+        s2cmac.init(MACs2c);
+        //mac_buf=new byte[s2cmac.getBlockSize()];
+        s2cmac_result1=new byte[s2cmac.getBlockSize()];
+        s2cmac_result2=new byte[s2cmac.getBlockSize()];
+      }
 
       method=guess[KeyExchange.PROPOSAL_ENC_ALGS_CTOS];
       c=Class.forName(getConfig(method));
@@ -1196,11 +1239,16 @@ key_type+" key fingerprint is "+key_fprint+".\n"+
       c2scipher.init(Cipher.ENCRYPT_MODE, Ec2s, IVc2s);
       c2scipher_size=c2scipher.getIVSize();
 
-      method=guess[KeyExchange.PROPOSAL_MAC_ALGS_CTOS];
-      c=Class.forName(getConfig(method));
-      c2smac=(MAC)(c.newInstance());
-      MACc2s = expandKey(buf, K, H, MACc2s, hash, c2smac.getBlockSize());
-      c2smac.init(MACc2s);
+      if(c2scipher instanceof AEADCipher){
+        c2smac=null;
+      }
+      else{
+        method=guess[KeyExchange.PROPOSAL_MAC_ALGS_CTOS];
+        c=Class.forName(getConfig(method));
+        c2smac=(MAC)(c.newInstance());
+        MACc2s = expandKey(buf, K, H, MACc2s, hash, c2smac.getBlockSize());
+        c2smac.init(MACc2s);
+      }
 
       method=guess[KeyExchange.PROPOSAL_COMP_ALGS_CTOS];
       initDeflater(method);
@@ -1302,7 +1350,8 @@ key_type+" key fingerprint is "+key_fprint+".\n"+
           if(len!=length){
             s=packet.shift((int)len, 
                            (c2scipher!=null ? c2scipher_size : 8),
-                           (c2smac!=null ? c2smac.getBlockSize() : 0));
+                           (c2smac!=null ? c2smac.getBlockSize() :
+                            c2scipher instanceof AEADCipher ? ((AEADCipher)c2scipher).getTagSize() : 0));
           }
 	  command=packet.buffer.getCommand();
 	  recipient=c.getRecipient();
@@ -0,0 +1,160 @@
+/* -*-mode:java; c-basic-offset:2; indent-tabs-mode:nil -*- */
+/*
+Copyright (c) 2002-2018 ymnk, JCraft,Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+  1. Redistributions of source code must retain the above copyright notice,
+     this list of conditions and the following disclaimer.
+
+  2. Redistributions in binary form must reproduce the above copyright 
+     notice, this list of conditions and the following disclaimer in 
+     the documentation and/or other materials provided with the distribution.
+
+  3. The names of the authors may not be used to endorse or promote products
+     derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JCRAFT,
+INC. OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.jcraft.jsch;
+
+/**
+ * Statistics of a stream returned by ChannelSftp.get(), also used to tune
+ * its read pipelining.
+ *
+ * The bytes in flight follow twice the bandwidth-delay product measured
+ * from the lowest round trip time and the throughput of the last interval,
+ * so that a distant server is read with many large requests while a LAN
+ * server keeps a few small ones and short seek latencies. The request size
+ * only grows when the number of requests alone is not enough, and shrinks
+ * to what the server returns when it caps the reads.
+ */
+public class SftpReadStats {
+  // OpenSSH sftp-server caps reads to 256KB minus its header margin
+  static final int MAX_REQUEST_SIZE=255*1024;
+  // throughput is measured over this interval
+  private static final long INTERVAL=200*1000*1000L;
+
+  private int requestSize;
+  private int maxRequestSize;
+  private int maxRequests;
+  private int maxBytesInFlight;
+  private int requests=1;
+  private boolean measured=false;
+
+  private long bytes=0;
+  private long responses=0;
+  private long shortReads=0;
+  private long minRtt=Long.MAX_VALUE;
+  private long rtt=0;
+  private long throughput=0;
+
+  private long intervalStart=0;
+  private long intervalBytes=0;
+
+  void init(int requestSize, int maxRequestSize, int maxRequests, int maxBytesInFlight){
+    this.requestSize=requestSize;
+    this.maxRequestSize=maxRequestSize;
+    this.maxRequests=maxRequests;
+    this.maxBytesInFlight=maxBytesInFlight;
+    requests=1;
+    measured=false;
+    intervalStart=0;
+    intervalBytes=0;
+  }
+
+  int requestSize(){ return requestSize; }
+  int requests(){ return requests; }
+
+  /**
+   * @param sent System.nanoTime() when the request was sent
+   * @param requested length of the request
+   * @param length length of the returned data
+   * @param eof the data ends at the end of file
+   */
+  void update(long sent, int requested, int length, boolean eof){
+    long now=System.nanoTime();
+    long sample=now-sent;
+    if(sample<minRtt) minRtt=sample;
+    rtt=(rtt==0) ? sample : (7*rtt+sample)/8;
+    bytes+=length;
+    responses++;
+
+    if(length<requested && !eof && length>0){
+      // the server caps the reads
+      shortReads++;
+      if(length<maxRequestSize){
+        maxRequestSize=length;
+        if(requestSize>length) requestSize=length;
+      }
+    }
+
+    if(intervalStart==0){
+      intervalStart=now;
+    }
+    else{
+      intervalBytes+=length;
+      if(now-intervalStart>=INTERVAL){
+        throughput=intervalBytes*1000000000L/(now-intervalStart);
+        intervalStart=now;
+        intervalBytes=0;
+        measured=true;
+        tune();
+        return;
+      }
+    }
+
+    // slow start until the first measure, as before
+    if(!measured && requests<maxRequests){
+      requests++;
+    }
+  }
+
+  private void tune(){
+    long target=2*throughput*minRtt/1000000000L;
+    if(target>maxBytesInFlight) target=maxBytesInFlight;
+    long _requests=(target+requestSize-1)/requestSize;
+    while(_requests>maxRequests && requestSize<maxRequestSize){
+      requestSize=Math.min(requestSize*2, maxRequestSize);
+      _requests=(target+requestSize-1)/requestSize;
+    }
+    if(_requests>maxRequests) _requests=maxRequests;
+    if(_requests<2) _requests=2;
+    while(_requests>1 && _requests*requestSize>maxBytesInFlight) _requests--;
+    requests=(int)_requests;
+  }
+
+  /** @return bytes received */
+  public long getBytes(){ return bytes; }
+  /** @return data responses received */
+  public long getResponses(){ return responses; }
+  /** @return responses shorter than requested before the end of file */
+  public long getShortReads(){ return shortReads; }
+  /** @return lowest round trip time in microseconds */
+  public long getMinRtt(){ return minRtt==Long.MAX_VALUE ? 0 : minRtt/1000; }
+  /** @return smoothed round trip time in microseconds, including the time the data waited to be read */
+  public long getRtt(){ return rtt/1000; }
+  /** @return throughput of the last interval in bytes per second */
+  public long getThroughput(){ return throughput; }
+  /** @return current number of outstanding requests */
+  public int getRequests(){ return requests; }
+  /** @return current request size */
+  public int getRequestSize(){ return requestSize; }
+
+  public String toString(){
+    return "bytes="+bytes+" responses="+responses+" shortReads="+shortReads+
+           " minRtt="+getMinRtt()+"us rtt="+getRtt()+"us throughput="+throughput+
+           "B/s requests="+requests+" requestSize="+requestSize;
+  }
+}
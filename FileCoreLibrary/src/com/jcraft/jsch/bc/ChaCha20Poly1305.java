@@ -0,0 +1,136 @@
+/* -*-mode:java; c-basic-offset:2; indent-tabs-mode:nil -*- */
+/*
+Copyright (c) 2002-2018 ymnk, JCraft,Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+  1. Redistributions of source code must retain the above copyright notice,
+     this list of conditions and the following disclaimer.
+
+  2. Redistributions in binary form must reproduce the above copyright 
+     notice, this list of conditions and the following disclaimer in 
+     the documentation and/or other materials provided with the distribution.
+
+  3. The names of the authors may not be used to endorse or promote products
+     derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JCRAFT,
+INC. OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.jcraft.jsch.bc;
+
+import com.jcraft.jsch.AEADCipher;
+import org.bouncycastle.crypto.engines.ChaChaEngine;
+import org.bouncycastle.crypto.macs.Poly1305;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.params.ParametersWithIV;
+
+/**
+ * chacha20-poly1305@openssh.com, see PROTOCOL.chacha20poly1305 in OpenSSH.
+ * The 64 bytes key holds the payload key followed by the length key, the
+ * nonce is the packet sequence number. Uses the original chacha20 with a
+ * 64 bits nonce, which JCE does not provide.
+ */
+public class ChaCha20Poly1305 implements AEADCipher{
+  // padding block size, there is no iv
+  private static final int ivsize=8;
+  private static final int bsize=64;
+  private static final int tagsize=16;
+  private int mode;
+  private KeyParameter payloadKey;
+  private KeyParameter lengthKey;
+  private final ChaChaEngine payloadCipher=new ChaChaEngine();
+  private final ChaChaEngine lengthCipher=new ChaChaEngine();
+  private final Poly1305 poly=new Poly1305();
+  private final byte[] nonce=new byte[8];
+  private final byte[] polyKey=new byte[64];
+  private final byte[] tag=new byte[tagsize];
+  private final byte[] plen=new byte[4];
+
+  public int getIVSize(){return ivsize;}
+  public int getBlockSize(){return bsize;}
+  public int getTagSize(){return tagsize;}
+  public void init(int mode, byte[] key, byte[] iv) throws Exception{
+    byte[] tmp=new byte[32];
+    System.arraycopy(key, 0, tmp, 0, 32);
+    payloadKey=new KeyParameter(tmp);
+    tmp=new byte[32];
+    System.arraycopy(key, 32, tmp, 0, 32);
+    lengthKey=new KeyParameter(tmp);
+    this.mode=mode;
+  }
+
+  private void setNonce(int seq){
+    // uint64 sequence number, JSch counts packets with an int
+    long _seq=seq&0xffffffffL;
+    for(int i=7; i>=0; i--){
+      nonce[i]=(byte)_seq;
+      _seq>>>=8;
+    }
+  }
+
+  // block 0 of the payload key stream is the poly1305 key, the payload starts at block 1
+  private void initPayload() {
+    payloadCipher.init(mode==ENCRYPT_MODE, new ParametersWithIV(payloadKey, nonce));
+    java.util.Arrays.fill(polyKey, (byte)0);
+    payloadCipher.processBytes(polyKey, 0, polyKey.length, polyKey, 0);
+    poly.init(new KeyParameter(polyKey, 0, 32));
+  }
+
+  public int getPacketLength(int seq, byte[] foo, int s) throws Exception{
+    setNonce(seq);
+    lengthCipher.init(false, new ParametersWithIV(lengthKey, nonce));
+    lengthCipher.processBytes(foo, s, 4, plen, 0);
+    return ((plen[0]<<24)&0xff000000)|
+           ((plen[1]<<16)&0x00ff0000)|
+           ((plen[2]<< 8)&0x0000ff00)|
+           ((plen[3]    )&0x000000ff);
+  }
+
+  public void seal(int seq, byte[] foo, int s, int len) throws Exception{
+    setNonce(seq);
+    lengthCipher.init(true, new ParametersWithIV(lengthKey, nonce));
+    lengthCipher.processBytes(foo, s, 4, foo, s);
+    initPayload();
+    payloadCipher.processBytes(foo, s+4, len-4, foo, s+4);
+    poly.update(foo, s, len);
+    poly.doFinal(foo, s+len);
+  }
+
+  public void open(int seq, byte[] foo, int s, int len) throws Exception{
+    setNonce(seq);
+    initPayload();
+    poly.update(foo, s, len);
+    poly.doFinal(tag, 0);
+    int diff=0;
+    for(int i=0; i<tagsize; i++){
+      diff|=tag[i]^foo[s+len+i];
+    }
+    if(diff!=0){
+      throw new javax.crypto.AEADBadTagException("chacha20-poly1305 tag mismatch");
+    }
+    // length was already decrypted by getPacketLength
+    System.arraycopy(plen, 0, foo, s, 4);
+    payloadCipher.processBytes(foo, s+4, len-4, foo, s+4);
+  }
+
+  /**
+   * Not used: Session seals and opens whole packets of AEAD ciphers, a tag
+   * cannot be computed or checked from partial updates.
+   */
+  public void update(byte[] foo, int s1, int len, byte[] bar, int s2) throws Exception{
+    throw new UnsupportedOperationException("AEAD cipher, use seal() or open()");
+  }
+
+  public boolean isCBC(){return false; }
+}
@@ -0,0 +1,123 @@
+/* -*-mode:java; c-basic-offset:2; indent-tabs-mode:nil -*- */
+/*
+Copyright (c) 2008-2018 ymnk, JCraft,Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+  1. Redistributions of source code must retain the above copyright notice,
+     this list of conditions and the following disclaimer.
+
+  2. Redistributions in binary form must reproduce the above copyright 
+     notice, this list of conditions and the following disclaimer in 
+     the documentation and/or other materials provided with the distribution.
+
+  3. The names of the authors may not be used to endorse or promote products
+     derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED WARRANTIES,
+INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JCRAFT,
+INC. OR ANY CONTRIBUTORS TO THIS SOFTWARE BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA,
+OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.jcraft.jsch.jce;
+
+import com.jcraft.jsch.AEADCipher;
+import javax.crypto.spec.*;
+
+public abstract class AESGCM implements AEADCipher{
+  // padding block size, only the first 12 bytes of the derived iv are used
+  private static final int ivsize=16;
+  private static final int noncesize=12;
+  private static final int tagsize=16;
+  private javax.crypto.Cipher cipher;
+  private int mode;
+  private SecretKeySpec keyspec;
+  private byte[] nonce;
+
+  protected abstract int getKeySize();
+
+  public int getIVSize(){return ivsize;}
+  public int getBlockSize(){return getKeySize();}
+  public int getTagSize(){return tagsize;}
+  public void init(int mode, byte[] key, byte[] iv) throws Exception{
+    byte[] tmp;
+    tmp=new byte[noncesize];
+    System.arraycopy(iv, 0, tmp, 0, tmp.length);
+    nonce=tmp;
+    int bsize=getKeySize();
+    if(key.length>bsize){
+      tmp=new byte[bsize];
+      System.arraycopy(key, 0, tmp, 0, tmp.length);
+      key=tmp;
+    }
+    this.mode=mode;
+    try{
+      keyspec=new SecretKeySpec(key, "AES");
+      cipher=javax.crypto.Cipher.getInstance("AES/GCM/NoPadding");
+      synchronized(javax.crypto.Cipher.class){
+        initCipher();
+      }
+    }
+    catch(Exception e){
+      cipher=null;
+      throw e;
+    }
+  }
+
+  private void initCipher() throws Exception{
+    cipher.init((mode==ENCRYPT_MODE?
+                 javax.crypto.Cipher.ENCRYPT_MODE:
+                 javax.crypto.Cipher.DECRYPT_MODE),
+                keyspec, new GCMParameterSpec(tagsize*8, nonce));
+  }
+
+  // RFC 5647 7.1: the invocation counter is the last 8 bytes of the nonce
+  private void nextNonce() throws Exception{
+    for(int i=noncesize-1; i>=4; i--){
+      if(++nonce[i]!=0) break;
+    }
+    initCipher();
+  }
+
+  public int getPacketLength(int seq, byte[] foo, int s) throws Exception{
+    return ((foo[s]<<24)&0xff000000)|
+           ((foo[s+1]<<16)&0x00ff0000)|
+           ((foo[s+2]<< 8)&0x0000ff00)|
+           ((foo[s+3]    )&0x000000ff);
+  }
+
+  public void seal(int seq, byte[] foo, int s, int len) throws Exception{
+    cipher.updateAAD(foo, s, 4);
+    cipher.doFinal(foo, s+4, len-4, foo, s+4);
+    nextNonce();
+  }
+
+  public void open(int seq, byte[] foo, int s, int len) throws Exception{
+    cipher.updateAAD(foo, s, 4);
+    try{
+      cipher.doFinal(foo, s+4, len-4+tagsize, foo, s+4);
+    }
+    finally{
+      // the cipher has to be reset after a failure too
+      nextNonce();
+    }
+  }
+
+  /**
+   * Not used: Session seals and opens whole packets of AEAD ciphers, a tag
+   * cannot be computed or checked from partial updates.
+   */
+  public void update(byte[] foo, int s1, int len, byte[] bar, int s2) throws Exception{
+    throw new UnsupportedOperationException("AEAD cipher, use seal() or open()");
+  }
+
+  public boolean isCBC(){return false; }
+}
@@ -0,0 +1,29 @@
+// Copyright 2017 Archos SA
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediacenter.filecoreextension.upnp2;
+
+import org.fourthline.cling.UpnpServiceConfiguration;
+import org.fourthline.cling.android.AndroidUpnpServiceImpl;
+
+/**
+ * AndroidUpnpServiceImpl running with {@link BoundedUpnpServiceConfiguration} instead of one unbounded thread pool
+ */
+public class BoundedUpnpService extends AndroidUpnpServiceImpl {
+
+    @Override
+    protected UpnpServiceConfiguration createConfiguration() {
+        return new BoundedUpnpServiceConfiguration();
+    }
+}
@@ -0,0 +1,318 @@
+// Copyright 2017 Archos SA
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediacenter.filecoreextension.upnp2;
+
+import android.os.Looper;
+import android.util.Log;
+
+import org.fourthline.cling.android.AndroidUpnpServiceConfiguration;
+import org.seamless.util.Exceptions;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cling runs everything (network receivers, the http server, the protocols triggered by each
+ * received datagram...) in one unbounded cached thread pool: a busy LAN with dozens of renderers
+ * answering and announcing themselves ends up with hundreds of threads.
+ * This configuration gives each role its own bounded pool. When a pool is full, protocols are run
+ * by the thread submitting them, which slows down whoever is producing the work (e.g. the datagram
+ * receiver, the kernel drops what it cannot buffer meanwhile) instead of adding threads.
+ * The main thread must not block, what it submits to a full pool is handed to a small pool of its own.
+ */
+public class BoundedUpnpServiceConfiguration extends AndroidUpnpServiceConfiguration {
+
+    private final static String TAG = "BoundedUpnpServiceConf";
+
+    // multicast receivers, datagram IO and registry maintainer loop forever: one thread each, never queued.
+    // There are one or two of each per network interface.
+    public static final int DEFAULT_RECEIVER_THREADS = 16;
+    // jetty acceptor and selector included
+    public static final int DEFAULT_STREAM_SERVER_THREADS = 8;
+    public static final int DEFAULT_STREAM_SERVER_QUEUE = 32;
+    public static final int DEFAULT_ASYNC_PROTOCOL_THREADS = 8;
+    public static final int DEFAULT_ASYNC_PROTOCOL_QUEUE = 64;
+    // sync protocols wait for http requests run in this same pool: a queued request could wait for
+    // the protocol waiting for it, so no queue, the caller runs the request when all threads are busy
+    public static final int DEFAULT_SYNC_PROTOCOL_THREADS = 8;
+    // the registry listeners pool is created by the super constructor, before ours can size it
+    private static final int REGISTRY_LISTENER_THREADS = 2;
+    private static final int REGISTRY_LISTENER_QUEUE = 128;
+    // tasks the main thread submits to a full pool, e.g. the first browse of a server (sync protocol)
+    // or a search (async protocol) while the renderers of the LAN are answering the previous one.
+    // They do not wait for each other: their own http requests are run by the pool or by their thread
+    private static final int MAIN_THREAD_HANDOFF_THREADS = 2;
+    private static final int MAIN_THREAD_HANDOFF_QUEUE = 16;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private BoundedExecutor mReceiverExecutor;
+    private BoundedExecutor mStreamServerExecutor;
+    private BoundedExecutor mAsyncProtocolExecutor;
+    private BoundedExecutor mSyncProtocolExecutor;
+
+    public BoundedUpnpServiceConfiguration() {
+        this(0); // Ephemeral port
+    }
+
+    public BoundedUpnpServiceConfiguration(int streamListenPort) {
+        this(streamListenPort, DEFAULT_RECEIVER_THREADS, DEFAULT_STREAM_SERVER_THREADS, DEFAULT_STREAM_SERVER_QUEUE,
+                DEFAULT_ASYNC_PROTOCOL_THREADS, DEFAULT_ASYNC_PROTOCOL_QUEUE, DEFAULT_SYNC_PROTOCOL_THREADS);
+    }
+
+    /**
+     * @param receiverThreads must cover the receivers of all the network interfaces, they never return
+     * @param syncProtocolThreads the sync protocols pool has no queue, see DEFAULT_SYNC_PROTOCOL_THREADS
+     */
+    public BoundedUpnpServiceConfiguration(int streamListenPort, int receiverThreads,
+                                           int streamServerThreads, int streamServerQueue,
+                                           int asyncProtocolThreads, int asyncProtocolQueue,
+                                           int syncProtocolThreads) {
+        super(streamListenPort);
+        mReceiverExecutor = new BoundedExecutor("receiver", receiverThreads, 0, BackPressure.NONE);
+        mStreamServerExecutor = new BoundedExecutor("stream-server", streamServerThreads, streamServerQueue, BackPressure.NONE);
+        mAsyncProtocolExecutor = new BoundedExecutor("async", asyncProtocolThreads, asyncProtocolQueue, BackPressure.CALLER_RUNS_OFF_MAIN_THREAD);
+        mSyncProtocolExecutor = new BoundedExecutor("sync", syncProtocolThreads, 0, BackPressure.CALLER_RUNS_OFF_MAIN_THREAD);
+    }
+
+    /**
+     * Only used for the registry listeners here, called by the super constructor
+     */
+    @Override
+    protected ExecutorService createDefaultExecutorService() {
+        return new BoundedExecutor("registry", REGISTRY_LISTENER_THREADS, REGISTRY_LISTENER_QUEUE, BackPressure.CALLER_RUNS);
+    }
+
+    @Override
+    public Executor getMulticastReceiverExecutor() {
+        return mReceiverExecutor;
+    }
+
+    @Override
+    public Executor getDatagramIOExecutor() {
+        return mReceiverExecutor;
+    }
+
+    @Override
+    public Executor getRegistryMaintainerExecutor() {
+        return mReceiverExecutor;
+    }
+
+    @Override
+    public ExecutorService getStreamServerExecutorService() {
+        return mStreamServerExecutor;
+    }
+
+    @Override
+    public Executor getAsyncProtocolExecutor() {
+        return mAsyncProtocolExecutor;
+    }
+
+    @Override
+    public ExecutorService getSyncProtocolExecutorService() {
+        return mSyncProtocolExecutor;
+    }
+
+    /**
+     * @return one line per pool with its threads, queue depth and rejections
+     */
+    public String getStats() {
+        return mReceiverExecutor.getStats() + "\n"
+                + mStreamServerExecutor.getStats() + "\n"
+                + mAsyncProtocolExecutor.getStats() + "\n"
+                + mSyncProtocolExecutor.getStats() + "\n"
+                + ((BoundedExecutor) getDefaultExecutorService()).getStats();
+    }
+
+    @Override
+    public void shutdown() {
+        Log.d(TAG, "shutdown\n" + getStats());
+        mReceiverExecutor.shutdownNow();
+        mStreamServerExecutor.shutdownNow();
+        mAsyncProtocolExecutor.shutdownNow();
+        mSyncProtocolExecutor.shutdownNow();
+        super.shutdown();
+    }
+
+    public enum BackPressure {
+        /** the task is rejected when the pool is full */
+        NONE,
+        /** the submitting thread runs the task when the pool is full */
+        CALLER_RUNS,
+        /** same as CALLER_RUNS except for the main thread, whose task is handed to a small pool of its own */
+        CALLER_RUNS_OFF_MAIN_THREAD
+    }
+
+    /**
+     * ThreadPoolExecutor with at most maxThreads threads and queueSize waiting tasks, keeping
+     * track of its peak queue depth and of the tasks it could not take.
+     */
+    public static class BoundedExecutor extends ThreadPoolExecutor {
+
+        // log the first rejection then one every REJECTION_LOG_PERIOD
+        private static final int REJECTION_LOG_PERIOD = 100;
+
+        private final String mName;
+        private final int mQueueSize;
+        private final AtomicInteger mPeakQueueDepth = new AtomicInteger();
+        private final AtomicLong mCallerRuns = new AtomicLong();
+        private final AtomicLong mRejected = new AtomicLong();
+        // runs the tasks of the main thread when the pool is full, null unless CALLER_RUNS_OFF_MAIN_THREAD
+        private final BoundedExecutor mMainThreadHandoff;
+
+        public BoundedExecutor(String name, int maxThreads, int queueSize, BackPressure backPressure) {
+            // core == max so that threads are added before tasks are queued, idle ones still time out
+            super(maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    queueSize > 0 ? new ArrayBlockingQueue<Runnable>(queueSize) : new SynchronousQueue<Runnable>(),
+                    new NamedThreadFactory("cling-" + name),
+                    new BackPressureHandler(backPressure));
+            allowCoreThreadTimeOut(true);
+            mName = name;
+            mQueueSize = queueSize;
+            mMainThreadHandoff = backPressure == BackPressure.CALLER_RUNS_OFF_MAIN_THREAD
+                    ? new BoundedExecutor(name + "-main", MAIN_THREAD_HANDOFF_THREADS, MAIN_THREAD_HANDOFF_QUEUE, BackPressure.NONE)
+                    : null;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            super.execute(command);
+            int depth = getQueue().size();
+            int peak = mPeakQueueDepth.get();
+            while (depth > peak && !mPeakQueueDepth.compareAndSet(peak, depth)) {
+                peak = mPeakQueueDepth.get();
+            }
+        }
+
+        @Override
+        protected void afterExecute(Runnable runnable, Throwable throwable) {
+            super.afterExecute(runnable, throwable);
+            if (throwable != null) {
+                Throwable cause = Exceptions.unwrap(throwable);
+                // might happen when we shutdownNow() the executor
+                if (cause instanceof InterruptedException)
+                    return;
+                Log.w(TAG, "Thread terminated " + runnable + " abruptly with exception: " + throwable + ", root cause: " + cause);
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            super.shutdown();
+            if (mMainThreadHandoff != null)
+                mMainThreadHandoff.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            List<Runnable> pending = super.shutdownNow();
+            if (mMainThreadHandoff != null)
+                pending.addAll(mMainThreadHandoff.shutdownNow());
+            return pending;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public int getQueueDepth() {
+            return getQueue().size();
+        }
+
+        public int getPeakQueueDepth() {
+            return mPeakQueueDepth.get();
+        }
+
+        /** @return number of tasks run by the submitting thread because the pool was full */
+        public long getCallerRunsCount() {
+            return mCallerRuns.get();
+        }
+
+        /** @return number of tasks rejected because the pool was full */
+        public long getRejectedCount() {
+            return mRejected.get();
+        }
+
+        public String getStats() {
+            return mName + ": threads " + getPoolSize() + "/" + getMaximumPoolSize()
+                    + " (active " + getActiveCount() + ", peak " + getLargestPoolSize() + ")"
+                    + ", queue " + getQueueDepth() + "/" + mQueueSize + " (peak " + getPeakQueueDepth() + ")"
+                    + ", completed " + getCompletedTaskCount()
+                    + ", caller runs " + getCallerRunsCount()
+                    + ", rejected " + getRejectedCount()
+                    + (mMainThreadHandoff != null ? "\n" + mMainThreadHandoff.getStats() : "");
+        }
+    }
+
+    private static class BackPressureHandler implements RejectedExecutionHandler {
+        private final BackPressure mBackPressure;
+
+        BackPressureHandler(BackPressure backPressure) {
+            mBackPressure = backPressure;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            // rejections will happen during shutdown, discard
+            if (executor.isShutdown())
+                return;
+            BoundedExecutor boundedExecutor = (BoundedExecutor) executor;
+            if (mBackPressure == BackPressure.CALLER_RUNS
+                    || (mBackPressure == BackPressure.CALLER_RUNS_OFF_MAIN_THREAD && Looper.getMainLooper().getThread() != Thread.currentThread())) {
+                boundedExecutor.mCallerRuns.incrementAndGet();
+                runnable.run();
+                return;
+            }
+            if (mBackPressure == BackPressure.CALLER_RUNS_OFF_MAIN_THREAD) {
+                // rejected there too only if the main thread keeps submitting to a pool that stays full
+                boundedExecutor.mMainThreadHandoff.execute(runnable);
+                return;
+            }
+            long rejected = boundedExecutor.mRejected.incrementAndGet();
+            if (rejected % BoundedExecutor.REJECTION_LOG_PERIOD == 1)
+                Log.w(TAG, "rejected " + runnable.getClass().getName() + ", " + boundedExecutor.getStats());
+            throw new RejectedExecutionException(boundedExecutor.getName() + " pool is full");
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger mThreadNumber = new AtomicInteger(1);
+        private final String mNamePrefix;
+
+        NamedThreadFactory(String namePrefix) {
+            mNamePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, mNamePrefix + "-" + mThreadNumber.getAndIncrement());
+            if (thread.isDaemon())
+                thread.setDaemon(false);
+            if (thread.getPriority() != Thread.NORM_PRIORITY)
+                thread.setPriority(Thread.NORM_PRIORITY);
+            return thread;
+        }
+    }
+}
@@ -21,13 +21,9 @@ import android.util.Log;
 import com.archos.filecorelibrary.ListingEngine;
 import com.archos.filecorelibrary.MimeUtils;
 
-import org.fourthline.cling.model.action.ActionInvocation;
-import org.fourthline.cling.model.message.UpnpResponse;
 import org.fourthline.cling.model.meta.Device;
 import org.fourthline.cling.model.meta.Service;
 import org.fourthline.cling.model.types.UDAServiceId;
-import org.fourthline.cling.support.contentdirectory.callback.Browse;
-import org.fourthline.cling.support.model.BrowseFlag;
 import org.fourthline.cling.support.model.DIDLContent;
 import org.fourthline.cling.support.model.DIDLObject;
 import org.fourthline.cling.support.model.container.Container;
@@ -104,10 +100,11 @@ public class UpnpListingEngine extends ListingEngine {
             decodedContainerId = URLDecoder.decode(containerId, "UTF-8");
         } catch (UnsupportedEncodingException e) {/* does not happen, UTF-8 always available... */}
 
-        UpnpServiceManager.startServiceIfNeeded(mContext).execute(new Browse(service, decodedContainerId, BrowseFlag.DIRECT_CHILDREN) {
+        // big containers are browsed by pages, the listener gets the files listed so far after each page
+        final List<UpnpFile2> allFiles = new ArrayList<>();
+        new UpnpPagedBrowse(UpnpServiceManager.startServiceIfNeeded(mContext), service, decodedContainerId) {
             @Override
-            public void failure(ActionInvocation arg0, UpnpResponse arg1, String arg2) {
-                Log.d(TAG, "failure on " + arg0 + "\nresponse " + arg1 + ", " + arg2);
+            protected void onFailure(String message) {
                 mUiHandler.post(new Runnable() {
                     public void run() {
                         if (mListener != null) {
@@ -116,92 +113,104 @@ public class UpnpListingEngine extends ListingEngine {
                     }
                 });
             }
-            @Override
-            public void updateStatus(Status status) {}
 
             @Override
-            public void received(ActionInvocation action, final DIDLContent content) {
-                if (mAbort) {
-                    return;
-                }
-
-                final List<UpnpFile2> mFiles = new ArrayList<>();
+            protected boolean isAborted() {
+                return mAbort;
+            }
 
-                // Add all the directories
-                for (Container container : content.getContainers()){
-                    String encodedId = null;
-                    try {
-                        encodedId = URLEncoder.encode(container.getId(), "UTF-8");
-                    } catch (UnsupportedEncodingException e) {/* does not happen, UTF-8 always available... */}
-                    mFiles.add(new UpnpFile2(container.getTitle(), encodedId, mUri));
-                }
+            @Override
+            protected void onPage(DIDLContent content) {
+                addFiles(content, allFiles);
+                final List<UpnpFile2> files = new ArrayList<>(allFiles);
 
-                // All files matching the filter
-                for (Item item : content.getItems()){
-                    boolean match = true;
-                    String mimeType = item.getFirstResource().getProtocolInfo().getContentFormatMimeType().toString();
-                    String path = item.getFirstResource().getValue();
-                    String extension = null;
-                    if (path != null && path.lastIndexOf('.') != -1) {
-                        extension = path.substring(path.lastIndexOf('.') + 1);
+                // Send list to the the world
+                mUiHandler.post(new Runnable() {
+                    public void run() {
+                        if (mListener != null && !mAbort) {
+                            mListener.onListingUpdate(files);
+                        }
                     }
+                });
+            }
 
-                    if (mExtensionFilter != null && mExtensionFilter.length > 0) {
-                        if (extension != null) {
-                            match = false;
-                            for (String filt : mExtensionFilter) {
-                                if (extension.equals(filt) && !filt.isEmpty()) {
-                                    match = true;
-                                }
-                            }
+            @Override
+            protected void onEnd() {
+                mUiHandler.post(new Runnable() {
+                    public void run() {
+                        if (mListener != null && !mAbort) {
+                            mListener.onListingEnd();
                         }
                     }
+                });
+            }
+        }.start();
+    }
 
-                    if (mMimeTypeFilter != null && mMimeTypeFilter.length > 0) {
-                        // If we don't have the mimeType, we must guess it from the file extension
-                        if (mimeType == null) {
-                            item.getFirstResource().getValue();
-                            if (extension != null) {
-                                extension = path.substring(path.lastIndexOf('.') + 1);
-                                mimeType = MimeUtils.guessMimeTypeFromExtension(MimeUtils.getExtension(path));
-                            }
-                        }
+    private void addFiles(DIDLContent content, List<UpnpFile2> files) {
+        // Add all the directories
+        for (Container container : content.getContainers()){
+            String encodedId = null;
+            try {
+                encodedId = URLEncoder.encode(container.getId(), "UTF-8");
+            } catch (UnsupportedEncodingException e) {/* does not happen, UTF-8 always available... */}
+            files.add(new UpnpFile2(container.getTitle(), encodedId, mUri));
+        }
 
-                        if (mimeType != null) {
-                            match = false;
-                            for (String filt : mMimeTypeFilter) {
-                                if (mimeType.startsWith(filt) && !filt.isEmpty()) {
-                                    match = true;
-                                }
-                            }
-                        }
-                    }
+        // All files matching the filter
+        for (Item item : content.getItems()){
+            boolean match = true;
+            String mimeType = item.getFirstResource().getProtocolInfo().getContentFormatMimeType().toString();
+            String path = item.getFirstResource().getValue();
+            String extension = null;
+            if (path != null && path.lastIndexOf('.') != -1) {
+                extension = path.substring(path.lastIndexOf('.') + 1);
+            }
 
-                    if (match){
-                        // try to get the thumbnail (or poster)
-                        Uri thumbUri = null;
-                        DIDLObject.Property<URI> albumArtURI = item.getFirstProperty(DIDLObject.Property.UPNP.ALBUM_ART_URI.class);
-                        if (albumArtURI!=null) {
-                            thumbUri = Uri.parse(albumArtURI.getValue().toString());
+            if (mExtensionFilter != null && mExtensionFilter.length > 0) {
+                if (extension != null) {
+                    match = false;
+                    for (String filt : mExtensionFilter) {
+                        if (extension.equals(filt) && !filt.isEmpty()) {
+                            match = true;
                         }
-                        // Add Upnp meta file
-                        mFiles.add(new UpnpFile2(item, mimeType, mUri, path, thumbUri));
                     }
-                    if (mAbort) {
-                        break;
+                }
+            }
+
+            if (mMimeTypeFilter != null && mMimeTypeFilter.length > 0) {
+                // If we don't have the mimeType, we must guess it from the file extension
+                if (mimeType == null) {
+                    item.getFirstResource().getValue();
+                    if (extension != null) {
+                        extension = path.substring(path.lastIndexOf('.') + 1);
+                        mimeType = MimeUtils.guessMimeTypeFromExtension(MimeUtils.getExtension(path));
                     }
                 }
 
-                // Send list to the the world
-                mUiHandler.post(new Runnable() {
-                    public void run() {
-                        if (mListener != null && !mAbort) {
-                            mListener.onListingUpdate(mFiles);
-                            mListener.onListingEnd();
+                if (mimeType != null) {
+                    match = false;
+                    for (String filt : mMimeTypeFilter) {
+                        if (mimeType.startsWith(filt) && !filt.isEmpty()) {
+                            match = true;
                         }
                     }
-                });
+                }
             }
-        });
+
+            if (match){
+                // try to get the thumbnail (or poster)
+                Uri thumbUri = null;
+                DIDLObject.Property<URI> albumArtURI = item.getFirstProperty(DIDLObject.Property.UPNP.ALBUM_ART_URI.class);
+                if (albumArtURI!=null) {
+                    thumbUri = Uri.parse(albumArtURI.getValue().toString());
+                }
+                // Add Upnp meta file
+                files.add(new UpnpFile2(item, mimeType, mUri, path, thumbUri));
+            }
+            if (mAbort) {
+                break;
+            }
+        }
     }
 }
@@ -0,0 +1,241 @@
+// Copyright 2017 Archos SA
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediacenter.filecoreextension.upnp2;
+
+import android.util.Log;
+
+import org.fourthline.cling.model.action.ActionInvocation;
+import org.fourthline.cling.model.message.UpnpResponse;
+import org.fourthline.cling.model.meta.Service;
+import org.fourthline.cling.support.contentdirectory.callback.Browse;
+import org.fourthline.cling.support.model.BrowseFlag;
+import org.fourthline.cling.support.model.BrowseResult;
+import org.fourthline.cling.support.model.DIDLContent;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * Browses the direct children of a ContentDirectory container PAGE_SIZE entries at a time
+ * (StartingIndex/RequestedCount) instead of asking for everything at once, which is slow and can time out
+ * for containers with thousands of entries. Once the first page tells how many entries there are, up to
+ * PAGES_IN_FLIGHT pages are requested at once. Pages are handed to onPage() in container order as soon as
+ * the previous ones were, one at a time.
+ */
+abstract class UpnpPagedBrowse {
+
+    private final static String TAG = "UpnpPagedBrowse";
+
+    static final long PAGE_SIZE = 200;
+    static final int PAGES_IN_FLIGHT = 3;
+
+    private final UpnpServiceManager mUpnpServiceManager;
+    private final Service mService;
+    private final String mContainerId;
+
+    // all of the following is guarded by this
+    /** {offset, count} of the pages not requested yet */
+    private final ArrayDeque<long[]> mToRequest = new ArrayDeque<>();
+    /** pages received before the previous ones, by offset */
+    private final HashMap<Long, Page> mReceived = new HashMap<>();
+    private int mInFlight;
+    /** offset of the next page to hand over */
+    private long mNextOffset;
+    /** number of entries, -1 while unknown */
+    private long mTotal = -1;
+    /** the server does not tell the number of entries, pages are requested one after the other */
+    private boolean mSequential;
+    private boolean mDone;
+
+    private static class Page {
+        final DIDLContent content;
+        final long returned;
+
+        Page(DIDLContent content, long returned) {
+            this.content = content;
+            this.returned = returned;
+        }
+    }
+
+    UpnpPagedBrowse(UpnpServiceManager upnpServiceManager, Service service, String containerId) {
+        mUpnpServiceManager = upnpServiceManager;
+        mService = service;
+        mContainerId = containerId;
+    }
+
+    /** called with the pages in order */
+    protected abstract void onPage(DIDLContent content);
+
+    /** called once after the last page */
+    protected abstract void onEnd();
+
+    /** called once if a page could not be browsed, no other callback follows */
+    protected abstract void onFailure(String message);
+
+    /** no more pages are requested once it returns true, and no callback follows */
+    protected boolean isAborted() {
+        return false;
+    }
+
+    public void start() {
+        synchronized (this) {
+            mToRequest.add(new long[] { 0, PAGE_SIZE });
+        }
+        requestPending();
+    }
+
+    private void requestPending() {
+        while (true) {
+            long[] page;
+            synchronized (this) {
+                if (mDone)
+                    return;
+                if (isAborted()) {
+                    mDone = true;
+                    return;
+                }
+                if (mInFlight >= PAGES_IN_FLIGHT || mToRequest.isEmpty())
+                    return;
+                page = mToRequest.poll();
+                mInFlight++;
+            }
+            if (!requestPage(page[0], page[1])) {
+                fail("upnp service is not running");
+                return;
+            }
+        }
+    }
+
+    /** @return false if the request could not be sent */
+    protected boolean requestPage(long offset, long count) {
+        return mUpnpServiceManager.execute(new PageBrowse(offset, count)) != -1;
+    }
+
+    protected void onPageReceived(long offset, long requested, long returned, long totalMatches, DIDLContent content) {
+        synchronized (this) {
+            if (mDone)
+                return;
+            mInFlight--;
+            if (offset == 0) {
+                planPages(returned, totalMatches);
+            } else if (mSequential) {
+                if (returned >= requested)
+                    mToRequest.add(new long[] { offset + returned, PAGE_SIZE });
+                else
+                    mTotal = offset + returned;
+            } else if (returned == 0) {
+                // there are less entries than announced
+                mTotal = Math.min(mTotal, offset);
+            } else if (returned < requested) {
+                // server returned less than asked for, get the rest before the next pages
+                long end = Math.min(offset + requested, mTotal);
+                if (offset + returned < end)
+                    mToRequest.addFirst(new long[] { offset + returned, end - offset - returned });
+            }
+            mReceived.put(offset, new Page(content, returned));
+            handOver();
+        }
+        requestPending();
+    }
+
+    /** queues the remaining pages based on the first one */
+    private void planPages(long returned, long totalMatches) {
+        if (totalMatches > returned && returned > 0) {
+            mTotal = totalMatches;
+            // some servers return less than asked for whatever is asked, use their page size then
+            long pageSize = Math.min(PAGE_SIZE, returned);
+            for (long offset = returned; offset < mTotal; offset += pageSize) {
+                mToRequest.add(new long[] { offset, Math.min(pageSize, mTotal - offset) });
+            }
+        } else if (totalMatches == 0 && returned >= PAGE_SIZE) {
+            // 0 means unknown, go on until a page is not full
+            mSequential = true;
+            mToRequest.add(new long[] { returned, PAGE_SIZE });
+        } else {
+            mTotal = returned;
+        }
+    }
+
+    /** hands over the pages following the last one handed over, guarded by this */
+    private void handOver() {
+        while (!mDone) {
+            Page page = mReceived.remove(mNextOffset);
+            if (page != null) {
+                if (isAborted()) {
+                    mDone = true;
+                    return;
+                }
+                // even an empty container gets its (empty) page
+                onPage(page.content);
+                mNextOffset += page.returned;
+            } else if (mTotal >= 0 && mNextOffset >= mTotal) {
+                mDone = true;
+                mToRequest.clear();
+                mReceived.clear();
+                if (!isAborted())
+                    onEnd();
+            } else {
+                return;
+            }
+        }
+    }
+
+    protected void fail(String message) {
+        synchronized (this) {
+            if (mDone)
+                return;
+            mDone = true;
+            mToRequest.clear();
+            mReceived.clear();
+        }
+        onFailure(message);
+    }
+
+    private class PageBrowse extends Browse {
+        private final long mOffset;
+        private final long mCount;
+        private long mReturned;
+        private long mTotalMatches;
+
+        PageBrowse(long offset, long count) {
+            super(mService, mContainerId, BrowseFlag.DIRECT_CHILDREN, Browse.CAPS_WILDCARD, offset, count);
+            mOffset = offset;
+            mCount = count;
+        }
+
+        @Override
+        public boolean receivedRaw(ActionInvocation actionInvocation, BrowseResult browseResult) {
+            mReturned = browseResult.getCountLong();
+            mTotalMatches = browseResult.getTotalMatchesLong();
+            return true;
+        }
+
+        @Override
+        public void received(ActionInvocation action, DIDLContent content) {
+            // do not trust a NumberReturned of 0 when there is something
+            long returned = mReturned > 0 ? mReturned : content.getCount();
+            onPageReceived(mOffset, mCount, returned, mTotalMatches, content);
+        }
+
+        @Override
+        public void updateStatus(Status status) {}
+
+        @Override
+        public void failure(ActionInvocation arg0, UpnpResponse arg1, String arg2) {
+            Log.d(TAG, "failure on " + arg0 + " at " + mOffset + "\nresponse " + arg1 + ", " + arg2);
+            fail(arg2);
+        }
+    }
+}
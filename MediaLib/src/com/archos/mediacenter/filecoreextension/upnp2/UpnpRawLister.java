@@ -24,13 +24,9 @@ import com.archos.filecorelibrary.ftp.Session;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.SftpException;
 
-import org.fourthline.cling.model.action.ActionInvocation;
-import org.fourthline.cling.model.message.UpnpResponse;
 import org.fourthline.cling.model.meta.Device;
 import org.fourthline.cling.model.meta.Service;
 import org.fourthline.cling.model.types.UDAServiceId;
-import org.fourthline.cling.support.contentdirectory.callback.Browse;
-import org.fourthline.cling.support.model.BrowseFlag;
 import org.fourthline.cling.support.model.DIDLContent;
 import org.fourthline.cling.support.model.DIDLObject;
 import org.fourthline.cling.support.model.container.Container;
@@ -43,6 +39,7 @@ import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * Created by vapillon on 06/05/15.
@@ -50,7 +47,6 @@ import java.util.List;
 public class UpnpRawLister extends RawLister  {
 
     private final static String TAG = "UpnpRawLister";
-    private final Object mLock;
 
     /**
      * The static part of our Upnp stuff
@@ -74,7 +70,7 @@ public class UpnpRawLister extends RawLister  {
     private String mContainerId = "0";
 
 
-    private ArrayList<MetaFile2> mFiles;
+    private volatile ArrayList<MetaFile2> mFiles;
 
 
     public UpnpRawLister(Uri uri) {
@@ -82,7 +78,6 @@ public class UpnpRawLister extends RawLister  {
         UpnpServiceManager.restartUpnpServiceIfWasStartedBefore();
         mUpnpServiceManager = UpnpServiceManager.getSingleton(null); //won't create, so we need to be sure it has already been created before
         mUri = uri;
-        mLock = new Object();
         Log.d(TAG, "UpnpRawLister() uri="+mUri);
         Log.d(TAG, "UpnpRawLister() lastPath="+mUri.getLastPathSegment());
         // Get Device from its hash key that is in the Uri
@@ -105,24 +100,20 @@ public class UpnpRawLister extends RawLister  {
         return true;
     }
 
-    public void listFiles(final Device device, final String containerId) {
+    public void listFiles(final Device device, final String containerId, final CountDownLatch done) {
         Log.d(TAG, "listFiles "+device+"  containerId="+containerId);
         Service service = device.findService(new UDAServiceId("ContentDirectory"));
-        int ready = mUpnpServiceManager.execute(new Browse(service, containerId, BrowseFlag.DIRECT_CHILDREN) {
+        // big containers are browsed by pages, the files are only returned once all pages are there
+        final ArrayList<MetaFile2> files = new ArrayList<>();
+        new UpnpPagedBrowse(mUpnpServiceManager, service, containerId) {
             @Override
-            public void failure(ActionInvocation arg0, UpnpResponse arg1, String arg2) {
-                Log.d(TAG, "failure on " + arg0 + "\nresponse " + arg1 + ", " + arg2);
-                synchronized (mLock) {
-                    mLock.notify();
-                }
+            protected void onFailure(String message) {
+                // an incomplete listing would look like deleted files to the scanner
+                done.countDown();
             }
-            @Override
-            public void updateStatus(Status status) {}
 
             @Override
-            public void received(ActionInvocation action, final DIDLContent content) {
-                mFiles = new ArrayList<>();
-
+            protected void onPage(DIDLContent content) {
                 // Add all the directories
                 for (Container container : content.getContainers()){
                     if(shouldIAddContainer(container, device, containerId)) {
@@ -130,7 +121,7 @@ public class UpnpRawLister extends RawLister  {
                         try {
                             encodedId = URLEncoder.encode(container.getId(), "UTF-8");
                         } catch (UnsupportedEncodingException e) {/* does not happen, UTF-8 always available... */}
-                        mFiles.add(new UpnpFile2(container.getTitle(), encodedId, mUri));
+                        files.add(new UpnpFile2(container.getTitle(), encodedId, mUri));
                     }
                 }
 
@@ -145,31 +136,29 @@ public class UpnpRawLister extends RawLister  {
                         if (albumArtURI!=null) {
                             thumbUri = Uri.parse(albumArtURI.getValue().toString());
                         }
-                        mFiles.add(new  UpnpFile2(item, mimeType, mUri, path, thumbUri));
+                        files.add(new  UpnpFile2(item, mimeType, mUri, path, thumbUri));
                     }
 
                 }
-                synchronized (mLock) {
-                    mLock.notify();
-                }
             }
-        });
-        if (ready == -1)
-            synchronized (mLock) {
-                mLock.notify();
+
+            @Override
+            protected void onEnd() {
+                mFiles = files;
+                done.countDown();
             }
+        }.start();
     }
 
     @Override
     public List<MetaFile2> getFileList() throws IOException, AuthenticationException, SftpException, JSchException {
         if(mDevice!=null) {
-            listFiles(mDevice, mContainerId);
-            synchronized (mLock) {
-                try {
-                    mLock.wait();
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+            CountDownLatch done = new CountDownLatch(1);
+            listFiles(mDevice, mContainerId, done);
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
             }
         }
         return mFiles;
@@ -27,7 +27,6 @@ import android.util.Log;
 import com.archos.environment.NetworkState;
 
 import org.fourthline.cling.android.AndroidUpnpService;
-import org.fourthline.cling.android.AndroidUpnpServiceImpl;
 import org.fourthline.cling.controlpoint.ActionCallback;
 import org.fourthline.cling.model.message.header.UDADeviceTypeHeader;
 import org.fourthline.cling.model.meta.Action;
@@ -52,6 +51,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Created by vapillon on 06/05/15.
@@ -197,7 +197,7 @@ public class UpnpServiceManager {
      */
     public void start() {
         if (mState == State.NOT_RUNNING || mState == State.ERROR) {
-            boolean result = mContext.bindService(new Intent(mContext, AndroidUpnpServiceImpl.class), mServiceConnection, Context.BIND_AUTO_CREATE);
+            boolean result = mContext.bindService(new Intent(mContext, BoundedUpnpService.class), mServiceConnection, Context.BIND_AUTO_CREATE);
             if (result) {
                 mState = State.STARTING;
                 if(DBG) Log.d(TAG, "State STARTING");
@@ -432,7 +432,13 @@ public class UpnpServiceManager {
             return -1;
         }
 
-        mAndroidUpnpService.getControlPoint().execute(callback);
+        try {
+            mAndroidUpnpService.getControlPoint().execute(callback);
+        } catch (RejectedExecutionException e) {
+            // the sync protocol threads and the main thread handoff are all busy
+            Log.w(TAG, "execute: " + e.getMessage());
+            return -1;
+        }
         return 0;
     }
 
@@ -441,7 +447,14 @@ public class UpnpServiceManager {
         public void run() {
             if (mAndroidUpnpService!=null) {
                 if(DBG) Log.d(TAG, "mPeriodicSearchRunnable search");
-                mAndroidUpnpService.getControlPoint().search(new UDADeviceTypeHeader(new UDADeviceType("MediaServer")));
+                if(DBG && mAndroidUpnpService.getConfiguration() instanceof BoundedUpnpServiceConfiguration)
+                    Log.d(TAG, ((BoundedUpnpServiceConfiguration) mAndroidUpnpService.getConfiguration()).getStats());
+                try {
+                    mAndroidUpnpService.getControlPoint().search(new UDADeviceTypeHeader(new UDADeviceType("MediaServer")));
+                } catch (RejectedExecutionException e) {
+                    // busy enough with the answers to the previous search, the next one will do
+                    Log.w(TAG, "search: " + e.getMessage());
+                }
             }
             // program next search
             mUiHandler.postDelayed(mPeriodicSearchRunnable, SERVER_SEARCH_PERIOD_MS); // probably does not have to be on UI thread but it makes no harm and avoid having yet another handler
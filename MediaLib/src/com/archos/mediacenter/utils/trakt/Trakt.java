@@ -57,6 +57,7 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -356,33 +357,59 @@ public class Trakt {
 
     public Result markAs(final String action, VideoDbInfo videoInfo) {
         if (videoInfo.isScraped) {
-            if (videoInfo.isShow) {
-                SyncEpisode se = new SyncEpisode();
-                EpisodeIds ei = new EpisodeIds();
-                ei.tmdb = Integer.valueOf(videoInfo.scraperEpisodeId);
-                se.id(ei);
-                if(videoInfo.lastTimePlayed>0)
-                	se.watchedAt(OffsetDateTime.parse(getDateFormat(videoInfo.lastTimePlayed)));
-                SyncItems sitems = new SyncItems();
-                sitems.episodes(se);
-
-                return markAs(action, sitems, videoInfo.isShow);
-            } else {
-                SyncMovie sm = new SyncMovie();
-                MovieIds mi = new MovieIds();
-                mi.tmdb = Integer.valueOf(videoInfo.scraperMovieId);
-                if(videoInfo.lastTimePlayed>0)
-                	sm.watchedAt(OffsetDateTime.parse(getDateFormat(videoInfo.lastTimePlayed)));
-                sm.id(mi);
-                SyncItems sitems = new SyncItems();
-                sitems.movies(sm);
-                return markAs(action, sitems, videoInfo.isShow);
-            }
+            SyncItems sitems = new SyncItems();
+            if (videoInfo.isShow)
+                sitems.episodes(toSyncEpisode(videoInfo));
+            else
+                sitems.movies(toSyncMovie(videoInfo));
+            return markAs(action, sitems, videoInfo.isShow);
         } else {
             return Result.getError();
         }
     }
 
+    /**
+     * marks several videos with a single request, not scraped videos are ignored
+     */
+    public Result markAs(final String action, List<VideoDbInfo> videoInfos) {
+        List<SyncMovie> movies = new ArrayList<SyncMovie>();
+        List<SyncEpisode> episodes = new ArrayList<SyncEpisode>();
+        for (VideoDbInfo videoInfo : videoInfos) {
+            if (!videoInfo.isScraped)
+                continue;
+            if (videoInfo.isShow)
+                episodes.add(toSyncEpisode(videoInfo));
+            else
+                movies.add(toSyncMovie(videoInfo));
+        }
+        if (movies.isEmpty() && episodes.isEmpty())
+            return Result.getError();
+        SyncItems sitems = new SyncItems();
+        sitems.movies(movies);
+        sitems.episodes(episodes);
+        return markAs(action, sitems, !episodes.isEmpty());
+    }
+
+    private static SyncEpisode toSyncEpisode(VideoDbInfo videoInfo) {
+        SyncEpisode se = new SyncEpisode();
+        EpisodeIds ei = new EpisodeIds();
+        ei.tmdb = Integer.valueOf(videoInfo.scraperEpisodeId);
+        se.id(ei);
+        if(videoInfo.lastTimePlayed>0)
+            se.watchedAt(OffsetDateTime.parse(getDateFormat(videoInfo.lastTimePlayed)));
+        return se;
+    }
+
+    private static SyncMovie toSyncMovie(VideoDbInfo videoInfo) {
+        SyncMovie sm = new SyncMovie();
+        MovieIds mi = new MovieIds();
+        mi.tmdb = Integer.valueOf(videoInfo.scraperMovieId);
+        if(videoInfo.lastTimePlayed>0)
+            sm.watchedAt(OffsetDateTime.parse(getDateFormat(videoInfo.lastTimePlayed)));
+        sm.id(mi);
+        return sm;
+    }
+
     public Result removeFromLibrary(VideoDbInfo videoInfo) {
         return markAs(ACTION_UNLIBRARY, videoInfo);
     }
@@ -16,6 +16,7 @@ package com.archos.mediacenter.utils.trakt;
 
 
 import android.app.Service;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
@@ -43,6 +44,7 @@ import com.archos.mediacenter.utils.videodb.IndexHelper;
 import com.archos.mediacenter.utils.videodb.VideoDbInfo;
 import com.archos.medialib.R;
 import com.archos.environment.NetworkState;
+import com.archos.mediaprovider.CPOExecutor;
 import com.archos.mediaprovider.video.VideoStore;
 import com.archos.mediascraper.ScrapeStatus;
 import com.uwetrottmann.trakt5.entities.BaseEpisode;
@@ -63,6 +65,7 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 // TODO MARC if the nohandler is not there because shut down!!!!
@@ -393,9 +396,9 @@ public class TraktService extends Service {
         VideoStore.Video.VideoColumns.SCRAPER_E_EPISODE,
         VideoStore.Video.VideoColumns.SCRAPER_E_ONLINE_ID,
         VideoStore.Video.VideoColumns.ARCHOS_LAST_TIME_PLAYED };
-    private static final String SYNC_PROGRESS_PROJECTION[] = new String[] {
-        BaseColumns._ID,
-       };
+    // videos per bulk trakt request and db updates per batch during syncs
+    private static final int SYNC_CHUNK_SIZE = 100;
+    private static final int SYNC_DB_BATCH_SIZE = 500;
     private static final String getVideoToMarkSelection(String library, int scraperType, boolean toMark) {
         if (library.equals(Trakt.LIBRARY_WATCHED)) {
             if (toMark)
@@ -518,117 +521,142 @@ public class TraktService extends Service {
                  resultTrakt.objType == Trakt.Result.ObjectType.MOVIES) {
              movies = (java.util.List<GenericProgress>) resultTrakt.obj;
          }
-    	//from db to trakt
+        // trakt progress by tmdb id, instead of going through the whole list for each video
+        HashMap<Integer, GenericProgress> movieProgress = new HashMap<Integer, GenericProgress>();
+        HashMap<Integer, GenericProgress> episodeProgress = new HashMap<Integer, GenericProgress>();
+        if (movies != null) {
+            for (GenericProgress movie : movies) {
+                if (movie.movie != null && movie.movie.ids != null && movie.movie.ids.tmdb != null)
+                    movieProgress.put(movie.movie.ids.tmdb, movie);
+                else if (movie.episode != null && movie.episode.ids != null && movie.episode.ids.tmdb != null)
+                    episodeProgress.put(movie.episode.ids.tmdb, movie);
+            }
+        }
+        // db updates are applied in batches
+        CPOExecutor operations = new CPOExecutor(VideoStore.AUTHORITY, cr, SYNC_DB_BATCH_SIZE);
 
+    	//from db to trakt
+        ArrayList<VideoDbInfo> toMarkAsSeen = new ArrayList<VideoDbInfo>();
         Cursor c1= cr.query(VideoStore.Video.Media.EXTERNAL_CONTENT_URI, VideoDbInfo.COLUMNS, VideoStore.Video.VideoColumns.ARCHOS_TRAKT_RESUME +" < 0", null, null);
         
         if (c1 != null) {
-            if (c1.getCount() > 0) {
-            	c1.moveToFirst();
-            	do {
-            		VideoDbInfo videoInfo = VideoDbInfo.fromCursor(c1, false);
-            		if(videoInfo!=null&&videoInfo.scraperMovieId!=null&&videoInfo.traktResume<0){
-            			boolean send = true;
-            			GenericProgress gprog = null;
-            			if(movies != null)
-                            for (GenericProgress movie : movies) {
-                                // this value hasn't been sync yet
-                                // we should check if videoInfo.watched_at more recent
-                                if (movie.movie != null
-                                        && movie.movie.ids != null
-                                        && movie.movie.ids.tmdb == Integer.valueOf(videoInfo.scraperMovieId)
-                                        && movie.progress > -videoInfo.traktResume) {
-                                    //trakt mark is more advanced, we don't send anything
-                                    send = false;
-
-                                    gprog = movie;
-                                    break;
-	                        	}
-            				}
-            			if(send){
-                            ContentValues values = new ContentValues();
-                            Trakt.Result result;
-
-                            if(Trakt.shouldMarkAsSeen(Math.abs(videoInfo.traktResume))){
-                                result = mTrakt.markAs(Trakt.ACTION_SEEN, videoInfo);
-                                if (result.status == Trakt.Status.SUCCESS || result.status == Trakt.Status.SUCCESS_ALREADY) {
-                                    videoInfo.traktSeen = 1;
-                                }
-                            }
-                            else {
-                                result = mTrakt.postWatchingStop(videoInfo, -videoInfo.traktResume);
-                            }
-                            if (result.status == Trakt.Status.SUCCESS || result.status == Trakt.Status.SUCCESS_ALREADY) {
-                                if (gprog != null)
-                                    gprog.progress = Double.valueOf(Math.abs(videoInfo.traktResume));
-                                videoInfo.traktResume = Math.abs(videoInfo.traktResume);
-                                values.put(VideoStore.Video.VideoColumns.ARCHOS_TRAKT_RESUME, videoInfo.traktResume);
-                                values.put(VideoStore.Video.VideoColumns.ARCHOS_TRAKT_SEEN, videoInfo.traktSeen);
-                                getContentResolver().update(VideoStore.Video.Media.EXTERNAL_CONTENT_URI,
-                                        values, VideoStore.Video.VideoColumns._ID + " = " + videoInfo.id, null);
-                            }
-            			}
-            			
-            		}
-            		
-            	}while (c1.moveToNext());
+            while (c1.moveToNext()) {
+                VideoDbInfo videoInfo = VideoDbInfo.fromCursor(c1, false);
+                if(videoInfo!=null&&videoInfo.scraperMovieId!=null&&videoInfo.traktResume<0){
+                    GenericProgress gprog = movieProgress.get(parseOnlineId(videoInfo.scraperMovieId));
+                    // this value hasn't been sync yet
+                    // we should check if videoInfo.watched_at more recent
+                    if (gprog != null && gprog.progress > -videoInfo.traktResume) {
+                        //trakt mark is more advanced, we don't send anything
+                        continue;
+                    }
+                    if(Trakt.shouldMarkAsSeen(Math.abs(videoInfo.traktResume))){
+                        // sent in bulk below
+                        toMarkAsSeen.add(videoInfo);
+                    }
+                    else {
+                        // no bulk scrobble in trakt api, progress is sent one video at a time
+                        Trakt.Result result = mTrakt.postWatchingStop(videoInfo, -videoInfo.traktResume);
+                        if (result.status == Trakt.Status.SUCCESS || result.status == Trakt.Status.SUCCESS_ALREADY)
+                            addTraktResumeSynced(operations, videoInfo, gprog);
+                    }
+                }
             }
             c1.close();
         }
+        for (int start = 0; start < toMarkAsSeen.size(); start += SYNC_CHUNK_SIZE) {
+            List<VideoDbInfo> chunk = toMarkAsSeen.subList(start, Math.min(start + SYNC_CHUNK_SIZE, toMarkAsSeen.size()));
+            Trakt.Result result = mTrakt.markAs(Trakt.ACTION_SEEN, chunk);
+            if (result.status == Trakt.Status.SUCCESS || result.status == Trakt.Status.SUCCESS_ALREADY) {
+                for (VideoDbInfo videoInfo : chunk) {
+                    videoInfo.traktSeen = 1;
+                    addTraktResumeSynced(operations, videoInfo, movieProgress.get(parseOnlineId(videoInfo.scraperMovieId)));
+                }
+            }
+        }
+        // what follows reads the db
+        operations.execute();
     	
     	//from trakt to db
     	//Trakt.Result result1 = mTrakt.getAllMovies(Trakt.LIBRARY_COLLECTION, true);
 
-        if (movies!=null&&movies.size() > 0) {
+        if (!movieProgress.isEmpty() || !episodeProgress.isEmpty()) {
+            // all the local videos having a trakt progress in one query
+            InBuilder movieIn = new InBuilder(VideoStore.Video.VideoColumns.SCRAPER_M_ONLINE_ID);
+            for (Integer tmdb : movieProgress.keySet())
+                movieIn.addParam(tmdb);
+            InBuilder episodeIn = new InBuilder(VideoStore.Video.VideoColumns.SCRAPER_E_ONLINE_ID);
+            for (Integer tmdb : episodeProgress.keySet())
+                episodeIn.addParam(tmdb);
+            String movieSelection = movieIn.get();
+            String episodeSelection = episodeIn.get();
             String whereR;
-            for (GenericProgress movie : movies){
-                if (movie.movie != null) {
-                    whereR = VideoStore.Video.VideoColumns._ID+" IN ("+
-                            "SELECT video_id FROM movie where " + VideoStore.Video.VideoColumns.SCRAPER_M_ONLINE_ID +"= "+movie.movie.ids.tmdb+")";
-                }
-                else {
-                    whereR = VideoStore.Video.VideoColumns._ID+" IN ("+
-                    "SELECT video_id FROM episode where " + VideoStore.Video.VideoColumns.SCRAPER_E_ONLINE_ID +"= "+movie.episode.ids.tmdb+")";
-                }
-
-                //final String where = VideoStore.Video.VideoColumns._ID + " = " + mVideoInfo.id;
-                ContentResolver resolver = getContentResolver();
-                Cursor c= resolver.query(VideoStore.Video.Media.EXTERNAL_CONTENT_URI, SYNC_PROGRESS_PROJECTION, whereR, null, null);
-
-                if (c != null) {
-                    if (c.getCount() > 0) {
-                        final int idIdx = c.getColumnIndex(BaseColumns._ID);
-
-                        while (c.moveToNext()) {
-                            int id = c.getInt(idIdx);
-                            VideoDbInfo i = VideoDbInfo.fromId(cr, id);
-                            if (i != null) {
+            if (movieSelection != null && episodeSelection != null)
+                whereR = movieSelection + " OR " + episodeSelection;
+            else
+                whereR = movieSelection != null ? movieSelection : episodeSelection;
 
-                                int newResumePercent = (int) Math.round(movie.progress);
-                                int newResume = (int) ((float)newResumePercent/100.0*i.duration);
-                                if(Math.abs(i.traktResume)!=newResumePercent&&i.traktSeen!=1&&newResume>i.resume&&i.resume!=-2){//i.resume = -2 is file end
+            Cursor c = cr.query(VideoStore.Video.Media.EXTERNAL_CONTENT_URI, VideoDbInfo.COLUMNS, whereR, null, null);
 
-                                    i.traktResume = newResumePercent;
-                                    i.resume =newResume;
-                                    ContentValues values = new ContentValues();
-                                    values.put(VideoStore.Video.VideoColumns.ARCHOS_TRAKT_RESUME, i.traktResume );
-                                    values.put(VideoStore.Video.VideoColumns.BOOKMARK, i.resume );
-                                    if(i.lastTimePlayed <=0 )
-                                        values.put(VideoStore.Video.VideoColumns.ARCHOS_LAST_TIME_PLAYED, 1); //will need to be updated with trakt watched time (last paused is null...)
-                                    cr.update(VideoStore.Video.Media.EXTERNAL_CONTENT_URI,
-                                        values, VideoStore.Video.VideoColumns._ID+" = '"+i.id+"'", null);
-                                }
-                            }
-                        }
+            if (c != null) {
+                while (c.moveToNext()) {
+                    VideoDbInfo i = VideoDbInfo.fromCursor(c, false);
+                    if (i == null)
+                        continue;
+                    GenericProgress movie = i.isShow ? episodeProgress.get(parseOnlineId(i.scraperEpisodeId))
+                            : movieProgress.get(parseOnlineId(i.scraperMovieId));
+                    if (movie == null)
+                        continue;
+
+                    int newResumePercent = (int) Math.round(movie.progress);
+                    int newResume = (int) ((float)newResumePercent/100.0*i.duration);
+                    if(Math.abs(i.traktResume)!=newResumePercent&&i.traktSeen!=1&&newResume>i.resume&&i.resume!=-2){//i.resume = -2 is file end
+
+                        i.traktResume = newResumePercent;
+                        i.resume =newResume;
+                        ContentValues values = new ContentValues();
+                        values.put(VideoStore.Video.VideoColumns.ARCHOS_TRAKT_RESUME, i.traktResume );
+                        values.put(VideoStore.Video.VideoColumns.BOOKMARK, i.resume );
+                        if(i.lastTimePlayed <=0 )
+                            values.put(VideoStore.Video.VideoColumns.ARCHOS_LAST_TIME_PLAYED, 1); //will need to be updated with trakt watched time (last paused is null...)
+                        operations.add(ContentProviderOperation.newUpdate(VideoStore.Video.Media.EXTERNAL_CONTENT_URI)
+                                .withSelection(VideoStore.Video.VideoColumns._ID + " = " + i.id, null)
+                                .withValues(values)
+                                .build());
                     }
-                    c.close();
                 }
+                c.close();
             }
+            operations.execute();
         }
         return Trakt.Status.SUCCESS;
     	
     }
 
+    /** queues the db update of a video whose progress was sent to trakt */
+    private static void addTraktResumeSynced(CPOExecutor operations, VideoDbInfo videoInfo, GenericProgress gprog) {
+        if (gprog != null)
+            gprog.progress = Double.valueOf(Math.abs(videoInfo.traktResume));
+        videoInfo.traktResume = Math.abs(videoInfo.traktResume);
+        ContentValues values = new ContentValues();
+        values.put(VideoStore.Video.VideoColumns.ARCHOS_TRAKT_RESUME, videoInfo.traktResume);
+        values.put(VideoStore.Video.VideoColumns.ARCHOS_TRAKT_SEEN, videoInfo.traktSeen);
+        operations.add(ContentProviderOperation.newUpdate(VideoStore.Video.Media.EXTERNAL_CONTENT_URI)
+                .withSelection(VideoStore.Video.VideoColumns._ID + " = " + videoInfo.id, null)
+                .withValues(values)
+                .build());
+    }
+
+    private static Integer parseOnlineId(String onlineId) {
+        if (onlineId == null)
+            return null;
+        try {
+            return Integer.valueOf(onlineId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     private Trakt.Status syncMoviesToDb(String library) {
         final ContentResolver cr = getContentResolver();
 
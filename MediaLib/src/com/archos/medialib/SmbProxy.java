@@ -16,6 +16,7 @@ package com.archos.medialib;
 
 import android.net.Uri;
 
+import com.archos.environment.ArchosUtils;
 import com.archos.filecorelibrary.MetaFile2;
 import com.archos.filecorelibrary.MetaFile2Factory;
 import com.archos.filecorelibrary.MimeUtils;
@@ -50,6 +51,7 @@ public class SmbProxy extends Proxy{
                 mStream = new StreamOverHttp(file, mimeType);
             else
                 mStream = new StreamOverHttp(mUri, mimeType);
+            mStream.setReadAheadSpillDirectory(ArchosUtils.getGlobalContext().getCacheDir());
         } catch (IOException e) {
             return null;
         }
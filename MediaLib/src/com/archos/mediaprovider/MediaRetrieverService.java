@@ -70,4 +70,13 @@ public class MediaRetrieverService extends Service {
         return START_NOT_STICKY;
     }
 
+    /*
+     * Same service declared in its own process so that several files can be retrieved at once,
+     * a file that crashes or hangs (see TIMEOUT_MS) one of them only takes that process down.
+     * See MediaRetrieverServicePool.
+     */
+    public static class Instance1 extends MediaRetrieverService { }
+    public static class Instance2 extends MediaRetrieverService { }
+    public static class Instance3 extends MediaRetrieverService { }
+
 }
@@ -73,7 +73,14 @@ public class MediaRetrieverServiceClient {
      * Auto-binds to service
      */
     public MediaRetrieverServiceClient(Context context) {
-        if (!context.bindService(new Intent(context, MediaRetrieverService.class), mConnection, Context.BIND_AUTO_CREATE)) {
+        this(context, MediaRetrieverService.class);
+    }
+
+    /**
+     * Auto-binds to serviceClass, one of the MediaRetrieverService process instances
+     */
+    public MediaRetrieverServiceClient(Context context, Class<? extends MediaRetrieverService> serviceClass) {
+        if (!context.bindService(new Intent(context, serviceClass), mConnection, Context.BIND_AUTO_CREATE)) {
             // should only ever happen when binding causes a RemoteException, so there is probably something
             // wrong in our service onBind method or so.
             Log.e(TAG, "MediaRetrieverServiceClient failed to connect to it's service");
@@ -0,0 +1,95 @@
+// Copyright 2017 Archos SA
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediaprovider;
+
+import android.content.Context;
+import android.os.RemoteException;
+
+import com.archos.medialib.MediaMetadata;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Several MediaRetrieverService instances, each one in its own process, so that metadata of
+ * several files is retrieved at once. A call uses one idle instance and waits if all are busy.
+ * A file killing its instance is reported like with a single {@link MediaRetrieverServiceClient},
+ * the other instances keep on working while that one restarts.
+ */
+public class MediaRetrieverServicePool {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaRetrieverServicePool.class);
+
+    /** one per process declared in the manifest */
+    private static final Class[] SERVICES = {
+            MediaRetrieverService.class,
+            MediaRetrieverService.Instance1.class,
+            MediaRetrieverService.Instance2.class,
+            MediaRetrieverService.Instance3.class
+    };
+
+    private final MediaRetrieverServiceClient[] mClients;
+    private final LinkedBlockingQueue<MediaRetrieverServiceClient> mIdleClients;
+
+    /** @return the number of instances worth running on this device, half of the cores */
+    public static int getDefaultSize() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(SERVICES.length, cores / 2));
+    }
+
+    /**
+     * Auto-binds to size service instances, at most the number of instances declared
+     */
+    @SuppressWarnings("unchecked")
+    public MediaRetrieverServicePool(Context context, int size) {
+        size = Math.max(1, Math.min(SERVICES.length, size));
+        mClients = new MediaRetrieverServiceClient[size];
+        mIdleClients = new LinkedBlockingQueue<MediaRetrieverServiceClient>(size);
+        for (int i = 0; i < size; i++) {
+            mClients[i] = new MediaRetrieverServiceClient(context, SERVICES[i]);
+            mIdleClients.add(mClients[i]);
+        }
+        log.debug("MediaRetrieverServicePool: " + size + " instances");
+    }
+
+    public int getSize() {
+        return mClients.length;
+    }
+
+    /**
+     * Same outcomes as {@link MediaRetrieverServiceClient#getMetadata(String)}, can be called from
+     * up to {@link #getSize()} threads at once without waiting.
+     */
+    public MediaMetadata getMetadata(String path) throws InterruptedException,
+            MediaRetrieverServiceClient.ServiceManagementException, RemoteException {
+        MediaRetrieverServiceClient client = mIdleClients.take();
+        try {
+            return client.getMetadata(path);
+        } finally {
+            mIdleClients.add(client);
+        }
+    }
+
+    /**
+     * unbinds from all Services and destroys resources
+     */
+    public void unbindAndDestroy() {
+        for (MediaRetrieverServiceClient client : mClients) {
+            client.unbindAndDestroy();
+        }
+    }
+}
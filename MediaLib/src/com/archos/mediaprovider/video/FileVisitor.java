@@ -20,11 +20,21 @@ import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.SftpException;
 
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FileVisitor {
 
+    private static final Logger log = LoggerFactory.getLogger(FileVisitor.class);
+
     public interface Listener {
         /** called when visiting started */
         void onStart(MetaFile2 root);
@@ -33,30 +43,107 @@ public class FileVisitor {
         /** called for every file */
         void onFile(MetaFile2 file);
         /** called for every directory with a list of children files, return true if this directory should be indexed */
-        boolean onFilesList(List<MetaFile2> files);
+        boolean onFilesList(MetaFile2 directory, List<MetaFile2> files);
+        /**
+         * called after onFilesList returned true, return true if this directory did not change since a previous
+         * visit: neither its files nor its sub directories are visited then
+         */
+        boolean isSubtreeUnchanged(MetaFile2 directory, List<MetaFile2> files);
         /** called for everyhing not file or directory */
         void onOtherType(MetaFile2 file);
         /** called when visiting finished */
         void onStop(MetaFile2 root);
     }
 
+    /** directories / files counters of a visit, used to report listing speed */
+    public static class Stats {
+        private int mDirectories;
+        private int mUnchangedSubtrees;
+        private int mFiles;
+        private long mStartTime = System.currentTimeMillis();
+        private long mEndTime;
+
+        public int getDirectories() {
+            return mDirectories;
+        }
+
+        public int getUnchangedSubtrees() {
+            return mUnchangedSubtrees;
+        }
+
+        public int getFiles() {
+            return mFiles;
+        }
+
+        public long getDuration() {
+            return mEndTime - mStartTime;
+        }
+
+        public float getDirectoriesPerSecond() {
+            long duration = getDuration();
+            return duration > 0 ? mDirectories * 1000f / duration : mDirectories;
+        }
+
+        public float getFilesPerSecond() {
+            long duration = getDuration();
+            return duration > 0 ? mFiles * 1000f / duration : mFiles;
+        }
+
+        @Override
+        public String toString() {
+            return "listed " + mDirectories + " directories (" + String.format("%.1f", getDirectoriesPerSecond()) + "/s), "
+                    + mFiles + " files (" + String.format("%.1f", getFilesPerSecond()) + "/s), "
+                    + mUnchangedSubtrees + " unchanged subtrees skipped in " + getDuration() + "ms";
+        }
+    }
+
     private FileVisitor() {
         /* empty */
     }
 
-    public static void visit(MetaFile2 root, int recursionLimit, Listener listener) {
+    public static Stats visit(MetaFile2 root, int recursionLimit, Listener listener) {
+        Stats stats = new Stats();
         if (listener != null) {
             listener.onStart(root);
             /*
                 before starting to visit, we should check if a parent of this file is within a folder with a .nomedia
              */
-            recurse(root, listener, recursionLimit);
+            recurse(root, listener, recursionLimit, stats);
             listener.onStop(root);
         }
+        stats.mEndTime = System.currentTimeMillis();
+        return stats;
+    }
+
+    /**
+     * Same as {@link #visit(MetaFile2, int, Listener)} but directories are listed by up to
+     * parallelism threads at once. Listings are handed back to the calling thread which is
+     * the only one invoking the listener, so listener implementations do not need to be thread safe.
+     * Order of the callbacks is not depth first anymore.
+     */
+    public static Stats visit(MetaFile2 root, int recursionLimit, Listener listener, int parallelism) {
+        if (parallelism <= 1)
+            return visit(root, recursionLimit, listener);
+        Stats stats = new Stats();
+        if (listener != null) {
+            listener.onStart(root);
+            ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ListerThreadFactory());
+            try {
+                new ParallelVisit(executor, listener, stats).run(root, recursionLimit);
+            } catch (InterruptedException e) {
+                log.warn("visit: interrupted while visiting " + root.getUri());
+                Thread.currentThread().interrupt();
+            } finally {
+                executor.shutdownNow();
+            }
+            listener.onStop(root);
+        }
+        stats.mEndTime = System.currentTimeMillis();
+        return stats;
     }
 
 
-    private static void recurse(MetaFile2 file, Listener listener, int recursionLimit) {
+    private static void recurse(MetaFile2 file, Listener listener, int recursionLimit, Stats stats) {
         if (recursionLimit < 0) {
             return;
         }
@@ -64,29 +151,132 @@ public class FileVisitor {
         if (file != null) {
             if (file.isDirectory()) {
                 if (listener.onDirectory(file) && recursionLimit > 0) {
-                    try {
-                        List<MetaFile2> files  = file.getRawListerInstance().getFileList();
-                            if (files != null) {
-                                if (listener.onFilesList(files))
-                                for (MetaFile2 subFile : files) {
-                                    recurse(subFile, listener, recursionLimit - 1);
-                                }
+                    List<MetaFile2> files = listFiles(file);
+                    stats.mDirectories++;
+                    if (files != null) {
+                        if (listener.onFilesList(file, files)) {
+                            if (listener.isSubtreeUnchanged(file, files)) {
+                                stats.mUnchangedSubtrees++;
+                                return;
+                            }
+                            for (MetaFile2 subFile : files) {
+                                recurse(subFile, listener, recursionLimit - 1, stats);
                             }
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    } catch (AuthenticationException e) {
-                        e.printStackTrace();
-                    } catch (SftpException e) {
-                        e.printStackTrace();
-                    } catch (JSchException e) {
-                        e.printStackTrace();
+                        }
                     }
                 }
             } else if (file.isFile()) {
+                stats.mFiles++;
                 listener.onFile(file);
             } else {
                 listener.onOtherType(file);
             }
         }
     }
+
+    private static List<MetaFile2> listFiles(MetaFile2 directory) {
+        try {
+            return directory.getRawListerInstance().getFileList();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (AuthenticationException e) {
+            e.printStackTrace();
+        } catch (SftpException e) {
+            e.printStackTrace();
+        } catch (JSchException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /** result of a directory listing done on a lister thread */
+    private static class Listing {
+        final MetaFile2 directory;
+        final List<MetaFile2> files;
+        final int recursionLimit;
+
+        Listing(MetaFile2 directory, List<MetaFile2> files, int recursionLimit) {
+            this.directory = directory;
+            this.files = files;
+            this.recursionLimit = recursionLimit;
+        }
+    }
+
+    /**
+     * Lister threads only fetch directory contents, every listener callback happens on the
+     * thread that called run() so that decisions (.nomedia, hidden) and db operations stay single threaded.
+     */
+    private static class ParallelVisit {
+        private final ExecutorService mExecutor;
+        private final Listener mListener;
+        private final Stats mStats;
+        private final LinkedBlockingQueue<Listing> mListings = new LinkedBlockingQueue<Listing>();
+        private int mPending;
+
+        ParallelVisit(ExecutorService executor, Listener listener, Stats stats) {
+            mExecutor = executor;
+            mListener = listener;
+            mStats = stats;
+        }
+
+        void run(MetaFile2 root, int recursionLimit) throws InterruptedException {
+            handle(root, recursionLimit);
+            while (mPending > 0) {
+                Listing listing = mListings.take();
+                mPending--;
+                mStats.mDirectories++;
+                if (listing.files != null && mListener.onFilesList(listing.directory, listing.files)) {
+                    if (mListener.isSubtreeUnchanged(listing.directory, listing.files)) {
+                        mStats.mUnchangedSubtrees++;
+                        continue;
+                    }
+                    for (MetaFile2 subFile : listing.files) {
+                        handle(subFile, listing.recursionLimit - 1);
+                    }
+                }
+            }
+        }
+
+        private void handle(MetaFile2 file, int recursionLimit) {
+            if (recursionLimit < 0 || file == null)
+                return;
+            if (file.isDirectory()) {
+                if (mListener.onDirectory(file) && recursionLimit > 0) {
+                    submit(file, recursionLimit);
+                }
+            } else if (file.isFile()) {
+                mStats.mFiles++;
+                mListener.onFile(file);
+            } else {
+                mListener.onOtherType(file);
+            }
+        }
+
+        private void submit(final MetaFile2 directory, final int recursionLimit) {
+            mPending++;
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    List<MetaFile2> files = null;
+                    try {
+                        files = listFiles(directory);
+                    } finally {
+                        // always hand back a result, the visiting thread waits for it
+                        mListings.add(new Listing(directory, files, recursionLimit));
+                    }
+                }
+            });
+        }
+    }
+
+    private static class ListerThreadFactory implements ThreadFactory {
+        private static final AtomicInteger sCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ScanLister-" + sCount.incrementAndGet());
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
 }
@@ -14,6 +14,8 @@
 
 package com.archos.mediaprovider.video;
 
+import android.database.DatabaseUtils;
+
 import com.archos.mediacenter.utils.trakt.Trakt;
 
 /**
@@ -26,6 +28,35 @@ public class LoaderUtils {
     public final static String HIDE_WATCHED_FILTER = "("+VideoStore.Video.VideoColumns.ARCHOS_TRAKT_SEEN+" IS NULL OR "+
             VideoStore.Video.VideoColumns.ARCHOS_TRAKT_SEEN + " != "+ Trakt.TRAKT_DB_MARKED +") AND "+
             "("+VideoStore.Video.VideoColumns.BOOKMARK+" IS NULL OR "+VideoStore.Video.VideoColumns.BOOKMARK+" != -2)";
+    /**
+     * Selection on the video view of the movies having (or not) a genre.
+     * Checked on the genre tables, through the primary key of BELONGS_MOVIE, instead of a LIKE on the m_genres
+     * string that no index can serve. Videos that are not movies or have no genre do not have the genre.
+     * @param genre genre name as stored by the scraper, e.g. R.string.movie_genre_animation
+     */
+    public static String getMovieGenreFilter(String genre, boolean hasGenre) {
+        return getGenreFilter(ScraperTables.BELONGS_MOVIE_TABLE_NAME, ScraperTables.BELONGS_MOVIE_ID_MOVIE,
+                ScraperTables.BELONGS_MOVIE_ID_GENRE, VideoStore.Video.VideoColumns.SCRAPER_MOVIE_ID, genre, hasGenre);
+    }
+
+    /**
+     * Same as getMovieGenreFilter for the shows, through the primary key of BELONGS_SHOW
+     * @param genre genre name as stored by the scraper, e.g. R.string.tvshow_genre_animation
+     */
+    public static String getShowGenreFilter(String genre, boolean hasGenre) {
+        return getGenreFilter(ScraperTables.BELONGS_SHOW_TABLE_NAME, ScraperTables.BELONGS_SHOW_ID_SHOW,
+                ScraperTables.BELONGS_SHOW_ID_GENRE, VideoStore.Video.VideoColumns.SCRAPER_SHOW_ID, genre, hasGenre);
+    }
+
+    private static String getGenreFilter(String belongsTable, String belongsId, String belongsGenre, String idColumn,
+                                         String genre, boolean hasGenre) {
+        // the genre sub select does not depend on the row, sqlite runs it once
+        return (hasGenre ? "" : "NOT ") + "EXISTS (SELECT 1 FROM " + belongsTable +
+                " WHERE " + belongsId + "=" + idColumn +
+                " AND " + belongsGenre + "=(SELECT " + ScraperStore.Genre.ID + " FROM " + ScraperTables.GENRES_TABLE_NAME +
+                " WHERE " + ScraperStore.Genre.NAME + "=" + DatabaseUtils.sqlEscapeString(genre) + "))";
+    }
+
     //most database helper won't return any video object if set to true
     static public boolean mustHideUserHiddenObjects() {
         return true;
@@ -0,0 +1,241 @@
+// Copyright 2021 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediaprovider.video;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import androidx.preference.PreferenceManager;
+
+import com.archos.environment.NetworkState;
+import com.archos.filecorelibrary.jcifs.JcifsChangeWatcher;
+import com.archos.mediacenter.utils.AppState;
+import com.archos.mediacenter.utils.ShortcutDbAdapter;
+import com.archos.mediaprovider.NetworkScanner;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keeps change notifications on the indexed smb folders while the app is in foreground and sends only the
+ * changed paths to the network scanner, so that new files show up within seconds instead of at the next
+ * full rescan (NetworkAutoRefresh).
+ * Changes are batched during BATCH_DELAY_MS and paths below another changed path are dropped.
+ * Added and modified entries are scanned themselves, removed entries through their parent directory.
+ * The incremental scan lists that directory and each of its sub directories once, and descends only into
+ * the ones that changed since their last scan.
+ * Indexed folders must be watched again with refresh() whenever one is added or removed; changes of a
+ * folder not watched anymore are dropped, they would index it again.
+ */
+public class NetworkChangeWatcher implements JcifsChangeWatcher.Listener, Handler.Callback {
+
+    private static final Logger log = LoggerFactory.getLogger(NetworkChangeWatcher.class);
+
+    // when disabled indexed folders are only updated by the scheduled or manual rescans
+    public static final String NETWORK_CHANGE_WATCH_PREF = "network_change_watch";
+    private static final boolean NETWORK_CHANGE_WATCH_DEFAULT = true;
+
+    private static final long BATCH_DELAY_MS = 5000;
+
+    private static final int MESSAGE_REFRESH = 1;
+    private static final int MESSAGE_STOP = 2;
+    private static final int MESSAGE_FLUSH = 3;
+
+    private static NetworkChangeWatcher sInstance;
+
+    private final Context mContext;
+    private final Handler mHandler;
+    // key: root uri, only used from the handler thread
+    private final Map<String, JcifsChangeWatcher> mWatchers = new HashMap<>();
+    // paths to scan without trailing '/', guarded by this
+    private final Set<String> mPending = new HashSet<>();
+
+    private static final AppState.OnForeGroundListener sForeGroundListener = new AppState.OnForeGroundListener() {
+        @Override
+        public void onForeGroundState(Context applicationContext, boolean foreground) {
+            getInstance(applicationContext).mHandler.sendEmptyMessage(foreground ? MESSAGE_REFRESH : MESSAGE_STOP);
+        }
+    };
+
+    public static void init() {
+        AppState.addOnForeGroundListener(sForeGroundListener);
+    }
+
+    public static synchronized NetworkChangeWatcher getInstance(Context context) {
+        if (sInstance == null)
+            sInstance = new NetworkChangeWatcher(context.getApplicationContext());
+        return sInstance;
+    }
+
+    private NetworkChangeWatcher(Context context) {
+        mContext = context;
+        HandlerThread thread = new HandlerThread("NetworkChangeWatcher", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mHandler = new Handler(thread.getLooper(), this);
+    }
+
+    /**
+     * Watches the indexed folders again, to be called when they have been changed
+     */
+    public void refresh() {
+        mHandler.sendEmptyMessage(MESSAGE_REFRESH);
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+        switch (msg.what) {
+            case MESSAGE_REFRESH:
+                updateWatchers();
+                break;
+            case MESSAGE_STOP:
+                stopWatchers(new HashSet<String>());
+                break;
+            case MESSAGE_FLUSH:
+                flush();
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    private void updateWatchers() {
+        Set<String> roots = new HashSet<>();
+        if (PreferenceManager.getDefaultSharedPreferences(mContext).getBoolean(NETWORK_CHANGE_WATCH_PREF, NETWORK_CHANGE_WATCH_DEFAULT)
+                && NetworkState.isLocalNetworkConnected(mContext)) {
+            Cursor cursor = ShortcutDbAdapter.VIDEO.queryAllShortcuts(mContext);
+            if (cursor != null) {
+                int pathKey = cursor.getColumnIndex(ShortcutDbAdapter.KEY_PATH);
+                while (cursor.moveToNext()) {
+                    String path = cursor.getString(pathKey);
+                    if (path != null && "smb".equals(Uri.parse(path).getScheme()))
+                        roots.add(path);
+                }
+                cursor.close();
+            }
+            ShortcutDbAdapter.VIDEO.close();
+        }
+        stopWatchers(roots);
+        for (String root : roots) {
+            if (!mWatchers.containsKey(root)) {
+                log.debug("updateWatchers: watching " + root);
+                JcifsChangeWatcher watcher = new JcifsChangeWatcher(Uri.parse(root), this);
+                mWatchers.put(root, watcher);
+                watcher.start();
+            }
+        }
+    }
+
+    /** stops the watchers whose root is not in roots */
+    private void stopWatchers(Set<String> roots) {
+        Iterator<Map.Entry<String, JcifsChangeWatcher>> it = mWatchers.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, JcifsChangeWatcher> entry = it.next();
+            if (!roots.contains(entry.getKey())) {
+                log.debug("stopWatchers: not watching " + entry.getKey() + " anymore");
+                entry.getValue().stop();
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public void onChanges(Uri root, List<Uri> changed, List<Uri> removed) {
+        synchronized (this) {
+            for (Uri uri : changed)
+                mPending.add(stripSlash(uri.toString()));
+            for (Uri uri : removed) {
+                String path = stripSlash(uri.toString());
+                int slash = path.lastIndexOf('/');
+                if (slash > 0)
+                    mPending.add(path.substring(0, slash));
+            }
+        }
+        scheduleFlush();
+    }
+
+    @Override
+    public void onOverflow(Uri root) {
+        synchronized (this) {
+            mPending.add(stripSlash(root.toString()));
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        // keep the first deadline so that a steady stream of changes is still scanned
+        if (!mHandler.hasMessages(MESSAGE_FLUSH))
+            mHandler.sendEmptyMessageDelayed(MESSAGE_FLUSH, BATCH_DELAY_MS);
+    }
+
+    private void flush() {
+        TreeSet<String> pending;
+        synchronized (this) {
+            pending = new TreeSet<>(mPending);
+            mPending.clear();
+        }
+        // ancestors sort before their descendants, a path below one already kept is scanned with it
+        List<String> kept = new ArrayList<>();
+        Set<String> keptSet = new HashSet<>();
+        for (String path : pending) {
+            if (!hasAncestorIn(path, keptSet)) {
+                kept.add(path);
+                keptSet.add(path);
+            }
+        }
+        for (String path : kept) {
+            if (!isWatched(path)) {
+                log.debug("flush: " + path + " is not indexed anymore");
+                continue;
+            }
+            log.debug("flush: scanning " + path);
+            NetworkScanner.scanVideos(mContext, Uri.parse(path));
+        }
+    }
+
+    private boolean isWatched(String path) {
+        for (String root : mWatchers.keySet()) {
+            String stripped = stripSlash(root);
+            if (path.equals(stripped) || path.startsWith(stripped + "/"))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean hasAncestorIn(String path, Set<String> paths) {
+        for (int slash = path.lastIndexOf('/'); slash > 0; slash = path.lastIndexOf('/', slash - 1)) {
+            if (paths.contains(path.substring(0, slash)))
+                return true;
+        }
+        return false;
+    }
+
+    private static String stripSlash(String path) {
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+}
@@ -25,6 +25,7 @@ import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.net.Uri;
 import android.net.wifi.WifiManager;
@@ -64,6 +65,7 @@ import com.archos.mediaprovider.video.VideoStore.Files.FileColumns;
 import com.archos.mediaprovider.video.VideoStore.MediaColumns;
 import com.archos.mediaprovider.video.VideoStore.Video.VideoColumns;
 import com.archos.mediascraper.BaseTags;
+import com.archos.mediascraper.NfoFolderCache;
 import com.archos.mediascraper.NfoParser;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -72,6 +74,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static android.net.wifi.WifiManager.WIFI_MODE_FULL;
@@ -105,6 +108,15 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
     private static final int MESSAGE_DO_UNSCAN = 3;
     public static final String RECORD_ON_FAIL_PREFERENCE = "record_on_fail_preference_extra";
     public static final String RECORD_END_OF_SCAN_PREFERENCE = "record_on_end_preference_extra";
+    // number of directories listed at once, can be overridden per server with SCAN_PARALLELISM_PREF + "_" + server
+    public static final String SCAN_PARALLELISM_PREF = "network_scan_parallelism";
+    private static final int SCAN_PARALLELISM_DEFAULT = 4;
+    // when enabled directories that did not change since last scan are not listed again, nor anything below them
+    public static final String SCAN_INCREMENTAL_PREF = "network_scan_incremental";
+    private static final boolean SCAN_INCREMENTAL_DEFAULT = true;
+    // changes below an unchanged directory are only found by a full scan, done at least that often per scanned path
+    private static final String SCAN_LAST_FULL_PREF = "network_scan_last_full";
+    private static final long SCAN_FULL_INTERVAL_MS = 24 * 60 * 60 * 1000L;
 
     private Handler mHandler;
     private HandlerThread mHandlerThread;
@@ -348,6 +360,8 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
 
         int deleted = cr.delete(VideoStoreInternal.FILES_SCANNED, IN_FOLDER_SELECT, selectionArgs);
         log.debug("removed: " + deleted);
+        // forget the directories too, otherwise a new scan would consider them unchanged
+        cr.delete(VideoStoreInternal.SCAN_SNAPSHOT, IN_FOLDER_SELECT, selectionArgs);
 
         // send a "done" notification
         Intent intent = new Intent(ArchosMediaIntent.ACTION_VIDEO_SCANNER_SCAN_FINISHED, data);
@@ -457,6 +471,27 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
                 prescan.close();
             }
 
+            // directories known from the previous scan, upnp has no file dates
+            List<DirectorySnapshot> snapshots = new ArrayList<DirectorySnapshot>();
+            SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(this);
+            boolean incremental = upnpUri == null && f.isDirectory()
+                    && preferences.getBoolean(SCAN_INCREMENTAL_PREF, SCAN_INCREMENTAL_DEFAULT);
+            // a full scan still records the snapshots, it only does not skip anything
+            String lastFullKey = SCAN_LAST_FULL_PREF + "_" + path;
+            long now = System.currentTimeMillis();
+            long lastFull = preferences.getLong(lastFullKey, 0);
+            boolean fullScan = !incremental || now - lastFull > SCAN_FULL_INTERVAL_MS || now < lastFull;
+            if (incremental) {
+                Cursor snapshotCursor = cr.query(VideoStoreInternal.SCAN_SNAPSHOT, DirectorySnapshot.PROJECTION, IN_FOLDER_SELECT, selectionArgs, null);
+                if (snapshotCursor != null) {
+                    while (snapshotCursor.moveToNext()) {
+                        snapshots.add(new DirectorySnapshot(snapshotCursor));
+                    }
+                    snapshotCursor.close();
+                }
+                log.debug("doScan: " + snapshots.size() + " known directories, full scan " + fullScan);
+            }
+
             boolean nfoScanEnabled = NfoParser.isNetworkNfoParseEnabled(this);
             BulkOperationHandler bulkHandler = new BulkOperationHandler(nfoScanEnabled, this);
 
@@ -468,9 +503,13 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
             String server = extractSmbServer(f.getUri());
             long serverId = getLightIndexServerId(server);
             FileVisitListener fileVisitListener = new FileVisitListener(
-                    mBlacklist, prescanItemsMap, nfoScanEnabled, bulkHandler, serverId);
+                    mBlacklist, prescanItemsMap, nfoScanEnabled, bulkHandler, serverId, incremental, !fullScan, snapshots);
 
-            FileVisitor.visit(f, RECURSION_LIMIT, fileVisitListener);
+            int parallelism = getScanParallelism(f.getUri(), server);
+            log.debug("doScan: listing with " + parallelism + " threads");
+            FileVisitor.Stats stats = FileVisitor.visit(f, RECURSION_LIMIT, fileVisitListener, parallelism);
+            if (incremental && fullScan && stats.getDirectories() > 0)
+                preferences.edit().putLong(lastFullKey, now).apply();
             // once all files where visited we have inserted, updated or deleted files in the db.
             // Nfo has also been processed
             List<MetaFile2> lastPlayedDbs = fileVisitListener.getLastPlayedDbs();
@@ -490,6 +529,7 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
             // and cancel the Notification
             nm.cancel(NOTIFICATION_ID);
             log.trace("doScan: added:" + insertCount + " modified:" + updateCount + " deleted:" + deleteCount + " listed files " + mFoundFiles);
+            log.info("doScan: " + server + " " + stats);
             wifiLock.release();
 
         }
@@ -513,18 +553,38 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
         private final long mServerId;
         private final ArrayList<String> mAlreadyAddedUpnpFiles; //for files analysed DURING scan process
         private int mStorageId;
+        // snapshots are recorded, directories that match theirs are skipped with what is below them only if
+        // mSkipUnchanged
+        private final boolean mIncremental;
+        private final boolean mSkipUnchanged;
+        // snapshots and known files keyed by path, sorted so that a subtree is a range of keys
+        private final TreeMap<String, DirectorySnapshot> mSnapshots = new TreeMap<String, DirectorySnapshot>();
+        private final TreeMap<String, PrescanItem> mPrescanItemsByPath = new TreeMap<String, PrescanItem>();
 
         private final Blacklist mBlacklist;
 
         public FileVisitListener(Blacklist blacklist, HashMap<String, PrescanItem> prescanItemsMap,
-                boolean nfoScanEnabled, BulkOperationHandler bulkHandler, long serverId) {
-            log.debug("FileVisitListener: serverId=" + serverId);
+                boolean nfoScanEnabled, BulkOperationHandler bulkHandler, long serverId,
+                boolean incremental, boolean skipUnchanged, List<DirectorySnapshot> snapshots) {
+            log.debug("FileVisitListener: serverId=" + serverId + " incremental=" + incremental + " skipUnchanged=" + skipUnchanged);
             mBlacklist = blacklist;
             mPrescanItemsMap = prescanItemsMap;
             mNfoScanEnabled = nfoScanEnabled;
             mBulkHandler = bulkHandler;
             mServerId = serverId;
             mAlreadyAddedUpnpFiles = new ArrayList<>();
+            mIncremental = incremental;
+            mSkipUnchanged = incremental && skipUnchanged;
+            if (incremental) {
+                for (DirectorySnapshot snapshot : snapshots) {
+                    mSnapshots.put(snapshot._data, snapshot);
+                }
+            }
+            if (mSkipUnchanged) {
+                for (PrescanItem item : prescanItemsMap.values()) {
+                    mPrescanItemsByPath.put(item._data, item);
+                }
+            }
         }
 
         public List<MetaFile2> getLastPlayedDbs() {
@@ -537,12 +597,55 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
         }
 
         @Override
-        public boolean onFilesList(List<MetaFile2> files){
+        public boolean onFilesList(MetaFile2 directory, List<MetaFile2> files){
             // directories with a .nomedia file are not scanned
             for(MetaFile2 file : files){
                 if(file.getName().equals(".nomedia"))
                     return false;
             }
+            // lets AutoScrapeService find the nfo files without listing the directory again
+            if (mNfoScanEnabled)
+                NfoFolderCache.put(directory.getUri(), files);
+            return true;
+        }
+
+        /**
+         * compares the listing of a directory with its snapshot: same date, same number of entries and every entry
+         * with the same name, size and date. Sub directories are entries too, so changes in their own entries are
+         * seen here through their date; deeper changes are left to the next full scan. Otherwise the new state is
+         * recorded, written only once the scan completed.
+         */
+        @Override
+        public boolean isSubtreeUnchanged(MetaFile2 directory, List<MetaFile2> files) {
+            if (!mIncremental)
+                return false;
+            long lastModified = directory.lastModified();
+            // sum of the entries hashes so that it does not depend on listing order
+            long contentHash = 0;
+            for (MetaFile2 file : files) {
+                contentHash += (file.getName().hashCode() * 31L + file.length()) * 31L + file.lastModified();
+            }
+            String key = getDirectoryKey(directory.getUri().toString());
+            DirectorySnapshot snapshot = mSnapshots.get(key);
+            boolean unchanged = snapshot != null && lastModified > 0 && snapshot.date_modified == lastModified
+                    && snapshot.child_count == files.size() && snapshot.content_hash == contentHash;
+            if (snapshot != null)
+                snapshot.needsDelete = false;
+            if (!unchanged) {
+                mBulkHandler.addSnapshot(key, Math.max(lastModified, 0), files.size(), contentHash);
+                return false;
+            }
+            if (!mSkipUnchanged)
+                return false;
+            log.debug("isSubtreeUnchanged: " + key + " did not change, skipping it");
+            // everything known below it is kept as is
+            String end = key + Character.MAX_VALUE;
+            for (DirectorySnapshot known : mSnapshots.subMap(key, end).values()) {
+                known.needsDelete = false;
+            }
+            for (PrescanItem item : mPrescanItemsByPath.subMap(key, end).values()) {
+                item.needsDelete = false;
+            }
             return true;
         }
 
@@ -623,6 +726,14 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
             }
             mBulkHandler.addDelete(deletes);
 
+            DeleteString snapshotDeletes = new DeleteString();
+            for (DirectorySnapshot snapshot : mSnapshots.values()) {
+                if (snapshot.needsDelete) {
+                    snapshotDeletes.add(snapshot._id);
+                }
+            }
+            mBulkHandler.addSnapshotDelete(snapshotDeletes);
+
             // force execution of all pending operations
             mBulkHandler.executePending();
         }
@@ -675,6 +786,8 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
 
         private final CPOExecutor mUpdateExecutor;
         private final BulkInserter mInsertExecutor;
+        // snapshots are only written once files are, an interrupted scan must not mark a directory as done
+        private final ArrayList<ContentProviderOperation> mSnapshotOperations = new ArrayList<ContentProviderOperation>();
 
         private int mDeletes;
 
@@ -711,11 +824,34 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
             mInsertExecutor.add(item);
         }
 
+        public void addSnapshot(String directory, long lastModified, int childCount, long contentHash) {
+            ContentValues values = new ContentValues();
+            values.put(MediaColumns.DATA, directory);
+            values.put(DirectorySnapshot.DATE_MODIFIED, Long.valueOf(lastModified));
+            values.put(DirectorySnapshot.CHILD_COUNT, Integer.valueOf(childCount));
+            values.put(DirectorySnapshot.CONTENT_HASH, Long.valueOf(contentHash));
+            mSnapshotOperations.add(ContentProviderOperation.newInsert(VideoStoreInternal.SCAN_SNAPSHOT)
+                    .withValues(values).build());
+        }
+
+        public void addSnapshotDelete(DeleteString deletes) {
+            if (deletes.getCount() > 0) {
+                mSnapshotOperations.add(ContentProviderOperation.newDelete(VideoStoreInternal.SCAN_SNAPSHOT)
+                        .withSelection(BaseColumns._ID + " IN (" + deletes.toString() + ")", null).build());
+            }
+        }
+
         public void executePending() {
             log.debug("executePending: process updates");
             mUpdateExecutor.execute();
             log.debug("executePending: process inserts");
             mInsertExecutor.execute();
+            log.debug("executePending: process " + mSnapshotOperations.size() + " snapshots");
+            for (ContentProviderOperation operation : mSnapshotOperations) {
+                mUpdateExecutor.add(operation);
+            }
+            mSnapshotOperations.clear();
+            mUpdateExecutor.execute();
             log.debug("executePending: done");
         }
 
@@ -894,6 +1030,15 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
         return "";
     }
 
+    /** number of lister threads for a server, upnp is kept sequential, UpnpRawLister is not meant to browse concurrently */
+    private int getScanParallelism(Uri uri, String server) {
+        if ("upnp".equals(uri.getScheme()))
+            return 1;
+        SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(this);
+        int parallelism = pref.getInt(SCAN_PARALLELISM_PREF, SCAN_PARALLELISM_DEFAULT);
+        return Math.max(1, pref.getInt(SCAN_PARALLELISM_PREF + "_" + server, parallelism));
+    }
+
     private static final String SMB_SERVER_SELECTION = MediaColumns.DATA + "=?";
     private static final String[] ID_PROJECTION = new String[] {
         BaseColumns._ID,
@@ -961,6 +1106,44 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
         }
     }
 
+    /**
+     * class that holds the state of a directory when it was last listed<p>
+     * _id, _data, date_modified, child_count, content_hash
+     **/
+    private static class DirectorySnapshot {
+        public static final String DATE_MODIFIED = "date_modified";
+        public static final String CHILD_COUNT = "child_count";
+        public static final String CONTENT_HASH = "content_hash";
+        public static String[] PROJECTION = new String[] {
+            BaseColumns._ID,
+            MediaColumns.DATA,
+            DATE_MODIFIED,
+            CHILD_COUNT,
+            CONTENT_HASH,
+        };
+
+        public final long _id;
+        public final String _data;
+        public final long date_modified;
+        public final int child_count;
+        public final long content_hash;
+        // if false then directory was seen again
+        public boolean needsDelete = true;
+
+        public DirectorySnapshot(Cursor c) {
+            _id = c.getLong(0);
+            _data = c.getString(1);
+            date_modified = c.getLong(2);
+            child_count = c.getInt(3);
+            content_hash = c.getLong(4);
+        }
+    }
+
+    /** directory uri with a trailing slash, the way it is stored in scan snapshots */
+    private static String getDirectoryKey(String directory) {
+        return directory.endsWith("/") ? directory : directory + "/";
+    }
+
     /** class that contains scanned information for a file */
     private static class FileScanInfo {
         public String _data;
@@ -112,15 +112,15 @@ public final class ScraperTables {
     private static final String PLAYS_SHOW_ROLE = "role_plays";
     private static final String PLAYS_SHOW_ID_ACTOR = "actor_plays";
 
-    private static final String BELONGS_MOVIE_ID_GENRE = "genre_belongs";
-    private static final String BELONGS_MOVIE_ID_MOVIE = "movie_belongs";
+    static final String BELONGS_MOVIE_ID_GENRE = "genre_belongs";
+    static final String BELONGS_MOVIE_ID_MOVIE = "movie_belongs";
 
     private static final String GUESTS_ID_EPISODE = "episode_guests";
     private static final String GUESTS_ID_ACTOR = "actor_guests";
     private static final String GUESTS_ROLE = "role_guests";
 
-    private static final String BELONGS_SHOW_ID_SHOW = "show_belongs";
-    private static final String BELONGS_SHOW_ID_GENRE = "genre_belongs";
+    static final String BELONGS_SHOW_ID_SHOW = "show_belongs";
+    static final String BELONGS_SHOW_ID_GENRE = "genre_belongs";
 
     /*
      * List of requests to create the tables, views and triggers.
@@ -789,6 +789,30 @@ public final class ScraperTables {
             "UPDATE " + VideoOpenHelper.FILES_TABLE_NAME + " SET ArchosMediaScraper_id=NEW._id, ArchosMediaScraper_type=" + ScraperStore.SCRAPER_TYPE_SHOW +
             " WHERE remote_id=NEW.video_id;" +
             "END";
+    // keep the full text search index of the videos in sync with the scraped names, actors and plots
+    private static final String VIDEO_FTS_MOVIE_INSERT_TRIGGER_CREATE =
+            "CREATE TRIGGER IF NOT EXISTS video_fts_movie_insert AFTER INSERT ON " + MOVIE_TABLE_NAME + " " +
+            "BEGIN " + VideoOpenHelper.getVideoFtsRefresh("(NEW.video_id)") + "END";
+    private static final String VIDEO_FTS_MOVIE_UPDATE_TRIGGER_CREATE =
+            "CREATE TRIGGER IF NOT EXISTS video_fts_movie_update " +
+            "AFTER UPDATE OF video_id, name_movie, plot_movie, m_actors ON " + MOVIE_TABLE_NAME + " " +
+            "BEGIN " + VideoOpenHelper.getVideoFtsRefresh("(OLD.video_id, NEW.video_id)") + "END";
+    private static final String VIDEO_FTS_MOVIE_DELETE_TRIGGER_CREATE =
+            "CREATE TRIGGER IF NOT EXISTS video_fts_movie_delete AFTER DELETE ON " + MOVIE_TABLE_NAME + " " +
+            "BEGIN " + VideoOpenHelper.getVideoFtsRefresh("(OLD.video_id)") + "END";
+    private static final String VIDEO_FTS_EPISODE_INSERT_TRIGGER_CREATE =
+            "CREATE TRIGGER IF NOT EXISTS video_fts_episode_insert AFTER INSERT ON " + EPISODE_TABLE_NAME + " " +
+            "BEGIN " + VideoOpenHelper.getVideoFtsRefresh("(NEW.video_id)") + "END";
+    private static final String VIDEO_FTS_EPISODE_UPDATE_TRIGGER_CREATE =
+            "CREATE TRIGGER IF NOT EXISTS video_fts_episode_update " +
+            "AFTER UPDATE OF video_id, show_episode, name_episode, plot_episode, e_actors ON " + EPISODE_TABLE_NAME + " " +
+            "BEGIN " + VideoOpenHelper.getVideoFtsRefresh("(OLD.video_id, NEW.video_id)") + "END";
+    private static final String VIDEO_FTS_EPISODE_DELETE_TRIGGER_CREATE =
+            "CREATE TRIGGER IF NOT EXISTS video_fts_episode_delete AFTER DELETE ON " + EPISODE_TABLE_NAME + " " +
+            "BEGIN " + VideoOpenHelper.getVideoFtsRefresh("(OLD.video_id)") + "END";
+    private static final String VIDEO_FTS_SHOW_UPDATE_TRIGGER_CREATE =
+            "CREATE TRIGGER IF NOT EXISTS video_fts_show_update AFTER UPDATE OF name_show, s_actors ON " + SHOW_TABLE_NAME + " " +
+            "BEGIN " + VideoOpenHelper.getVideoFtsRefresh("(SELECT video_id FROM " + EPISODE_TABLE_NAME + " WHERE show_episode = NEW._id)") + "END";
     // uses cover_episode instead of cover_show if != null
     // also includes backdrop and backdrop_url
     private static final String ALL_VIDEOS_VIEW_CREATE_v24 =
@@ -1309,5 +1333,15 @@ public final class ScraperTables {
             db.execSQL("CREATE INDEX WRITERS_EPISODE_idx ON WRITERS_EPISODE(writer_writers)");
             db.execSQL("CREATE INDEX WRITERS_SHOW_idx ON WRITERS_SHOW(writer_writers)");
         }
+        if (toVersion == 43) {
+            log.debug("upgradeTo: " + toVersion);
+            db.execSQL(VIDEO_FTS_MOVIE_INSERT_TRIGGER_CREATE);
+            db.execSQL(VIDEO_FTS_MOVIE_UPDATE_TRIGGER_CREATE);
+            db.execSQL(VIDEO_FTS_MOVIE_DELETE_TRIGGER_CREATE);
+            db.execSQL(VIDEO_FTS_EPISODE_INSERT_TRIGGER_CREATE);
+            db.execSQL(VIDEO_FTS_EPISODE_UPDATE_TRIGGER_CREATE);
+            db.execSQL(VIDEO_FTS_EPISODE_DELETE_TRIGGER_CREATE);
+            db.execSQL(VIDEO_FTS_SHOW_UPDATE_TRIGGER_CREATE);
+        }
     }
 }
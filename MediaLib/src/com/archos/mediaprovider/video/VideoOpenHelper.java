@@ -17,6 +17,7 @@ package com.archos.mediaprovider.video;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.provider.BaseColumns;
 import android.provider.MediaStore.Files.FileColumns;
@@ -34,6 +35,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.Locale;
 
 /**
  * Creates the video database
@@ -44,7 +46,7 @@ public class VideoOpenHelper extends DeleteOnDowngradeSQLiteOpenHelper {
     // that is what onCreate creates
     private static final int DATABASE_CREATE_VERSION = 36; // initial version for v1.0 of nova (archos was 10)
     // that is the current version
-    private static final int DATABASE_VERSION = 41;
+    private static final int DATABASE_VERSION = 44;
     private static final String DATABASE_NAME = "media.db";
 
     // (Integer.MAX_VALUE / 2) rounded to human readable form
@@ -381,6 +383,118 @@ public class VideoOpenHelper extends DeleteOnDowngradeSQLiteOpenHelper {
             "CREATE VIEW " + SMB_SERVER_ACTIVE_VIEW_NAME + " AS " +
             "SELECT _id AS Archos_smbserver FROM smb_server WHERE active != 0";
 
+    // ------------- ---##[ Scan snapshots       ]## ---------------------------
+    // scan_snapshot table holds the state of network directories when they were last listed
+    // used by the network scanner to skip listing directories that did not change
+    public static final String SCAN_SNAPSHOT_TABLE_NAME = "scan_snapshot";
+    private static final String CREATE_SCAN_SNAPSHOT_TABLE =
+            "CREATE TABLE IF NOT EXISTS " + SCAN_SNAPSHOT_TABLE_NAME + "(" +
+                    "_id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL," +
+                    "_data TEXT UNIQUE ON CONFLICT REPLACE NOT NULL," +
+                    "date_modified INTEGER NOT NULL DEFAULT 0," +
+                    "child_count INTEGER NOT NULL DEFAULT 0," +
+                    "content_hash INTEGER NOT NULL DEFAULT 0" +
+                    ")";
+
+    // ------------- ---##[ Full text search     ]## ---------------------------
+    // video_fts holds the searchable text of each video, docid is the _id of the video in files
+    // FTS4 and not FTS5 which the platform sqlite does not provide, prefix indexes make short prefix queries cheap
+    public static final String VIDEO_FTS_TABLE_NAME = "video_fts";
+    // columns are in ranking order: videos matching in an earlier column come first
+    private static final String CREATE_VIDEO_FTS_TABLE =
+            "CREATE VIRTUAL TABLE IF NOT EXISTS " + VIDEO_FTS_TABLE_NAME + " USING fts4(" +
+                    "name, title, e_name, actors, plot, prefix=\"2,3\")";
+    // case and accent insensitive for non ascii characters, not compiled in every sqlite
+    private static final String CREATE_VIDEO_FTS_TABLE_UNICODE =
+            "CREATE VIRTUAL TABLE IF NOT EXISTS " + VIDEO_FTS_TABLE_NAME + " USING fts4(" +
+                    "name, title, e_name, actors, plot, prefix=\"2,3\", tokenize=unicode61 \"remove_diacritics=1\")";
+    private static final String VIDEO_FTS_SELECT =
+            "SELECT f._id, coalesce(name_movie, name_show), coalesce(f.archos_title, f.title), name_episode, " +
+                    "coalesce(m_actors, s_actors, '') || ' ' || coalesce(e_actors, ''), coalesce(plot_movie, plot_episode) " +
+                    "FROM " + FILES_TABLE_NAME + " AS f " +
+                    "LEFT JOIN movie AS m ON (m.video_id = f._id) " +
+                    "LEFT JOIN episode AS e ON (e.video_id = f._id) " +
+                    "LEFT JOIN show AS s ON (e.show_episode = s._id) " +
+                    "WHERE f.media_type = 3";
+    private static final String FILL_VIDEO_FTS_TABLE =
+            "INSERT INTO " + VIDEO_FTS_TABLE_NAME + "(docid, name, title, e_name, actors, plot) " + VIDEO_FTS_SELECT;
+    private static final String CREATE_VIDEO_FTS_TRIGGER_FILES_INSERT =
+            "CREATE TRIGGER IF NOT EXISTS video_fts_files_insert AFTER INSERT ON " + FILES_TABLE_NAME + " " +
+            "BEGIN " + getVideoFtsRefresh("(NEW._id)") + "END";
+    // files rows are inserted with their _data only and completed by an update
+    private static final String CREATE_VIDEO_FTS_TRIGGER_FILES_UPDATE =
+            "CREATE TRIGGER IF NOT EXISTS video_fts_files_update " +
+            "AFTER UPDATE OF _id, title, archos_title, media_type ON " + FILES_TABLE_NAME + " " +
+            "BEGIN " + getVideoFtsRefresh("(OLD._id, NEW._id)") + "END";
+    private static final String CREATE_VIDEO_FTS_TRIGGER_FILES_DELETE =
+            "CREATE TRIGGER IF NOT EXISTS video_fts_files_delete AFTER DELETE ON " + FILES_TABLE_NAME + " " +
+            "BEGIN DELETE FROM " + VIDEO_FTS_TABLE_NAME + " WHERE docid = OLD._id; END";
+
+    // ------------- ---##[ Browse cache         ]## ---------------------------
+    // browse_cache holds the rows returned by the aggregate queries of the browse screens (by year, genre,
+    // rating, letter...) in their order, browse_cache_query lists the queries whose rows are up to date.
+    // Any change to the data these aggregates are built from empties browse_cache_query through the triggers
+    // below, the provider then runs the query again the next time it is asked for.
+    public static final String BROWSE_CACHE_TABLE_NAME = "browse_cache";
+    public static final String BROWSE_CACHE_QUERY_TABLE_NAME = "browse_cache_query";
+    private static final String CREATE_BROWSE_CACHE_TABLE =
+            "CREATE TABLE IF NOT EXISTS " + BROWSE_CACHE_TABLE_NAME + "(" +
+                    "query TEXT NOT NULL," +
+                    "position INTEGER NOT NULL," +
+                    // no type affinity: years and ratings must stay numbers to be sorted as such
+                    "_id, name, list, po_file_list, number" +
+                    ")";
+    private static final String CREATE_BROWSE_CACHE_IDX =
+            "CREATE INDEX IF NOT EXISTS browse_cache_idx ON " + BROWSE_CACHE_TABLE_NAME + "(query, position)";
+    private static final String CREATE_BROWSE_CACHE_QUERY_TABLE =
+            "CREATE TABLE IF NOT EXISTS " + BROWSE_CACHE_QUERY_TABLE_NAME + "(" +
+                    "query TEXT PRIMARY KEY NOT NULL" +
+                    ")";
+    // table and event of the triggers invalidating browse_cache
+    private static final String[][] BROWSE_CACHE_TRIGGERS = {
+            // scraped, hidden, watched or no longer available videos
+            { FILES_TABLE_NAME, "INSERT" },
+            { FILES_TABLE_NAME, "UPDATE OF ArchosMediaScraper_id, ArchosMediaScraper_type, Archos_hiddenByUser, " +
+                    "Archos_traktSeen, bookmark, volume_hidden, Archos_smbserver, media_type" },
+            { FILES_TABLE_NAME, "DELETE" },
+            { SMB_SERVER_TABLE_NAME, "UPDATE OF active" },
+            // names, years, ratings, posters and genres
+            { ScraperTables.MOVIE_TABLE_NAME, "INSERT" },
+            { ScraperTables.MOVIE_TABLE_NAME, "UPDATE" },
+            { ScraperTables.MOVIE_TABLE_NAME, "DELETE" },
+            { ScraperTables.SHOW_TABLE_NAME, "INSERT" },
+            { ScraperTables.SHOW_TABLE_NAME, "UPDATE" },
+            { ScraperTables.SHOW_TABLE_NAME, "DELETE" },
+            { ScraperTables.EPISODE_TABLE_NAME, "INSERT" },
+            { ScraperTables.EPISODE_TABLE_NAME, "UPDATE" },
+            { ScraperTables.EPISODE_TABLE_NAME, "DELETE" },
+            { ScraperTables.MOVIE_POSTERS_TABLE_NAME, "UPDATE" },
+            { ScraperTables.SHOW_POSTERS_TABLE_NAME, "UPDATE" },
+            { ScraperTables.BELONGS_MOVIE_TABLE_NAME, "INSERT" },
+            { ScraperTables.BELONGS_MOVIE_TABLE_NAME, "DELETE" },
+            { ScraperTables.BELONGS_SHOW_TABLE_NAME, "INSERT" },
+            { ScraperTables.BELONGS_SHOW_TABLE_NAME, "DELETE" },
+            { ScraperTables.GENRES_TABLE_NAME, "UPDATE" },
+    };
+
+    private static void createBrowseCacheTriggers(SQLiteDatabase db) {
+        for (String[] trigger : BROWSE_CACHE_TRIGGERS) {
+            String event = trigger[1].split(" ")[0];
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS browse_cache_" + trigger[0].toLowerCase(Locale.ROOT) + "_" + event.toLowerCase(Locale.ROOT) +
+                    " AFTER " + trigger[1] + " ON " + trigger[0] + " " +
+                    "BEGIN DELETE FROM " + BROWSE_CACHE_QUERY_TABLE_NAME + "; END");
+        }
+    }
+
+    /**
+     * Trigger body rebuilding the video_fts rows of some videos, also used by the scraper tables
+     * @param videoIds sql list or sub select of files _id, e.g. "(NEW.video_id)"
+     */
+    static String getVideoFtsRefresh(String videoIds) {
+        return "DELETE FROM " + VIDEO_FTS_TABLE_NAME + " WHERE docid IN " + videoIds + "; " +
+                FILL_VIDEO_FTS_TABLE + " AND f._id IN " + videoIds + "; ";
+    }
+
     /* ---------------------------------------------------------------------- */
     /* --                       VIDEO database part                           */
     /* ---------------------------------------------------------------------- */
@@ -1345,6 +1459,28 @@ public class VideoOpenHelper extends DeleteOnDowngradeSQLiteOpenHelper {
             SQLiteUtils.dropView(db, VIDEO_VIEW_NAME);
             db.execSQL(CREATE_VIDEO_VIEW_V41);
         }
+        if (oldVersion < 42) {
+            db.execSQL(CREATE_SCAN_SNAPSHOT_TABLE);
+        }
+        if (oldVersion < 43) {
+            try {
+                db.execSQL(CREATE_VIDEO_FTS_TABLE_UNICODE);
+            } catch (SQLException e) {
+                log.warn("onUpgrade: unicode61 tokenizer not available, using the default one", e);
+                db.execSQL(CREATE_VIDEO_FTS_TABLE);
+            }
+            db.execSQL(CREATE_VIDEO_FTS_TRIGGER_FILES_INSERT);
+            db.execSQL(CREATE_VIDEO_FTS_TRIGGER_FILES_UPDATE);
+            db.execSQL(CREATE_VIDEO_FTS_TRIGGER_FILES_DELETE);
+            ScraperTables.upgradeTo(db, 43);
+            db.execSQL(FILL_VIDEO_FTS_TABLE);
+        }
+        if (oldVersion < 44) {
+            db.execSQL(CREATE_BROWSE_CACHE_TABLE);
+            db.execSQL(CREATE_BROWSE_CACHE_IDX);
+            db.execSQL(CREATE_BROWSE_CACHE_QUERY_TABLE);
+            createBrowseCacheTriggers(db);
+        }
     }
 
     private static final String[] PROJECTION = {
@@ -26,6 +26,7 @@ import android.content.SharedPreferences;
 import android.content.UriMatcher;
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.graphics.Bitmap;
@@ -75,6 +76,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.PriorityQueue;
 import java.util.Random;
 
@@ -249,6 +251,13 @@ public class VideoProvider extends ContentProvider {
             return c;
         }
 
+        // same for the aggregates of the browse screens, served from browse_cache while up to date
+        if (table == BROWSEQUERY) {
+            Cursor c = queryBrowseCache(db, selection, selectionArgs, cancellationSignal);
+            c.setNotificationUri(mCr, VideoStore.ALL_CONTENT_URI);
+            return c;
+        }
+
         boolean distinct = uri.getQueryParameter("distinct") != null;
         String limit = uri.getQueryParameter("limit");
         String groupby = uri.getQueryParameter("group");
@@ -282,6 +291,18 @@ public class VideoProvider extends ContentProvider {
             case VIDEO_MEDIA:
                 qb.setTables(VideoOpenHelper.VIDEO_VIEW_NAME);
                 break;
+            case VIDEO_SEARCH: {
+                qb.setTables(VideoOpenHelper.VIDEO_VIEW_NAME);
+                String match = getMatchQuery(uri.getQueryParameter(Video.Media.SEARCH_QUERY));
+                if (match == null) {
+                    // nothing to search for, every video matches
+                    break;
+                }
+                qb.setTables(VideoOpenHelper.VIDEO_VIEW_NAME + " JOIN (" + SEARCH_RANK_QUERY + ") AS search ON (_id = search.docid)");
+                prependArgs.add(match);
+                sort = TextUtils.isEmpty(sort) ? SEARCH_RANK : SEARCH_RANK + ", " + sort;
+                break;
+            }
             case VIDEO_LIST: {
                 qb.setTables(ListTables.VIDEO_LIST_TABLE);
                 qb.appendWhere(VideoStore.List.Columns.ID+"=?");
@@ -331,6 +352,97 @@ public class VideoProvider extends ContentProvider {
         return c;
     }
 
+    private static final String[] BROWSE_CACHE_COLUMNS = {
+            BaseColumns._ID, "name", "list", "po_file_list", "number"
+    };
+
+    /**
+     * Returns the rows of an aggregate query from browse_cache, running the query to fill it when the
+     * library changed since it was last run
+     */
+    private static Cursor queryBrowseCache(SQLiteDatabase db, String query, String[] selectionArgs,
+            CancellationSignal cancellationSignal) {
+        String key = selectionArgs == null || selectionArgs.length == 0 ? query
+                : query + "\n" + TextUtils.join("\n", selectionArgs);
+        String[] keyArgs = { key };
+        db.beginTransaction();
+        try {
+            if (DatabaseUtils.queryNumEntries(db, VideoOpenHelper.BROWSE_CACHE_QUERY_TABLE_NAME, "query=?", keyArgs) == 0) {
+                log.debug("queryBrowseCache: refreshing " + query);
+                db.delete(VideoOpenHelper.BROWSE_CACHE_TABLE_NAME, "query=?", keyArgs);
+                Cursor c = db.rawQuery(query, selectionArgs, cancellationSignal);
+                try {
+                    ContentValues cv = new ContentValues();
+                    int position = 0;
+                    while (c.moveToNext()) {
+                        cv.clear();
+                        cv.put("query", key);
+                        cv.put("position", position++);
+                        for (String column : BROWSE_CACHE_COLUMNS)
+                            putColumn(cv, column, c);
+                        db.insert(VideoOpenHelper.BROWSE_CACHE_TABLE_NAME, null, cv);
+                    }
+                } finally {
+                    c.close();
+                }
+                ContentValues queryValues = new ContentValues();
+                queryValues.put("query", key);
+                db.insert(VideoOpenHelper.BROWSE_CACHE_QUERY_TABLE_NAME, null, queryValues);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return db.query(false, VideoOpenHelper.BROWSE_CACHE_TABLE_NAME, BROWSE_CACHE_COLUMNS, "query=?", keyArgs,
+                null, null, "position", null, cancellationSignal);
+    }
+
+    // keeps the type of the value, e.g. years are sorted as numbers
+    private static void putColumn(ContentValues cv, String column, Cursor c) {
+        int index = c.getColumnIndexOrThrow(column);
+        switch (c.getType(index)) {
+            case Cursor.FIELD_TYPE_NULL:
+                cv.putNull(column);
+                break;
+            case Cursor.FIELD_TYPE_INTEGER:
+                cv.put(column, c.getLong(index));
+                break;
+            case Cursor.FIELD_TYPE_FLOAT:
+                cv.put(column, c.getDouble(index));
+                break;
+            default:
+                cv.put(column, c.getString(index));
+                break;
+        }
+    }
+
+    // fts4 has no ranking function: rank by the first column with a match, offsets() lists the matches by column
+    private static final String SEARCH_RANK = "search_rank";
+    private static final String SEARCH_RANK_QUERY =
+            "SELECT docid, CAST(substr(offsets(" + VideoOpenHelper.VIDEO_FTS_TABLE_NAME + "), 1, 1) AS INTEGER) AS " + SEARCH_RANK +
+            " FROM " + VideoOpenHelper.VIDEO_FTS_TABLE_NAME +
+            " WHERE " + VideoOpenHelper.VIDEO_FTS_TABLE_NAME + " MATCH ?";
+
+    /**
+     * Turns what the user typed into a prefix query: "Star wa" gives "star* wa*" which matches
+     * videos having a word starting with "star" and a word starting with "wa".
+     * Punctuation is dropped so that the fts query syntax can not be used.
+     * @return null if there is no word to search for
+     */
+    private static String getMatchQuery(String query) {
+        if (query == null)
+            return null;
+        StringBuilder sb = new StringBuilder();
+        for (String word : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty())
+                continue;
+            if (sb.length() > 0)
+                sb.append(' ');
+            sb.append(word).append('*');
+        }
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+
     private static String[] combine(List<String> prepend, String[] userArgs) {
         int presize = prepend.size();
         if (presize == 0) {
@@ -383,6 +495,7 @@ public class VideoProvider extends ContentProvider {
                 break;
 
             case VIDEO_MEDIA:
+            case VIDEO_SEARCH:
                 return Video.Media.CONTENT_TYPE;
         }
         throw new IllegalStateException("Unknown URL : " + url);
@@ -999,6 +1112,7 @@ public class VideoProvider extends ContentProvider {
     private static final int VIDEO_MEDIA_ID = 201;
     private static final int VIDEO_THUMBNAILS = 202;
     private static final int VIDEO_THUMBNAILS_ID = 203;
+    private static final int VIDEO_SEARCH = 204;
 
     private static final int FILES = 700;
     private static final int FILES_ID = 701;
@@ -1008,6 +1122,7 @@ public class VideoProvider extends ContentProvider {
 
     private static final int RAW = 900;
     private static final int RAWQUERY = 901;
+    private static final int BROWSEQUERY = 902;
 
     private static final int SUBS_MEDIA = 1000;
     private static final int SUBS_MEDIA_ID = 1001;
@@ -1019,6 +1134,7 @@ public class VideoProvider extends ContentProvider {
     static {
         URI_MATCHER.addURI(VideoStore.AUTHORITY, "raw/*", RAW);
         URI_MATCHER.addURI(VideoStore.AUTHORITY, "rawquery", RAWQUERY);
+        URI_MATCHER.addURI(VideoStore.AUTHORITY, "browsequery", BROWSEQUERY);
 
         URI_MATCHER.addURI(VideoStore.AUTHORITY, "list", LIST);
         URI_MATCHER.addURI(VideoStore.AUTHORITY, "list/#", VIDEO_LIST);
@@ -1026,6 +1142,7 @@ public class VideoProvider extends ContentProvider {
         URI_MATCHER.addURI(VideoStore.AUTHORITY, "*/video/media/#", VIDEO_MEDIA_ID);
         URI_MATCHER.addURI(VideoStore.AUTHORITY, "*/video/thumbnails", VIDEO_THUMBNAILS);
         URI_MATCHER.addURI(VideoStore.AUTHORITY, "*/video/thumbnails/#", VIDEO_THUMBNAILS_ID);
+        URI_MATCHER.addURI(VideoStore.AUTHORITY, "*/video/search", VIDEO_SEARCH);
 
         URI_MATCHER.addURI(VideoStore.AUTHORITY, "*/file", FILES);
         URI_MATCHER.addURI(VideoStore.AUTHORITY, "*/file/#", FILES_ID);
@@ -237,6 +237,14 @@ public final class VideoStore {
      */
     public static final Uri RAW_QUERY = VideoStoreInternal.RAWQUERY;
 
+    /**
+     * Same as {@link #RAW_QUERY} for the aggregate queries of the browse screens (movies by year, genre...):
+     * the rows returned are kept in a summary table until the library changes (scrape, hidden or watched state,
+     * servers going offline) so that opening a browse screen again does not aggregate the whole video view.
+     * The query must return the _id, name, list, po_file_list and number columns, the rows keep its order.
+     */
+    public static final Uri BROWSE_QUERY = VideoStoreInternal.BROWSEQUERY;
+
     // ---------------------------------------------------------------------- //
     // Most parts below are just a copy of MediaStore.java from the framework //
     // The biggest difference is that this version hands out our provider     //
@@ -1674,6 +1682,25 @@ public final class VideoStore {
             public static final Uri LIST_CONTENT_URI =
                     Uri.withAppendedPath(getContentUri("external"),"list");
 
+            /**
+             * Query parameter of the search uri holding the text typed by the user
+             */
+            public static final String SEARCH_QUERY = "q";
+
+            /**
+             * Get the content:// style URI for a full text search of the video media table:
+             * rows are the ones of EXTERNAL_CONTENT_URI whose names, titles, episode names, actors
+             * or plot contain words starting with the words of the query, best matches first.
+             *
+             * @param query the text typed by the user
+             * @return the URI to search the video media table with
+             */
+            public static Uri getSearchUri(String query) {
+                return Uri.parse(CONTENT_AUTHORITY_SLASH + "external/video/search").buildUpon()
+                        .appendQueryParameter(SEARCH_QUERY, query)
+                        .build();
+            }
+
             /**
              * The MIME type for this table.
              */
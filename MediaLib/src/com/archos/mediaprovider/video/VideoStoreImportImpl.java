@@ -47,6 +47,7 @@ import com.archos.mediaprovider.CustomCursorFactory.CustomCursor;
 import com.archos.mediaprovider.ImportState;
 import com.archos.mediaprovider.ImportState.State;
 import com.archos.mediaprovider.MediaRetrieverServiceClient;
+import com.archos.mediaprovider.MediaRetrieverServicePool;
 import com.archos.mediaprovider.video.VideoStore.Video.VideoColumns;
 import com.archos.mediascraper.BaseTags;
 import com.archos.mediascraper.NfoParser;
@@ -58,6 +59,13 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static com.archos.filecorelibrary.FileUtils.isNetworkShare;
@@ -71,7 +79,9 @@ public class VideoStoreImportImpl {
     private final Context mContext;
     private final ContentResolver mCr;
     private final Blacklist mBlackList;
-    private final MediaRetrieverServiceClient mMediaRetrieverServiceClient;
+    private final MediaRetrieverServicePool mMediaRetrieverServicePool;
+    // one thread per retriever instance, results are written from the importing thread
+    private final ExecutorService mRetrieverExecutor;
 
     private static final String MediaColumnsDATA = MediaColumns.DATA;
 
@@ -82,7 +92,17 @@ public class VideoStoreImportImpl {
         mContext = context;
         mCr = mContext.getContentResolver();
         mBlackList = Blacklist.getInstance(context);
-        mMediaRetrieverServiceClient = new MediaRetrieverServiceClient(context);
+        mMediaRetrieverServicePool = new MediaRetrieverServicePool(context, MediaRetrieverServicePool.getDefaultSize());
+        mRetrieverExecutor = Executors.newFixedThreadPool(mMediaRetrieverServicePool.getSize(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "MediaRetriever-" + mCount.incrementAndGet());
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
         String [] blacklistCamDirs = mBlackList.getBlackListCamDirs();
         BLACKLIST = "";
         for (String blacklisted : mBlackList.getBlackListCamera())
@@ -96,7 +116,8 @@ public class VideoStoreImportImpl {
     }
 
     public void destroy() {
-        mMediaRetrieverServiceClient.unbindAndDestroy();
+        mRetrieverExecutor.shutdownNow();
+        mMediaRetrieverServicePool.unbindAndDestroy();
     }
 
     public void doFullImport() {
@@ -171,12 +192,12 @@ public class VideoStoreImportImpl {
 
         CPOExecutor operations = new CPOExecutor(VideoStore.AUTHORITY, cr, 500);
         long time = System.currentTimeMillis() / 1000L;
-        String timeString = String.valueOf(time);
+        final String timeString = String.valueOf(time);
 
-        NfoParser.ImportContext importContext = new NfoParser.ImportContext();
+        // metadata of the files is retrieved in parallel, results are handled in cursor order
+        List<Job> jobs = new ArrayList<Job>(remaining);
+        List<Future<ContentValues>> results = new ArrayList<Future<ContentValues>>(remaining);
         while (c.moveToNext()) {
-            ImportState.VIDEO.setRemainingCount(remaining--);
-            log.debug("doFullImport: ImportState.VIDEO.setRemainingCount " + remaining);
             String id;
             String path;
             int scraperID;
@@ -190,17 +211,36 @@ public class VideoStoreImportImpl {
                  //we silently ignore empty lines - it means content has been deleted while scanning
                 continue;
             }
-            Job job = new Job(path, id, blacklist);
-            log.debug("handleScanCursor: scanning " + job.mPath);
+            final Job job = new Job(path, id, scraperID, blacklist);
+            jobs.add(job);
+            results.add(mRetrieverExecutor.submit(new Callable<ContentValues>() {
+                @Override
+                public ContentValues call() throws Exception {
+                    log.debug("handleScanCursor: scanning " + job.mPath);
+                    return fromRetrieverService(job, timeString);
+                }
+            }));
+        }
+
+        NfoParser.ImportContext importContext = new NfoParser.ImportContext();
+        for (int i = 0; i < jobs.size(); i++) {
+            ImportState.VIDEO.setRemainingCount(remaining--);
+            log.debug("doFullImport: ImportState.VIDEO.setRemainingCount " + remaining);
+            Job job = jobs.get(i);
+            String path = job.mPath.toString();
+            int scraperID = job.mScraperId;
             // update property with current file
             ContentValues cv = null;
             try {
-                cv = fromRetrieverService(job, timeString);
+                cv = results.get(i).get();
             } catch (InterruptedException e) {
                 // won't happen but stopping as soon as we can would be desired
+                cancel(results, i);
                 break;
-            } catch (MediaRetrieverServiceClient.ServiceManagementException e) {
+            } catch (ExecutionException e) {
                 // something is fishy with our service, abort and try again later.
+                log.warn("handleScanCursor: aborting scan, " + e.getCause());
+                cancel(results, i);
                 break;
             }
 
@@ -254,10 +294,18 @@ public class VideoStoreImportImpl {
             TraktService.onNewVideo(context);
     }
 
+    /** cancels the retrievals not handled yet, they are done again by the next scan */
+    private static void cancel(List<Future<ContentValues>> results, int from) {
+        for (int i = from; i < results.size(); i++) {
+            results.get(i).cancel(true);
+        }
+    }
+
     private static class Job {
-        public Job(String path, String id, Blacklist blacklist) {
+        public Job(String path, String id, int scraperId, Blacklist blacklist) {
             mPath = Uri.parse(path);
             mId = id;
+            mScraperId = scraperId;
             mMft = ArchosMediaFile.getFileType(path);
             // default mime type / media type
             int mediaType = FileColumns.MEDIA_TYPE_NONE;
@@ -286,6 +334,7 @@ public class VideoStoreImportImpl {
 
         public final Uri mPath;
         public final String mId;
+        public final int mScraperId;
         public final MediaFileType mMft;
         public final int mMediaType;
         public final boolean mRetrieve;
@@ -374,7 +423,7 @@ public class VideoStoreImportImpl {
         if(path.startsWith("file://")) {
             path = path.substring("file://".length()); //we need to remove "file://"
         }
-        return mMediaRetrieverServiceClient.getMetadata(path);
+        return mMediaRetrieverServicePool.getMetadata(path);
     }
 
     /** creates ContentValues via MediaRetrieverService, can't be null */
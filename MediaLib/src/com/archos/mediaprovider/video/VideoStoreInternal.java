@@ -25,6 +25,9 @@ import android.net.Uri;
     /* package */ static final Uri RAWQUERY =
     Uri.parse("content://" + VideoStore.AUTHORITY + "/rawquery");
 
+    /* package */ static final Uri BROWSEQUERY =
+    Uri.parse("content://" + VideoStore.AUTHORITY + "/browsequery");
+
     /* package */ static final Uri FILES_IMPORT =
     Uri.parse("content://" + VideoStore.AUTHORITY + "/raw/" + VideoOpenHelper.FILES_IMPORT_TABLE_NAME);
     /* package */ static final Uri FILES =
@@ -34,6 +37,9 @@ import android.net.Uri;
     /* package */ public static final Uri FILES_SCANNED =
     Uri.parse("content://" + VideoStore.AUTHORITY + "/raw/" + VideoOpenHelper.FILES_SCANNED_TABLE_NAME);
 
+    /* package */ static final Uri SCAN_SNAPSHOT =
+    Uri.parse("content://" + VideoStore.AUTHORITY + "/raw/" + VideoOpenHelper.SCAN_SNAPSHOT_TABLE_NAME);
+
     /* package */ static final Uri HIDE_VOLUME =
     Uri.parse("content://" + VideoStore.AUTHORITY + "/raw/" + VideoOpenHelper.HIDE_VOLUMES_VIEW_NAME);
 
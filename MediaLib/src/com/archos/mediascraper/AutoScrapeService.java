@@ -18,6 +18,7 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
@@ -41,6 +42,7 @@ import android.provider.BaseColumns;
 import com.archos.mediacenter.utils.AppState;
 import com.archos.mediacenter.utils.trakt.TraktService;
 import com.archos.medialib.R;
+import com.archos.mediaprovider.CPOExecutor;
 import com.archos.mediaprovider.DeleteFileCallback;
 import com.archos.environment.NetworkState;
 import com.archos.mediaprovider.video.VideoStore;
@@ -55,6 +57,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Created by alexandre on 20/05/15.
@@ -74,6 +79,11 @@ public class AutoScrapeService extends Service {
 
     // window size used to split queries to db
     private final static int WINDOW_SIZE = 2000;
+    // nfo files are read from the video location, online lookups are bounded by the tmdb rate limiter
+    private final static int NFO_THREADS = 2;
+    private final static int ONLINE_THREADS = 4;
+    // files being looked up at once, also bounds the results waiting to be saved
+    private final static int MAX_JOBS_IN_FLIGHT = 2 * (NFO_THREADS + ONLINE_THREADS);
 
     static boolean sIsScraping = false;
     static int sNumberOfFilesRemainingToProcess = 0;
@@ -327,8 +337,7 @@ public class AutoScrapeService extends Service {
             mThread = new Thread() {
 
                 public int mNetworkOrScrapErrors; //when errors equals to number of files to scrap, stop looping.
-                boolean notScraped;
-                boolean noScrapeError;
+                final ScrapePipeline pipeline = new ScrapePipeline();
 
                 public void run() {
                     sIsScraping = true;
@@ -382,176 +391,61 @@ public class AutoScrapeService extends Service {
 
                             sNumberOfFilesRemainingToProcess = window;
                             restartOnNextRound = true;
-                            while (cursor.moveToNext() && isEnable(AutoScrapeService.this)) {
+                            // lookups run on the pipeline threads, results are saved one by one on this thread
+                            CPOExecutor notScrapedExecutor = new CPOExecutor(VideoStore.AUTHORITY, getContentResolver(), WINDOW_SIZE);
+                            int jobsInFlight = 0;
+                            boolean cursorDone = false;
+                            while (!cursorDone || jobsInFlight > 0) {
                                 // stop if disconnected while scraping
                                 if (!NetworkState.isLocalNetworkConnected(AutoScrapeService.this) && !NetworkState.isNetworkConnected(AutoScrapeService.this)) {
                                     cursor.close();
+                                    notScrapedExecutor.execute();
+                                    pipeline.shutdown();
                                     sNumberOfFilesRemainingToProcess = 0;
                                     log.debug("startScraping disconnected from network calling stopService");
                                     stopService();
                                     return;
                                 }
+                                // keep the lookup stages busy
+                                while (!cursorDone && jobsInFlight < MAX_JOBS_IN_FLIGHT) {
+                                    if (cursor.moveToNext() && isEnable(AutoScrapeService.this)) {
+                                        pipeline.submit(new ScrapeJob(cursor, shouldRescrapAll));
+                                        jobsInFlight++;
+                                    } else {
+                                        cursorDone = true;
+                                    }
+                                }
+                                if (jobsInFlight == 0)
+                                    break;
+                                ScrapeJob job;
+                                try {
+                                    job = pipeline.take();
+                                } catch (InterruptedException e) {
+                                    log.warn("startScraping: interrupted while waiting for scrape results");
+                                    break;
+                                }
+                                jobsInFlight--;
 
-                                String title = cursor.getString(cursor.getColumnIndex(VideoStore.MediaColumns.TITLE));
-                                Uri fileUri = Uri.parse(cursor.getString(cursor.getColumnIndex(VideoStore.MediaColumns.DATA)));
-                                Uri scrapUri = title != null && !title.isEmpty() ? Uri.parse("/" + title + ".mp4") : fileUri;
-                                long ID = cursor.getLong(cursor.getColumnIndex(BaseColumns._ID));
-
-                                // for now there is no error and file is not scraped
-                                notScraped = true;
-                                noScrapeError = true;
-                                log.trace("startScraping processing scrapUri " + scrapUri + ", with ID " + ID
+                                log.trace("startScraping processing scrapUri " + job.scrapUri + ", with ID " + job.id
                                         + ", number of remaining files to be processed: " + sTotalNumberOfFilesRemainingToProcess);
                                 if (sTotalNumberOfFilesRemainingToProcess > 0)
                                     nm.notify(NOTIFICATION_ID, nb.setContentText(getString(R.string.remaining_videos_to_process) + " " + sTotalNumberOfFilesRemainingToProcess).build());
 
-                                if (NfoParser.isNetworkNfoParseEnabled(AutoScrapeService.this)) {
-
-                                    BaseTags tags = NfoParser.getTagForFile(fileUri, AutoScrapeService.this);
-                                    if (tags != null) {
-                                        log.trace("startScraping: found NFO");
-                                        // if poster url are in nfo or in folder, download is automatic
-                                        // if no poster available, try to scrap with good title,
-                                        if (ID != -1) {
-                                            log.trace("startScraping: NFO ID != -1 " + ID);
-                                            // ugly but necessary to avoid poster delete when replacing tag
-                                            if (tags.getDefaultPoster() != null)
-                                                DeleteFileCallback.DO_NOT_DELETE.add(tags.getDefaultPoster().getLargeFile());
-                                            if (tags instanceof EpisodeTags) {
-                                                if (((EpisodeTags) tags).getEpisodePicture() != null) {
-                                                    DeleteFileCallback.DO_NOT_DELETE.add(((EpisodeTags) tags).getEpisodePicture().getLargeFile());
-                                                }
-                                                if (((EpisodeTags) tags).getShowTags() != null && ((EpisodeTags) tags).getShowTags().getDefaultPoster() != null) {
-                                                    DeleteFileCallback.DO_NOT_DELETE.add(((EpisodeTags) tags).getShowTags().getDefaultPoster().getLargeFile());
-                                                }
-                                            }
-                                            log.trace("startScraping: NFO tags.save ID=" + ID);
-                                            tags.save(AutoScrapeService.this, ID);
-                                            DeleteFileCallback.DO_NOT_DELETE.clear();
-                                            TraktService.onNewVideo(AutoScrapeService.this);
-                                        } else {
-                                            log.trace("startScraping: oh oh NFO ID = -1 ");
-                                        }
-                                        //found NFO thus still no error but scraped
-                                        notScraped = false;
-                                        sNumberOfFilesScraped++;
-                                        noScrapeError = true;
-                                        if (tags.getPosters() != null)
-                                            log.trace("startScraping: posters : " + tags.getPosters().size());
-                                        else if (tags.getPosters() == null && tags.getDefaultPoster() == null &&
-                                                (!(tags instanceof EpisodeTags) || ((EpisodeTags) tags).getShowTags().getPosters() == null)) {//special case for episodes : check show
-                                            if (tags.getTitle() != null && !tags.getTitle().isEmpty()) { //if a title is specified in nfo, use it to scrap file
-                                                scrapUri = Uri.parse("/" + tags.getTitle() + ".mp4");
-                                                log.trace("startScraping: no posters using title " + tags.getTitle());
-                                            }
-                                            log.trace("startScraping: no posters ");
-                                            //poster not found thus not scraped and no error
-                                            notScraped = true;
-                                            noScrapeError = true;
-                                        }
-                                        log.trace("startScraping: NFO found, notScaped " + notScraped + ", noScrapeError " + noScrapeError + " for " + fileUri);
-                                    }
-                                }
-                                if (notScraped && noScrapeError) { //look for online details
-                                    log.trace("startScraping: NFO NOT found");
-                                    ScrapeDetailResult result = null;
-                                    boolean searchOnline = !shouldRescrapAll;
-                                    if (shouldRescrapAll) {
-                                        log.trace("startScraping: rescraping all");
-                                        long videoID = cursor.getLong(cursor.getColumnIndex(VideoStore.Video.VideoColumns.SCRAPER_VIDEO_ONLINE_ID));
-                                        final int scraperType = cursor.getInt(cursor.getColumnIndex(VideoStore.Video.VideoColumns.ARCHOS_MEDIA_SCRAPER_TYPE));
-
-                                        if (scraperType == BaseTags.TV_SHOW) {
-                                            // get the whole season
-                                            long season = cursor.getLong(cursor.getColumnIndex(VideoStore.Video.VideoColumns.SCRAPER_E_SEASON));
-                                            Bundle b = new Bundle();
-                                            b.putInt(Scraper.ITEM_REQUEST_SEASON, (int) season);
-
-                                            log.trace("startScraping: rescraping episode for tvId " + videoID + ", season " + season);
-                                            SearchResult searchResult = new SearchResult(SearchResult.tvshow, title, (int) videoID);
-                                            searchResult.setFile(fileUri);
-                                            searchResult.setScraper(new ShowScraper4(AutoScrapeService.this));
-                                            result = ShowScraper4.getDetails(new SearchResult(SearchResult.tvshow, title, (int) videoID), b);
-                                        } else if (scraperType == BaseTags.MOVIE) {
-                                            log.trace("startScraping: rescraping movie " + videoID);
-                                            SearchResult searchResult = new SearchResult(SearchResult.movie, title, (int) videoID);
-                                            searchResult.setFile(fileUri);
-                                            searchResult.setScraper(new MovieScraper3(AutoScrapeService.this));
-                                            result = MovieScraper3.getDetails(searchResult, null);
-                                        } else searchOnline = true;
-                                    }
-                                    if (searchOnline) {
-                                        log.trace("startScraping: searching online " + title);
-                                        SearchInfo searchInfo = SearchPreprocessor.instance().parseFileBased(fileUri, scrapUri);
-                                        Scraper scraper = new Scraper(AutoScrapeService.this);
-                                        result = scraper.getAutoDetails(searchInfo);
-                                        log.trace("startScraping: " + ((result.tag != null) ? result.tag.getTitle() : null) + " " + ((result.tag != null) ? result.tag.getOnlineId() : null));
-                                    }
-
-                                    if (result != null && result.tag != null && ID != -1) {
-                                        result.tag.setVideoId(ID);
-                                        //ugly but necessary to avoid poster delete when replacing tag
-                                        if (result.tag.getDefaultPoster() != null) {
-                                            DeleteFileCallback.DO_NOT_DELETE.add(result.tag.getDefaultPoster().getLargeFile());
-                                        }
-                                        if (result.tag instanceof EpisodeTags) {
-                                            if (((EpisodeTags) result.tag).getEpisodePicture() != null) {
-                                                DeleteFileCallback.DO_NOT_DELETE.add(((EpisodeTags) result.tag).getEpisodePicture().getLargeFile());
-                                            }
-                                            if (((EpisodeTags) result.tag).getShowTags() != null && ((EpisodeTags) result.tag).getShowTags().getDefaultPoster() != null) {
-                                                DeleteFileCallback.DO_NOT_DELETE.add(((EpisodeTags) result.tag).getShowTags().getDefaultPoster().getLargeFile());
-                                            }
-                                        }
-                                        log.trace("startScraping: online result.tag.save ID=" + ID);
-
-                                        result.tag.save(AutoScrapeService.this, ID);
-                                        DeleteFileCallback.DO_NOT_DELETE.clear();
-                                        // result exists thus scraped and no error for now
-                                        notScraped = false;
-                                        sNumberOfFilesScraped++;
-                                        noScrapeError = true;
-                                        if (result.tag.getTitle() != null)
-                                            log.trace("startScraping: info " + result.tag.getTitle());
-
-                                        TraktService.onNewVideo(AutoScrapeService.this);
-                                        if (exportContext != null) {
-                                            // also auto-export all the data
-
-                                            if (fileUri != null) {
-                                                try {
-                                                    log.trace("startScraping: exporting NFO");
-                                                    NfoWriter.export(fileUri, result.tag, exportContext);
-                                                } catch (IOException e) {
-                                                    log.error("Caught IOException: ", e);
-                                                }
-                                            }
-                                            log.trace("startScraping: online info, notScaped " + notScraped + ", noScrapeError " + noScrapeError + " for " + fileUri);
-                                        }
-                                    } else if (result != null) {
-                                        //not scraped, check for errors
-                                        // for tvshow if search returns ScrapeStatus.OKAY but in details it returns ScrapeStaus.ERROR_PARSER it is not counted as a scraping error
-                                        // this allows the video to be marked as not to be rescraped
-                                        notScraped = true;
-                                        noScrapeError = result.status != ScrapeStatus.ERROR && result.status != ScrapeStatus.ERROR_NETWORK && result.status != ScrapeStatus.ERROR_NO_NETWORK;
-                                        if (!noScrapeError) {
-                                            log.trace("startScraping: file " + fileUri + " scrape error");
-                                        } else {
-                                            sNumberOfFilesNotScraped++;
-                                        }
-                                        log.trace("startScraping: file " + fileUri + " not scraped among " + sNumberOfFilesNotScraped);
-                                    }
-                                }
+                                saveJob(job, exportContext);
 
-                                if (notScraped && noScrapeError && !shouldRescrapAll) { //in case of network error, don't go there, and don't save in case we are rescraping already scraped videos
+                                if (job.notScraped && job.noScrapeError && !job.rescrape) { //in case of network error, don't go there, and don't save in case we are rescraping already scraped videos
                                     // Failed => set the scraper fields to -1 so that we will be able
                                     // to skip this file when launching the automated process again
-                                    log.trace("startScraping: file " + fileUri + " not scraped without error -> mark it as not to be scraped again");
+                                    log.trace("startScraping: file " + job.fileUri + " not scraped without error -> mark it as not to be scraped again");
                                     ContentValues cv = new ContentValues(2);
                                     cv.put(VideoStore.Video.VideoColumns.ARCHOS_MEDIA_SCRAPER_ID, String.valueOf(-1));
                                     cv.put(VideoStore.Video.VideoColumns.ARCHOS_MEDIA_SCRAPER_TYPE, String.valueOf(-1));
-                                    getContentResolver().update(VideoStore.Video.Media.EXTERNAL_CONTENT_URI, cv, BaseColumns._ID + "=?", new String[]{Long.toString(ID)});
-                                } else if (!noScrapeError) { // condition is scrapedOrError
-                                    log.trace("startScraping: file " + fileUri + " scraped but with error -> increase mNetworkOrScrapErrors");
+                                    notScrapedExecutor.add(ContentProviderOperation.newUpdate(VideoStore.Video.Media.EXTERNAL_CONTENT_URI)
+                                            .withValues(cv)
+                                            .withSelection(BaseColumns._ID + "=?", new String[]{Long.toString(job.id)})
+                                            .build());
+                                } else if (!job.noScrapeError) { // condition is scrapedOrError
+                                    log.trace("startScraping: file " + job.fileUri + " scraped but with error -> increase mNetworkOrScrapErrors");
                                     mNetworkOrScrapErrors++;
                                 }
                                 sNumberOfFilesRemainingToProcess--;
@@ -561,6 +455,8 @@ public class AutoScrapeService extends Service {
                                         ", #notScraped=" + sNumberOfFilesNotScraped + ", current batch #filesToProcess=" + sNumberOfFilesRemainingToProcess + "/" + window);
                             }
                             cursor.close();
+                            // next window is fetched from index 0, not scraped files have to be marked before
+                            notScrapedExecutor.execute();
                             numberOfRowsRemaining -= window;
                         } while (numberOfRowsRemaining > 0);
                         if (numberOfRows == mNetworkOrScrapErrors) { //when as many errors, we assume we don't have the internet or that the scraper returns an error, do not loop
@@ -582,6 +478,7 @@ public class AutoScrapeService extends Service {
                         cursor.close();
                     } while(restartOnNextRound
                             &&PreferenceManager.getDefaultSharedPreferences(AutoScrapeService.this).getBoolean(AutoScrapeService.KEY_ENABLE_AUTO_SCRAP, true)); //if we had something to do, we look for new videos
+                    pipeline.shutdown();
                     sIsScraping = false;
                     mHandler.post(new Runnable() {
                         @Override
@@ -597,6 +494,229 @@ public class AutoScrapeService extends Service {
         }
     }
 
+    /** a video going through the scrape pipeline, the lookup stages fill the results that the saving thread writes */
+    private static class ScrapeJob {
+        final long id;
+        final String title;
+        final Uri fileUri;
+        Uri scrapUri;
+        final boolean rescrape;
+        final long onlineId;
+        final int scraperType;
+        final long season;
+
+        BaseTags nfoTags;
+        ScrapeDetailResult result;
+        // for now there is no error and file is not scraped
+        boolean notScraped = true;
+        boolean noScrapeError = true;
+
+        ScrapeJob(Cursor cursor, boolean rescrape) {
+            title = cursor.getString(cursor.getColumnIndex(VideoStore.MediaColumns.TITLE));
+            fileUri = Uri.parse(cursor.getString(cursor.getColumnIndex(VideoStore.MediaColumns.DATA)));
+            scrapUri = title != null && !title.isEmpty() ? Uri.parse("/" + title + ".mp4") : fileUri;
+            id = cursor.getLong(cursor.getColumnIndex(BaseColumns._ID));
+            this.rescrape = rescrape;
+            onlineId = cursor.getLong(cursor.getColumnIndex(VideoStore.Video.VideoColumns.SCRAPER_VIDEO_ONLINE_ID));
+            scraperType = cursor.getInt(cursor.getColumnIndex(VideoStore.Video.VideoColumns.ARCHOS_MEDIA_SCRAPER_TYPE));
+            season = cursor.getLong(cursor.getColumnIndex(VideoStore.Video.VideoColumns.SCRAPER_E_SEASON));
+        }
+    }
+
+    /**
+     * nfo lookup then online search / details on their own thread pools, finished jobs are queued for the saving thread.
+     * The caller bounds the number of submitted jobs not taken back.
+     */
+    private class ScrapePipeline {
+        private final ExecutorService mNfoExecutor = Executors.newFixedThreadPool(NFO_THREADS);
+        private final ExecutorService mOnlineExecutor = Executors.newFixedThreadPool(ONLINE_THREADS);
+        private final LinkedBlockingQueue<ScrapeJob> mDone = new LinkedBlockingQueue<>();
+
+        void submit(final ScrapeJob job) {
+            mNfoExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        lookupNfo(job);
+                    } catch (Exception e) {
+                        log.error("lookupNfo: failed for " + job.fileUri, e);
+                    }
+                    if (job.notScraped && job.noScrapeError) {
+                        mOnlineExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    lookupOnline(job);
+                                } catch (Exception e) {
+                                    log.error("lookupOnline: failed for " + job.fileUri, e);
+                                    job.noScrapeError = false;
+                                } finally {
+                                    mDone.add(job);
+                                }
+                            }
+                        });
+                    } else {
+                        mDone.add(job);
+                    }
+                }
+            });
+        }
+
+        ScrapeJob take() throws InterruptedException {
+            return mDone.take();
+        }
+
+        void shutdown() {
+            mNfoExecutor.shutdownNow();
+            mOnlineExecutor.shutdownNow();
+        }
+    }
+
+    private void lookupNfo(ScrapeJob job) {
+        if (!NfoParser.isNetworkNfoParseEnabled(AutoScrapeService.this))
+            return;
+        BaseTags tags = NfoParser.getTagForFile(job.fileUri, AutoScrapeService.this);
+        if (tags == null)
+            return;
+        log.trace("lookupNfo: found NFO");
+        // if poster url are in nfo or in folder, download is automatic
+        // if no poster available, try to scrap with good title,
+        job.nfoTags = tags;
+        //found NFO thus still no error but scraped
+        job.notScraped = false;
+        job.noScrapeError = true;
+        if (tags.getPosters() != null)
+            log.trace("lookupNfo: posters : " + tags.getPosters().size());
+        else if (tags.getPosters() == null && tags.getDefaultPoster() == null &&
+                (!(tags instanceof EpisodeTags) || ((EpisodeTags) tags).getShowTags().getPosters() == null)) {//special case for episodes : check show
+            if (tags.getTitle() != null && !tags.getTitle().isEmpty()) { //if a title is specified in nfo, use it to scrap file
+                job.scrapUri = Uri.parse("/" + tags.getTitle() + ".mp4");
+                log.trace("lookupNfo: no posters using title " + tags.getTitle());
+            }
+            log.trace("lookupNfo: no posters ");
+            //poster not found thus not scraped and no error
+            job.notScraped = true;
+            job.noScrapeError = true;
+        }
+        log.trace("lookupNfo: NFO found, notScaped " + job.notScraped + ", noScrapeError " + job.noScrapeError + " for " + job.fileUri);
+    }
+
+    private void lookupOnline(ScrapeJob job) {
+        log.trace("lookupOnline: NFO NOT found");
+        ScrapeDetailResult result = null;
+        boolean searchOnline = !job.rescrape;
+        if (job.rescrape) {
+            log.trace("lookupOnline: rescraping all");
+            if (job.scraperType == BaseTags.TV_SHOW) {
+                // get the whole season
+                Bundle b = new Bundle();
+                b.putInt(Scraper.ITEM_REQUEST_SEASON, (int) job.season);
+
+                log.trace("lookupOnline: rescraping episode for tvId " + job.onlineId + ", season " + job.season);
+                SearchResult searchResult = new SearchResult(SearchResult.tvshow, job.title, (int) job.onlineId);
+                searchResult.setFile(job.fileUri);
+                searchResult.setScraper(new ShowScraper4(AutoScrapeService.this));
+                result = ShowScraper4.getDetails(new SearchResult(SearchResult.tvshow, job.title, (int) job.onlineId), b);
+            } else if (job.scraperType == BaseTags.MOVIE) {
+                log.trace("lookupOnline: rescraping movie " + job.onlineId);
+                SearchResult searchResult = new SearchResult(SearchResult.movie, job.title, (int) job.onlineId);
+                searchResult.setFile(job.fileUri);
+                searchResult.setScraper(new MovieScraper3(AutoScrapeService.this));
+                result = MovieScraper3.getDetails(searchResult, null);
+            } else searchOnline = true;
+        }
+        if (searchOnline) {
+            log.trace("lookupOnline: searching online " + job.title);
+            SearchInfo searchInfo = SearchPreprocessor.instance().parseFileBased(job.fileUri, job.scrapUri);
+            Scraper scraper = new Scraper(AutoScrapeService.this);
+            result = scraper.getAutoDetails(searchInfo);
+            log.trace("lookupOnline: " + ((result.tag != null) ? result.tag.getTitle() : null) + " " + ((result.tag != null) ? result.tag.getOnlineId() : null));
+        }
+        job.result = result;
+    }
+
+    /** saves what the lookups found, only called from the scraping thread */
+    private void saveJob(ScrapeJob job, NfoWriter.ExportContext exportContext) {
+        long ID = job.id;
+        BaseTags tags = job.nfoTags;
+        if (tags != null) {
+            if (ID != -1) {
+                log.trace("saveJob: NFO ID != -1 " + ID);
+                // ugly but necessary to avoid poster delete when replacing tag
+                if (tags.getDefaultPoster() != null)
+                    DeleteFileCallback.DO_NOT_DELETE.add(tags.getDefaultPoster().getLargeFile());
+                if (tags instanceof EpisodeTags) {
+                    if (((EpisodeTags) tags).getEpisodePicture() != null) {
+                        DeleteFileCallback.DO_NOT_DELETE.add(((EpisodeTags) tags).getEpisodePicture().getLargeFile());
+                    }
+                    if (((EpisodeTags) tags).getShowTags() != null && ((EpisodeTags) tags).getShowTags().getDefaultPoster() != null) {
+                        DeleteFileCallback.DO_NOT_DELETE.add(((EpisodeTags) tags).getShowTags().getDefaultPoster().getLargeFile());
+                    }
+                }
+                log.trace("saveJob: NFO tags.save ID=" + ID);
+                tags.save(AutoScrapeService.this, ID);
+                DeleteFileCallback.DO_NOT_DELETE.clear();
+                TraktService.onNewVideo(AutoScrapeService.this);
+            } else {
+                log.trace("saveJob: oh oh NFO ID = -1 ");
+            }
+            sNumberOfFilesScraped++;
+        }
+        ScrapeDetailResult result = job.result;
+        if (result != null && result.tag != null && ID != -1) {
+            result.tag.setVideoId(ID);
+            //ugly but necessary to avoid poster delete when replacing tag
+            if (result.tag.getDefaultPoster() != null) {
+                DeleteFileCallback.DO_NOT_DELETE.add(result.tag.getDefaultPoster().getLargeFile());
+            }
+            if (result.tag instanceof EpisodeTags) {
+                if (((EpisodeTags) result.tag).getEpisodePicture() != null) {
+                    DeleteFileCallback.DO_NOT_DELETE.add(((EpisodeTags) result.tag).getEpisodePicture().getLargeFile());
+                }
+                if (((EpisodeTags) result.tag).getShowTags() != null && ((EpisodeTags) result.tag).getShowTags().getDefaultPoster() != null) {
+                    DeleteFileCallback.DO_NOT_DELETE.add(((EpisodeTags) result.tag).getShowTags().getDefaultPoster().getLargeFile());
+                }
+            }
+            log.trace("saveJob: online result.tag.save ID=" + ID);
+
+            result.tag.save(AutoScrapeService.this, ID);
+            DeleteFileCallback.DO_NOT_DELETE.clear();
+            // result exists thus scraped and no error for now
+            job.notScraped = false;
+            sNumberOfFilesScraped++;
+            job.noScrapeError = true;
+            if (result.tag.getTitle() != null)
+                log.trace("saveJob: info " + result.tag.getTitle());
+
+            TraktService.onNewVideo(AutoScrapeService.this);
+            if (exportContext != null) {
+                // also auto-export all the data
+
+                if (job.fileUri != null) {
+                    try {
+                        log.trace("saveJob: exporting NFO");
+                        NfoWriter.export(job.fileUri, result.tag, exportContext);
+                    } catch (IOException e) {
+                        log.error("Caught IOException: ", e);
+                    }
+                }
+                log.trace("saveJob: online info, notScaped " + job.notScraped + ", noScrapeError " + job.noScrapeError + " for " + job.fileUri);
+            }
+        } else if (result != null) {
+            //not scraped, check for errors
+            // for tvshow if search returns ScrapeStatus.OKAY but in details it returns ScrapeStaus.ERROR_PARSER it is not counted as a scraping error
+            // this allows the video to be marked as not to be rescraped
+            job.notScraped = true;
+            job.noScrapeError = result.status != ScrapeStatus.ERROR && result.status != ScrapeStatus.ERROR_NETWORK && result.status != ScrapeStatus.ERROR_NO_NETWORK;
+            if (!job.noScrapeError) {
+                log.trace("saveJob: file " + job.fileUri + " scrape error");
+            } else {
+                sNumberOfFilesNotScraped++;
+            }
+            log.trace("saveJob: file " + job.fileUri + " not scraped among " + sNumberOfFilesNotScraped);
+        }
+    }
+
     private static final String WHERE_BASE =
                     VideoStore.Video.VideoColumns.ARCHOS_HIDE_FILE + "=0 AND " +
                     VideoStore.MediaColumns.DATA + " NOT LIKE ?";
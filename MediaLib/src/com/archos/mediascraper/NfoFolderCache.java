@@ -0,0 +1,138 @@
+// Copyright 2017 Archos SA
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediascraper;
+
+import android.net.Uri;
+import android.util.LruCache;
+
+import com.archos.filecorelibrary.MetaFile2;
+import com.archos.filecorelibrary.RawLister;
+import com.archos.mediacenter.filecoreextension.upnp2.RawListerFactoryWithUpnp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Remembers the .nfo files of recently seen folders so that looking for the nfo of a video
+ * does not cost one stat per candidate name over the network.
+ * Folders are listed once (or handed over by the scanner that listed them already) and
+ * the listing is trusted for TTL_MS.
+ */
+public class NfoFolderCache {
+
+    private static final Logger log = LoggerFactory.getLogger(NfoFolderCache.class);
+
+    private static final long TTL_MS = 5 * 60 * 1000;
+    // only nfo names are kept so that an entry is small even for huge folders
+    private static final int MAX_FOLDERS = 256;
+
+    private static final LruCache<String, Folder> sFolders = new LruCache<String, Folder>(MAX_FOLDERS);
+
+    private static class Folder {
+        // lower case name -> file
+        final Map<String, Uri> nfoFiles;
+        final long time;
+
+        Folder(Map<String, Uri> nfoFiles) {
+            this.nfoFiles = nfoFiles;
+            this.time = System.currentTimeMillis();
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - time > TTL_MS;
+        }
+    }
+
+    private NfoFolderCache() {
+        /* empty */
+    }
+
+    /** records the content of a folder that was just listed */
+    public static void put(Uri folder, List<MetaFile2> files) {
+        if (folder == null || files == null)
+            return;
+        sFolders.put(getKey(folder), new Folder(filterNfoFiles(files)));
+    }
+
+    /** forgets a folder, e.g. after writing a nfo file into it */
+    public static void invalidate(Uri folder) {
+        if (folder != null)
+            sFolders.remove(getKey(folder));
+    }
+
+    public static void clear() {
+        sFolders.evictAll();
+    }
+
+    /**
+     * @return the .nfo files of folder keyed by their lower case name, null if folder could not be listed.
+     * Lookups should ignore case like smb does, the uris are the ones of the listed files.
+     */
+    static Map<String, Uri> getNfoFiles(Uri folder) {
+        Folder entry = getFolder(folder);
+        return entry != null ? entry.nfoFiles : null;
+    }
+
+    private static Folder getFolder(Uri folder) {
+        String key = getKey(folder);
+        Folder entry = sFolders.get(key);
+        if (entry != null && !entry.isExpired())
+            return entry;
+        List<MetaFile2> files = null;
+        try {
+            RawLister lister = RawListerFactoryWithUpnp.getRawListerForUrl(folder);
+            if (lister != null)
+                files = lister.getFileList();
+        } catch (Exception e) {
+            log.debug("getFolder: could not list " + folder, e);
+        }
+        if (files == null) {
+            sFolders.remove(key);
+            return null;
+        }
+        entry = new Folder(filterNfoFiles(files));
+        sFolders.put(key, entry);
+        return entry;
+    }
+
+    private static Map<String, Uri> filterNfoFiles(List<MetaFile2> files) {
+        Map<String, Uri> result = null;
+        for (MetaFile2 file : files) {
+            String name = file.getName();
+            if (name == null || !file.isFile())
+                continue;
+            String lowerCaseName = name.toLowerCase(Locale.ROOT);
+            if (!lowerCaseName.endsWith(NfoParser.NFO_EXTENSION))
+                continue;
+            if (result == null)
+                result = new HashMap<String, Uri>();
+            result.put(lowerCaseName, file.getUri());
+        }
+        return result != null ? result : Collections.<String, Uri>emptyMap();
+    }
+
+    private static String getKey(Uri folder) {
+        String key = folder.toString();
+        if (key.endsWith("/"))
+            key = key.substring(0, key.length() - 1);
+        return key;
+    }
+}
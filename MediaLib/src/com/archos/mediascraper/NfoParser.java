@@ -39,6 +39,7 @@ import org.xml.sax.XMLReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Locale;
+import java.util.Map;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -189,40 +190,45 @@ public class NfoParser {
             return result;
 
         // check for our custom .arcnfo files, no show nfo since that is determined by parsed show title
-        Uri movieNfoFile = Uri.withAppendedPath(videoParent, videoNameNoExt + CUSTOM_NFO_EXTENSION);
-        if (fileOk(movieNfoFile)) {
+        // candidates are looked up in the folder listing, one listing per folder instead of a stat per candidate
+        Uri movieNfoFile = findFile(videoParent, videoNameNoExt + CUSTOM_NFO_EXTENSION);
+        if (movieNfoFile != null) {
             result.videoNfo = movieNfoFile;
         } else {
             // 1. there should be a "videoname.nfo" file
-            Uri nfoFile = Uri.withAppendedPath(videoParent, videoNameNoExt + NFO_EXTENSION);
-            if (fileOk(nfoFile)) {
+            Uri nfoFile = findFile(videoParent, videoNameNoExt + NFO_EXTENSION);
+            if (nfoFile != null) {
                 result.videoNfo = nfoFile;
                 // 2. there could be a tvshow.nfo file in this or the parent folder if it is a tv show
-                Uri showNfoFile = Uri.withAppendedPath(videoParent, TV_SHOW_NFO);
-                if (fileOk(showNfoFile)) {
+                Uri showNfoFile = findFile(videoParent, TV_SHOW_NFO);
+                if (showNfoFile != null) {
                     result.showNfo = showNfoFile;
                 } else {
                     // check in parent folder, "Simpsons/Season 1/Ep1.avi" could have
                     // "Simpsons/tvshow.nfo"
                     Uri parentParent = FileUtils.getParentUrl(videoParent);
                     if (parentParent != null) {
-                        showNfoFile = Uri.withAppendedPath(parentParent, TV_SHOW_NFO);
-                        if (fileOk(showNfoFile)) {
-                            result.showNfo = showNfoFile;
-                        }
+                        result.showNfo = findFile(parentParent, TV_SHOW_NFO);
                     }
                 }
             } else {
                 // 3. single movies in directories could be represented by a movie.nfo file
-                movieNfoFile = Uri.withAppendedPath(videoParent, MOVIE_NFO);
-                if (fileOk(movieNfoFile)) {
-                    result.videoNfo = movieNfoFile;
-                }
+                result.videoNfo = findFile(videoParent, MOVIE_NFO);
             }
         }
         return result;
     }
 
+    /** @return the uri of the nfo file called name in folder, null if there is none */
+    private static Uri findFile(Uri folder, String name) {
+        Map<String, Uri> nfoFiles = NfoFolderCache.getNfoFiles(folder);
+        if (nfoFiles != null)
+            return nfoFiles.get(name.toLowerCase(Locale.ROOT));
+        // folder could not be listed, check the file itself
+        Uri file = Uri.withAppendedPath(folder, name);
+        return fileOk(file) ? file : null;
+    }
+
     private static boolean fileOk(Uri file) {
         if(file==null)
             return false;
@@ -303,6 +303,7 @@ public class NfoWriter {
                 endDocument(serializer);
                 writer.close();
                 writer = null;
+                NfoFolderCache.invalidate(FileUtils.getParentUrl(exportTarget));
                 exportImage(tag.getDefaultPoster(), parent, videoName + NfoParser.POSTER_EXTENSION);
                 exportImage(tag.getDefaultBackdrop(), parent, videoName + NfoParser.BACKDROP_EXTENSION);
             } finally {
@@ -340,6 +341,7 @@ public class NfoWriter {
                 endDocument(serializer);
                 writer.close();
                 writer = null;
+                NfoFolderCache.invalidate(FileUtils.getParentUrl(exportTarget));
                 String image = NfoParser.getCustomSeasonPosterName(tag.getShowTitle(), tag.getSeason());
                 exportImage(tag.getDefaultPoster(), parent, image);
             } finally {
@@ -378,6 +380,7 @@ public class NfoWriter {
                 endDocument(serializer);
                 writer.close();
                 writer = null;
+                NfoFolderCache.invalidate(FileUtils.getParentUrl(exportTarget));
                 exportImage(tag.getDefaultPoster(), parent,  showTitle + NfoParser.POSTER_EXTENSION);
                 exportImage(tag.getDefaultBackdrop(), parent, showTitle + NfoParser.BACKDROP_EXTENSION);
             } finally {
@@ -0,0 +1,59 @@
+// Copyright 2017 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediascraper;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Token bucket shared by all the requests sent to a scraper provider so that parallel scraping stays under its quota
+ */
+
+public class RateLimiter {
+
+    private final double mPermitsPerMillis;
+    private final double mMaxPermits;
+    private double mPermits;
+    private long mLastRefill;
+
+    /**
+     * @param permits number of requests allowed per period, also the size of the burst
+     */
+    public RateLimiter(int permits, long period, TimeUnit unit) {
+        mPermitsPerMillis = permits / (double) unit.toMillis(period);
+        mMaxPermits = permits;
+        mPermits = permits;
+        mLastRefill = System.currentTimeMillis();
+    }
+
+    /** blocks until one more request can be sent */
+    public void acquire() throws InterruptedException {
+        long wait;
+        synchronized (this) {
+            refill();
+            // permits can go negative, callers coming next wait for the debt to be paid back
+            mPermits -= 1;
+            if (mPermits >= 0)
+                return;
+            wait = (long) Math.ceil(-mPermits / mPermitsPerMillis);
+        }
+        Thread.sleep(wait);
+    }
+
+    private void refill() {
+        long now = System.currentTimeMillis();
+        mPermits = Math.min(mMaxPermits, mPermits + (now - mLastRefill) * mPermitsPerMillis);
+        mLastRefill = now;
+    }
+}
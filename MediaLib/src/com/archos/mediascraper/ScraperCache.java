@@ -22,6 +22,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 
 import okhttp3.Cache;
 import okhttp3.CacheControl;
@@ -101,4 +102,24 @@ public class ScraperCache {
             return response;
         }
     }
+
+    /** delays requests that reach the network according to the provider quota, cached responses are not limited */
+    public static class RateLimitInterceptor implements Interceptor {
+        private final RateLimiter mRateLimiter;
+
+        public RateLimitInterceptor(RateLimiter rateLimiter) {
+            mRateLimiter = rateLimiter;
+        }
+
+        @Override
+        public okhttp3.Response intercept(Chain chain) throws IOException {
+            try {
+                mRateLimiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for scraper quota");
+            }
+            return chain.proceed(chain.request());
+        }
+    }
 }
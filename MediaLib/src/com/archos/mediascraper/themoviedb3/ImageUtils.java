@@ -60,9 +60,11 @@ public class ImageUtils {
     }
 
     public static List<String> getSortedPaths(List<Image> images) {
-        Collections.sort(images);
-        ArrayList<String> ret = new ArrayList<String>(images.size());
-        for (Image image : images) {
+        // sorted copy, images may belong to a response shared through TmdbRequestCache
+        ArrayList<Image> sorted = new ArrayList<Image>(images);
+        Collections.sort(sorted);
+        ArrayList<String> ret = new ArrayList<String>(sorted.size());
+        for (Image image : sorted) {
             ret.add(image.imagePath);
         }
         return ret;
@@ -30,6 +30,9 @@ public class MovieCollection {
     private static final String TAG = MovieCollection.class.getSimpleName();
     private static final boolean DBG = false;
 
+    // all the movies of a collection ask for it, often at the same time
+    private final static TmdbRequestCache<Collection> sResponseCache = new TmdbRequestCache<>(20);
+
     public static CollectionResult getInfo(long collectionId, String language, CollectionsService collectionsService) {
         CollectionResult myResult = new CollectionResult();
         Response<Collection> collectionResponse = null;
@@ -37,7 +40,8 @@ public class MovieCollection {
 
         if (DBG) Log.d(TAG, "getInfo: quering tmdb for collectionId " + collectionId + " in " + language);
         try {
-            collectionResponse = collectionsService.summary((int) collectionId, language).execute();
+            collectionResponse = sResponseCache.execute("collection|" + collectionId + "|" + language,
+                    collectionsService.summary((int) collectionId, language));
             switch (collectionResponse.code()) {
                 case 401: // auth issue
                     if (DBG) Log.d(TAG, "search: auth error");
@@ -44,6 +44,9 @@ public class MovieId2 {
         put("include_image_language", "en,null");
     }};
 
+    // several files of the same movie (versions, parts) are scraped in a row or concurrently by the scrape pipeline
+    private final static TmdbRequestCache<Movie> sResponseCache = new TmdbRequestCache<>(20);
+
     public static MovieIdResult getBaseInfo(long movieId, String language, MoviesService moviesService, Context context) {
         MovieIdResult myResult = new MovieIdResult();
         Response<Movie> movieResponse = null;
@@ -52,7 +55,9 @@ public class MovieId2 {
 
         log.debug("getBaseInfo: quering tmdb for movieId " + movieId + " in " + language);
         try {
-            movieResponse = moviesService.summary((int) movieId, language, new AppendToResponse(AppendToResponseItem.EXTERNAL_IDS, AppendToResponseItem.IMAGES, AppendToResponseItem.CREDITS, AppendToResponseItem.RELEASE_DATES, AppendToResponseItem.VIDEOS), options).execute();
+            movieResponse = sResponseCache.execute("movie|" + movieId + "|" + language,
+                    moviesService.summary((int) movieId, language, new AppendToResponse(AppendToResponseItem.EXTERNAL_IDS, AppendToResponseItem.IMAGES, AppendToResponseItem.CREDITS, AppendToResponseItem.RELEASE_DATES, AppendToResponseItem.VIDEOS), options));
+            if (log.isTraceEnabled()) log.trace("getBaseInfo: cache " + sResponseCache);
             switch (movieResponse.code()) {
                 case 401: // auth issue
                     log.debug("search: auth error");
@@ -14,6 +14,7 @@
 
 package com.archos.mediascraper.themoviedb3;
 
+import com.archos.mediascraper.RateLimiter;
 import com.archos.mediascraper.ScraperCache;
 import com.uwetrottmann.tmdb2.Tmdb;
 
@@ -31,6 +32,9 @@ public class MyTmdb extends Tmdb {
     private static final Logger log = LoggerFactory.getLogger(MyTmdb.class);
     private final static boolean CACHE = true;
     private static Cache mCache;
+    // tmdb allows around 50 requests per second per ip, stay well below since scraping runs in parallel
+    private final static int REQUESTS_PER_SECOND = 20;
+    private final static RateLimiter sRateLimiter = new RateLimiter(REQUESTS_PER_SECOND, 1, TimeUnit.SECONDS);
 
     public MyTmdb(String apiKey, Cache cache) {
         super(apiKey);
@@ -51,6 +55,7 @@ public class MyTmdb extends Tmdb {
             logging.setLevel(HttpLoggingInterceptor.Level.BODY);
             builder.addNetworkInterceptor(logging);
         }
+        builder.addNetworkInterceptor(new ScraperCache.RateLimitInterceptor(sRateLimiter));
         builder.connectTimeout(ScraperCache.CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
         builder.readTimeout(ScraperCache.READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
     }
@@ -14,7 +14,6 @@
 
 package com.archos.mediascraper.themoviedb3;
 
-import android.util.LruCache;
 import android.util.Pair;
 
 import com.archos.mediascraper.ScrapeStatus;
@@ -36,7 +35,7 @@ public class SearchShow {
     private static final Logger log = LoggerFactory.getLogger(SearchShow.class);
 
     // Benchmarks tells that with tv shows sorted in folders, size of 200 or 20 or even 10 provides the same cacheHits on fake collection of 30k episodes, 250 shows
-    private final static LruCache<String, Response<TvShowResultsPage>> showCache = new LruCache<>(50);
+    private final static TmdbRequestCache<TvShowResultsPage> sResponseCache = new TmdbRequestCache<>(50);
 
     public static SearchShowResult search(TvShowSearchInfo searchInfo, String language, int resultLimit, final boolean adultScrape, ShowScraper4 showScraper, MyTmdb tmdb) {
         SearchShowResult myResult = new SearchShowResult();
@@ -60,42 +59,29 @@ public class SearchShow {
 
             showKey = searchInfo.getShowName() + "|" + year + "|" + language;
             log.debug("SearchShowResult: cache showKey " + showKey);
-            response = showCache.get(showKey);
-            if (log.isTraceEnabled()) debugLruCache(showCache);
-            if (response == null) {
-                log.debug("SearchShowResult: no boost for " + searchInfo.getShowName() + " year " + year);
-                // adult search false by default
-                response = tmdb.searchService().tv(searchInfo.getShowName(), null, language, year, false).execute();
-                if (response.code() == 401) authIssue = true; // this is an OR
-                if (response.code() != 404) notFoundIssue = false; // this is an AND
-                if (response.isSuccessful()) isResponseOk = true;
-                if (response.body() == null)
-                    isResponseEmpty = true;
-                else {
-                    if (response.body().total_results == 0) notFoundIssue = true;
-                    log.debug("search: response body has " + response.body().total_results + " results");
-                    if (notFoundIssue && searchInfo.getFirstAiredYear() == null) {
-                        // reprocess name with year_extractor without parenthesis since we need to match The.Flash.2014.sXXeYY but not first to cope with Paris.Police.1900
-                        name = searchInfo.getShowName();
-                        Pair<String, String> nameYear = yearExtractor(name);
-                        log.debug("search: not found trying to extract year name=" + nameYear.first + ", year=" + nameYear.second);
-                        if (nameYear.second != null) { // avoid infinite loop
-                            // remember that it is a reboot show with date year to add to name to discriminate
-                            myResult.year = nameYear.second;
-                            return search(new TvShowSearchInfo(searchInfo.getFile(), nameYear.first, searchInfo.getSeason(), searchInfo.getEpisode(), nameYear.second, searchInfo.getCountryOfOrigin()),
-                                    language, resultLimit, adultScrape, showScraper, tmdb);
-                        }
+            // adult search false by default
+            response = sResponseCache.execute(showKey, tmdb.searchService().tv(searchInfo.getShowName(), null, language, year, false));
+            if (log.isTraceEnabled()) log.trace("search: cache " + sResponseCache);
+            if (response.code() == 401) authIssue = true; // this is an OR
+            if (response.code() != 404) notFoundIssue = false; // this is an AND
+            if (response.isSuccessful()) isResponseOk = true;
+            if (response.body() == null)
+                isResponseEmpty = true;
+            else {
+                if (response.body().total_results == 0) notFoundIssue = true;
+                log.debug("search: response body has " + response.body().total_results + " results");
+                if (notFoundIssue && searchInfo.getFirstAiredYear() == null) {
+                    // reprocess name with year_extractor without parenthesis since we need to match The.Flash.2014.sXXeYY but not first to cope with Paris.Police.1900
+                    name = searchInfo.getShowName();
+                    Pair<String, String> nameYear = yearExtractor(name);
+                    log.debug("search: not found trying to extract year name=" + nameYear.first + ", year=" + nameYear.second);
+                    if (nameYear.second != null) { // avoid infinite loop
+                        // remember that it is a reboot show with date year to add to name to discriminate
+                        myResult.year = nameYear.second;
+                        return search(new TvShowSearchInfo(searchInfo.getFile(), nameYear.first, searchInfo.getSeason(), searchInfo.getEpisode(), nameYear.second, searchInfo.getCountryOfOrigin()),
+                                language, resultLimit, adultScrape, showScraper, tmdb);
                     }
                 }
-                if (isResponseOk || isResponseEmpty) {
-                    log.debug("search: inserting in showCache " + showKey + " and response ");
-                    showCache.put(showKey, response);
-                }
-            } else {
-                log.debug("search: boost using cached searched show for " + searchInfo.getShowName());
-                isResponseOk = true;
-                notFoundIssue = false;
-                if (response.body() == null) isResponseEmpty = true;
             }
             if (authIssue) {
                 log.debug("search: auth error");
@@ -131,13 +117,4 @@ public class SearchShow {
         }
         return myResult;
     }
-
-    public static void debugLruCache(LruCache<String, Response<TvShowResultsPage>> lruCache) {
-        log.debug("debugLruCache: size=" + lruCache.size());
-        log.debug("debugLruCache: putCount=" + lruCache.putCount());
-        log.debug("debugLruCache: hitCount=" + lruCache.hitCount());
-        log.debug("debugLruCache: missCount=" + lruCache.missCount());
-        log.debug("debugLruCache: evictionCount=" + lruCache.evictionCount());
-    }
-
 }
@@ -30,6 +30,7 @@ import org.apache.commons.text.similarity.LevenshteinDistance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedList;
@@ -89,7 +90,8 @@ public class SearchShowParser {
         log.debug("getSearchShowParserResult: examining response of " + response.body().total_results + " entries in " + language + ", for " + searchInfo.getShowName() + " and specific year " + year);
 
         // sort first tvshows by popularity so that distinction between levenstein distance is operated on popularity
-        List<BaseTvShow> resultsTvShow = response.body().results;
+        // sorted copy, the response is shared through TmdbRequestCache
+        List<BaseTvShow> resultsTvShow = new ArrayList<>(response.body().results);
         // OBSERVATION: number_of_seasons only available on id search not name search --> cannot discriminate
         // popularity sort is disabled for now to enable sort by year to pick lower year if not specified with lowest levenshtein metric
         if (SORT_POPULARITY)
@@ -14,8 +14,6 @@
 
 package com.archos.mediascraper.themoviedb3;
 
-import android.util.LruCache;
-
 import com.archos.mediascraper.ScrapeStatus;
 import com.archos.mediascraper.xml.ShowScraper4;
 import com.uwetrottmann.tmdb2.entities.AppendToResponse;
@@ -36,8 +34,8 @@ import retrofit2.Response;
 public class ShowIdSeasonSearch {
     private static final Logger log = LoggerFactory.getLogger(ShowIdSeasonSearch.class);
 
-    // In theory this is to buffer two consecutive requests in ShowScraper (or 4 if there is english)
-    private final static LruCache<String, ShowIdSeasonSearchResult> sShowCache = new LruCache<>(50);
+    // buffers consecutive requests in ShowScraper and shares the ones made concurrently by the scrape pipeline
+    private final static TmdbRequestCache<TvSeason> sResponseCache = new TmdbRequestCache<>(50);
 
     public static ShowIdSeasonSearchResult getSeasonShowResponse(int showId, int season, String language, final boolean adultScrape, MyTmdb tmdb) {
         // specify image language include_image_language=en,null
@@ -48,68 +46,51 @@ public class ShowIdSeasonSearch {
 
         log.debug("getSeasonShowResponse: quering tmdb for showId " + showId + " season " + season + " in " + language);
 
-        String showKey = showId + "|" + "s" + season + "|" + language;
-        ShowIdSeasonSearchResult myResult = sShowCache.get(showKey);
-        if (log.isTraceEnabled()) debugLruCache(sShowCache);
-
-        if (myResult == null) {
-            log.debug("getSeasonShowResponse: not in cache fetching s" + season + " for showId " + showId);
-            myResult = new ShowIdSeasonSearchResult();
-            try {
-                // use appendToResponse to get imdbId
-                // e.g. https://api.themoviedb.org/3/tv/66732/season/1?language=en&append_to_response=credits%2Cexternal_ids%2Cimages%2Ccontent_ratings&include_image_language=en%2Cnull&api_key=051012651ba326cf5b1e2f482342eaa2
-                Response<TvSeason> seriesResponse = tmdb.tvSeasonsService().season(showId, season, language, new AppendToResponse(AppendToResponseItem.EXTERNAL_IDS, AppendToResponseItem.IMAGES, AppendToResponseItem.CREDITS, AppendToResponseItem.CONTENT_RATINGS), options).execute();
-                switch (seriesResponse.code()) {
-                    case 401: // auth issue
-                        log.debug("search: auth error");
-                        myResult.status = ScrapeStatus.AUTH_ERROR;
-                        ShowScraper4.reauth();
-                        return myResult;
-                    case 404: // not found
-                        myResult.status = ScrapeStatus.NOT_FOUND;
-                        // fallback to english if no result
-                        if (!language.equals("en")) {
-                            log.debug("getSeasonShowResponse: retrying search for showId " + showId + " in en");
-                            return getSeasonShowResponse(showId, season,"en", adultScrape, tmdb);
-                        }
-                        log.debug("getSeasonShowResponse: showId " + showId + " not found");
-                        // record valid answer
-                        sShowCache.put(showKey, myResult);
-                        break;
-                    default:
-                        if (seriesResponse.isSuccessful()) {
-                            if (seriesResponse.body() != null) {
-                                myResult.tvSeason = seriesResponse.body();
-                                myResult.status = ScrapeStatus.OKAY;
-                            } else {
-                                if (!language.equals("en")) {
-                                    log.debug("getSeasonShowResponse: retrying search for showId " + showId + " in en");
-                                    return getSeasonShowResponse(showId, season,"en", adultScrape, tmdb);
-                                }
-                                myResult.status = ScrapeStatus.NOT_FOUND;
+        String showKey = "season|" + showId + "|" + season + "|" + language + "|" + adultScrape;
+        ShowIdSeasonSearchResult myResult = new ShowIdSeasonSearchResult();
+        try {
+            // use appendToResponse to get imdbId
+            // e.g. https://api.themoviedb.org/3/tv/66732/season/1?language=en&append_to_response=credits%2Cexternal_ids%2Cimages%2Ccontent_ratings&include_image_language=en%2Cnull&api_key=051012651ba326cf5b1e2f482342eaa2
+            Response<TvSeason> seriesResponse = sResponseCache.execute(showKey, tmdb.tvSeasonsService().season(showId, season, language, new AppendToResponse(AppendToResponseItem.EXTERNAL_IDS, AppendToResponseItem.IMAGES, AppendToResponseItem.CREDITS, AppendToResponseItem.CONTENT_RATINGS), options));
+            if (log.isTraceEnabled()) log.trace("getSeasonShowResponse: cache " + sResponseCache);
+            switch (seriesResponse.code()) {
+                case 401: // auth issue
+                    log.debug("search: auth error");
+                    myResult.status = ScrapeStatus.AUTH_ERROR;
+                    ShowScraper4.reauth();
+                    return myResult;
+                case 404: // not found
+                    myResult.status = ScrapeStatus.NOT_FOUND;
+                    // fallback to english if no result
+                    if (!language.equals("en")) {
+                        log.debug("getSeasonShowResponse: retrying search for showId " + showId + " in en");
+                        return getSeasonShowResponse(showId, season,"en", adultScrape, tmdb);
+                    }
+                    log.debug("getSeasonShowResponse: showId " + showId + " not found");
+                    break;
+                default:
+                    if (seriesResponse.isSuccessful()) {
+                        if (seriesResponse.body() != null) {
+                            myResult.tvSeason = seriesResponse.body();
+                            myResult.status = ScrapeStatus.OKAY;
+                        } else {
+                            if (!language.equals("en")) {
+                                log.debug("getSeasonShowResponse: retrying search for showId " + showId + " in en");
+                                return getSeasonShowResponse(showId, season,"en", adultScrape, tmdb);
                             }
-                            // record valid answer
-                            sShowCache.put(showKey, myResult);
-                        } else { // an error at this point is PARSER related
-                            log.debug("getSeasonShowResponse: error " + seriesResponse.code());
-                            myResult.status = ScrapeStatus.ERROR_PARSER;
+                            myResult.status = ScrapeStatus.NOT_FOUND;
                         }
-                        break;
-                }
-            } catch (IOException e) {
-                log.error("getSeasonShowResponse: caught IOException getting result for showId=" + showId);
-                myResult.status = ScrapeStatus.ERROR_PARSER;
-                myResult.reason = e;
+                    } else { // an error at this point is PARSER related
+                        log.debug("getSeasonShowResponse: error " + seriesResponse.code());
+                        myResult.status = ScrapeStatus.ERROR_PARSER;
+                    }
+                    break;
             }
+        } catch (IOException e) {
+            log.error("getSeasonShowResponse: caught IOException getting result for showId=" + showId);
+            myResult.status = ScrapeStatus.ERROR_PARSER;
+            myResult.reason = e;
         }
         return myResult;
     }
-
-    public static void debugLruCache(LruCache<String, ShowIdSeasonSearchResult> lruCache) {
-        log.debug("debugLruCache: size=" + lruCache.size());
-        log.debug("debugLruCache: putCount=" + lruCache.putCount());
-        log.debug("debugLruCache: hitCount=" + lruCache.hitCount());
-        log.debug("debugLruCache: missCount=" + lruCache.missCount());
-        log.debug("debugLruCache: evictionCount=" + lruCache.evictionCount());
-    }
 }
@@ -14,8 +14,6 @@
 
 package com.archos.mediascraper.themoviedb3;
 
-import android.util.LruCache;
-
 import com.archos.mediascraper.ScrapeStatus;
 import com.archos.mediascraper.xml.ShowScraper4;
 import com.uwetrottmann.tmdb2.entities.AppendToResponse;
@@ -35,10 +33,8 @@ import retrofit2.Response;
 public class ShowIdTvSearch {
     private static final Logger log = LoggerFactory.getLogger(ShowIdTvSearch.class);
 
-    // In theory this is to buffer two consecutive requests in ShowScraper (or 4 if there is english)
-    // TODO MARC THIS IS THE CACHE MESSING UP!!!!!!! --> no there is only one id!!!
-    private final static LruCache<String, ShowIdTvSearchResult> sShowCache = new LruCache<>(10);
-
+    // buffers consecutive requests in ShowScraper and shares the ones made concurrently by the scrape pipeline
+    private final static TmdbRequestCache<TvShow> sResponseCache = new TmdbRequestCache<>(20);
 
     public static ShowIdTvSearchResult getTvShowResponse(int showId, String language, final boolean adultScrape, MyTmdb tmdb) {
         log.debug("getTvShowResponse: quering tmdb for showId " + showId + " in " + language);
@@ -47,67 +43,51 @@ public class ShowIdTvSearch {
             put("include_image_language", "en,null");
             put("include_adult", String.valueOf(adultScrape));
         }};
-        String showKey = showId + "|" + language;
-        ShowIdTvSearchResult myResult = sShowCache.get(showKey);
-        if (log.isTraceEnabled()) debugLruCache(sShowCache);
-
-        if (myResult == null) {
-            myResult = new ShowIdTvSearchResult();
-            try {
-                // use appendToResponse to get imdbId
-                // e.g. https://api.themoviedb.org/3/tv/66732?language=en&append_to_response=credits%2Cexternal_ids%2Cimages%2Ccontent_ratings&include_image_language=en%2Cnull&api_key=051012651ba326cf5b1e2f482342eaa2
-                Response<TvShow> seriesResponse = tmdb.tvService().tv(showId, language, new AppendToResponse(AppendToResponseItem.EXTERNAL_IDS, AppendToResponseItem.IMAGES, AppendToResponseItem.CREDITS, AppendToResponseItem.CONTENT_RATINGS), options).execute();
-                switch (seriesResponse.code()) {
-                    case 401: // auth issue
-                        log.debug("search: auth error");
-                        myResult.status = ScrapeStatus.AUTH_ERROR;
-                        ShowScraper4.reauth();
-                        return myResult;
-                    case 404: // not found
-                        myResult.status = ScrapeStatus.NOT_FOUND;
-                        // fallback to english if no result
-                        if (!language.equals("en")) {
-                            log.debug("getTvShowResponse: retrying search for showId " + showId + " in en");
-                            return getTvShowResponse(showId, "en", adultScrape, tmdb);
-                        }
-                        log.debug("getTvShowResponse: showId " + showId + " not found");
-                        // record valid answer
-                        sShowCache.put(showKey, myResult);
-                        break;
-                    default:
-                        if (seriesResponse.isSuccessful()) {
-                            if (seriesResponse.body() != null) {
-                                myResult.tvShow = seriesResponse.body();
-                                myResult.status = ScrapeStatus.OKAY;
-                            } else {
-                                if (!language.equals("en")) {
-                                    log.debug("getTvShowResponse: retrying search for showId " + showId + " in en");
-                                    return getTvShowResponse(showId, "en", adultScrape, tmdb);
-                                }
-                                myResult.status = ScrapeStatus.NOT_FOUND;
+        String showKey = "tv|" + showId + "|" + language + "|" + adultScrape;
+        ShowIdTvSearchResult myResult = new ShowIdTvSearchResult();
+        try {
+            // use appendToResponse to get imdbId
+            // e.g. https://api.themoviedb.org/3/tv/66732?language=en&append_to_response=credits%2Cexternal_ids%2Cimages%2Ccontent_ratings&include_image_language=en%2Cnull&api_key=051012651ba326cf5b1e2f482342eaa2
+            Response<TvShow> seriesResponse = sResponseCache.execute(showKey, tmdb.tvService().tv(showId, language, new AppendToResponse(AppendToResponseItem.EXTERNAL_IDS, AppendToResponseItem.IMAGES, AppendToResponseItem.CREDITS, AppendToResponseItem.CONTENT_RATINGS), options));
+            if (log.isTraceEnabled()) log.trace("getTvShowResponse: cache " + sResponseCache);
+            switch (seriesResponse.code()) {
+                case 401: // auth issue
+                    log.debug("search: auth error");
+                    myResult.status = ScrapeStatus.AUTH_ERROR;
+                    ShowScraper4.reauth();
+                    return myResult;
+                case 404: // not found
+                    myResult.status = ScrapeStatus.NOT_FOUND;
+                    // fallback to english if no result
+                    if (!language.equals("en")) {
+                        log.debug("getTvShowResponse: retrying search for showId " + showId + " in en");
+                        return getTvShowResponse(showId, "en", adultScrape, tmdb);
+                    }
+                    log.debug("getTvShowResponse: showId " + showId + " not found");
+                    break;
+                default:
+                    if (seriesResponse.isSuccessful()) {
+                        if (seriesResponse.body() != null) {
+                            myResult.tvShow = seriesResponse.body();
+                            myResult.status = ScrapeStatus.OKAY;
+                        } else {
+                            if (!language.equals("en")) {
+                                log.debug("getTvShowResponse: retrying search for showId " + showId + " in en");
+                                return getTvShowResponse(showId, "en", adultScrape, tmdb);
                             }
-                            // record valid answer
-                            sShowCache.put(showKey, myResult);
-                        } else { // an error at this point is PARSER related
-                            log.debug("getTvShowResponse: error " + seriesResponse.code());
-                            myResult.status = ScrapeStatus.ERROR_PARSER;
+                            myResult.status = ScrapeStatus.NOT_FOUND;
                         }
-                        break;
-                }
-            } catch (IOException e) {
-                log.error("getTvShowResponse: caught IOException getting result for showId=" + showId);
-                myResult.status = ScrapeStatus.ERROR_PARSER;
-                myResult.reason = e;
+                    } else { // an error at this point is PARSER related
+                        log.debug("getTvShowResponse: error " + seriesResponse.code());
+                        myResult.status = ScrapeStatus.ERROR_PARSER;
+                    }
+                    break;
             }
+        } catch (IOException e) {
+            log.error("getTvShowResponse: caught IOException getting result for showId=" + showId);
+            myResult.status = ScrapeStatus.ERROR_PARSER;
+            myResult.reason = e;
         }
         return myResult;
     }
-
-    public static void debugLruCache(LruCache<String, ShowIdTvSearchResult> lruCache) {
-        log.debug("debugLruCache: size=" + lruCache.size());
-        log.debug("debugLruCache: putCount=" + lruCache.putCount());
-        log.debug("debugLruCache: hitCount=" + lruCache.hitCount());
-        log.debug("debugLruCache: missCount=" + lruCache.missCount());
-        log.debug("debugLruCache: evictionCount=" + lruCache.evictionCount());
-    }
 }
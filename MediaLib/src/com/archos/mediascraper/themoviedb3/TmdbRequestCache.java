@@ -0,0 +1,105 @@
+// Copyright 2021 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediascraper.themoviedb3;
+
+import android.util.LruCache;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * LRU of tmdb responses in front of the http cache, with single flight: while a request is running, the callers
+ * asking for the same key wait for its response instead of sending it again.
+ * Key is built by the caller from endpoint, id(s) and language.
+ * Only successful and not found responses are kept, errors are retried by the next caller.
+ * The same response is returned to every caller: its body must be treated as read only, lists are copied
+ * before being sorted or modified.
+ */
+public class TmdbRequestCache<T> {
+
+    private final LruCache<String, Response<T>> mResponses;
+    private final HashMap<String, FutureTask<Response<T>>> mInFlight = new HashMap<>();
+    private int mSharedCount;
+
+    public TmdbRequestCache(int maxSize) {
+        mResponses = new LruCache<>(maxSize);
+    }
+
+    /**
+     * @param call is only executed if there is no response for key, cached or in flight
+     */
+    public Response<T> execute(String key, final Call<T> call) throws IOException {
+        FutureTask<Response<T>> task;
+        boolean owner = false;
+        synchronized (this) {
+            Response<T> response = mResponses.get(key);
+            if (response != null)
+                return response;
+            task = mInFlight.get(key);
+            if (task == null) {
+                task = new FutureTask<>(new Callable<Response<T>>() {
+                    @Override
+                    public Response<T> call() throws Exception {
+                        return call.execute();
+                    }
+                });
+                mInFlight.put(key, task);
+                owner = true;
+            } else {
+                mSharedCount++;
+            }
+        }
+        if (owner) {
+            // run in the calling thread, the other callers wait for it
+            task.run();
+            synchronized (this) {
+                mInFlight.remove(key);
+                try {
+                    Response<T> response = task.get();
+                    if (response.isSuccessful() || response.code() == 404)
+                        mResponses.put(key, response);
+                } catch (Exception ignored) {
+                    // reported below
+                }
+            }
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "size=" + mResponses.size() + " hits=" + mResponses.hitCount() + " misses=" + mResponses.missCount()
+                + " evictions=" + mResponses.evictionCount() + " shared=" + mSharedCount;
+    }
+}
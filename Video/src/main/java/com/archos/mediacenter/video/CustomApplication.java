@@ -42,6 +42,7 @@ import com.archos.filecorelibrary.FileUtilsQ;
 import com.archos.filecorelibrary.jcifs.JcifsUtils;
 import com.archos.filecorelibrary.samba.NetworkCredentialsDatabase;
 import com.archos.filecorelibrary.samba.SambaDiscovery;
+import com.archos.filecorelibrary.sftp.SFTPSession;
 import com.archos.mediacenter.utils.AppState;
 import com.archos.mediacenter.utils.trakt.Trakt;
 import com.archos.mediacenter.utils.trakt.TraktService;
@@ -50,6 +51,7 @@ import com.archos.mediacenter.video.picasso.SmbRequestHandler;
 import com.archos.mediacenter.video.picasso.ThumbnailRequestHandler;
 import com.archos.medialib.LibAvos;
 import com.archos.mediaprovider.video.NetworkAutoRefresh;
+import com.archos.mediaprovider.video.NetworkChangeWatcher;
 import com.archos.mediaprovider.video.VideoStoreImportReceiver;
 import com.archos.mediascraper.ScraperImage;
 import com.squareup.picasso.Picasso;
@@ -267,8 +269,11 @@ public class CustomApplication extends Application {
         TraktService.init();
 
         NetworkAutoRefresh.init();
+        NetworkChangeWatcher.init();
         //init credentials db
         NetworkCredentialsDatabase.getInstance().loadCredentials(this);
+        SFTPSession.getInstance().setMaxChannelsPerSession(PreferenceManager.getDefaultSharedPreferences(this)
+                .getInt(SFTPSession.MAX_CHANNELS_PER_SESSION_PREF, SFTPSession.DEFAULT_MAX_CHANNELS_PER_SESSION));
         ArchosUtils.setGlobalContext(this.getApplicationContext());
         // only launch BootupRecommandation if on AndroidTV and before Android O otherwise target TV channels
         if(ArchosFeatures.isAndroidTV(this) && Build.VERSION.SDK_INT < Build.VERSION_CODES.O)
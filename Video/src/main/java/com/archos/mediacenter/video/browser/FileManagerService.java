@@ -58,6 +58,8 @@ public class FileManagerService extends Service implements OperationEngineListen
 
     private static final int PASTE_NOTIFICATION_ID = 9;
     private static final int OPEN_NOTIFICATION_ID = 10;
+    // number of files copied at the same time
+    private static final int COPY_PARALLELISM = 4;
     private NotificationManager nm;
     private NotificationCompat.Builder nb;
     private static final String notifChannelId = "FileManagerService_id";
@@ -133,6 +135,7 @@ public class FileManagerService extends Service implements OperationEngineListen
         mProgress = new HashMap<>();
         mCopyCutEngine = new CopyCutEngine(this);
         mCopyCutEngine.setListener(this);
+        mCopyCutEngine.setParallelism(COPY_PARALLELISM);
         mIsActionRunning = false;
         receiver = new BroadcastReceiver() {
             @Override
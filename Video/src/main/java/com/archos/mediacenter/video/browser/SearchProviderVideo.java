@@ -26,7 +26,6 @@ import android.provider.BaseColumns;
 
 import com.archos.mediacenter.video.R;
 import com.archos.mediacenter.video.browser.loader.SearchViewVideoLoader;
-import com.archos.mediaprovider.video.VideoStore;
 import com.archos.mediaprovider.video.VideoStore.MediaColumns;
 import com.archos.mediaprovider.video.VideoStore.Video.VideoColumns;
 
@@ -74,13 +73,8 @@ public class SearchProviderVideo extends ContentProvider {
         Cursor result = null;
 
         if (selectionArgs != null && selectionArgs.length > 0 && !selectionArgs[0].isEmpty()) {
-            // SQL regexp == *selectionArgs[0]*, twice because we have 2 '?'
-            String[] extendedSelectionArgs = {
-                "%" + selectionArgs[0] + "%",
-                "%" + selectionArgs[0] + "%"
-            };
             mSearchViewVideoLoader.setQuery(selectionArgs[0]);
-            Uri u = VideoStore.Video.Media.EXTERNAL_CONTENT_URI;
+            Uri u = mSearchViewVideoLoader.getUri();
             ContentResolver cr = getContext().getContentResolver();
             result = cr.query(u, mSearchViewVideoLoader.getProjection(), mSearchViewVideoLoader.getSelection(), mSearchViewVideoLoader.getSelectionArgs(), mSearchViewVideoLoader.getSortOrder());
         }
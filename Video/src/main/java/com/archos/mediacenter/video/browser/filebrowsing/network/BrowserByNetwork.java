@@ -44,6 +44,7 @@ import com.archos.mediacenter.video.browser.adapters.object.Video;
 import com.archos.mediacenter.video.browser.filebrowsing.BrowserByFolder;
 import com.archos.mediacenter.video.browser.filebrowsing.ListingAdapter;
 import com.archos.mediaprovider.NetworkScanner;
+import com.archos.mediaprovider.video.NetworkChangeWatcher;
 
 import java.util.List;
 
@@ -110,6 +111,7 @@ public class BrowserByNetwork extends BrowserByFolder {
 
         // Send a scan request to MediaScanner
         NetworkScanner.scanVideos(mContext, shortcutPath);
+        NetworkChangeWatcher.getInstance(mContext).refresh();
         // Update the menu items
         getActivity().invalidateOptionsMenu();
     }
@@ -132,6 +134,7 @@ public class BrowserByNetwork extends BrowserByFolder {
         Toast.makeText(mContext, text, Toast.LENGTH_SHORT).show();
         // Send a delete request to MediaScanner
         NetworkScanner.removeVideos(mContext, shortcutPath);
+        NetworkChangeWatcher.getInstance(mContext).refresh();
         // Update the menu items
         getActivity().invalidateOptionsMenu();
     }
@@ -32,6 +32,7 @@ import com.archos.filecorelibrary.FileUtils;
 import com.archos.mediacenter.utils.ShortcutDbAdapter;
 import com.archos.mediacenter.video.R;
 import com.archos.mediaprovider.NetworkScanner;
+import com.archos.mediaprovider.video.NetworkChangeWatcher;
 
 /**
  * Created by alexandre on 08/06/15.
@@ -99,6 +100,7 @@ public class CreateShareDialog extends DialogFragment implements DialogInterface
 
         // Send a scan request to MediaScanner
         NetworkScanner.scanVideos(getActivity(), shortcutPath);
+        NetworkChangeWatcher.getInstance(getActivity()).refresh();
 
         // Update the menu items
         getActivity().invalidateOptionsMenu();
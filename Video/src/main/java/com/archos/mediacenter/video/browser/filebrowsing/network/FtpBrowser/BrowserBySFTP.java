@@ -52,6 +52,7 @@ import com.archos.mediacenter.video.browser.adapters.object.Video;
 import com.archos.mediacenter.video.browser.filebrowsing.network.AdapterByNetwork;
 import com.archos.mediacenter.video.browser.filebrowsing.network.BrowserByNetwork;
 import com.archos.mediaprovider.NetworkScanner;
+import com.archos.mediaprovider.video.NetworkChangeWatcher;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -229,6 +230,7 @@ public class BrowserBySFTP extends BrowserByNetwork implements ListingEngine.Lis
 
     private void addIndexedFolder(Uri currentDirectory, String name) {
         ShortcutDbAdapter.VIDEO.addShortcut(getActivity(), new ShortcutDbAdapter.Shortcut(name, currentDirectory.toString()));
+        NetworkChangeWatcher.getInstance(getActivity()).refresh();
     }
 
     @Override
@@ -34,6 +34,7 @@ import com.archos.mediacenter.video.browser.filebrowsing.network.NewRootFragment
 import com.archos.mediacenter.video.browser.filebrowsing.network.RootFragmentAdapter;
 import com.archos.mediacenter.video.browser.ShortcutDb;
 import com.archos.mediaprovider.NetworkScanner;
+import com.archos.mediaprovider.video.NetworkChangeWatcher;
 
 /**
  * Created by alexandre on 28/05/15.
@@ -148,6 +149,7 @@ public class FtpRootFragment extends NewRootFragment implements View.OnClickList
             //if not a shortcut, add as shortcut
             ShortcutDbAdapter.VIDEO.addShortcut(getActivity(), new ShortcutDbAdapter.Shortcut(name, uri.toString()));
             loadIndexedShortcuts();
+            NetworkChangeWatcher.getInstance(getActivity()).refresh();
         }
     }
     @Override
@@ -43,6 +43,7 @@ import com.archos.mediacenter.video.browser.filebrowsing.network.FtpBrowser.Brow
 import com.archos.mediacenter.video.browser.filebrowsing.network.SmbBrowser.BrowserBySmb;
 import com.archos.mediacenter.video.browser.filebrowsing.network.UpnpBrowser.BrowserByUpnp;
 import com.archos.mediaprovider.NetworkScanner;
+import com.archos.mediaprovider.video.NetworkChangeWatcher;
 import com.archos.mediaprovider.video.NetworkScannerServiceVideo;
 
 public abstract class NewRootFragment extends Fragment implements  WorkgroupShortcutAndServerAdapter.OnShortcutTapListener,  WorkgroupShortcutAndServerAdapter.OnRefreshClickListener, NetworkScannerServiceVideo.ScannerListener {
@@ -115,6 +116,7 @@ public abstract class NewRootFragment extends Fragment implements  WorkgroupShor
                     //if not a shortcut, add as shortcut
                     ShortcutDbAdapter.VIDEO.addShortcut(getActivity(), new ShortcutDbAdapter.Shortcut(uri.getLastPathSegment(), uri.toString()));
                     loadIndexedShortcuts();
+                    NetworkChangeWatcher.getInstance(getActivity()).refresh();
                 }
                 // Close the popup
                 mQuickAction.dismiss();
@@ -224,6 +226,7 @@ public abstract class NewRootFragment extends Fragment implements  WorkgroupShor
         Toast.makeText(getActivity(), text, Toast.LENGTH_SHORT).show();
         // Send a delete request to MediaScanner
         NetworkScanner.removeVideos(getActivity(), shortcut.getUri());
+        NetworkChangeWatcher.getInstance(getActivity()).refresh();
 
         // Update the menu items
         getActivity().invalidateOptionsMenu();
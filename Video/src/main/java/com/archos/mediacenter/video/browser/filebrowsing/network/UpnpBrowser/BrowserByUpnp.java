@@ -22,6 +22,7 @@ import com.archos.mediacenter.utils.ShortcutDbAdapter;
 import com.archos.mediacenter.video.R;
 import com.archos.mediacenter.video.browser.filebrowsing.network.BrowserByNetwork;
 import com.archos.mediaprovider.NetworkScanner;
+import com.archos.mediaprovider.video.NetworkChangeWatcher;
 
 /**
  * Created by alexandre on 29/10/15.
@@ -60,6 +61,7 @@ public class BrowserByUpnp extends BrowserByNetwork {
             Toast.makeText(getActivity(), getString(R.string.indexed_folder_added, shortcutName), Toast.LENGTH_SHORT).show();
             // Send a scan request to MediaScanner
             NetworkScanner.scanVideos(getActivity(), shortcutPath);
+            NetworkChangeWatcher.getInstance(getActivity()).refresh();
         }
         else {
             Toast.makeText(getActivity(), R.string.error, Toast.LENGTH_SHORT).show();
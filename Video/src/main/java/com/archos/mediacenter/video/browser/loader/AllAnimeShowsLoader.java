@@ -99,7 +99,7 @@ public class AllAnimeShowsLoader extends VideoLoader {
             sb.append(LoaderUtils.HIDE_WATCHED_FILTER);
         }
         sb.append(" AND ");
-        sb.append("( " + VideoStore.Video.VideoColumns.SCRAPER_S_GENRES + " LIKE '%" + mContext.getString(com.archos.medialib.R.string.tvshow_genre_animation) + "%')");
+        sb.append(LoaderUtils.getShowGenreFilter(mContext.getString(com.archos.medialib.R.string.tvshow_genre_animation), true));
         sb.append(") GROUP BY (");
         sb.append(VideoStore.Video.VideoColumns.SCRAPER_SHOW_ID);
         return sb.toString();
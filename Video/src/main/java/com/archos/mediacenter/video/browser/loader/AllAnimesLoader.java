@@ -81,8 +81,8 @@ public class AllAnimesLoader extends VideoLoader {
         sb.append(super.getSelection()); // get common selection from the parent
 
         if (sb.length()>0) { sb.append(" AND "); }
-        sb.append("( " + VideoStore.Video.VideoColumns.SCRAPER_S_GENRES + " LIKE '%" + mContext.getString(com.archos.medialib.R.string.tvshow_genre_animation) + "%' OR " +
-                VideoStore.Video.VideoColumns.SCRAPER_M_GENRES + " LIKE '%" + mContext.getString(com.archos.medialib.R.string.movie_genre_animation) + "%' )");
+        sb.append("( " + LoaderUtils.getShowGenreFilter(mContext.getString(com.archos.medialib.R.string.tvshow_genre_animation), true) + " OR " +
+                LoaderUtils.getMovieGenreFilter(mContext.getString(com.archos.medialib.R.string.movie_genre_animation), true) + " )");
         if (!mShowWatched) {
             sb.append(" AND ");
             sb.append(LoaderUtils.HIDE_WATCHED_FILTER);
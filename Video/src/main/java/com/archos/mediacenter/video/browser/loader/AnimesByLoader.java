@@ -40,12 +40,8 @@ public abstract class AnimesByLoader extends CursorLoader implements CompatAndSD
     public AnimesByLoader(Context context) {
         super(context);
         mContext = context;
-        setUri(VideoStore.RAW_QUERY.buildUpon().appendQueryParameter("group",
-                "CASE\n"+
-                        "WHEN " + VideoStore.Video.VideoColumns.SCRAPER_ONLINE_ID + ">0 THEN " + VideoStore.Video.VideoColumns.SCRAPER_ONLINE_ID+"\n" +
-                        " ELSE "+VideoStore.Video.VideoColumns._ID+"\n" +
-                        "END"
-        ).build());
+        // aggregates are kept by the provider until the library changes
+        setUri(VideoStore.BROWSE_QUERY);
         setSelectionArgs(null);
     }
 
@@ -65,7 +61,7 @@ public abstract class AnimesByLoader extends CursorLoader implements CompatAndSD
         }
 
         sb.append(" AND ");
-        sb.append (VideoStore.Video.VideoColumns.SCRAPER_M_GENRES + " LIKE '%" + mContext.getString(com.archos.medialib.R.string.movie_genre_animation) + "%'");
+        sb.append(LoaderUtils.getMovieGenreFilter(mContext.getString(com.archos.medialib.R.string.movie_genre_animation), true));
 
         return sb.toString();
     }
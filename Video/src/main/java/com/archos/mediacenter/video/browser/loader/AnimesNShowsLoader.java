@@ -46,7 +46,10 @@ SELECT
   CASE WHEN s_id IS NULL THEN '0' ELSE  COUNT(CASE bookmark WHEN -2 THEN 1 ELSE NULL END) END episode_watched_count
 FROM video
 WHERE (m_id IS NOT NULL OR s_id IS NOT NULL)
-  AND (m_genres  LIKE '%Animation%' OR s_genres LIKE '%Animation%' )
+  AND (EXISTS (SELECT 1 FROM BELONGS_MOVIE WHERE movie_belongs=m_id
+          AND genre_belongs=(SELECT _id FROM GENRE WHERE name_genre='Animation'))
+    OR EXISTS (SELECT 1 FROM BELONGS_SHOW WHERE show_belongs=s_id
+          AND genre_belongs=(SELECT _id FROM GENRE WHERE name_genre='Animation')))
   AND (s_po_large_file IS NOT NULL OR m_po_large_file IS NOT NULL)
 GROUP BY (CASE WHEN s_id IS NULL THEN m_name ELSE s_name END)
 ORDER BY uName ASC
@@ -112,7 +115,8 @@ ORDER BY uName ASC
         // collections and movies not in collections that are not animes
         if (sb.length()>0) { sb.append(" AND "); }
         sb.append("(m_id IS NOT NULL OR s_id IS NOT NULL)" +
-                " AND (m_genres  LIKE '%Animation%' OR s_genres LIKE '%Animation%')" +
+                " AND (" + LoaderUtils.getMovieGenreFilter(mContext.getString(com.archos.medialib.R.string.movie_genre_animation), true) +
+                " OR " + LoaderUtils.getShowGenreFilter(mContext.getString(com.archos.medialib.R.string.tvshow_genre_animation), true) + ")" +
                 " AND (s_po_large_file IS NOT NULL OR m_po_large_file IS NOT NULL)"
         );
         if (!mShowWatched) {
@@ -17,6 +17,7 @@ package com.archos.mediacenter.video.browser.loader;
 import android.content.Context;
 
 import com.archos.mediacenter.video.R;
+import com.archos.mediaprovider.video.LoaderUtils;
 import com.archos.mediaprovider.video.VideoStore;
 
 public class EpisodesByDateLoader extends MoviesByLoader {
@@ -69,7 +70,7 @@ public class EpisodesByDateLoader extends MoviesByLoader {
                 "  SELECT e_id, e_po_large_file, e_aired FROM video\n" +
                 "  WHERE e_id IS NOT NULL \n" +
                 "    AND e_aired > 0" + getCommonSelection() + "\n" +
-                "    AND ( s_genres NOT NULL OR s_genres NOT LIKE '%" + mContext.getString(com.archos.medialib.R.string.tvshow_genre_animation) + "%' ) \n" +
+                "    AND " + LoaderUtils.getShowGenreFilter(mContext.getString(com.archos.medialib.R.string.tvshow_genre_animation), false) + " \n" +
                 ") \n" +
                 "GROUP BY name\n" +
                 "ORDER BY "+mSortOrder;
@@ -42,7 +42,9 @@ SELECT
   CASE WHEN m_coll_id IS NULL THEN m_po_large_file ELSE m_coll_po_large_file END poster,
   CASE WHEN m_coll_id IS NULL THEN COUNT(DISTINCT  m_id) ELSE COUNT(DISTINCT  m_coll_id)  END count
 FROM video
-WHERE m_id IS NOT NULL AND m_genres NOT LIKE '%Animation%'
+WHERE m_id IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM BELONGS_MOVIE WHERE movie_belongs=m_id
+          AND genre_belongs=(SELECT _id FROM GENRE WHERE name_genre='Animation'))
   AND ((m_coll_po_large_file IS NOT NULL) OR (m_coll_id IS NULL ))
 GROUP BY (CASE WHEN m_coll_id IS NULL THEN m_name ELSE m_coll_name END)
 ORDER BY name ASC
@@ -114,7 +116,8 @@ ORDER BY name ASC
 
         // collections and movies not in collections that are not animes
         if (sb.length()>0) { sb.append(" AND "); }
-        sb.append("m_id IS NOT NULL AND ( m_genres NOT NULL AND m_genres NOT LIKE '%Animation%' )" +
+        sb.append("m_id IS NOT NULL AND m_genres NOT NULL" +
+                        " AND " + LoaderUtils.getMovieGenreFilter(mContext.getString(com.archos.medialib.R.string.movie_genre_animation), false) +
                         " AND ((m_coll_po_large_file IS NOT NULL) OR (m_coll_id IS NULL))"
                 );
         if (!mShowWatched) {
@@ -41,12 +41,8 @@ public abstract class MoviesByLoader extends CursorLoader implements CompatAndSD
 
     public MoviesByLoader(Context context) {
         super(context);
-        setUri(VideoStore.RAW_QUERY.buildUpon().appendQueryParameter("group",
-                "CASE\n"+
-                        "WHEN " + VideoStore.Video.VideoColumns.SCRAPER_ONLINE_ID + ">0 THEN " + VideoStore.Video.VideoColumns.SCRAPER_ONLINE_ID+"\n" +
-                        " ELSE "+VideoStore.Video.VideoColumns._ID+"\n" +
-                        "END"
-        ).build());
+        // aggregates are kept by the provider until the library changes
+        setUri(VideoStore.BROWSE_QUERY);
         setSelectionArgs(null);
     }
 
@@ -6,19 +6,14 @@ import com.archos.mediaprovider.video.VideoStore;
 
 public class SearchEpisodeLoader extends VideoLoader {
 
-    // search based on scraper title and file title
-    private static final String SELECTION = VideoStore.Video.VideoColumns.SCRAPER_EPISODE_ID + " IS NOT NULL AND ("
-                                          + VideoStore.Video.VideoColumns.SCRAPER_TITLE + " LIKE ? OR "
-                                          + VideoStore.Video.VideoColumns.SCRAPER_E_NAME + " LIKE ? OR "
-                                          + VideoStore.MediaColumns.TITLE + " LIKE ?)";
+    // search based on scraper title, episode name, file title, actors and plot is done by the search uri
+    private static final String SELECTION = VideoStore.Video.VideoColumns.SCRAPER_EPISODE_ID + " IS NOT NULL";
 
-    private static final String DEFAULT_QUERY = "";
     private static final String DEFAULT_SORT = "name COLLATE LOCALIZED,"
             + VideoStore.Video.VideoColumns.SCRAPER_E_SEASON + " ASC,"
             + VideoStore.Video.VideoColumns.SCRAPER_E_EPISODE + " ASC";
 
     private String mSortOrder = DEFAULT_SORT;
-    private String mQuery = DEFAULT_QUERY;
 
     public SearchEpisodeLoader(Context context) {
         super(context);
@@ -26,7 +21,7 @@ public class SearchEpisodeLoader extends VideoLoader {
     }
 
     public void setQuery(String query) {
-        mQuery = query;
+        setUri(VideoStore.Video.Media.getSearchUri(query));
     }
 
     @Override
@@ -47,7 +42,7 @@ public class SearchEpisodeLoader extends VideoLoader {
 
     @Override
     public String[] getSelectionArgs() {
-        return new String[] { "%" + mQuery + "%", "%" + mQuery + "%", "%" + mQuery + "%" };
+        return null;
     }
 
 }
\ No newline at end of file
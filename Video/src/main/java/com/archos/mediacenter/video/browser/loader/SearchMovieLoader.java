@@ -20,16 +20,12 @@ import com.archos.mediaprovider.video.VideoStore;
 
 public class SearchMovieLoader extends VideoLoader {
 
-    // search based on scraper title and file title
-    private static final String SELECTION = VideoStore.Video.VideoColumns.SCRAPER_MOVIE_ID + " IS NOT NULL AND ("
-                                          + VideoStore.Video.VideoColumns.SCRAPER_TITLE + " LIKE ? OR "
-                                          + VideoStore.MediaColumns.TITLE + " LIKE ? )";
+    // search based on scraper title, file title, actors and plot is done by the search uri
+    private static final String SELECTION = VideoStore.Video.VideoColumns.SCRAPER_MOVIE_ID + " IS NOT NULL";
 
-    private static final String DEFAULT_QUERY = "";
     private static final String DEFAULT_SORT = "name COLLATE NOCASE";
 
     private String mSortOrder = DEFAULT_SORT;
-    private String mQuery = DEFAULT_QUERY;
 
     public SearchMovieLoader(Context context) {
         super(context);
@@ -37,7 +33,7 @@ public class SearchMovieLoader extends VideoLoader {
     }
 
     public void setQuery(String query) {
-        mQuery = query;
+        setUri(VideoStore.Video.Media.getSearchUri(query));
     }
 
     @Override
@@ -58,7 +54,7 @@ public class SearchMovieLoader extends VideoLoader {
 
     @Override
     public String[] getSelectionArgs() {
-        return new String[]{ "%" + mQuery + "%", "%" + mQuery + "%" };
+        return null;
     }
 
 }
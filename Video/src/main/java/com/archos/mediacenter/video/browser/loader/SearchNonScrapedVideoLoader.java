@@ -21,17 +21,14 @@ import com.archos.mediaprovider.video.VideoStore;
 
 public class SearchNonScrapedVideoLoader extends VideoLoader {
 
-    // search based on scraper title and file title
+    // search based on file title is done by the search uri
     private static final String SELECTION = VideoStore.Video.VideoColumns.SCRAPER_MOVIE_ID + " IS NULL AND " +
                                             VideoStore.Video.VideoColumns.SCRAPER_SHOW_ID + " IS NULL AND " +
-                                            VideoStore.MediaColumns.TITLE + " LIKE ? AND " +
                                             VideoStore.MediaColumns.DATA + " NOT LIKE ?"; // not in camera path
     private static final String CAMERA_PATH_ARG = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DCIM).getPath() + "/Camera/%";
-    private static final String DEFAULT_QUERY = "";
     private static final String DEFAULT_SORT = "name COLLATE LOCALIZED ASC";
 
     private String mSortOrder = DEFAULT_SORT;
-    private String mQuery = DEFAULT_QUERY;
 
     public SearchNonScrapedVideoLoader(Context context) {
         super(context);
@@ -39,7 +36,7 @@ public class SearchNonScrapedVideoLoader extends VideoLoader {
     }
 
     public void setQuery(String query) {
-        mQuery = query;
+        setUri(VideoStore.Video.Media.getSearchUri(query));
     }
 
     @Override
@@ -60,7 +57,7 @@ public class SearchNonScrapedVideoLoader extends VideoLoader {
 
     @Override
     public String[] getSelectionArgs() {
-        return new String[] { "%" + mQuery + "%", CAMERA_PATH_ARG };
+        return new String[] { CAMERA_PATH_ARG };
     }
 
 }
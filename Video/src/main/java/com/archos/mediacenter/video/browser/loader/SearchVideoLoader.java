@@ -20,18 +20,11 @@ import com.archos.mediaprovider.video.VideoStore;
 
 public class SearchVideoLoader extends VideoLoader {
 
-    // search based on scraper title and file title
-    private static final String SELECTION = VideoStore.Video.VideoColumns.SCRAPER_TITLE + " LIKE ? OR "
-            + VideoStore.MediaColumns.TITLE + " LIKE ? OR "
-            + VideoStore.Video.VideoColumns.SCRAPER_E_NAME + " LIKE ?";
-
-    private static final String DEFAULT_QUERY = "";
     private static final String DEFAULT_SORT = "name COLLATE LOCALIZED ASC,"
             + VideoStore.Video.VideoColumns.SCRAPER_E_SEASON + " ASC ,"
             + VideoStore.Video.VideoColumns.SCRAPER_E_EPISODE + " ASC";
 
     private String mSortOrder = DEFAULT_SORT;
-    private String mQuery = DEFAULT_QUERY;
 
     public SearchVideoLoader(Context context) {
         super(context);
@@ -39,7 +32,7 @@ public class SearchVideoLoader extends VideoLoader {
     }
 
     public void setQuery(String query) {
-        mQuery = query;
+        setUri(VideoStore.Video.Media.getSearchUri(query));
     }
 
     @Override
@@ -47,21 +40,10 @@ public class SearchVideoLoader extends VideoLoader {
         return mSortOrder;
     }
 
-    @Override
-    public String getSelection() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(super.getSelection()); // get common selection from the parent
-        boolean close = false;
-        if (sb.length()>0) { sb.append(" AND ("); close = true; }
-        sb.append(SELECTION);
-        if(close) sb.append(")");
-
-        return sb.toString();
-    }
-
+    // search based on scraper title, file title, episode name, actors and plot is done by the search uri
     @Override
     public String[] getSelectionArgs() {
-        return new String[] { "%" + mQuery + "%", "%" + mQuery + "%", "%" + mQuery + "%" };
+        return null;
     }
 
 }
@@ -39,9 +39,8 @@ public abstract class TvshowsByLoader extends CursorLoader implements CompatAndS
     public TvshowsByLoader(Context context) {
         super(context);
         mContext = context;
-        setUri(VideoStore.RAW_QUERY.buildUpon().appendQueryParameter("group",
-                VideoStore.Video.VideoColumns.SCRAPER_SHOW_ID + " IS NOT NULL GROUP BY ( " + VideoStore.Video.VideoColumns.SCRAPER_SHOW_ID + " ) "
-        ).build());
+        // aggregates are kept by the provider until the library changes
+        setUri(VideoStore.BROWSE_QUERY);
         setSelectionArgs(null);
 
     }
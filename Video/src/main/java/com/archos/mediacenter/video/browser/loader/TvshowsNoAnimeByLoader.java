@@ -39,9 +39,8 @@ public abstract class TvshowsNoAnimeByLoader extends CursorLoader implements Com
     public TvshowsNoAnimeByLoader(Context context) {
         super(context);
         mContext = context;
-        setUri(VideoStore.RAW_QUERY.buildUpon().appendQueryParameter("group",
-                VideoStore.Video.VideoColumns.SCRAPER_SHOW_ID + " IS NOT NULL GROUP BY ( " + VideoStore.Video.VideoColumns.SCRAPER_SHOW_ID + " ) "
-        ).build());
+        // aggregates are kept by the provider until the library changes
+        setUri(VideoStore.BROWSE_QUERY);
         setSelectionArgs(null);
 
     }
@@ -62,8 +61,7 @@ public abstract class TvshowsNoAnimeByLoader extends CursorLoader implements Com
         }
 
         sb.append(" AND ");
-        sb.append("( " + VideoStore.Video.VideoColumns.SCRAPER_S_GENRES + " IS NULL OR " +
-                VideoStore.Video.VideoColumns.SCRAPER_S_GENRES + " NOT LIKE '%" + mContext.getString(com.archos.medialib.R.string.tvshow_genre_animation) + "%' )");
+        sb.append(LoaderUtils.getShowGenreFilter(mContext.getString(com.archos.medialib.R.string.tvshow_genre_animation), false));
 
         return sb.toString();
     }
@@ -64,7 +64,7 @@ public class AnimeCollectionsIconBuilder {
                 VideoStore.Video.VideoColumns.SCRAPER_COVER + " IS NOT NULL AND " +
                 VideoStore.Video.VideoColumns.SCRAPER_C_ID + " > '0' AND " +
                 VideoStore.Video.VideoColumns.SCRAPER_C_POSTER_LARGE_FILE + " IS NOT NULL AND " +
-                VideoStore.Video.VideoColumns.SCRAPER_M_GENRES + " LIKE '%" + mContext.getString(com.archos.medialib.R.string.movie_genre_animation) + "%'" +
+                LoaderUtils.getMovieGenreFilter(mContext.getString(com.archos.medialib.R.string.movie_genre_animation), true) +
                 ") GROUP BY (" + VideoStore.Video.VideoColumns.SCRAPER_C_ID;
         mWidth  = context.getResources ().getDimensionPixelSize(R.dimen.all_collections_icon_width);
         mHeight  = context.getResources ().getDimensionPixelSize(R.dimen.all_collections_icon_height);
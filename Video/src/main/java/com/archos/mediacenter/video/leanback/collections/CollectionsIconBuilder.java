@@ -27,6 +27,7 @@ import android.view.View;
 import android.widget.ImageView;
 
 import com.archos.mediacenter.video.R;
+import com.archos.mediaprovider.video.LoaderUtils;
 import com.archos.mediaprovider.video.ScraperStore;
 import com.archos.mediaprovider.video.VideoStore;
 
@@ -59,7 +60,7 @@ public class CollectionsIconBuilder {
                 VideoStore.Video.VideoColumns.SCRAPER_COVER + " IS NOT NULL AND " +
                 VideoStore.Video.VideoColumns.SCRAPER_C_ID + " > '0' AND " +
                 VideoStore.Video.VideoColumns.SCRAPER_C_POSTER_LARGE_FILE + " IS NOT NULL AND " +
-                VideoStore.Video.VideoColumns.SCRAPER_M_GENRES + " NOT LIKE '%" + mContext.getString(com.archos.medialib.R.string.movie_genre_animation) + "%'" +
+                LoaderUtils.getMovieGenreFilter(mContext.getString(com.archos.medialib.R.string.movie_genre_animation), false) +
                 ") GROUP BY (" + VideoStore.Video.VideoColumns.SCRAPER_C_ID;
         mWidth  = context.getResources ().getDimensionPixelSize(R.dimen.all_collections_icon_width);
         mHeight  = context.getResources ().getDimensionPixelSize(R.dimen.all_collections_icon_height);
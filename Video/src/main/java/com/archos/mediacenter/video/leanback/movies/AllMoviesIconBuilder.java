@@ -27,6 +27,7 @@ import android.view.View;
 import android.widget.ImageView;
 
 import com.archos.mediacenter.video.R;
+import com.archos.mediaprovider.video.LoaderUtils;
 import com.archos.mediaprovider.video.VideoStore;
 
 import java.io.IOException;
@@ -60,7 +61,7 @@ public class AllMoviesIconBuilder {
         SELECTION = VideoStore.Video.VideoColumns.ARCHOS_HIDDEN_BY_USER + "=0 AND " +
                         VideoStore.Video.VideoColumns.SCRAPER_MOVIE_ID + " IS NOT NULL AND " +
                         VideoStore.Video.VideoColumns.SCRAPER_COVER + " IS NOT NULL AND " +
-                        VideoStore.Video.VideoColumns.SCRAPER_M_GENRES + " NOT LIKE '%" + mContext.getString(com.archos.medialib.R.string.movie_genre_animation) + "%'";
+                        LoaderUtils.getMovieGenreFilter(mContext.getString(com.archos.medialib.R.string.movie_genre_animation), false);
         mWidth  = context.getResources ().getDimensionPixelSize(R.dimen.all_movies_icon_width);
         mHeight  = context.getResources ().getDimensionPixelSize(R.dimen.all_movies_icon_height);
     }
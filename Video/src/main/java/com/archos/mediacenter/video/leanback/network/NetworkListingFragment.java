@@ -24,6 +24,7 @@ import com.archos.mediacenter.utils.ShortcutDbAdapter;
 import com.archos.mediacenter.video.R;
 import com.archos.mediacenter.video.leanback.filebrowsing.ListingFragment;
 import com.archos.mediaprovider.NetworkScanner;
+import com.archos.mediaprovider.video.NetworkChangeWatcher;
 
 /**
  * Created by vapillon on 17/04/15.
@@ -154,6 +155,7 @@ public class NetworkListingFragment extends ListingFragment {
             getActivity().setResult(NetworkRootFragment.RESULT_CODE_SHORTCUTS_MODIFIED);
             // Send a scan request to MediaScanner
             NetworkScanner.scanVideos(getActivity(), shortcutPath);
+            NetworkChangeWatcher.getInstance(getActivity()).refresh();
         }
         else {
             Toast.makeText(getActivity(), R.string.error, Toast.LENGTH_SHORT).show();
@@ -172,6 +174,7 @@ public class NetworkListingFragment extends ListingFragment {
             getActivity().setResult(NetworkRootFragment.RESULT_CODE_SHORTCUTS_MODIFIED);
             // Tell MediaScanner to remove the videos from this directory
             NetworkScanner.removeVideos(getActivity(), mUri);
+            NetworkChangeWatcher.getInstance(getActivity()).refresh();
         }
         else {
             Toast.makeText(getActivity(), R.string.error, Toast.LENGTH_SHORT).show();
@@ -40,6 +40,7 @@ import com.archos.mediacenter.video.leanback.details.ArchosDetailsOverviewRowPre
 import com.archos.mediacenter.video.leanback.filebrowsing.ListingActivity;
 import com.archos.mediacenter.video.leanback.presenter.ShortcutDetailsPresenter;
 import com.archos.mediaprovider.NetworkScanner;
+import com.archos.mediaprovider.video.NetworkChangeWatcher;
 
 
 public class NetworkShortcutDetailsFragment extends DetailsSupportFragment implements OnActionClickedListener {
@@ -201,6 +202,7 @@ public class NetworkShortcutDetailsFragment extends DetailsSupportFragment imple
                 Toast.makeText(getActivity(), getString(R.string.indexed_folder_removed, mShortcut.getName()), Toast.LENGTH_SHORT).show();
                 // Send a delete request to MediaScanner
                 NetworkScanner.removeVideos(getActivity(), mShortcut.getUri());
+                NetworkChangeWatcher.getInstance(getActivity()).refresh();
                 // set caller result
                 getActivity().setResult(NetworkRootFragment.RESULT_CODE_SHORTCUTS_MODIFIED);
             }
@@ -37,6 +37,7 @@ import com.archos.mediacenter.video.browser.filebrowsing.network.FtpBrowser.Brow
 import com.archos.mediacenter.video.leanback.filebrowsing.ListingFragment;
 import com.archos.mediacenter.video.leanback.network.NetworkRootFragment;
 import com.archos.mediaprovider.NetworkScanner;
+import com.archos.mediaprovider.video.NetworkChangeWatcher;
 
 import java.util.List;
 
@@ -151,6 +152,7 @@ public class FtpListingFragment extends ListingFragment {
             public void onClick(DialogInterface dialogInterface, int i) {
                 ShortcutDbAdapter.VIDEO.addShortcut(getActivity(), new ShortcutDbAdapter.Shortcut(FileUtils.getName(mUri), mUri.toString()));
                 NetworkScanner.scanVideos(getActivity(), mUri);
+                NetworkChangeWatcher.getInstance(getActivity()).refresh();
             }
         }).setNegativeButton(R.string.no, null).show();
     }
@@ -272,6 +274,7 @@ public class FtpListingFragment extends ListingFragment {
 
         boolean result = ShortcutDb.STATIC.removeShortcut(getContext(), mUri)>0;
         ShortcutDbAdapter.VIDEO.deleteShortcut(getActivity(), mUri.toString());
+        NetworkChangeWatcher.getInstance(getActivity()).refresh();
         if (result) {
             Toast.makeText(getActivity(), getString(R.string.shortcut_removed, shortcutPath), Toast.LENGTH_SHORT).show();
             getActivity().setResult(NetworkRootFragment.RESULT_CODE_SHORTCUTS_MODIFIED);
@@ -27,6 +27,7 @@ import com.archos.mediacenter.video.browser.ShortcutDb;
 import com.archos.mediacenter.video.leanback.network.NetworkRootFragment;
 import com.archos.mediacenter.video.leanback.network.NetworkShortcutDetailsFragment;
 import com.archos.mediaprovider.NetworkScanner;
+import com.archos.mediaprovider.video.NetworkChangeWatcher;
 
 
 public class FtpShortcutDetailsFragment extends NetworkShortcutDetailsFragment {
@@ -65,6 +66,7 @@ public class FtpShortcutDetailsFragment extends NetworkShortcutDetailsFragment {
             if(ShortcutDbAdapter.VIDEO.addShortcut(getActivity(), new ShortcutDbAdapter.Shortcut(mShortcut.getName(), mShortcut.getUri().toString()))) {
                 Toast.makeText(getActivity(), getString(R.string.indexed_folder_added, mShortcut.getName()), Toast.LENGTH_SHORT).show();
                 NetworkScanner.scanVideos(getActivity(), mShortcut.getUri());
+                NetworkChangeWatcher.getInstance(getActivity()).refresh();
             }
             getActivity().setResult(NetworkRootFragment.RESULT_CODE_SHORTCUTS_MODIFIED);
             slightlyDelayedFinish();
@@ -75,6 +77,7 @@ public class FtpShortcutDetailsFragment extends NetworkShortcutDetailsFragment {
                 Toast.makeText(getActivity(), getString(R.string.shortcut_removed, mShortcut.getName()), Toast.LENGTH_SHORT).show();
                 // Send a delete request to MediaScanner
                 NetworkScanner.removeVideos(getActivity(), mShortcut.getUri());
+                NetworkChangeWatcher.getInstance(getActivity()).refresh();
                 // set caller result
                 getActivity().setResult(NetworkRootFragment.RESULT_CODE_SHORTCUTS_MODIFIED);
             }
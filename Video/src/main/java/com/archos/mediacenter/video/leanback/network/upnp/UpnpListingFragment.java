@@ -26,6 +26,7 @@ import com.archos.mediacenter.video.leanback.filebrowsing.ListingFragment;
 import com.archos.mediacenter.video.leanback.network.NetworkListingFragment;
 import com.archos.mediacenter.video.leanback.network.NetworkRootFragment;
 import com.archos.mediaprovider.NetworkScanner;
+import com.archos.mediaprovider.video.NetworkChangeWatcher;
 
 /**
  * Created by vapillon on 10/06/15.
@@ -71,6 +72,7 @@ public class UpnpListingFragment extends NetworkListingFragment {
                             getActivity().setResult(NetworkRootFragment.RESULT_CODE_SHORTCUTS_MODIFIED);
                             // Send a scan request to MediaScanner
                             NetworkScanner.scanVideos(getActivity(), shortcutPath);
+                            NetworkChangeWatcher.getInstance(getActivity()).refresh();
                         }
                         else {
                             Toast.makeText(getActivity(), R.string.error, Toast.LENGTH_SHORT).show();
@@ -228,6 +228,7 @@ public class PlayUtils implements IndexHelper.Listener {
                     // Http proxy to allow 3rd party players to play remote files
                     try {
                         StreamOverHttp stream = new StreamOverHttp(video.getFileUri(), mimeType);
+                        stream.setReadAheadSpillDirectory(context.getCacheDir());
                         dataUri = stream.getUri(video.getFileUri().getLastPathSegment());
                     } catch (IOException e) {
                         Log.e(TAG, "Failed to start " + video.getFileUri() + e);
@@ -301,6 +302,7 @@ public class PlayUtils implements IndexHelper.Listener {
         if(!FileUtils.isLocal(uri)){
             try {
                 StreamOverHttp streamOverHttp = new StreamOverHttp(file,mimeType);
+                streamOverHttp.setReadAheadSpillDirectory(context.getCacheDir());
                 uri = streamOverHttp.getUri(file.getName());
             } catch (IOException e) {
                 e.printStackTrace();
@@ -524,8 +524,8 @@ public interface Configuration {
     /**
      * Property <tt>jcifs.smb.client.encryptionEnabled</tt> (boolean, default false)
      * 
-     * This is an experimental option allowing to indicate support during protocol
-     * negotiation, SMB encryption is not implemented yet.
+     * Indicate encryption support during protocol negotiation, required to access servers or shares
+     * enforcing SMB3 encryption. AES-GCM is preferred over AES-CCM when the server supports it (SMB 3.1.1).
      * 
      * @return whether SMB encryption is enabled
      * @since 2.1
@@ -696,6 +696,28 @@ public interface Configuration {
     int getMaxRequestRetries ();
 
 
+    /**
+     * Property <tt>jcifs.smb.client.readAhead</tt> (int, default 1)
+     * 
+     * Number of SMB2 read requests a file input stream keeps in flight when reading sequentially,
+     * within the credits granted by the server. 1 disables the read ahead.
+     * 
+     * @return maximum number of pipelined read requests per stream
+     */
+    int getReadAhead ();
+
+
+    /**
+     * Property <tt>jcifs.smb.client.writeBehind</tt> (int, default 1)
+     * 
+     * Number of SMB2 write requests a file output stream keeps in flight, within the credits granted by the server.
+     * Errors are then reported by the next write, flush or close. 1 disables the write behind.
+     * 
+     * @return maximum number of pipelined write requests per stream
+     */
+    int getWriteBehind ();
+
+
     /**
      * Property <tt>jcifs.smb.client.strictResourceLifecycle</tt> (bool, default false)
      * 
@@ -129,6 +129,8 @@ public class BaseConfiguration implements Configuration {
     protected long smbAttributeExpiration = 5000L;
     protected boolean ignoreCopyToException = false;
     protected int maxRequestRetries = 2;
+    protected int readAhead = 1;
+    protected int writeBehind = 1;
     protected boolean traceResourceUsage;
     protected boolean strictResourceLifecycle;
     protected Set<String> disallowCompound;
@@ -585,6 +587,18 @@ public class BaseConfiguration implements Configuration {
     }
 
 
+    @Override
+    public int getReadAhead () {
+        return this.readAhead;
+    }
+
+
+    @Override
+    public int getWriteBehind () {
+        return this.writeBehind;
+    }
+
+
     @Override
     public boolean isTraceResourceUsage () {
         return this.traceResourceUsage;
@@ -872,6 +872,28 @@ public class DelegatingConfiguration implements Configuration {
     }
 
 
+    /**
+     * {@inheritDoc}
+     *
+     * @see jcifs.Configuration#getReadAhead()
+     */
+    @Override
+    public int getReadAhead () {
+        return this.delegate.getReadAhead();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see jcifs.Configuration#getWriteBehind()
+     */
+    @Override
+    public int getWriteBehind () {
+        return this.delegate.getWriteBehind();
+    }
+
+
     /**
      * {@inheritDoc}
      *
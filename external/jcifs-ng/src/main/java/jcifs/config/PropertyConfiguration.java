@@ -81,6 +81,8 @@ public final class PropertyConfiguration extends BaseConfiguration implements Co
         this.sessionLimit = Config.getInt(p, "jcifs.smb.client.ssnLimit", SmbConstants.DEFAULT_SSN_LIMIT);
 
         this.maxRequestRetries = Config.getInt(p, "jcifs.smb.client.maxRequestRetries", 2);
+        this.readAhead = Config.getInt(p, "jcifs.smb.client.readAhead", 1);
+        this.writeBehind = Config.getInt(p, "jcifs.smb.client.writeBehind", 1);
 
         this.smbTcpNoDelay = Config.getBoolean(p, "jcifs.smb.client.tcpNoDelay", false);
         this.smbResponseTimeout = Config.getInt(p, "jcifs.smb.client.responseTimeout", SmbConstants.DEFAULT_RESPONSE_TIMEOUT);
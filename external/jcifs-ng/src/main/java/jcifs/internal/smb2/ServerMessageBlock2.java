@@ -100,6 +100,7 @@ public abstract class ServerMessageBlock2 implements CommonServerMessageBlock {
 
     private byte[] signature = new byte[16];
     private Smb2SigningDigest digest = null;
+    private Smb2EncryptionContext encryptionContext = null;
 
     private Configuration config;
 
@@ -143,6 +144,7 @@ public abstract class ServerMessageBlock2 implements CommonServerMessageBlock {
     public void reset () {
         this.flags = 0;
         this.digest = null;
+        this.encryptionContext = null;
         this.sessionId = 0;
         this.treeId = 0;
     }
@@ -304,6 +306,26 @@ public abstract class ServerMessageBlock2 implements CommonServerMessageBlock {
     }
 
 
+    /**
+     * @return the encryption context, if the message is sent encrypted
+     */
+    public Smb2EncryptionContext getEncryptionContext () {
+        return this.encryptionContext;
+    }
+
+
+    /**
+     * @param encryptionContext
+     *            the encryption context to send the message with, null to send it in plain text
+     */
+    public void setEncryptionContext ( Smb2EncryptionContext encryptionContext ) {
+        this.encryptionContext = encryptionContext;
+        if ( this.next != null ) {
+            this.next.setEncryptionContext(encryptionContext);
+        }
+    }
+
+
     /**
      * @return the status
      */
@@ -0,0 +1,287 @@
+/*
+ * © 2021 AgNO3 Gmbh & Co. KG
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package jcifs.internal.smb2;
+
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.CCMBlockCipher;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import jcifs.CIFSException;
+import jcifs.internal.SMBProtocolDecodingException;
+import jcifs.internal.smb2.nego.EncryptionNegotiateContext;
+import jcifs.internal.util.SMBUtil;
+
+
+/**
+ * SMB3 message encryption using the transform header
+ *
+ * Keys are derived once per session, the cipher instances are reused for every message. Messages are
+ * encrypted and decrypted in place, the caller leaves room for the transform header in front of the message
+ * and for the authentication tag behind it.
+ *
+ * @author mbechler
+ *
+ */
+public class Smb2EncryptionContext {
+
+    /**
+     * Length of the transform header preceding an encrypted message
+     */
+    public static final int TRANSFORM_HEADER_LENGTH = 52;
+
+    /**
+     * Additional space needed behind an encrypted message
+     */
+    public static final int TAG_LENGTH = 16;
+
+    private static final int TRANSFORM_PROTOCOL_ID = 0x424D53FD;
+    private static final int FLAGS_ENCRYPTED = 0x1;
+
+    private static final int SIGNATURE_OFFSET = 4;
+    private static final int NONCE_OFFSET = 20;
+    private static final int MESSAGE_SIZE_OFFSET = 36;
+    private static final int FLAGS_OFFSET = 42;
+    private static final int SESSION_ID_OFFSET = 44;
+
+    // authenticated data is the header from the nonce on
+    private static final int AAD_OFFSET = NONCE_OFFSET;
+    private static final int AAD_LENGTH = TRANSFORM_HEADER_LENGTH - NONCE_OFFSET;
+
+    private final int cipherId;
+    private final boolean gcm;
+    private final int nonceLength;
+
+    private final SecretKeySpec gcmEncryptionKey;
+    private final SecretKeySpec gcmDecryptionKey;
+    private final Cipher gcmEncrypt;
+    private final Cipher gcmDecrypt;
+
+    private final KeyParameter ccmEncryptionKey;
+    private final KeyParameter ccmDecryptionKey;
+    private final CCMBlockCipher ccmEncrypt;
+    private final CCMBlockCipher ccmDecrypt;
+
+    private long nonceCounter;
+
+
+    /**
+     * @param cipherId
+     *            one of the EncryptionNegotiateContext.CIPHER_* constants
+     * @param dialect
+     * @param sessionKey
+     *            full session key, AES-256 uses 32 bytes of it
+     * @param preauthIntegrityHash
+     * @param random
+     * @throws GeneralSecurityException
+     */
+    public Smb2EncryptionContext ( int cipherId, int dialect, byte[] sessionKey, byte[] preauthIntegrityHash, SecureRandom random )
+            throws GeneralSecurityException {
+        int keyLength;
+        switch ( cipherId ) {
+        case EncryptionNegotiateContext.CIPHER_AES128_CCM:
+        case EncryptionNegotiateContext.CIPHER_AES128_GCM:
+            keyLength = 16;
+            break;
+        case EncryptionNegotiateContext.CIPHER_AES256_CCM:
+        case EncryptionNegotiateContext.CIPHER_AES256_GCM:
+            keyLength = 32;
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown cipher " + cipherId);
+        }
+
+        if ( dialect == Smb2Constants.SMB2_DIALECT_0311 && preauthIntegrityHash == null ) {
+            throw new IllegalArgumentException("Missing preauthIntegrityHash for SMB 3.1");
+        }
+
+        byte[] key = keyLength == 16 && sessionKey.length > 16 ? Arrays.copyOf(sessionKey, 16) : sessionKey;
+        byte[] encKey = Smb3KeyDerivation.deriveEncryptionKey(dialect, key, preauthIntegrityHash, keyLength);
+        byte[] decKey = Smb3KeyDerivation.deriveDecryptionKey(dialect, key, preauthIntegrityHash, keyLength);
+
+        this.cipherId = cipherId;
+        this.gcm = cipherId == EncryptionNegotiateContext.CIPHER_AES128_GCM || cipherId == EncryptionNegotiateContext.CIPHER_AES256_GCM;
+        if ( this.gcm ) {
+            this.nonceLength = 12;
+            this.gcmEncryptionKey = new SecretKeySpec(encKey, "AES");
+            this.gcmDecryptionKey = new SecretKeySpec(decKey, "AES");
+            this.gcmEncrypt = Cipher.getInstance("AES/GCM/NoPadding");
+            this.gcmDecrypt = Cipher.getInstance("AES/GCM/NoPadding");
+            this.ccmEncryptionKey = null;
+            this.ccmDecryptionKey = null;
+            this.ccmEncrypt = null;
+            this.ccmDecrypt = null;
+        }
+        else {
+            this.nonceLength = 11;
+            this.ccmEncryptionKey = new KeyParameter(encKey);
+            this.ccmDecryptionKey = new KeyParameter(decKey);
+            this.ccmEncrypt = new CCMBlockCipher(new AESEngine());
+            this.ccmDecrypt = new CCMBlockCipher(new AESEngine());
+            this.gcmEncryptionKey = null;
+            this.gcmDecryptionKey = null;
+            this.gcmEncrypt = null;
+            this.gcmDecrypt = null;
+        }
+
+        // nonces must never repeat for a key, a random start keeps them unpredictable
+        this.nonceCounter = random.nextLong();
+    }
+
+
+    /**
+     * @return the cipher in use
+     */
+    public int getCipherId () {
+        return this.cipherId;
+    }
+
+
+    /**
+     *
+     * @param buffer
+     * @param off
+     * @return whether the message at off starts with a transform header
+     */
+    public static boolean isTransformHeader ( byte[] buffer, int off ) {
+        return SMBUtil.readInt4(buffer, off) == TRANSFORM_PROTOCOL_ID;
+    }
+
+
+    /**
+     *
+     * @param buffer
+     * @param off
+     *            start of the transform header
+     * @return the session id of the encrypted message
+     */
+    public static long getSessionId ( byte[] buffer, int off ) {
+        return SMBUtil.readInt8(buffer, off + SESSION_ID_OFFSET);
+    }
+
+
+    /**
+     * Encrypt a message in place
+     *
+     * @param buffer
+     * @param off
+     *            start of the transform header, the message is at off + TRANSFORM_HEADER_LENGTH
+     * @param len
+     *            message length
+     * @param sessionId
+     * @return total length including the transform header
+     * @throws CIFSException
+     */
+    public int encrypt ( byte[] buffer, int off, int len, long sessionId ) throws CIFSException {
+        int data = off + TRANSFORM_HEADER_LENGTH;
+        if ( data + len + TAG_LENGTH > buffer.length ) {
+            throw new CIFSException("Buffer too small to encrypt message");
+        }
+
+        synchronized ( this.gcm ? this.gcmEncrypt : this.ccmEncrypt ) {
+            SMBUtil.writeInt4(TRANSFORM_PROTOCOL_ID, buffer, off);
+            Arrays.fill(buffer, off + SIGNATURE_OFFSET, off + MESSAGE_SIZE_OFFSET, (byte) 0);
+            SMBUtil.writeInt8(this.nonceCounter++, buffer, off + NONCE_OFFSET);
+            SMBUtil.writeInt4(len, buffer, off + MESSAGE_SIZE_OFFSET);
+            SMBUtil.writeInt2(0, buffer, off + MESSAGE_SIZE_OFFSET + 4);
+            SMBUtil.writeInt2(FLAGS_ENCRYPTED, buffer, off + FLAGS_OFFSET);
+            SMBUtil.writeInt8(sessionId, buffer, off + SESSION_ID_OFFSET);
+
+            byte[] nonce = Arrays.copyOfRange(buffer, off + NONCE_OFFSET, off + NONCE_OFFSET + this.nonceLength);
+            try {
+                if ( this.gcm ) {
+                    this.gcmEncrypt.init(Cipher.ENCRYPT_MODE, this.gcmEncryptionKey, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+                    this.gcmEncrypt.updateAAD(buffer, off + AAD_OFFSET, AAD_LENGTH);
+                    this.gcmEncrypt.doFinal(buffer, data, len, buffer, data);
+                }
+                else {
+                    byte[] aad = Arrays.copyOfRange(buffer, off + AAD_OFFSET, off + AAD_OFFSET + AAD_LENGTH);
+                    this.ccmEncrypt.init(true, new AEADParameters(this.ccmEncryptionKey, TAG_LENGTH * 8, nonce, aad));
+                    this.ccmEncrypt.processPacket(buffer, data, len, buffer, data);
+                }
+            }
+            catch (
+                GeneralSecurityException |
+                InvalidCipherTextException e ) {
+                throw new CIFSException("Failed to encrypt message", e);
+            }
+        }
+
+        // tag is appended to the ciphertext, it belongs in the signature field
+        System.arraycopy(buffer, data + len, buffer, off + SIGNATURE_OFFSET, TAG_LENGTH);
+        return TRANSFORM_HEADER_LENGTH + len;
+    }
+
+
+    /**
+     * Decrypt a message in place
+     *
+     * @param buffer
+     * @param off
+     *            start of the transform header
+     * @param len
+     *            length including the transform header, the buffer needs TAG_LENGTH bytes of space behind
+     * @return length of the decrypted message at off + TRANSFORM_HEADER_LENGTH
+     * @throws CIFSException
+     */
+    public int decrypt ( byte[] buffer, int off, int len ) throws CIFSException {
+        int data = off + TRANSFORM_HEADER_LENGTH;
+        int size = SMBUtil.readInt4(buffer, off + MESSAGE_SIZE_OFFSET);
+        if ( size != len - TRANSFORM_HEADER_LENGTH || data + size + TAG_LENGTH > buffer.length ) {
+            throw new SMBProtocolDecodingException("Invalid encrypted message size " + size);
+        }
+        if ( SMBUtil.readInt2(buffer, off + FLAGS_OFFSET) != FLAGS_ENCRYPTED ) {
+            throw new SMBProtocolDecodingException("Unsupported transform header flags");
+        }
+
+        // ciphers expect the tag behind the ciphertext
+        System.arraycopy(buffer, off + SIGNATURE_OFFSET, buffer, data + size, TAG_LENGTH);
+        byte[] nonce = Arrays.copyOfRange(buffer, off + NONCE_OFFSET, off + NONCE_OFFSET + this.nonceLength);
+
+        synchronized ( this.gcm ? this.gcmDecrypt : this.ccmDecrypt ) {
+            try {
+                if ( this.gcm ) {
+                    this.gcmDecrypt.init(Cipher.DECRYPT_MODE, this.gcmDecryptionKey, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+                    this.gcmDecrypt.updateAAD(buffer, off + AAD_OFFSET, AAD_LENGTH);
+                    this.gcmDecrypt.doFinal(buffer, data, size + TAG_LENGTH, buffer, data);
+                }
+                else {
+                    byte[] aad = Arrays.copyOfRange(buffer, off + AAD_OFFSET, off + AAD_OFFSET + AAD_LENGTH);
+                    this.ccmDecrypt.init(false, new AEADParameters(this.ccmDecryptionKey, TAG_LENGTH * 8, nonce, aad));
+                    this.ccmDecrypt.processPacket(buffer, data, size + TAG_LENGTH, buffer, data);
+                }
+            }
+            catch (
+                GeneralSecurityException |
+                InvalidCipherTextException e ) {
+                throw new SMBProtocolDecodingException("Failed to decrypt message", e);
+            }
+        }
+        return size;
+    }
+}
@@ -96,10 +96,25 @@ final class Smb3KeyDerivation {
      * @return derived encryption key
      */
     public static byte[] deriveEncryptionKey ( int dialect, byte[] sessionKey, byte[] preauthIntegrity ) {
+        return deriveEncryptionKey(dialect, sessionKey, preauthIntegrity, 16);
+    }
+
+
+    /**
+     * 
+     * @param dialect
+     * @param sessionKey
+     * @param preauthIntegrity
+     * @param keyLength
+     *            length of the derived key in bytes, 16 or 32
+     * @return derived encryption key
+     */
+    public static byte[] deriveEncryptionKey ( int dialect, byte[] sessionKey, byte[] preauthIntegrity, int keyLength ) {
         return derive(
             sessionKey,
             dialect == Smb2Constants.SMB2_DIALECT_0311 ? ENCLABEL_311 : ENCLABEL_300,
-            dialect == Smb2Constants.SMB2_DIALECT_0311 ? preauthIntegrity : ENCCONTEXT_300);
+            dialect == Smb2Constants.SMB2_DIALECT_0311 ? preauthIntegrity : ENCCONTEXT_300,
+            keyLength);
     }
 
 
@@ -111,10 +126,25 @@ final class Smb3KeyDerivation {
      * @return derived decryption key
      */
     public static byte[] deriveDecryptionKey ( int dialect, byte[] sessionKey, byte[] preauthIntegrity ) {
+        return deriveDecryptionKey(dialect, sessionKey, preauthIntegrity, 16);
+    }
+
+
+    /**
+     * 
+     * @param dialect
+     * @param sessionKey
+     * @param preauthIntegrity
+     * @param keyLength
+     *            length of the derived key in bytes, 16 or 32
+     * @return derived decryption key
+     */
+    public static byte[] deriveDecryptionKey ( int dialect, byte[] sessionKey, byte[] preauthIntegrity, int keyLength ) {
         return derive(
             sessionKey,
             dialect == Smb2Constants.SMB2_DIALECT_0311 ? DECLABEL_311 : DECLABEL_300,
-            dialect == Smb2Constants.SMB2_DIALECT_0311 ? preauthIntegrity : DECCONTEXT_300);
+            dialect == Smb2Constants.SMB2_DIALECT_0311 ? preauthIntegrity : DECCONTEXT_300,
+            keyLength);
 
     }
 
@@ -125,6 +155,18 @@ final class Smb3KeyDerivation {
      * @param context
      */
     private static byte[] derive ( byte[] sessionKey, byte[] label, byte[] context ) {
+        return derive(sessionKey, label, context, 16);
+    }
+
+
+    /**
+     * @param sessionKey
+     * @param label
+     * @param context
+     * @param length
+     *            in bytes
+     */
+    private static byte[] derive ( byte[] sessionKey, byte[] label, byte[] context, int length ) {
         KDFCounterBytesGenerator gen = new KDFCounterBytesGenerator(new HMac(new SHA256Digest()));
 
         int r = 32;
@@ -142,13 +184,15 @@ final class Smb3KeyDerivation {
         // + context
         System.arraycopy(context, 0, suffix, label.length + 1, context.length);
         // + 4 byte (== r bits) big endian encoding of L
-        suffix[ suffix.length - 1 ] = (byte) 128;
+        int l = length * 8;
+        suffix[ suffix.length - 2 ] = (byte) ( l >> 8 );
+        suffix[ suffix.length - 1 ] = (byte) l;
 
         DerivationParameters param = new KDFCounterParameters(sessionKey, null /* prefix */, suffix /* suffix */, r /* r */);
         gen.init(param);
 
-        byte[] derived = new byte[16];
-        gen.generateBytes(derived, 0, 16);
+        byte[] derived = new byte[length];
+        gen.generateBytes(derived, 0, length);
         return derived;
     }
 
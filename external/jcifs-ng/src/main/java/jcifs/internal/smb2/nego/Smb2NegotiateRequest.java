@@ -85,8 +85,10 @@ public class Smb2NegotiateRequest extends ServerMessageBlock2Request<Smb2Negotia
             this.preauthSalt = salt;
 
             if ( config.isEncryptionEnabled() ) {
+                // GCM first, it is much faster than CCM
                 negoContexts.add(new EncryptionNegotiateContext(config, new int[] {
-                    EncryptionNegotiateContext.CIPHER_AES128_GCM, EncryptionNegotiateContext.CIPHER_AES128_CCM
+                    EncryptionNegotiateContext.CIPHER_AES128_GCM, EncryptionNegotiateContext.CIPHER_AES256_GCM,
+                    EncryptionNegotiateContext.CIPHER_AES128_CCM, EncryptionNegotiateContext.CIPHER_AES256_CCM
                 }));
             }
         }
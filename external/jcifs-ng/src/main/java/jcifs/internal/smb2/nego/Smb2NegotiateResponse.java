@@ -322,7 +322,8 @@ public class Smb2NegotiateResponse extends ServerMessageBlock2Response implement
                     return false;
                 }
                 this.selectedCipher = enc.getCiphers()[ 0 ];
-                this.supportsEncryption = true;
+                // zero means there is no common cipher
+                this.supportsEncryption = this.selectedCipher != 0;
             }
             else if ( ncr.getContextType() == EncryptionNegotiateContext.NEGO_CTX_ENC_TYPE ) {
                 log.error("Multiple encryption negotiate contexts");
@@ -392,6 +393,10 @@ public class Smb2NegotiateResponse extends ServerMessageBlock2Response implement
             log.error("Server returned no cipher selection");
             return false;
         }
+        else if ( ec.getCiphers()[ 0 ] == 0 ) {
+            log.debug("Server does not support any of the offered ciphers");
+            return true;
+        }
 
         EncryptionNegotiateContext rec = null;
         for ( NegotiateContextRequest rnc : req.getNegotiateContexts() ) {
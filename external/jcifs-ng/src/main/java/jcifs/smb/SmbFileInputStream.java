@@ -23,12 +23,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jcifs.CIFSContext;
 import jcifs.CIFSException;
+import jcifs.Configuration;
 import jcifs.SmbConstants;
 import jcifs.SmbFileHandle;
 import jcifs.internal.smb1.com.SmbComReadAndX;
@@ -58,6 +64,9 @@ public class SmbFileInputStream extends InputStream {
 
     private boolean smb2;
 
+    private int readAhead;
+    private final ArrayDeque<PendingRead> pendingReads = new ArrayDeque<>();
+
 
     /**
      * @param url
@@ -136,6 +145,7 @@ public class SmbFileInputStream extends InputStream {
         if ( this.smb2 ) {
             this.readSize = th.getReceiveBufferSize();
             this.readSizeFile = th.getReceiveBufferSize();
+            this.readAhead = th.getConfig().getReadAhead();
             return;
         }
 
@@ -217,6 +227,7 @@ public class SmbFileInputStream extends InputStream {
 
     @Override
     public void close () throws IOException {
+        cancelPendingReads();
         try {
             SmbFileHandleImpl h = this.handle;
             if ( h != null ) {
@@ -275,10 +286,99 @@ public class SmbFileInputStream extends InputStream {
 
     @Override
     public int read ( byte[] b, int off, int len ) throws IOException {
+        if ( this.smb2 && this.readAhead > 1 && this.file.getType() == SmbConstants.TYPE_FILESYSTEM ) {
+            return readPipelined(b, off, len);
+        }
         return readDirect(b, off, len);
     }
 
 
+    /**
+     * Reads through up to readAhead SMB2 read requests kept in flight ahead of the file pointer
+     * 
+     * Responses are consumed in offset order, any seek or short read drops the requests in flight.
+     * 
+     * @param b
+     * @param off
+     * @param len
+     * @return number of bytes read
+     * @throws IOException
+     */
+    private int readPipelined ( byte[] b, int off, int len ) throws IOException {
+        if ( len <= 0 ) {
+            return 0;
+        }
+        if ( this.tmp == null ) {
+            throw new IOException("Bad file descriptor");
+        }
+        try ( SmbFileHandleImpl fd = ensureOpen();
+              SmbTreeHandleImpl th = fd.getTree() ) {
+            PendingRead head = this.pendingReads.peekFirst();
+            if ( head != null && ( head.handle != fd || head.offset + head.consumed != this.fp ) ) {
+                if ( log.isDebugEnabled() ) {
+                    log.debug("Dropping read ahead at " + head.offset + " for " + this.fp);
+                }
+                cancelPendingReads();
+            }
+
+            fillPipeline(fd, th);
+
+            head = this.pendingReads.peekFirst();
+            int n = head.getDataLength();
+            if ( n <= 0 ) {
+                cancelPendingReads();
+                return -1;
+            }
+
+            int count = Math.min(len, n - head.consumed);
+            System.arraycopy(head.buffer, head.consumed, b, off, count);
+            head.consumed += count;
+            this.fp += count;
+            if ( head.consumed == n ) {
+                this.pendingReads.removeFirst();
+                if ( n < head.length ) {
+                    // short read, the following requests do not start at the file pointer
+                    cancelPendingReads();
+                }
+            }
+            return count;
+        }
+        catch ( SmbException se ) {
+            cancelPendingReads();
+            throw seToIoe(se);
+        }
+    }
+
+
+    private void fillPipeline ( SmbFileHandleImpl fd, SmbTreeHandleImpl th ) throws CIFSException {
+        PendingRead last = this.pendingReads.peekLast();
+        long offset = last != null ? last.offset + last.length : this.fp;
+        while ( this.pendingReads.size() < this.readAhead ) {
+            // always keep one credit for the other users of the connection
+            if ( !this.pendingReads.isEmpty() && th.getAvailableCredits() <= 1 ) {
+                break;
+            }
+            if ( last != null && last.reachedEnd() ) {
+                // reached end of file
+                break;
+            }
+            last = new PendingRead(fd, th.getConfig(), offset, this.readSizeFile);
+            this.pendingReads.addLast(last);
+            SmbPipelineExecutor.execute(last);
+            offset += this.readSizeFile;
+        }
+    }
+
+
+    private void cancelPendingReads () {
+        // requests already sent complete in their thread, their responses are ignored
+        PendingRead pending;
+        while ( ( pending = this.pendingReads.pollFirst() ) != null ) {
+            pending.cancel(false);
+        }
+    }
+
+
     /**
      * Reads up to len bytes of data from this input stream into an array of bytes.
      * 
@@ -417,4 +517,108 @@ public class SmbFileInputStream extends InputStream {
         return 0;
     }
 
+
+    /**
+     * SMB2 read request sent from a pipeline thread, holding a reference on the file handle
+     * 
+     * The reference is released by the request, or on cancellation if the request did not start.
+     */
+    private static final class PendingRead extends FutureTask<Integer> {
+
+        final SmbFileHandleImpl handle;
+        final long offset;
+        final int length;
+        final byte[] buffer;
+        int consumed;
+        private final AtomicBoolean started;
+
+
+        PendingRead ( SmbFileHandleImpl fd, Configuration config, long offset, int length ) {
+            this(fd.acquire(), config, offset, length, new byte[length], new AtomicBoolean());
+        }
+
+
+        private PendingRead ( final SmbFileHandleImpl fd, final Configuration config, final long offset, final int length, final byte[] buffer,
+                final AtomicBoolean started ) {
+            super(new Callable<Integer>() {
+
+                @Override
+                public Integer call () throws Exception {
+                    if ( !started.compareAndSet(false, true) ) {
+                        return -1;
+                    }
+                    try ( SmbFileHandleImpl h = fd;
+                          SmbTreeHandleImpl th = h.getTree() ) {
+                        Smb2ReadRequest request = new Smb2ReadRequest(config, h.getFileId(), buffer, 0);
+                        request.setOffset(offset);
+                        request.setReadLength(length);
+                        try {
+                            return th.send(request, RequestParam.NO_RETRY).getDataLength();
+                        }
+                        catch ( SmbException e ) {
+                            if ( e.getNtStatus() == 0xC0000011 ) {
+                                log.debug("Reached end of file", e);
+                                return -1;
+                            }
+                            throw e;
+                        }
+                    }
+                }
+            });
+            this.handle = fd;
+            this.offset = offset;
+            this.length = length;
+            this.buffer = buffer;
+            this.started = started;
+        }
+
+
+        @Override
+        protected void done () {
+            if ( isCancelled() && this.started.compareAndSet(false, true) ) {
+                try {
+                    this.handle.close();
+                }
+                catch ( CIFSException e ) {
+                    log.debug("Failed to release file handle", e);
+                }
+            }
+        }
+
+
+        boolean reachedEnd () {
+            if ( !isDone() || isCancelled() ) {
+                return false;
+            }
+            try {
+                return get() < this.length;
+            }
+            catch ( InterruptedException | ExecutionException e ) {
+                // failed, no point in reading further
+                return true;
+            }
+        }
+
+
+        int getDataLength () throws IOException {
+            try {
+                return get();
+            }
+            catch ( InterruptedException e ) {
+                InterruptedIOException ie = new InterruptedIOException("Interrupted while waiting for read");
+                ie.initCause(e);
+                throw ie;
+            }
+            catch ( ExecutionException e ) {
+                Throwable cause = e.getCause();
+                if ( cause instanceof SmbException ) {
+                    throw seToIoe((SmbException) cause);
+                }
+                if ( cause instanceof IOException ) {
+                    throw (IOException) cause;
+                }
+                throw new SmbException("Read failed", cause);
+            }
+        }
+    }
 }
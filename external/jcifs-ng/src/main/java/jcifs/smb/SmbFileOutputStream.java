@@ -20,12 +20,19 @@ package jcifs.smb;
 
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jcifs.CIFSException;
+import jcifs.Configuration;
 import jcifs.SmbConstants;
 import jcifs.internal.fscc.FileEndOfFileInformation;
 import jcifs.internal.smb1.com.SmbComWrite;
@@ -61,6 +68,10 @@ public class SmbFileOutputStream extends OutputStream {
 
     private final boolean smb2;
 
+    private int writeBehind;
+    private final ArrayDeque<PendingWrite> pendingWrites = new ArrayDeque<>();
+    private IOException writeError;
+
 
     /**
      * Creates an {@link java.io.OutputStream} for writing bytes to a file on
@@ -152,6 +163,7 @@ public class SmbFileOutputStream extends OutputStream {
         if ( this.smb2 ) {
             this.writeSize = sendBufferSize;
             this.writeSizeFile = sendBufferSize;
+            this.writeBehind = th.getConfig().getWriteBehind();
             return;
         }
 
@@ -209,8 +221,13 @@ public class SmbFileOutputStream extends OutputStream {
     @Override
     public void close () throws IOException {
         try {
-            if ( this.handle.isValid() ) {
-                this.handle.close();
+            try {
+                waitPendingWrites();
+            }
+            finally {
+                if ( this.handle.isValid() ) {
+                    this.handle.close();
+                }
             }
         }
         finally {
@@ -220,6 +237,18 @@ public class SmbFileOutputStream extends OutputStream {
     }
 
 
+    /**
+     * Waits for the writes in flight
+     *
+     * @throws IOException
+     *             if one of them failed
+     */
+    @Override
+    public void flush () throws IOException {
+        waitPendingWrites();
+    }
+
+
     /**
      * Writes the specified byte to this file output stream.
      *
@@ -313,6 +342,11 @@ public class SmbFileOutputStream extends OutputStream {
             throw new IOException("Bad file descriptor");
         }
 
+        if ( this.smb2 && this.writeBehind > 1 && this.file.getType() == SmbConstants.TYPE_FILESYSTEM ) {
+            writePipelined(b, off, len);
+            return;
+        }
+
         try ( SmbFileHandleImpl fh = ensureOpen();
               SmbTreeHandleImpl th = fh.getTree() ) {
             if ( log.isDebugEnabled() ) {
@@ -371,4 +405,166 @@ public class SmbFileOutputStream extends OutputStream {
         }
     }
 
+
+    /**
+     * Writes through up to writeBehind SMB2 write requests kept in flight
+     * 
+     * The data is copied, the caller may reuse its buffer. The first failure is thrown by the next write, flush or
+     * close.
+     * 
+     * @param b
+     * @param off
+     * @param len
+     * @throws IOException
+     */
+    private void writePipelined ( byte[] b, int off, int len ) throws IOException {
+        checkPendingWrites(false);
+        try ( SmbFileHandleImpl fh = ensureOpen();
+              SmbTreeHandleImpl th = fh.getTree() ) {
+            if ( log.isDebugEnabled() ) {
+                log.debug("write: fid=" + fh + ",off=" + off + ",len=" + len + ",fp=" + this.fp + ",pending=" + this.pendingWrites.size());
+            }
+            while ( len > 0 ) {
+                int w = Math.min(len, this.writeSizeFile);
+                // always keep one credit for the other users of the connection
+                while ( this.pendingWrites.size() >= this.writeBehind || ( !this.pendingWrites.isEmpty() && th.getAvailableCredits() <= 1 ) ) {
+                    checkPendingWrites(true);
+                }
+                byte[] data = new byte[w];
+                System.arraycopy(b, off, data, 0, w);
+                PendingWrite pending = new PendingWrite(fh, th.getConfig(), this.fp, data);
+                this.pendingWrites.addLast(pending);
+                SmbPipelineExecutor.execute(pending);
+                this.fp += w;
+                off += w;
+                len -= w;
+            }
+        }
+        catch ( SmbException se ) {
+            throw SmbFileInputStream.seToIoe(se);
+        }
+    }
+
+
+    private void waitPendingWrites () throws IOException {
+        while ( !this.pendingWrites.isEmpty() ) {
+            checkPendingWrites(true);
+        }
+        if ( this.writeError != null ) {
+            throw this.writeError;
+        }
+    }
+
+
+    /**
+     * Removes the completed writes, throws the first failure
+     * 
+     * @param wait
+     *            wait for the oldest write if it did not complete
+     */
+    private void checkPendingWrites ( boolean wait ) throws IOException {
+        PendingWrite head;
+        while ( ( head = this.pendingWrites.peekFirst() ) != null && ( wait || head.isDone() ) ) {
+            this.pendingWrites.removeFirst();
+            wait = false;
+            try {
+                head.getCount();
+            }
+            catch ( IOException e ) {
+                if ( this.writeError == null ) {
+                    this.writeError = e;
+                }
+                PendingWrite pending;
+                while ( ( pending = this.pendingWrites.pollFirst() ) != null ) {
+                    pending.cancel(false);
+                }
+            }
+        }
+        if ( this.writeError != null ) {
+            throw this.writeError;
+        }
+    }
+
+
+    /**
+     * SMB2 write request sent from a pipeline thread, holding a reference on the file handle
+     * 
+     * The reference is released by the request, or on cancellation if the request did not start.
+     */
+    private static final class PendingWrite extends FutureTask<Integer> {
+
+        private final SmbFileHandleImpl handle;
+        private final AtomicBoolean started;
+
+
+        PendingWrite ( SmbFileHandleImpl fh, Configuration config, long offset, byte[] data ) {
+            this(fh.acquire(), config, offset, data, new AtomicBoolean());
+        }
+
+
+        private PendingWrite ( final SmbFileHandleImpl fh, final Configuration config, final long offset, final byte[] data,
+                final AtomicBoolean started ) {
+            super(new Callable<Integer>() {
+
+                @Override
+                public Integer call () throws Exception {
+                    if ( !started.compareAndSet(false, true) ) {
+                        return 0;
+                    }
+                    try ( SmbFileHandleImpl h = fh;
+                          SmbTreeHandleImpl th = h.getTree() ) {
+                        int written = 0;
+                        while ( written < data.length ) {
+                            Smb2WriteRequest wr = new Smb2WriteRequest(config, h.getFileId());
+                            wr.setOffset(offset + written);
+                            wr.setData(data, written, data.length - written);
+                            long cnt = th.send(wr, RequestParam.NO_RETRY).getCount();
+                            if ( cnt <= 0 ) {
+                                throw new SmbException("Nothing written at " + ( offset + written ));
+                            }
+                            written += cnt;
+                        }
+                        return written;
+                    }
+                }
+            });
+            this.handle = fh;
+            this.started = started;
+        }
+
+
+        @Override
+        protected void done () {
+            if ( isCancelled() && this.started.compareAndSet(false, true) ) {
+                try {
+                    this.handle.close();
+                }
+                catch ( CIFSException e ) {
+                    log.debug("Failed to release file handle", e);
+                }
+            }
+        }
+
+
+        int getCount () throws IOException {
+            try {
+                return get();
+            }
+            catch ( InterruptedException e ) {
+                InterruptedIOException ie = new InterruptedIOException("Interrupted while waiting for write");
+                ie.initCause(e);
+                throw ie;
+            }
+            catch ( ExecutionException e ) {
+                Throwable cause = e.getCause();
+                if ( cause instanceof SmbException ) {
+                    throw SmbFileInputStream.seToIoe((SmbException) cause);
+                }
+                if ( cause instanceof IOException ) {
+                    throw (IOException) cause;
+                }
+                throw new SmbException("Write failed", cause);
+            }
+        }
+    }
 }
@@ -0,0 +1,62 @@
+/*
+ * © 2021 AgNO3 Gmbh & Co. KG
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package jcifs.smb;
+
+
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Threads sending the pipelined requests of the file streams
+ *
+ * The transport is synchronous per calling thread, so keeping several requests in flight
+ * takes one waiting thread per request. The number of threads is bounded by the streams,
+ * which limit the requests they keep in flight to their configured depth and the available credits.
+ */
+final class SmbPipelineExecutor {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+        0,
+        Integer.MAX_VALUE,
+        30,
+        TimeUnit.SECONDS,
+        new SynchronousQueue<Runnable>(),
+        new ThreadFactory() {
+
+            @Override
+            public Thread newThread ( Runnable r ) {
+                Thread t = new Thread(r, "JCIFS-Pipeline-" + THREAD_COUNT.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+
+    private SmbPipelineExecutor () {}
+
+
+    static void execute ( Runnable task ) {
+        EXECUTOR.execute(task);
+    }
+}
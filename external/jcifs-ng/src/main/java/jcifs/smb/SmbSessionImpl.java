@@ -61,6 +61,7 @@ import jcifs.internal.smb1.com.SmbComTreeConnectAndX;
 import jcifs.internal.smb2.ServerMessageBlock2;
 import jcifs.internal.smb2.ServerMessageBlock2Request;
 import jcifs.internal.smb2.Smb2Constants;
+import jcifs.internal.smb2.Smb2EncryptionContext;
 import jcifs.internal.smb2.Smb2SigningDigest;
 import jcifs.internal.smb2.nego.Smb2NegotiateResponse;
 import jcifs.internal.smb2.session.Smb2LogoffRequest;
@@ -103,6 +104,9 @@ final class SmbSessionImpl implements SmbSessionInternal {
 
     private SMBSigningDigest digest;
 
+    private Smb2EncryptionContext encryptionContext;
+    private volatile boolean encryptData;
+
     private final String targetDomain;
     private final String targetHost;
 
@@ -392,7 +396,12 @@ final class SmbSessionImpl implements SmbSessionInternal {
                 request.setSessionId(this.sessionId);
                 request.setUid(this.uid);
 
-                if ( request.getDigest() == null ) {
+                if ( this.encryptData && request instanceof ServerMessageBlock2 ) {
+                    // encryption replaces signing
+                    request.setDigest(null);
+                    ( (ServerMessageBlock2) request ).setEncryptionContext(this.encryptionContext);
+                }
+                else if ( request.getDigest() == null ) {
                     request.setDigest(getDigest());
                 }
 
@@ -445,6 +454,9 @@ final class SmbSessionImpl implements SmbSessionInternal {
             }
             finally {
                 request.setDigest(null);
+                if ( request instanceof ServerMessageBlock2 ) {
+                    ( (ServerMessageBlock2) request ).setEncryptionContext(null);
+                }
                 this.expiration = System.currentTimeMillis() + this.transportContext.getConfig().getSoTimeout();
             }
         }
@@ -529,6 +541,7 @@ final class SmbSessionImpl implements SmbSessionInternal {
         final int securityMode = ( ( negoResp.getSecurityMode() & Smb2Constants.SMB2_NEGOTIATE_SIGNING_REQUIRED ) != 0 ) || trans.isSigningEnforced()
                 ? Smb2Constants.SMB2_NEGOTIATE_SIGNING_REQUIRED : Smb2Constants.SMB2_NEGOTIATE_SIGNING_ENABLED;
         boolean anonymous = this.credentials.isAnonymous();
+        boolean encrypt = false;
         long sessId = 0;
 
         boolean preauthIntegrity = negoResp.getSelectedDialect().atLeast(DialectVersion.SMB311);
@@ -584,7 +597,7 @@ final class SmbSessionImpl implements SmbSessionInternal {
                 }
 
                 if ( ( response.getSessionFlags() & Smb2SessionSetupResponse.SMB2_SESSION_FLAG_ENCRYPT_DATA ) != 0 ) {
-                    throw new SmbUnsupportedOperationException("Server requires encryption, not yet supported.");
+                    encrypt = true;
                 }
 
                 if ( preauthIntegrity ) {
@@ -641,7 +654,20 @@ final class SmbSessionImpl implements SmbSessionInternal {
                 else if ( log.isDebugEnabled() ) {
                     log.debug("No digest setup " + anonymous + " B " + isSignatureSetupRequired());
                 }
+
+                this.encryptionContext = null;
+                if ( !anonymous && sk != null && negoResp.getSelectedDialect().atLeast(DialectVersion.SMB300) && negoResp.isEncryptionSupported() ) {
+                    this.encryptionContext = trans.createEncryptionContext(sk, this.preauthIntegrityHash);
+                }
+                if ( encrypt && this.encryptionContext == null ) {
+                    throw new SmbUnsupportedOperationException("Server requires encryption, but no encryption is available");
+                }
+                this.encryptData = encrypt;
+
                 setSessionSetup(response);
+                if ( this.encryptionContext != null ) {
+                    trans.addEncryptionContext(this.sessionId, this.encryptionContext);
+                }
                 if ( ex != null ) {
                     throw ex;
                 }
@@ -1175,7 +1201,12 @@ final class SmbSessionImpl implements SmbSessionInternal {
 
                 if ( !inError && trans.isSMB2() ) {
                     Smb2LogoffRequest request = new Smb2LogoffRequest(getConfig());
-                    request.setDigest(getDigest());
+                    if ( this.encryptData ) {
+                        request.setEncryptionContext(this.encryptionContext);
+                    }
+                    else {
+                        request.setDigest(getDigest());
+                    }
                     request.setSessionId(this.sessionId);
                     try {
                         this.transport.send(request.ignoreDisconnect(), null);
@@ -1209,6 +1240,11 @@ final class SmbSessionImpl implements SmbSessionInternal {
         finally {
             this.connectionState.set(0);
             this.digest = null;
+            if ( this.encryptionContext != null ) {
+                this.transport.removeEncryptionContext(this.sessionId);
+                this.encryptionContext = null;
+                this.encryptData = false;
+            }
             this.transport.notifyAll();
         }
         return wasInUse;
@@ -1234,6 +1270,20 @@ final class SmbSessionImpl implements SmbSessionInternal {
     }
 
 
+    /**
+     * Encrypt all further messages of this session, used when a share requires encryption
+     * 
+     * @throws SmbUnsupportedOperationException
+     *             if no encryption key is available
+     */
+    void enableEncryption () throws SmbUnsupportedOperationException {
+        if ( this.encryptionContext == null ) {
+            throw new SmbUnsupportedOperationException("Share requires encryption, but no encryption is available");
+        }
+        this.encryptData = true;
+    }
+
+
     void setSessionSetup ( SmbComSessionSetupAndXResponse response ) {
         this.extendedSecurity = response.isExtendedSecurity();
         this.connectionState.set(2);
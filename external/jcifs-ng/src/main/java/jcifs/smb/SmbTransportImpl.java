@@ -20,6 +20,7 @@
 package jcifs.smb;
 
 
+import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -29,6 +30,7 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketException;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Collections;
@@ -36,13 +38,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
-import javax.crypto.Cipher;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -80,6 +82,7 @@ import jcifs.internal.smb2.ServerMessageBlock2;
 import jcifs.internal.smb2.ServerMessageBlock2Request;
 import jcifs.internal.smb2.ServerMessageBlock2Response;
 import jcifs.internal.smb2.Smb2Constants;
+import jcifs.internal.smb2.Smb2EncryptionContext;
 import jcifs.internal.smb2.io.Smb2ReadResponse;
 import jcifs.internal.smb2.ioctl.Smb2IoctlRequest;
 import jcifs.internal.smb2.ioctl.Smb2IoctlResponse;
@@ -116,6 +119,8 @@ class SmbTransportImpl extends Transport implements SmbTransportInternal, SmbCon
     private final AtomicLong mid = new AtomicLong();
     private OutputStream out;
     private InputStream in;
+    private InputStream socketIn;
+    private byte[] decryptBuffer;
     private final byte[] sbuf = new byte[1024]; /* small local buffer */
     private long sessionExpiration;
     private final List<SmbSessionImpl> sessions = new LinkedList<>();
@@ -135,6 +140,8 @@ class SmbTransportImpl extends Transport implements SmbTransportInternal, SmbCon
 
     private byte[] preauthIntegrityHash = new byte[64];
 
+    private final Map<Long, Smb2EncryptionContext> encryptionContexts = new ConcurrentHashMap<>();
+
 
     SmbTransportImpl ( CIFSContext tc, Address address, int port, InetAddress localAddr, int localPort, boolean forceSigning ) {
         this.transportContext = tc;
@@ -194,6 +201,14 @@ class SmbTransportImpl extends Transport implements SmbTransportInternal, SmbCon
     }
 
 
+    /**
+     * @return number of credits available for new requests
+     */
+    public int getAvailableCredits () {
+        return this.credits.availablePermits();
+    }
+
+
     @Override
     public boolean isDisconnected () {
         Socket s = this.socket;
@@ -428,7 +443,7 @@ class SmbTransportImpl extends Transport implements SmbTransportInternal, SmbCon
             this.socket.setSoTimeout(tc.getConfig().getSoTimeout());
 
             this.out = this.socket.getOutputStream();
-            this.in = this.socket.getInputStream();
+            this.in = this.socketIn = this.socket.getInputStream();
 
             SessionServicePacket ssp = new SessionRequestPacket(tc.getConfig(), calledName, tc.getNameServiceClient().getLocalName());
             this.out.write(this.sbuf, 0, ssp.writeWireFormat(this.sbuf, 0));
@@ -495,7 +510,7 @@ class SmbTransportImpl extends Transport implements SmbTransportInternal, SmbCon
                 this.socket.setSoTimeout(this.transportContext.getConfig().getSoTimeout());
 
                 this.out = this.socket.getOutputStream();
-                this.in = this.socket.getInputStream();
+                this.in = this.socketIn = this.socket.getInputStream();
             }
 
             if ( this.credits.drainPermits() == 0 ) {
@@ -804,6 +819,7 @@ class SmbTransportImpl extends Transport implements SmbTransportInternal, SmbCon
         finally {
             this.socket = null;
             this.digest = null;
+            this.encryptionContexts.clear();
             this.tconHostName = null;
             this.transportContext.getTransportPool().removeTransport(this);
         }
@@ -824,6 +840,12 @@ class SmbTransportImpl extends Transport implements SmbTransportInternal, SmbCon
 
     @Override
     protected Long peekKey () throws IOException {
+        endDecryptedMessage();
+        return readKey();
+    }
+
+
+    private Long readKey () throws IOException {
         do {
             if ( ( readn(this.in, this.sbuf, 0, 4) ) < 4 ) {
                 return null;
@@ -849,6 +871,10 @@ class SmbTransportImpl extends Transport implements SmbTransportInternal, SmbCon
              * FSMB - 0xFF SMB magic #
              */
 
+            if ( this.sbuf[ 0 ] == (byte) 0x00 && Smb2EncryptionContext.isTransformHeader(this.sbuf, 4) ) {
+                return readEncrypted();
+            }
+
             if ( this.sbuf[ 0 ] == (byte) 0x00 && this.sbuf[ 4 ] == (byte) 0xFE && this.sbuf[ 5 ] == (byte) 'S' && this.sbuf[ 6 ] == (byte) 'M'
                     && this.sbuf[ 7 ] == (byte) 'B' ) {
                 this.smb2 = true;
@@ -888,6 +914,72 @@ class SmbTransportImpl extends Transport implements SmbTransportInternal, SmbCon
     }
 
 
+    /**
+     * Reads and decrypts a message, then continues reading from the decrypted message
+     * until the next call to peekKey.
+     * 
+     * @return key of the decrypted message
+     * @throws IOException
+     */
+    private Long readEncrypted () throws IOException {
+        if ( this.decryptBuffer != null ) {
+            throw new IOException("Nested transform header");
+        }
+
+        int size = Encdec.dec_uint16be(this.sbuf, 2) & 0xFFFF | ( this.sbuf[ 1 ] & 0xFF ) << 16;
+        byte[] buffer = getContext().getBufferCache().getBuffer();
+        try {
+            if ( size < Smb2EncryptionContext.TRANSFORM_HEADER_LENGTH + Smb2Constants.SMB2_HEADER_LENGTH
+                    || size + Smb2EncryptionContext.TAG_LENGTH > buffer.length ) {
+                throw new IOException("Invalid encrypted message size " + size);
+            }
+            System.arraycopy(this.sbuf, 4, buffer, 0, SmbConstants.SMB1_HEADER_LENGTH);
+            int rem = size - SmbConstants.SMB1_HEADER_LENGTH;
+            if ( readn(this.in, buffer, SmbConstants.SMB1_HEADER_LENGTH, rem) < rem ) {
+                return null;
+            }
+
+            long sessionId = Smb2EncryptionContext.getSessionId(buffer, 0);
+            Smb2EncryptionContext ctx = this.encryptionContexts.get(sessionId);
+            if ( ctx == null ) {
+                // session is already gone, nothing can be done with the message
+                log.warn("Dropping encrypted message for unknown session " + sessionId);
+                return readKey();
+            }
+
+            int len;
+            try {
+                len = ctx.decrypt(buffer, 0, size);
+            }
+            catch ( CIFSException e ) {
+                throw new IOException("Failed to decrypt message", e);
+            }
+
+            // continue with the plain text message, prefixed by its session message header
+            int start = Smb2EncryptionContext.TRANSFORM_HEADER_LENGTH - 4;
+            Encdec.enc_uint32be(len, buffer, start);
+            this.decryptBuffer = buffer;
+            buffer = null;
+            this.in = new ByteArrayInputStream(this.decryptBuffer, start, 4 + len);
+            return readKey();
+        }
+        finally {
+            if ( buffer != null ) {
+                getContext().getBufferCache().releaseBuffer(buffer);
+            }
+        }
+    }
+
+
+    private void endDecryptedMessage () {
+        if ( this.decryptBuffer != null ) {
+            this.in = this.socketIn;
+            getContext().getBufferCache().releaseBuffer(this.decryptBuffer);
+            this.decryptBuffer = null;
+        }
+    }
+
+
     @Override
     protected void doSend ( Request request ) throws IOException {
 
@@ -896,16 +988,21 @@ class SmbTransportImpl extends Transport implements SmbTransportInternal, SmbCon
         try {
             // synchronize around encode and write so that the ordering for SMB1 signing can be maintained
             synchronized ( this.outLock ) {
-                int n = smb.encode(buffer, 4);
-                Encdec.enc_uint32be(n & 0xFFFF, buffer, 0); /* 4 byte session message header */
+                Smb2EncryptionContext enc = smb instanceof ServerMessageBlock2 ? ( (ServerMessageBlock2) smb ).getEncryptionContext() : null;
+                int off = enc != null ? 4 + Smb2EncryptionContext.TRANSFORM_HEADER_LENGTH : 4;
+                int n = smb.encode(buffer, off);
                 if ( log.isTraceEnabled() ) {
                     do {
                         log.trace(smb.toString());
                     }
                     while ( smb instanceof AndXServerMessageBlock && ( smb = ( (AndXServerMessageBlock) smb ).getAndx() ) != null );
-                    log.trace(Hexdump.toHexString(buffer, 4, n));
+                    log.trace(Hexdump.toHexString(buffer, off, n));
 
                 }
+                if ( enc != null ) {
+                    n = enc.encrypt(buffer, 4, n, ( (ServerMessageBlock2) request ).getSessionId());
+                }
+                Encdec.enc_uint32be(n & 0xFFFF, buffer, 0); /* 4 byte session message header */
                 /*
                  * For some reason this can sometimes get broken up into another
                  * "NBSS Continuation Message" frame according to WireShark
@@ -942,6 +1039,9 @@ class SmbTransportImpl extends Transport implements SmbTransportInternal, SmbCon
         CommonServerMessageBlockRequest curHead = request;
 
         int maxSize = getContext().getConfig().getMaximumBufferSize();
+        if ( request instanceof ServerMessageBlock2 && ( (ServerMessageBlock2) request ).getEncryptionContext() != null ) {
+            maxSize -= Smb2EncryptionContext.TRANSFORM_HEADER_LENGTH + Smb2EncryptionContext.TAG_LENGTH;
+        }
 
         while ( curHead != null ) {
             CommonServerMessageBlockRequest nextHead = null;
@@ -1809,7 +1909,7 @@ class SmbTransportImpl extends Transport implements SmbTransportInternal, SmbCon
     }
 
 
-    Cipher createEncryptionCipher ( byte[] key ) throws CIFSException {
+    Smb2EncryptionContext createEncryptionContext ( byte[] sessionKey, byte[] preauthIntegrity ) throws CIFSException {
         if ( !this.smb2 || this.negotiated == null ) {
             throw new SmbUnsupportedOperationException();
         }
@@ -1830,12 +1930,41 @@ class SmbTransportImpl extends Transport implements SmbTransportInternal, SmbCon
         switch ( cipherId ) {
         case EncryptionNegotiateContext.CIPHER_AES128_CCM:
         case EncryptionNegotiateContext.CIPHER_AES128_GCM:
+        case EncryptionNegotiateContext.CIPHER_AES256_CCM:
+        case EncryptionNegotiateContext.CIPHER_AES256_GCM:
+            try {
+                return new Smb2EncryptionContext(
+                    cipherId,
+                    resp.getSelectedDialect().getDialect(),
+                    sessionKey,
+                    preauthIntegrity,
+                    getContext().getConfig().getRandom());
+            }
+            catch ( GeneralSecurityException e ) {
+                throw new SmbException("Failed to initialize encryption", e);
+            }
         default:
             throw new SmbUnsupportedOperationException();
         }
     }
 
 
+    /**
+     * Registers the context used to decrypt the messages of a session
+     * 
+     * @param sessionId
+     * @param ctx
+     */
+    void addEncryptionContext ( long sessionId, Smb2EncryptionContext ctx ) {
+        this.encryptionContexts.put(sessionId, ctx);
+    }
+
+
+    void removeEncryptionContext ( long sessionId ) {
+        this.encryptionContexts.remove(sessionId);
+    }
+
+
     public int getRequestSecurityMode ( Smb2NegotiateResponse first ) {
         int securityMode = Smb2Constants.SMB2_NEGOTIATE_SIGNING_ENABLED;
         if ( this.signingEnforced || ( first != null && first.isSigningRequired() ) ) {
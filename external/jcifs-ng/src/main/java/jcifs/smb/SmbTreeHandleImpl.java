@@ -292,6 +292,17 @@ class SmbTreeHandleImpl implements SmbTreeHandleInternal {
     }
 
 
+    /**
+     * @return number of credits available for new requests on the transport
+     */
+    public int getAvailableCredits () {
+        try ( SmbSessionImpl session = this.treeConnection.getSession();
+              SmbTransportImpl transport = session.getTransport() ) {
+            return transport.getAvailableCredits();
+        }
+    }
+
+
     @Override
     public int getReceiveBufferSize () throws SmbException {
         try ( SmbSessionImpl session = this.treeConnection.getSession();
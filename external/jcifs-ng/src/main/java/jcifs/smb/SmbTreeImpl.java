@@ -62,6 +62,7 @@ import jcifs.internal.smb2.ioctl.ValidateNegotiateInfoResponse;
 import jcifs.internal.smb2.nego.Smb2NegotiateRequest;
 import jcifs.internal.smb2.nego.Smb2NegotiateResponse;
 import jcifs.internal.smb2.tree.Smb2TreeConnectRequest;
+import jcifs.internal.smb2.tree.Smb2TreeConnectResponse;
 import jcifs.internal.smb2.tree.Smb2TreeDisconnectRequest;
 
 
@@ -668,6 +669,12 @@ class SmbTreeImpl implements SmbTreeInternal {
             throw new SmbException("IPC signing is enforced, but no signing is available");
         }
 
+        if ( response instanceof Smb2TreeConnectResponse
+                && ( ( (Smb2TreeConnectResponse) response ).getShareFlags() & Smb2TreeConnectResponse.SMB2_SHAREFLAG_ENCRYPT_DATA ) != 0 ) {
+            // encryption is tracked per session, so this also encrypts the traffic to other shares of the session
+            sess.enableEncryption();
+        }
+
         this.service = rsvc;
         this.inDfs = response.isShareDfs();
         this.treeNum = TREE_CONN_COUNTER.incrementAndGet();
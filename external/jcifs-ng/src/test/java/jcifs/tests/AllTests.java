@@ -262,6 +262,26 @@ public class AllTests {
             }
         });
 
+        MUTATIONS.put("smb2-readAhead", new TestMutation() {
+
+            @Override
+            public Map<String, String> mutate ( Map<String, String> cfg ) {
+                cfg.put("jcifs.smb.client.minVersion", "SMB202");
+                cfg.put("jcifs.smb.client.readAhead", "8");
+                return cfg;
+            }
+        });
+
+        MUTATIONS.put("smb2-writeBehind", new TestMutation() {
+
+            @Override
+            public Map<String, String> mutate ( Map<String, String> cfg ) {
+                cfg.put("jcifs.smb.client.minVersion", "SMB202");
+                cfg.put("jcifs.smb.client.writeBehind", "8");
+                return cfg;
+            }
+        });
+
         MUTATIONS.put("smb31", new TestMutation() {
 
             @Override
@@ -271,6 +291,28 @@ public class AllTests {
                 return cfg;
             }
         });
+
+        MUTATIONS.put("smb30-encrypt", new TestMutation() {
+
+            @Override
+            public Map<String, String> mutate ( Map<String, String> cfg ) {
+                cfg.put("jcifs.smb.client.minVersion", "SMB300");
+                cfg.put("jcifs.smb.client.maxVersion", "SMB302");
+                cfg.put("jcifs.smb.client.encryptionEnabled", "true");
+                return cfg;
+            }
+        });
+
+        MUTATIONS.put("smb31-encrypt", new TestMutation() {
+
+            @Override
+            public Map<String, String> mutate ( Map<String, String> cfg ) {
+                cfg.put("jcifs.smb.client.minVersion", "SMB311");
+                cfg.put("jcifs.smb.client.maxVersion", "SMB311");
+                cfg.put("jcifs.smb.client.encryptionEnabled", "true");
+                return cfg;
+            }
+        });
     }
 
 
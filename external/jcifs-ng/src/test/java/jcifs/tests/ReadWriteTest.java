@@ -82,7 +82,7 @@ public class ReadWriteTest extends BaseCIFSTest {
 
     @Parameters ( name = "{0}" )
     public static Collection<Object> configs () {
-        return getConfigs("smb1", "noLargeReadWrite", "noNTSmbs", "forceSigning", "smb2", "smb30", "smb31");
+        return getConfigs("smb1", "noLargeReadWrite", "noNTSmbs", "forceSigning", "smb2", "smb2-readAhead", "smb2-writeBehind", "smb30", "smb31", "smb30-encrypt", "smb31-encrypt");
     }
 
 
@@ -116,6 +116,42 @@ public class ReadWriteTest extends BaseCIFSTest {
     }
 
 
+    @Test
+    public void testLargeRead () throws IOException {
+        runReadWriteTest(65536, 4 * 1024 * 1024 + 17);
+    }
+
+
+    @Test
+    public void testReadAfterSkip () throws IOException {
+        try ( SmbFile f = createTestFile() ) {
+            try {
+                int bufSize = 4096;
+                long length = 1024 * 1024;
+                try ( OutputStream os = f.getOutputStream() ) {
+                    writeRandom(bufSize, length, os);
+                }
+
+                byte[] expect = new byte[(int) length];
+                randBytes(getRandom(), expect);
+                try ( InputStream is = f.getInputStream() ) {
+                    byte[] buffer = new byte[bufSize];
+                    assertEquals(bufSize, is.read(buffer));
+                    // skip past the data already requested
+                    long skip = 3 * 65536 + 11;
+                    assertEquals(skip, is.skip(skip));
+                    int read = is.read(buffer);
+                    int off = (int) ( bufSize + skip );
+                    assertArrayEquals(Arrays.copyOfRange(expect, off, off + read), Arrays.copyOfRange(buffer, 0, read));
+                }
+            }
+            finally {
+                f.delete();
+            }
+        }
+    }
+
+
     @Test
     public void testTrucation () throws IOException {
         try ( SmbFile f = createTestFile() ) {